@@ -0,0 +1,31 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks reporting throughput, sampled latency percentiles (p99
+ * included) and allocation rate, unless other modes or profilers are given.</p>
+ *
+ * <p>Accepts the same arguments as the JMH command line, e.g.
+ * {@code java -jar benchmarks.jar VendCycle -rf json}.</p>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        final ChainedOptionsBuilder optionsBuilder = new OptionsBuilder().parent(commandLineOptions);
+        if (commandLineOptions.getBenchModes().isEmpty())
+            optionsBuilder.mode(Mode.Throughput).mode(Mode.SampleTime);
+        if (commandLineOptions.getProfilers().isEmpty())
+            optionsBuilder.addProfiler(GCProfiler.class);
+
+        new Runner(optionsBuilder.build()).run();
+    }
+}
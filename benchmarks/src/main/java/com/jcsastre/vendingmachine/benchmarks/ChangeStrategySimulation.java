@@ -0,0 +1,189 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * <p>Simulation comparing how many vends each change strategy sustains after a reset
+ * before the first lost sale.</p>
+ *
+ * <p>Each trial resets a machine and serves customers paying with a realistic coin
+ * mix until the change of a customer can't be returned. Like in a real machine, the
+ * coins that don't fit in the coins deposit drop to a cash box, where they can't be
+ * used as change, so running out of change is the only way to lose a sale. All the
+ * strategies see the same customers.</p>
+ *
+ * <p>Arguments, all optional: trials (1000) and max capacity per each coin type (40).</p>
+ */
+public class ChangeStrategySimulation {
+
+    private static final Coin[] COINS = Coin.values();
+    private static final Product[] PRODUCTS = Product.values();
+
+    // Customers mostly pay with 1€ and 2€, and the change drains the small coins
+    private static final double[] COIN_WEIGHTS = {1, 1, 2, 3, 8, 5};
+    private static final double[] PRODUCT_WEIGHTS = {3, 2, 5};
+
+    private static final int MAX_CUSTOMERS_PER_TRIAL = 100_000;
+
+    public static void main(String[] args) throws Exception {
+
+        final int trials = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int coinsCapacity = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+        System.out.printf(
+            "%-22s %12s %8s %8s %8s%n",
+            "strategy", "mean vends", "p10", "p50", "p90"
+        );
+
+        print("asBiggestAsPossible", simulate(
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible, trials, coinsCapacity
+        ));
+        print("minimumCoins", simulate(new MinimumCoinsChangeCalculator(), trials, coinsCapacity));
+        print("scarcityAware", simulate(new ScarcityAwareChangeCalculator(coinsCapacity), trials, coinsCapacity));
+    }
+
+    /**
+     * @return the vends of each trial before the first change that can't be returned.
+     */
+    private static int[] simulate(
+        CoinCountsChangeCalculator coinsChangeCalculator,
+        int trials,
+        int coinsCapacity
+    ) throws InvalidStateException {
+
+        final int[] vends = new int[trials];
+        for (int trial = 0; trial < trials; trial++) {
+
+            final VendingMachineImpl vendingMachineImpl = new VendingMachineImpl(
+                new CashBoxInventorizedDeposit(new EnumInventorizedDeposit<>(Coin.class, coinsCapacity)),
+                new EnumInventorizedDeposit<>(Product.class, MAX_CUSTOMERS_PER_TRIAL),
+                coinsChangeCalculator
+            );
+            vendingMachineImpl.reset();
+
+            final SplittableRandom random = new SplittableRandom(trial);
+            while (vends[trial] < MAX_CUSTOMERS_PER_TRIAL && serveCustomer(vendingMachineImpl, random)) {
+                vends[trial]++;
+            }
+        }
+
+        return vends;
+    }
+
+    /**
+     * @return true if the product has been vended, false if its change can't be returned.
+     */
+    private static boolean serveCustomer(VendingMachineImpl vendingMachineImpl, SplittableRandom random) {
+
+        try {
+            vendingMachineImpl.selectProduct(PRODUCTS[pick(PRODUCT_WEIGHTS, random)]);
+            while (!vendingMachineImpl.collectProductAtTakeoutPort().isPresent()) {
+                vendingMachineImpl.insertCoin(COINS[pick(COIN_WEIGHTS, random)]);
+            }
+            return true;
+        } catch (NoChangeException e) {
+            return false;
+        } catch (DepositCoinOverflowException | NoProductStockException | ProductAlreadySelected e) {
+            // Not possible, the cash box takes every coin, there is stock for every
+            // customer and one product per customer
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int pick(double[] weights, SplittableRandom random) {
+
+        double value = random.nextDouble() * Arrays.stream(weights).sum();
+        int i = 0;
+        while (i < weights.length - 1 && value >= weights[i]) {
+            value -= weights[i];
+            i++;
+        }
+
+        return i;
+    }
+
+    private static void print(String strategy, int[] vends) {
+
+        final int[] sortedVends = vends.clone();
+        Arrays.sort(sortedVends);
+
+        System.out.printf(
+            "%-22s %12.1f %8d %8d %8d%n",
+            strategy,
+            Arrays.stream(sortedVends).average().orElse(0),
+            sortedVends[sortedVends.length / 10],
+            sortedVends[sortedVends.length / 2],
+            sortedVends[sortedVends.length * 9 / 10]
+        );
+    }
+
+    /**
+     * <p>Coins deposit dropping the coins that don't fit to a cash box, out of the
+     * count.</p>
+     */
+    private static class CashBoxInventorizedDeposit implements InventorizedDeposit<Coin> {
+
+        private final InventorizedDeposit<Coin> inventorizedDeposit;
+
+        CashBoxInventorizedDeposit(InventorizedDeposit<Coin> inventorizedDeposit) {
+
+            this.inventorizedDeposit = inventorizedDeposit;
+        }
+
+        @Override
+        public void insert(Coin type, Integer count) throws TypeLimitExceededException {
+
+            final int room = inventorizedDeposit.getMaxCapacityPerEachType() - inventorizedDeposit.getCountByType(type);
+            if (room > 0)
+                inventorizedDeposit.insert(type, Math.min(count, room));
+        }
+
+        @Override
+        public boolean hasType(Coin type) {
+
+            return inventorizedDeposit.hasType(type);
+        }
+
+        @Override
+        public Optional<Coin> tryToRelease(Coin type) {
+
+            return inventorizedDeposit.tryToRelease(type);
+        }
+
+        @Override
+        public boolean tryToReleaseAll(Map<Coin, Integer> countByType) {
+
+            return inventorizedDeposit.tryToReleaseAll(countByType);
+        }
+
+        @Override
+        public void empty() {
+
+            inventorizedDeposit.empty();
+        }
+
+        @Override
+        public Integer getCountByType(Coin type) {
+
+            return inventorizedDeposit.getCountByType(type);
+        }
+
+        @Override
+        public Map<Coin, Integer> getCountsForAllTypes() {
+
+            return inventorizedDeposit.getCountsForAllTypes();
+        }
+
+        @Override
+        public Integer getMaxCapacityPerEachType() {
+
+            return inventorizedDeposit.getMaxCapacityPerEachType();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.CoinCountsChangeCalculator;
+import com.jcsastre.vendingmachine.CoinSystem;
+import com.jcsastre.vendingmachine.Coins;
+import com.jcsastre.vendingmachine.MinimumCoinsChangeCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Latency of calculating change with the greedy calculator compared with the
+ * exact {@link MinimumCoinsChangeCalculator}, with and without its cache, for
+ * deposits of 10 to 10.000 coins per type, and with the calculator chosen by
+ * {@link CoinSystem#EURO}.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoinsChangeCalculatorBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int countPerType;
+
+    @Param({"60", "185", "395"})
+    public int amountInCents;
+
+    private int[] availableCounts;
+    private int[] changeCounts;
+
+    private MinimumCoinsChangeCalculator minimumCoinsChangeCalculator;
+    private MinimumCoinsChangeCalculator notCachingMinimumCoinsChangeCalculator;
+
+    @Setup
+    public void setUp() {
+
+        availableCounts = new int[Coins.COUNT];
+        Arrays.fill(availableCounts, countPerType);
+        changeCounts = new int[Coins.COUNT];
+
+        minimumCoinsChangeCalculator = new MinimumCoinsChangeCalculator();
+        notCachingMinimumCoinsChangeCalculator = new MinimumCoinsChangeCalculator(0);
+    }
+
+    @Benchmark
+    public boolean asBiggestAsPossible() {
+
+        return CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+            .calculate(availableCounts, amountInCents, changeCounts);
+    }
+
+    @Benchmark
+    public boolean euroCoinSystem() {
+
+        return CoinSystem.EURO.getChangeCalculator().calculate(availableCounts, amountInCents, changeCounts);
+    }
+
+    @Benchmark
+    public boolean minimumCoins() {
+
+        return minimumCoinsChangeCalculator.calculate(availableCounts, amountInCents, changeCounts);
+    }
+
+    /**
+     * <p>Changes the deposit on every call, as a small deposit does while vending,
+     * so the cached table can't be reused.</p>
+     */
+    @Benchmark
+    public boolean minimumCoinsChangingDeposit() {
+
+        final int index = Coin.TEN_CENTS.ordinal();
+        availableCounts[index] = availableCounts[index] == countPerType ? countPerType - 1 : countPerType;
+
+        return minimumCoinsChangeCalculator.calculate(availableCounts, amountInCents, changeCounts);
+    }
+
+    @Benchmark
+    public boolean minimumCoinsWithoutCache() {
+
+        return notCachingMinimumCoinsChangeCalculator.calculate(availableCounts, amountInCents, changeCounts);
+    }
+}
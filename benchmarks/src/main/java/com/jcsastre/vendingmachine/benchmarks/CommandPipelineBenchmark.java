@@ -0,0 +1,123 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.InvalidStateException;
+import com.jcsastre.vendingmachine.metrics.HistogramSnapshot;
+import com.jcsastre.vendingmachine.pipeline.CommandPipeline;
+import com.jcsastre.vendingmachine.pipeline.CommandPort;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A coin inserted, cancelled and collected, calling the {@link VendingMachineImpl}
+ * directly or offering the commands to a {@link CommandPipeline} and waiting for each
+ * reply, which measures the end to end latency of the rings and the logic thread.</p>
+ *
+ * <p>The latencies recorded by the pipeline itself, per command, are reported by the
+ * pipelined benchmark as the secondary results p50, p99, p999 and max, in
+ * nanoseconds, over all the commands since the trial started.</p>
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandPipelineBenchmark {
+
+    private static final int[] COIN_COUNTS = new int[Coins.COUNT];
+
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Setup
+    public void setUp() throws InvalidStateException {
+
+        vendingMachineImpl = newVendingMachineImpl();
+    }
+
+    /**
+     * <p>Pipeline in front of its own vending machine, with the latencies it records
+     * read at the end of each iteration as its public fields.</p>
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Pipeline {
+
+        public long p50;
+        public long p99;
+        public long p999;
+        public long max;
+
+        private CommandPipeline pipeline;
+        private CommandPort coinAcceptor;
+
+        @Setup
+        public void setUp() throws InvalidStateException {
+
+            pipeline = new CommandPipeline(newVendingMachineImpl(), 1);
+            coinAcceptor = pipeline.getPort(0);
+        }
+
+        @TearDown(Level.Iteration)
+        public void readLatencies() {
+
+            final HistogramSnapshot latencies = pipeline.snapshotLatencies();
+            p50 = latencies.getValueAtPercentile(50);
+            p99 = latencies.getValueAtPercentile(99);
+            p999 = latencies.getValueAtPercentile(99.9);
+            max = latencies.getMaxValue();
+        }
+
+        @TearDown
+        public void tearDown() {
+
+            pipeline.close();
+        }
+    }
+
+    @Benchmark
+    public int direct() throws InvalidStateException {
+
+        vendingMachineImpl.tryToInsertCoin(Coin.TWENTY_CENTS);
+        vendingMachineImpl.cancel();
+
+        return vendingMachineImpl.collectCoinCountsAtRepaymentPort(COIN_COUNTS);
+    }
+
+    @Benchmark
+    public long pipelined(Pipeline pipeline) {
+
+        final CommandPort coinAcceptor = pipeline.coinAcceptor;
+
+        coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.TWENTY_CENTS.ordinal());
+        awaitReply(coinAcceptor);
+        coinAcceptor.offer(VendingMachineCommand.CANCEL, 0);
+        awaitReply(coinAcceptor);
+        coinAcceptor.offer(VendingMachineCommand.COLLECT_COINS, 0);
+
+        return awaitReply(coinAcceptor);
+    }
+
+    private static long awaitReply(CommandPort coinAcceptor) {
+
+        long reply;
+        while ((reply = coinAcceptor.pollReply(COIN_COUNTS)) == CommandPort.NO_REPLY) {
+            Thread.yield();
+        }
+
+        return reply;
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl() throws InvalidStateException {
+
+        final VendingMachineImpl vendingMachineImpl = new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 100),
+            new EnumInventorizedDeposit<>(Product.class, 10),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+        vendingMachineImpl.reset();
+
+        return vendingMachineImpl;
+    }
+}
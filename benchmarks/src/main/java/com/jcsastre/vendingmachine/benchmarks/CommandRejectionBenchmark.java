@@ -0,0 +1,105 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Customer commands rejected by {@link VendingMachineImpl}, as happens with every
+ * attempt once a machine runs out of change or stock, through the exception based
+ * commands or the {@link CommandResultVendingMachine} ones.</p>
+ *
+ * <p>The coins deposit only has one euro coins, so paying a water (90c) with one
+ * euro is rejected because there isn't change. Another machine has no products at
+ * all.</p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandRejectionBenchmark {
+
+    private static final int COMMANDS_BETWEEN_EMPTYING = 1_000_000;
+
+    private static final int COINS_CAPACITY = 2 * COMMANDS_BETWEEN_EMPTYING;
+
+    @Param({"exceptions", "resultCodes"})
+    public String api;
+
+    private EnumInventorizedDeposit<Coin> coinsDeposit;
+    private VendingMachineImpl vendingMachineImpl;
+    private VendingMachineImpl outOfStockVendingMachineImpl;
+    private boolean resultCodes;
+    private int commands;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, COINS_CAPACITY);
+        final EnumInventorizedDeposit<Product> productsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        productsDeposit.insert(Product.WATER, 10);
+
+        vendingMachineImpl =
+            new VendingMachineImpl(
+                coinsDeposit,
+                productsDeposit,
+                CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+            );
+        vendingMachineImpl.selectProduct(Product.WATER);
+
+        outOfStockVendingMachineImpl =
+            new VendingMachineImpl(
+                new EnumInventorizedDeposit<>(Coin.class, 10),
+                new EnumInventorizedDeposit<>(Product.class, 10),
+                CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+            );
+        resultCodes = "resultCodes".equals(api);
+    }
+
+    /**
+     * <p>One euro inserted for the selected water, returned for lack of change.</p>
+     */
+    @Benchmark
+    public void noChange(Blackhole blackhole) throws NoProductStockException, DepositCoinOverflowException {
+
+        // Inserted coins that are returned stay in the coins deposit
+        if (++commands == COMMANDS_BETWEEN_EMPTYING) {
+            coinsDeposit.empty();
+            commands = 0;
+        }
+
+        if (resultCodes) {
+            blackhole.consume(vendingMachineImpl.tryToInsertCoin(Coin.ONE_EURO));
+        } else {
+            try {
+                vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+            } catch (NoChangeException e) {
+                blackhole.consume(e);
+            }
+        }
+
+        blackhole.consume(vendingMachineImpl.collectCoinsAtRepaymentPort());
+    }
+
+    /**
+     * <p>Cashless payment of a coke on the machine without products.</p>
+     */
+    @Benchmark
+    public void noProductStock(Blackhole blackhole) throws ProductAlreadySelected {
+
+        if (resultCodes) {
+            blackhole.consume(outOfStockVendingMachineImpl.tryToPayCashless(Product.COKE, VendingMachine.NO_IDEMPOTENCY_KEY));
+        } else {
+            try {
+                outOfStockVendingMachineImpl.payCashless(Product.COKE, VendingMachine.NO_IDEMPOTENCY_KEY);
+            } catch (NoProductStockException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.forecast.DemandHistory;
+import com.jcsastre.vendingmachine.forecast.FleetDemandForecaster;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Time to consume a {@link DemandHistory} file with {@link #events} events of a
+ * fleet of {@link #machines} machines, a vend with a coin in and a coin out every
+ * minute in a random machine.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DemandForecastBenchmark {
+
+    private static final long HALF_LIFE_MILLIS = 7 * 24 * 3_600_000L;
+
+    @Param({"10000000"})
+    public int events;
+
+    @Param({"10000"})
+    public int machines;
+
+    private Path historyFile;
+    private FleetDemandForecaster forecaster;
+
+    @Setup(Level.Trial)
+    public void writeHistory() throws IOException {
+
+        historyFile = Files.createTempFile("demand", ".history");
+
+        final Random random = new Random(0);
+        final ByteBuffer buffer = ByteBuffer.allocate(3 * 4096 * DemandHistory.RECORD_SIZE);
+
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.WRITE)) {
+            for (int event = 0; event < events; event += 3) {
+
+                final long millis = event * 20_000L;
+                final int machine = random.nextInt(machines);
+                DemandHistory.put(buffer, millis, machine, DemandHistory.VEND, random.nextInt(Product.values().length), 1);
+                DemandHistory.put(buffer, millis, machine, DemandHistory.COIN_IN, Coin.ONE_EURO.ordinal(), 1);
+                DemandHistory.put(buffer, millis, machine, DemandHistory.COIN_OUT, Coin.TEN_CENTS.ordinal(), 1);
+
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    channel.write(buffer);
+                    buffer.clear();
+                }
+            }
+            buffer.flip();
+            channel.write(buffer);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+
+        forecaster = new FleetDemandForecaster(machines, HALF_LIFE_MILLIS);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteHistory() throws IOException {
+
+        Files.delete(historyFile);
+    }
+
+    @Benchmark
+    public long consume() throws IOException {
+
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+            return forecaster.consume(channel);
+        }
+    }
+}
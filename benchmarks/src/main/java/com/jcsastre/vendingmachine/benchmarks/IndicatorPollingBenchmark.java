@@ -0,0 +1,57 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A display polling the balance and selected product indicators of a
+ * {@link VendingMachineImpl} with a coke selected and 1.20€ inserted, through the
+ * Optional and boxed queries or the primitive ones.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndicatorPollingBenchmark {
+
+    @Param({"optional", "primitive"})
+    public String api;
+
+    private VendingMachine vendingMachine;
+    private boolean primitive;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        final EnumInventorizedDeposit<Product> productsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        productsDeposit.insert(Product.COKE, 10);
+
+        vendingMachine =
+            new VendingMachineImpl(
+                new EnumInventorizedDeposit<>(Coin.class, 10),
+                productsDeposit,
+                CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+            );
+        vendingMachine.insertCoin(Coin.ONE_EURO);
+        vendingMachine.insertCoin(Coin.TWENTY_CENTS);
+        vendingMachine.selectProduct(Product.COKE);
+        primitive = "primitive".equals(api);
+    }
+
+    @Benchmark
+    public void poll(Blackhole blackhole) {
+
+        if (primitive) {
+            blackhole.consume(vendingMachine.readBalanceInCents());
+            blackhole.consume(vendingMachine.readSelectedProductId());
+        } else {
+            blackhole.consume(vendingMachine.readBalanceInCentsIndicator());
+            blackhole.consume(vendingMachine.readSelectedProductIndicator());
+        }
+    }
+}
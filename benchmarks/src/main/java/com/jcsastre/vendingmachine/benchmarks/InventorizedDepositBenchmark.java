@@ -0,0 +1,59 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Single threaded insert and release on each {@link InventorizedDeposit}
+ * implementation.</p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InventorizedDepositBenchmark {
+
+    private static final int CAPACITY = 1_000_000;
+
+    @Param({"InventorizedDepositImpl", "EnumInventorizedDeposit", "AtomicInventorizedDeposit"})
+    public String implementation;
+
+    private InventorizedDeposit<Coin> inventorizedDeposit;
+
+    @Setup
+    public void setUp() throws TypeLimitExceededException {
+
+        switch (implementation) {
+            case "EnumInventorizedDeposit":
+                inventorizedDeposit = new EnumInventorizedDeposit<>(Coin.class, CAPACITY);
+                break;
+            case "AtomicInventorizedDeposit":
+                inventorizedDeposit = new AtomicInventorizedDeposit<>(Coin.class, CAPACITY);
+                break;
+            default:
+                inventorizedDeposit = new InventorizedDepositImpl<>(CAPACITY);
+        }
+
+        for (Coin coin : Coin.values()) {
+            inventorizedDeposit.insert(coin, CAPACITY / 2);
+        }
+    }
+
+    @Benchmark
+    public void insertAndRelease() throws TypeLimitExceededException {
+
+        inventorizedDeposit.insert(Coin.FIFTY_CENTS, 1);
+        inventorizedDeposit.tryToRelease(Coin.FIFTY_CENTS);
+    }
+
+    @Benchmark
+    public boolean hasType() {
+
+        return inventorizedDeposit.hasType(Coin.TWO_EUROS);
+    }
+}
@@ -0,0 +1,100 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.AtomicInventorizedDeposit;
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.InventorizedDeposit;
+import com.jcsastre.vendingmachine.InventorizedDepositImpl;
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Throughput of releasing and inserting back coins from a deposit shared by 1, 4
+ * and 16 threads, comparing {@link AtomicInventorizedDeposit} with a synchronized
+ * wrapper around {@link InventorizedDepositImpl}.</p>
+ *
+ * <p>Each operation picks a random coin type, so threads contend both on the same
+ * and on different types.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InventorizedDepositContentionBenchmark {
+
+    private static final int CAPACITY = 1_000_000;
+
+    private static final Coin[] COINS = Coin.values();
+
+    private InventorizedDeposit<Coin> atomicInventorizedDeposit;
+    private InventorizedDeposit<Coin> synchronizedInventorizedDeposit;
+
+    @Setup
+    public void setUp() throws TypeLimitExceededException {
+
+        atomicInventorizedDeposit = new AtomicInventorizedDeposit<>(Coin.class, CAPACITY);
+        synchronizedInventorizedDeposit = new SynchronizedInventorizedDeposit<>(new InventorizedDepositImpl<>(CAPACITY));
+
+        for (Coin coin : COINS) {
+            atomicInventorizedDeposit.insert(coin, CAPACITY / 2);
+            synchronizedInventorizedDeposit.insert(coin, CAPACITY / 2);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean atomic_1() throws TypeLimitExceededException {
+
+        return releaseAndInsert(atomicInventorizedDeposit);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean atomic_4() throws TypeLimitExceededException {
+
+        return releaseAndInsert(atomicInventorizedDeposit);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean atomic_16() throws TypeLimitExceededException {
+
+        return releaseAndInsert(atomicInventorizedDeposit);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean synchronized_1() throws TypeLimitExceededException {
+
+        return releaseAndInsert(synchronizedInventorizedDeposit);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean synchronized_4() throws TypeLimitExceededException {
+
+        return releaseAndInsert(synchronizedInventorizedDeposit);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean synchronized_16() throws TypeLimitExceededException {
+
+        return releaseAndInsert(synchronizedInventorizedDeposit);
+    }
+
+    private static boolean releaseAndInsert(InventorizedDeposit<Coin> inventorizedDeposit) throws TypeLimitExceededException {
+
+        final Coin coin = COINS[ThreadLocalRandom.current().nextInt(COINS.length)];
+
+        final boolean released = inventorizedDeposit.tryToRelease(coin).isPresent();
+        if (released)
+            inventorizedDeposit.insert(coin, 1);
+
+        return released;
+    }
+}
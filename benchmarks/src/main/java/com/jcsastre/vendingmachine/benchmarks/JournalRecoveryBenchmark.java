@@ -0,0 +1,88 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Time to rebuild a {@link VendingMachineImpl} replaying a {@link CommandJournal}
+ * with {@link #events} commands, written as vend cycles paid with change and a reset
+ * every {@link #CYCLES_BETWEEN_RESETS} cycles.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalRecoveryBenchmark {
+
+    private static final int CYCLES_BETWEEN_RESETS = 50_000;
+
+    private static final int COINS_CAPACITY = 400_000;
+    private static final int PRODUCTS_CAPACITY = CYCLES_BETWEEN_RESETS;
+
+    @Param({"10000000"})
+    public int events;
+
+    private Path journalFile;
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Setup(Level.Trial)
+    public void writeJournal()
+        throws IOException, NoProductStockException, NoChangeException, ProductAlreadySelected, DepositCoinOverflowException, InvalidStateException {
+
+        journalFile = Files.createTempFile("recovery", ".journal");
+
+        try (JournaledVendingMachine journaledVendingMachine =
+                 new JournaledVendingMachine(newVendingMachineImpl(), CommandJournal.open(journalFile, 0))) {
+
+            int written = 0;
+            while (written < events) {
+
+                journaledVendingMachine.reset();
+                written++;
+
+                for (int cycle = 0; cycle < CYCLES_BETWEEN_RESETS && written + 4 <= events; cycle++) {
+                    journaledVendingMachine.selectProduct(Product.WATER);
+                    journaledVendingMachine.insertCoin(Coin.ONE_EURO);
+                    journaledVendingMachine.collectProductAtTakeoutPort();
+                    journaledVendingMachine.collectCoinsAtRepaymentPort();
+                    written += 4;
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+
+        vendingMachineImpl = newVendingMachineImpl();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+
+        Files.delete(journalFile);
+    }
+
+    @Benchmark
+    public long replay() throws IOException {
+
+        return CommandJournal.replay(journalFile, 0, vendingMachineImpl);
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl() {
+
+        return new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, COINS_CAPACITY),
+            new EnumInventorizedDeposit<>(Product.class, PRODUCTS_CAPACITY),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+}
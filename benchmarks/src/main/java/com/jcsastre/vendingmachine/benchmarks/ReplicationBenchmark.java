@@ -0,0 +1,91 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import com.jcsastre.vendingmachine.replication.ReplicatedVendingMachine;
+import com.jcsastre.vendingmachine.replication.VendingMachineReplica;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Latency of {@link VendingMachine#insertCoin(Coin)} on a {@link VendingMachineImpl},
+ * alone or replicated to a {@link VendingMachineReplica} listening on the loopback
+ * interface, run by a thread of the same process.</p>
+ *
+ * <p>Coins are inserted without a product selected, so they only add to the balance,
+ * and the machine is reset every {@link #INSERTS_BETWEEN_RESETS} coins.</p>
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplicationBenchmark {
+
+    private static final int INSERTS_BETWEEN_RESETS = 100_000;
+
+    private static final int COINS_CAPACITY = 4 * INSERTS_BETWEEN_RESETS;
+
+    @Param({"false", "true"})
+    public boolean replicated;
+
+    private VendingMachine vendingMachine;
+    private VendingMachineReplica replica;
+    private Thread replicaThread;
+    private int inserts;
+
+    @Setup
+    public void setUp() throws IOException, InvalidStateException {
+
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl();
+        vendingMachineImpl.reset();
+        vendingMachine = vendingMachineImpl;
+
+        if (replicated) {
+            replica = VendingMachineReplica.listen(newVendingMachineImpl(), new InetSocketAddress("127.0.0.1", 0));
+            replicaThread = new Thread(() -> {
+                try {
+                    replica.run();
+                } catch (IOException | InvalidStateException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "replica");
+            replicaThread.start();
+            vendingMachine = ReplicatedVendingMachine.connect(vendingMachineImpl, replica.getAddress());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+
+        if (replicated) {
+            ((ReplicatedVendingMachine) vendingMachine).close();
+            replicaThread.join();
+            replica.close();
+        }
+    }
+
+    @Benchmark
+    public void insertCoin() throws NoChangeException, NoProductStockException, DepositCoinOverflowException, InvalidStateException {
+
+        if (++inserts == INSERTS_BETWEEN_RESETS) {
+            vendingMachine.reset();
+            inserts = 0;
+        }
+
+        vendingMachine.insertCoin(Coin.TEN_CENTS);
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl() {
+
+        return new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, COINS_CAPACITY),
+            new EnumInventorizedDeposit<>(Product.class, 10),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+}
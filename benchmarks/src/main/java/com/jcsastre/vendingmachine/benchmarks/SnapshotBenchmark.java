@@ -0,0 +1,71 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of taking a {@link VendingMachineSnapshot} between commands, and of reading
+ * one from disk and restoring it on a {@link VendingMachineImpl} at boot.</p>
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    private static final int CAPACITY = 1_000;
+
+    private VendingMachineImpl vendingMachineImpl;
+    private Path snapshotFile;
+
+    @Setup
+    public void setUp()
+        throws IOException, NoProductStockException, NoChangeException, ProductAlreadySelected, DepositCoinOverflowException, InvalidStateException {
+
+        vendingMachineImpl = newVendingMachineImpl();
+        vendingMachineImpl.reset();
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+        vendingMachineImpl.selectProduct(Product.WATER);
+
+        snapshotFile = Files.createTempFile("vending-machine", ".snapshot");
+        vendingMachineImpl.takeSnapshot(0).write(snapshotFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        Files.delete(snapshotFile);
+    }
+
+    @Benchmark
+    public VendingMachineSnapshot takeSnapshot() {
+
+        return vendingMachineImpl.takeSnapshot(0);
+    }
+
+    @Benchmark
+    public VendingMachineImpl readAndRestore() throws IOException, InvalidStateException {
+
+        final VendingMachineImpl restoredVendingMachineImpl = newVendingMachineImpl();
+        restoredVendingMachineImpl.restore(VendingMachineSnapshot.read(snapshotFile));
+
+        return restoredVendingMachineImpl;
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl() {
+
+        return new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, CAPACITY),
+            new EnumInventorizedDeposit<>(Product.class, CAPACITY),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+}
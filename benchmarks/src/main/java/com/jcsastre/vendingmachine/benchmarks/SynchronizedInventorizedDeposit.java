@@ -0,0 +1,70 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.InventorizedDeposit;
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>{@link InventorizedDeposit} made thread-safe synchronizing every method on a
+ * single monitor. Used as baseline for the concurrent deposits.</p>
+ */
+class SynchronizedInventorizedDeposit<T> implements InventorizedDeposit<T> {
+
+    private final InventorizedDeposit<T> inventorizedDeposit;
+
+    SynchronizedInventorizedDeposit(InventorizedDeposit<T> inventorizedDeposit) {
+
+        this.inventorizedDeposit = inventorizedDeposit;
+    }
+
+    @Override
+    public synchronized void insert(T type, Integer count) throws TypeLimitExceededException {
+
+        inventorizedDeposit.insert(type, count);
+    }
+
+    @Override
+    public synchronized boolean hasType(T type) {
+
+        return inventorizedDeposit.hasType(type);
+    }
+
+    @Override
+    public synchronized Optional<T> tryToRelease(T type) {
+
+        return inventorizedDeposit.tryToRelease(type);
+    }
+
+    @Override
+    public synchronized boolean tryToReleaseAll(Map<T, Integer> countByType) {
+
+        return inventorizedDeposit.tryToReleaseAll(countByType);
+    }
+
+    @Override
+    public synchronized void empty() {
+
+        inventorizedDeposit.empty();
+    }
+
+    @Override
+    public synchronized Integer getCountByType(T type) {
+
+        return inventorizedDeposit.getCountByType(type);
+    }
+
+    @Override
+    public synchronized Map<T, Integer> getCountsForAllTypes() {
+
+        return new HashMap<>(inventorizedDeposit.getCountsForAllTypes());
+    }
+
+    @Override
+    public synchronized Integer getMaxCapacityPerEachType() {
+
+        return inventorizedDeposit.getMaxCapacityPerEachType();
+    }
+}
@@ -0,0 +1,135 @@
+package com.jcsastre.vendingmachine.benchmarks;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import com.jcsastre.vendingmachine.metrics.AtomicVendingMachineMetrics;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Full vend cycles on {@link VendingMachineImpl}: selecting a product, inserting
+ * the coins and collecting the product and the change, or paying the product
+ * cashless and collecting it.</p>
+ *
+ * <p>With journaled, each command is also appended to a {@link CommandJournal} in a
+ * temporary file, measuring the overhead of journaling per cycle. With metered, the
+ * machine reports to an {@link AtomicVendingMachineMetrics}.</p>
+ *
+ * <p>The machine is reset every {@link #CYCLES_BETWEEN_RESETS} cycles, before the
+ * deposits run out of products or change.</p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VendCycleBenchmark {
+
+    private static final int CYCLES_BETWEEN_RESETS = 50_000;
+
+    private static final int COINS_CAPACITY = 400_000;
+    private static final int PRODUCTS_CAPACITY = CYCLES_BETWEEN_RESETS;
+
+    @Param({"asBiggestAsPossible", "minimumCoins"})
+    public String coinsChangeCalculator;
+
+    @Param({"false", "true"})
+    public boolean journaled;
+
+    @Param({"false", "true"})
+    public boolean metered;
+
+    private VendingMachine vendingMachine;
+    private Path journalFile;
+    private int cycles;
+    private long idempotencyKey;
+
+    @Setup
+    public void setUp() throws InvalidStateException, IOException {
+
+        vendingMachine =
+            new VendingMachineImpl(
+                new EnumInventorizedDeposit<>(Coin.class, COINS_CAPACITY),
+                new EnumInventorizedDeposit<>(Product.class, PRODUCTS_CAPACITY),
+                "minimumCoins".equals(coinsChangeCalculator)
+                    ? new MinimumCoinsChangeCalculator()
+                    : CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+                metered ? new AtomicVendingMachineMetrics() : VendingMachineMetrics.NONE
+            );
+        if (journaled) {
+            journalFile = Files.createTempFile("vend-cycle", ".journal");
+            vendingMachine =
+                new JournaledVendingMachine(vendingMachine, CommandJournal.open(journalFile, 0));
+        }
+        vendingMachine.reset();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        if (journaled) {
+            ((JournaledVendingMachine) vendingMachine).close();
+            Files.delete(journalFile);
+        }
+    }
+
+    /**
+     * <p>Water (90c) paid with 1€, returning 10c of change.</p>
+     */
+    @Benchmark
+    public void vendWithChange(Blackhole blackhole)
+        throws NoProductStockException, NoChangeException, ProductAlreadySelected, DepositCoinOverflowException, InvalidStateException {
+
+        resetIfRequired();
+
+        vendingMachine.selectProduct(Product.WATER);
+        vendingMachine.insertCoin(Coin.ONE_EURO);
+
+        blackhole.consume(vendingMachine.collectProductAtTakeoutPort());
+        blackhole.consume(vendingMachine.collectCoinsAtRepaymentPort());
+    }
+
+    /**
+     * <p>Coke (1.50€) paid with 1€ and 50c inserted before selecting it.</p>
+     */
+    @Benchmark
+    public void vendWithExactBalance(Blackhole blackhole)
+        throws NoProductStockException, NoChangeException, ProductAlreadySelected, DepositCoinOverflowException, InvalidStateException {
+
+        resetIfRequired();
+
+        vendingMachine.insertCoin(Coin.ONE_EURO);
+        vendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachine.selectProduct(Product.COKE);
+
+        blackhole.consume(vendingMachine.collectProductAtTakeoutPort());
+    }
+
+    /**
+     * <p>Coke paid cashless, with a new idempotency key per payment.</p>
+     */
+    @Benchmark
+    public void vendCashless(Blackhole blackhole)
+        throws NoProductStockException, ProductAlreadySelected, InvalidStateException {
+
+        resetIfRequired();
+
+        blackhole.consume(vendingMachine.payCashless(Product.COKE, ++idempotencyKey));
+        blackhole.consume(vendingMachine.collectProductAtTakeoutPort());
+    }
+
+    private void resetIfRequired() throws InvalidStateException {
+
+        if (++cycles == CYCLES_BETWEEN_RESETS) {
+            vendingMachine.reset();
+            cycles = 0;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>Thread-safe {@link InventorizedDeposit} for enum types, keeping one atomic
+ * counter per type indexed by {@link Enum#ordinal()}.</p>
+ *
+ * <p>Releasing is a CAS decrement only if the count is positive, and inserting is a
+ * CAS addition only if the result doesn't exceed the max capacity per each type, so
+ * both are linearizable and a count never goes below zero nor above the capacity.
+ * Operations over different types never contend: each counter is padded to its own
+ * cache line to avoid false sharing.</p>
+ *
+ * <p>{@link #tryToReleaseAll(int[])} is all or nothing: it locks the counters of the
+ * types to release, setting a bit of each one with a CAS in ordinal order, checks
+ * that all of them have enough units and releases them, unlocking each counter with
+ * its new count. A locked counter keeps the count before the release, so reads and
+ * inserts never wait for it: reads see each type before or after the release, and
+ * inserts are checked against the capacity left before it. Only the releases of the
+ * locked types, single or not, and {@link #empty()} wait until they are unlocked,
+ * so they aren't lock-free while a {@link #tryToReleaseAll(int[])} is in progress:
+ * a releaser descheduled while holding the locks delays them.</p>
+ *
+ * <p>{@link #empty()}, {@link #getCountsForAllTypes()} and
+ * {@link #tryToReleaseAll(int[])} are not atomic as a whole for readers: they act on
+ * each type atomically, one after the other.</p>
+ */
+public class AtomicInventorizedDeposit<E extends Enum<E>> implements InventorizedDeposit<E> {
+
+    // 16 ints are 64 bytes, a cache line on most CPUs
+    private static final int SLOT_SPACING = 16;
+
+    // Set on the counters being released by tryToReleaseAll, above any count
+    private static final int LOCKED = 1 << 30;
+
+    private final AtomicIntegerArray counts;
+    private final int typesCount;
+
+    private final Integer maxCapacityPerEachType;
+
+    private final Map<E, Integer> countsView;
+
+    /**
+     * @throws IllegalArgumentException if maxCapacityPerEachType isn't below 2^30.
+     */
+    public AtomicInventorizedDeposit(
+        Class<E> enumClass,
+        Integer maxCapacityPerEachType
+    ) {
+
+        if (maxCapacityPerEachType >= LOCKED)
+            throw new IllegalArgumentException("Max capacity per each type must be below " + LOCKED);
+
+        final E[] types = enumClass.getEnumConstants();
+
+        this.typesCount = types.length;
+        this.counts = new AtomicIntegerArray((types.length + 2) * SLOT_SPACING);
+        this.maxCapacityPerEachType = maxCapacityPerEachType;
+        this.countsView = new EnumCountsView<E>(types) {
+            @Override
+            int countAt(int index) {
+                return countAtSlot(slot(index));
+            }
+        };
+    }
+
+    @Override
+    public void insert(
+        E type,
+        Integer count
+    ) throws TypeLimitExceededException {
+
+        final int slot = slot(type.ordinal());
+        final int maxCapacity = maxCapacityPerEachType;
+        final int countToInsert = count;
+
+        int currentCount;
+        do {
+            currentCount = counts.get(slot);
+            if ((currentCount & ~LOCKED) + countToInsert > maxCapacity)
+                throw new TypeLimitExceededException();
+        } while (!counts.compareAndSet(slot, currentCount, currentCount + countToInsert));
+    }
+
+    @Override
+    public boolean hasType(E type) {
+
+        return countAtSlot(slot(type.ordinal())) > 0;
+    }
+
+    @Override
+    public Optional<E> tryToRelease(E type) {
+
+        return tryToRelease(slot(type.ordinal())) ? Optional.of(type) : Optional.empty();
+    }
+
+    /**
+     * <p>Same as {@link #tryToRelease(Enum)} without wrapping the result.</p>
+     *
+     * @return true if a unit of the type has been released.
+     */
+    public boolean tryToReleaseOne(E type) {
+
+        return tryToRelease(slot(type.ordinal()));
+    }
+
+    private boolean tryToRelease(int slot) {
+
+        return tryToRelease(slot, 1);
+    }
+
+    @Override
+    public boolean tryToReleaseAll(Map<E, Integer> countByType) {
+
+        final int[] countsToRelease = new int[typesCount];
+        for (Map.Entry<E, Integer> typeIntegerEntry : countByType.entrySet()) {
+            if (typeIntegerEntry.getValue() == null || typeIntegerEntry.getValue() < 0)
+                throw new IllegalArgumentException("Invalid count of " + typeIntegerEntry.getKey() + ": " + typeIntegerEntry.getValue());
+            countsToRelease[typeIntegerEntry.getKey().ordinal()] += typeIntegerEntry.getValue();
+        }
+
+        return tryToReleaseAll(countsToRelease);
+    }
+
+    /**
+     * <p>Same as {@link #tryToReleaseAll(Map)} taking the counts to release indexed
+     * by {@link Enum#ordinal()}.</p>
+     */
+    public boolean tryToReleaseAll(int[] countsToRelease) {
+
+        for (int i = 0; i < typesCount; i++) {
+            if (countsToRelease[i] > 0)
+                lock(slot(i));
+        }
+
+        boolean released = true;
+        for (int i = 0; i < typesCount && released; i++) {
+            if ((counts.get(slot(i)) & ~LOCKED) < countsToRelease[i])
+                released = false;
+        }
+
+        for (int i = 0; i < typesCount; i++) {
+            if (countsToRelease[i] > 0)
+                unlock(slot(i), released ? countsToRelease[i] : 0);
+        }
+
+        return released;
+    }
+
+    /**
+     * <p>Same as {@link #tryToReleaseAll(int[])} when types are all the constants in
+     * ordinal order, as {@link Enum#values()} returns them.</p>
+     */
+    @Override
+    public boolean tryToReleaseAll(E[] types, int[] countsToRelease) {
+
+        if (!isInOrdinalOrder(types))
+            return InventorizedDeposit.super.tryToReleaseAll(types, countsToRelease);
+
+        return tryToReleaseAll(countsToRelease);
+    }
+
+    private boolean isInOrdinalOrder(E[] types) {
+
+        if (types.length != typesCount)
+            return false;
+        for (int i = 0; i < typesCount; i++) {
+            if (types[i].ordinal() != i)
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean tryToRelease(int slot, int countToRelease) {
+
+        int currentCount;
+        do {
+            currentCount = awaitUnlocked(slot);
+            if (currentCount < countToRelease)
+                return false;
+        } while (!counts.compareAndSet(slot, currentCount, currentCount - countToRelease));
+
+        return true;
+    }
+
+    private void lock(int slot) {
+
+        int currentCount;
+        do {
+            currentCount = awaitUnlocked(slot);
+        } while (!counts.compareAndSet(slot, currentCount, currentCount | LOCKED));
+    }
+
+    /**
+     * <p>Unlocks a slot locked by {@link #lock(int)}, keeping the units inserted
+     * meanwhile.</p>
+     */
+    private void unlock(int slot, int countToRelease) {
+
+        int currentCount;
+        do {
+            currentCount = counts.get(slot);
+        } while (!counts.compareAndSet(slot, currentCount, (currentCount & ~LOCKED) - countToRelease));
+    }
+
+    /**
+     * @return the count of a slot, the one before the release in progress if it is
+     *         locked by a {@link #tryToReleaseAll(int[])}.
+     */
+    private int countAtSlot(int slot) {
+
+        return counts.get(slot) & ~LOCKED;
+    }
+
+    /**
+     * @return the count of a slot once it isn't locked by a {@link #tryToReleaseAll(int[])}.
+     */
+    private int awaitUnlocked(int slot) {
+
+        int currentCount;
+        while (((currentCount = counts.get(slot)) & LOCKED) != 0) {
+            Thread.yield();
+        }
+
+        return currentCount;
+    }
+
+    @Override
+    public void empty() {
+
+        for (int i = 0; i < typesCount; i++) {
+            final int slot = slot(i);
+            int currentCount;
+            do {
+                currentCount = awaitUnlocked(slot);
+            } while (!counts.compareAndSet(slot, currentCount, 0));
+        }
+    }
+
+    @Override
+    public Integer getCountByType(E type) {
+
+        return countAtSlot(slot(type.ordinal()));
+    }
+
+    /**
+     * <p>Same as {@link #getCountByType(Enum)} without boxing the count.</p>
+     */
+    public int countOf(E type) {
+
+        return countAtSlot(slot(type.ordinal()));
+    }
+
+    /**
+     * <p>Copies the counts, indexed by {@link Enum#ordinal()}, into the given array.</p>
+     */
+    public void copyCountsTo(int[] destination) {
+
+        for (int i = 0; i < typesCount; i++) {
+            destination[i] = countAtSlot(slot(i));
+        }
+    }
+
+    @Override
+    public void copyCountsTo(E[] types, int[] destination) {
+
+        for (int i = 0; i < types.length; i++) {
+            destination[i] = countAtSlot(slot(types[i].ordinal()));
+        }
+    }
+
+    /**
+     * @return a read-only view of the types with a count greater than zero.
+     */
+    @Override
+    public Map<E, Integer> getCountsForAllTypes() {
+
+        return countsView;
+    }
+
+    @Override
+    public Integer getMaxCapacityPerEachType() {
+
+        return this.maxCapacityPerEachType;
+    }
+
+    /**
+     * <p>Slot of the counter of a type, leaving a cache line before the first one
+     * and after the last one.</p>
+     */
+    private static int slot(int index) {
+
+        return (index + 1) * SLOT_SPACING;
+    }
+}
@@ -0,0 +1,52 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>{@link VendingMachine} able to vend a basket of several products at once, as
+ * bulk and corporate orders do, instead of a selectProduct and coin inserts per
+ * product.</p>
+ *
+ * <p>The basket is vended all or nothing: if any product can't be vended, nothing
+ * is released and the payment is returned at the repayment port.</p>
+ */
+public interface BatchVendingMachine extends VendingMachine {
+
+    /**
+     * <p>Command representing a Customer paying and vending a basket of products.</p>
+     *
+     * <p>The basket is paid with the current balance plus the payment. The products
+     * are released at the takeout port, to collect with
+     * {@link #collectBasketAtTakeoutPort()}, and the change of the whole basket at the
+     * repayment port.</p>
+     *
+     * @param basket the count of each {@link Product} to vend.
+     * @param payment the {@link Coin} inserted to pay the basket.
+     * @throws IllegalArgumentException if the basket is empty or a count isn't
+     *         positive, without taking the payment.
+     * @throws ProductAlreadySelected if a product is already selected.
+     * @throws InsufficientBalanceException if the balance plus the payment doesn't
+     *         reach the price of the basket.
+     * @throws DepositCoinOverflowException if the payment doesn't fit in the coins
+     *         deposit.
+     * @throws NoProductStockException if there isn't stock for the whole basket.
+     * @throws NoChangeException if it is not possible to return the change.
+     */
+    void vendBasket(
+        Map<Product, Integer> basket,
+        List<Coin> payment
+    ) throws ProductAlreadySelected, InsufficientBalanceException, DepositCoinOverflowException,
+        NoProductStockException, NoChangeException;
+
+    /**
+     * <p>Command representing a Customer opening the takeout port to collect the
+     * products of a basket.</p>
+     *
+     * @return The count of each {@link Product} or empty if no basket has been released.
+     */
+    Optional<Map<Product, Integer>> collectBasketAtTakeoutPort();
+}
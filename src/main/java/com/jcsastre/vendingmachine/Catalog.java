@@ -0,0 +1,202 @@
+package com.jcsastre.vendingmachine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * <p>Immutable price list of the products, loaded at runtime so prices can change
+ * without rebuilding nor restarting the machine: a new catalog is simply set on the
+ * vending machine.</p>
+ *
+ * <p>Products are identified by dense ids, their {@link Product#ordinal()}, and prices
+ * are kept in an array indexed by them, so looking a price up costs the same as
+ * reading it from the enum.</p>
+ *
+ * <p>Only the prices are data-driven: the products and the denominations are still
+ * the {@link Product} and {@link Coin} enums, so adding a product or a coin still
+ * requires a new build. The dense ids are the first step to load them too.</p>
+ *
+ * <p>Prices must be multiples of the greatest common divisor of the {@link Coin}
+ * values, 5 cents, so they can be paid and changed with coins.</p>
+ *
+ * <p>It is stored as a compact text file, one product per line with its name and
+ * price in cents. Lines starting with # are comments, and products not listed keep
+ * the price of {@link #DEFAULT}:</p>
+ *
+ * <pre>
+ * # product price in cents
+ * COKE 150
+ * WATER 95
+ * </pre>
+ */
+public final class Catalog {
+
+    private static final Product[] PRODUCTS = Product.values();
+
+    private static final int PRICE_UNIT_IN_CENTS = priceUnitInCents();
+
+    /**
+     * <p>Catalog with the prices of {@link Product#getPriceInCents()}.</p>
+     */
+    public static final Catalog DEFAULT = new Catalog(defaultPricesInCents());
+
+    private final int[] pricesInCents;
+
+    /**
+     * @param pricesInCents the price of each product, indexed by {@link Product#ordinal()}.
+     * @throws IllegalArgumentException if there isn't a positive price for each
+     *         product, multiple of the greatest common divisor of the coin values.
+     */
+    public Catalog(int[] pricesInCents) {
+
+        if (pricesInCents.length != PRODUCTS.length)
+            throw new IllegalArgumentException("Expected " + PRODUCTS.length + " prices");
+        for (int priceInCents : pricesInCents) {
+            if (!isValidPrice(priceInCents))
+                throw new IllegalArgumentException("Prices must be positive multiples of " + PRICE_UNIT_IN_CENTS);
+        }
+
+        this.pricesInCents = pricesInCents.clone();
+    }
+
+    public int getPriceInCents(Product product) {
+
+        return pricesInCents[product.ordinal()];
+    }
+
+    /**
+     * @param productId the {@link Product#ordinal()} of the product.
+     */
+    public int getPriceInCents(int productId) {
+
+        return pricesInCents[productId];
+    }
+
+    /**
+     * @return a copy of this catalog with a different price for a product.
+     */
+    public Catalog withPriceInCents(Product product, int priceInCents) {
+
+        final int[] newPricesInCents = pricesInCents.clone();
+        newPricesInCents[product.ordinal()] = priceInCents;
+
+        return new Catalog(newPricesInCents);
+    }
+
+    /**
+     * <p>Reads a catalog from a file.</p>
+     *
+     * @throws IOException if a line isn't a known product followed by a valid price.
+     */
+    public static Catalog read(Path file) throws IOException {
+
+        final int[] pricesInCents = defaultPricesInCents();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                final String[] fields = line.split("\\s+");
+                final Product product = productOf(fields[0]);
+                final int priceInCents = fields.length == 2 ? priceOf(fields[1]) : -1;
+                if (product == null || !isValidPrice(priceInCents))
+                    throw new IOException("Invalid catalog line " + lineNumber + ": " + line);
+
+                pricesInCents[product.ordinal()] = priceInCents;
+            }
+        }
+
+        return new Catalog(pricesInCents);
+    }
+
+    /**
+     * <p>Writes the catalog to a file, listing every product.</p>
+     */
+    public void write(Path file) throws IOException {
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# product price in cents\n");
+            for (Product product : PRODUCTS) {
+                writer.write(product.name() + " " + pricesInCents[product.ordinal()] + "\n");
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return Arrays.equals(pricesInCents, ((Catalog) o).pricesInCents);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Arrays.hashCode(pricesInCents);
+    }
+
+    /**
+     * @return true if the price is positive and can be paid and changed with coins.
+     */
+    static boolean isValidPrice(int priceInCents) {
+
+        return priceInCents > 0 && priceInCents % PRICE_UNIT_IN_CENTS == 0;
+    }
+
+    private static int priceUnitInCents() {
+
+        int unitInCents = 0;
+        for (Coin coin : Coins.ALL) {
+            unitInCents = gcd(unitInCents, coin.getValueInCents());
+        }
+
+        return unitInCents;
+    }
+
+    private static int gcd(int a, int b) {
+
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static int[] defaultPricesInCents() {
+
+        final int[] pricesInCents = new int[PRODUCTS.length];
+        for (Product product : PRODUCTS) {
+            pricesInCents[product.ordinal()] = product.getPriceInCents();
+        }
+
+        return pricesInCents;
+    }
+
+    private static Product productOf(String name) {
+
+        for (Product product : PRODUCTS) {
+            if (product.name().equals(name))
+                return product;
+        }
+
+        return null;
+    }
+
+    private static int priceOf(String field) {
+
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
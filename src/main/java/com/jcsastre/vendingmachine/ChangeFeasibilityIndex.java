@@ -0,0 +1,140 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.Arrays;
+
+/**
+ * <p>Bitset of the amounts, from zero up to a max amount, that a deposit of coins can
+ * pay exactly with some of its coins, so checking if an amount is payable takes
+ * constant time.</p>
+ *
+ * <p>Amounts are kept in units of the greatest common divisor of the coin values.
+ * Adding a coin of value v updates the bitset with a single shift-or by v. Removing
+ * coins requires to {@link #rebuild(int[])} it, adding each coin type in log(count)
+ * shift-ors by splitting its count in powers of two: a few hundred word operations
+ * for the amounts of a vending machine.</p>
+ *
+ * <p>The bitset tells if change is possible at all, which is what a complete change
+ * calculator like {@link MinimumCoinsChangeCalculator} finds. A greedy calculator may
+ * still fail for some payable amounts.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class ChangeFeasibilityIndex {
+
+    private final int unitInCents;
+    private final int[] valuesInUnits;
+    private final int maxAmountInUnits;
+
+    private final long[] payable;
+    private final int[] splitCounts = new int[Coins.COUNT];
+
+    /**
+     * <p>Creates an index for an empty deposit, where only zero is payable.</p>
+     *
+     * @param maxAmountInCents the biggest amount to know about, usually the max
+     *        balance a customer can have.
+     */
+    public ChangeFeasibilityIndex(int maxAmountInCents) {
+
+        int unitInCents = 0;
+        for (Coin coin : Coins.ALL) {
+            unitInCents = gcd(unitInCents, coin.getValueInCents());
+        }
+        this.unitInCents = unitInCents;
+
+        this.valuesInUnits = new int[Coins.COUNT];
+        for (Coin coin : Coins.ALL) {
+            valuesInUnits[coin.ordinal()] = coin.getValueInCents() / unitInCents;
+        }
+
+        this.maxAmountInUnits = maxAmountInCents / unitInCents;
+        this.payable = new long[(maxAmountInUnits >> 6) + 1];
+        this.payable[0] = 1L;
+    }
+
+    /**
+     * <p>Updates the index after a coin is added to the deposit.</p>
+     */
+    public void add(Coin coin) {
+
+        shiftOr(valuesInUnits[coin.ordinal()]);
+    }
+
+    /**
+     * <p>Recomputes the index for a deposit with the given counts, indexed by
+     * {@link Coin#ordinal()}.</p>
+     */
+    public void rebuild(int[] coinCounts) {
+
+        Arrays.fill(payable, 0L);
+        payable[0] = 1L;
+
+        for (int i = 0; i < Coins.COUNT; i++) {
+
+            // More coins than fit in the max amount don't make more amounts payable
+            int remaining = Math.min(coinCounts[i], maxAmountInUnits / valuesInUnits[i]);
+            int split = 0;
+            for (int part = 1; remaining > 0; part <<= 1) {
+                final int count = Math.min(part, remaining);
+                splitCounts[split++] = count;
+                remaining -= count;
+            }
+
+            for (int j = 0; j < split; j++) {
+                shiftOr(splitCounts[j] * valuesInUnits[i]);
+            }
+        }
+    }
+
+    /**
+     * @return true if the amount can be paid exactly with coins of the deposit. Amounts
+     *         bigger than the max amount are unknown and reported as payable, so the
+     *         change calculator decides.
+     */
+    public boolean canPay(int amountInCents) {
+
+        if (amountInCents < 0 || amountInCents % unitInCents != 0)
+            return false;
+
+        final int amountInUnits = amountInCents / unitInCents;
+        if (amountInUnits > maxAmountInUnits)
+            return true;
+
+        return (payable[amountInUnits >> 6] & (1L << amountInUnits)) != 0;
+    }
+
+    public int getMaxAmountInCents() {
+
+        return maxAmountInUnits * unitInCents;
+    }
+
+    /**
+     * <p>Makes payable every payable amount plus shift, in place: words are updated from
+     * the highest one, so they read lower words not updated yet.</p>
+     */
+    private void shiftOr(int shift) {
+
+        if (shift > maxAmountInUnits)
+            return;
+
+        final int wordShift = shift >> 6;
+        final int bitShift = shift & 63;
+
+        for (int i = payable.length - 1; i >= wordShift; i--) {
+
+            long shifted = payable[i - wordShift] << bitShift;
+            if (bitShift != 0 && i - wordShift - 1 >= 0)
+                shifted |= payable[i - wordShift - 1] >>> (64 - bitShift);
+
+            payable[i] |= shifted;
+        }
+
+        // Amounts over the max amount are not kept
+        payable[payable.length - 1] &= -1L >>> (63 - (maxAmountInUnits & 63));
+    }
+
+    private static int gcd(int a, int b) {
+
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
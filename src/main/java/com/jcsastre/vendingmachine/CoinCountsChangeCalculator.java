@@ -0,0 +1,76 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>Calculates change working with counts of coins per denomination instead of
+ * lists of {@link Coin}.</p>
+ *
+ * <p>Both the available coins and the calculated change are arrays indexed by
+ * {@link Coin#ordinal()}, so a calculation does not depend on how many coins
+ * are in the deposit, only on the number of denominations.</p>
+ */
+@FunctionalInterface
+public interface CoinCountsChangeCalculator {
+
+    /**
+     * @param availableCounts count of available coins, indexed by {@link Coin#ordinal()}.
+     * @param amountInCents the amount to change.
+     * @param changeCounts array (indexed by {@link Coin#ordinal()}) where the count of
+     *        each coin required for the change is written. Its content is undefined
+     *        if the change is not possible.
+     * @return true if the change is possible, false otherwise.
+     */
+    boolean calculate(
+        int[] availableCounts,
+        int amountInCents,
+        int[] changeCounts
+    );
+
+    CoinCountsChangeCalculator coinCountsChangeCalculatorAsBiggestAsPossible =
+        (int[] availableCounts, int amountInCents, int[] changeCounts) -> {
+
+            final Coin[] coins = Coins.ALL;
+
+            int pendingAmountToChange = amountInCents;
+            for (int i = coins.length - 1; i >= 0; i--) {
+                final int valueInCents = coins[i].getValueInCents();
+                final int count = Math.min(availableCounts[i], pendingAmountToChange / valueInCents);
+                changeCounts[i] = count;
+                pendingAmountToChange -= count * valueInCents;
+            }
+
+            return pendingAmountToChange == 0;
+        };
+
+    /**
+     * <p>Adapts a list based {@link CoinsChangeCalculator} to this contract.</p>
+     *
+     * <p>The adapted calculator still expands the available coins into a list, so
+     * is only intended to keep existing calculators working.</p>
+     */
+    static CoinCountsChangeCalculator adapt(CoinsChangeCalculator coinsChangeCalculator) {
+
+        return (int[] availableCounts, int amountInCents, int[] changeCounts) -> {
+
+            final Coin[] coins = Coins.ALL;
+
+            List<Coin> availableCoins = new ArrayList<>();
+            for (int i = 0; i < coins.length; i++) {
+                for (int j = 0; j < availableCounts[i]; j++) {
+                    availableCoins.add(coins[i]);
+                }
+            }
+
+            final Optional<List<Coin>> optChange =
+                coinsChangeCalculator.calculate(availableCoins, amountInCents);
+            if (!optChange.isPresent())
+                return false;
+
+            Coins.toCounts(optChange.get(), changeCounts);
+            return true;
+        };
+    }
+}
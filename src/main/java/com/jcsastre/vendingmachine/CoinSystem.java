@@ -0,0 +1,253 @@
+package com.jcsastre.vendingmachine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Denominations of the coins of a currency, with the change calculator that suits
+ * them.</p>
+ *
+ * <p>When the coin system is created it is checked whether it is canonical: whether
+ * taking the biggest coins first always gives the change with the fewest coins, as it
+ * happens with the euro. If there is a smaller change, the smallest amount showing it
+ * is below the sum of the two biggest denominations (Kozen and Zaks), so the check
+ * compares greedy and optimal changes for every amount up to it.</p>
+ *
+ * <p>Canonical systems get a greedy calculator, as cheap per vend as
+ * {@link CoinCountsChangeCalculator#coinCountsChangeCalculatorAsBiggestAsPossible},
+ * that only falls back to {@link MinimumCoinsChangeCalculator} when the limited coins
+ * of the deposit leave greedy without change. Non canonical systems always use
+ * {@link MinimumCoinsChangeCalculator}, because greedy would return more coins than
+ * required, or no change at all when there is one.</p>
+ *
+ * <p>Coin systems are defined in a text file, one per line with the currency code
+ * followed by the denominations in cents, ascending. Lines starting with # are
+ * comments:</p>
+ *
+ * <pre>
+ * EUR 5 10 20 50 100 200
+ * GBP_PRE_DECIMAL 1 3 6 12 24 30
+ * </pre>
+ *
+ * <p>Counts of coins, both available and of change, are indexed as the
+ * denominations.</p>
+ */
+public final class CoinSystem {
+
+    /**
+     * <p>Coin system of {@link Coin}, indexed by {@link Coin#ordinal()}.</p>
+     */
+    public static final CoinSystem EURO = new CoinSystem("EUR", euroValuesInCents());
+
+    private final String currency;
+    private final int[] valuesInCents;
+
+    private final int smallestCounterexampleInCents;
+    private final CoinCountsChangeCalculator changeCalculator;
+
+    /**
+     * @param currency the code of the currency.
+     * @param valuesInCents the denominations, strictly ascending.
+     * @throws IllegalArgumentException if the denominations aren't positive and
+     *         strictly ascending.
+     */
+    public CoinSystem(String currency, int... valuesInCents) {
+
+        if (valuesInCents.length == 0 || valuesInCents[0] <= 0)
+            throw new IllegalArgumentException("Denominations must be positive");
+        for (int i = 1; i < valuesInCents.length; i++) {
+            if (valuesInCents[i] <= valuesInCents[i - 1])
+                throw new IllegalArgumentException("Denominations must be strictly ascending");
+        }
+
+        this.currency = currency;
+        this.valuesInCents = valuesInCents.clone();
+
+        this.smallestCounterexampleInCents = findSmallestCounterexample(this.valuesInCents);
+
+        final MinimumCoinsChangeCalculator minimumCoinsChangeCalculator =
+            new MinimumCoinsChangeCalculator(this.valuesInCents, MinimumCoinsChangeCalculator.DEFAULT_CACHE_CAPACITY);
+        this.changeCalculator =
+            isCanonical()
+                ? new GreedyChangeCalculator(this.valuesInCents, minimumCoinsChangeCalculator)
+                : minimumCoinsChangeCalculator;
+    }
+
+    public String getCurrency() {
+
+        return currency;
+    }
+
+    public int getDenominationsCount() {
+
+        return valuesInCents.length;
+    }
+
+    public int getValueInCents(int denomination) {
+
+        return valuesInCents[denomination];
+    }
+
+    /**
+     * @return true if taking the biggest coins first always gives the change with
+     *         the fewest coins.
+     */
+    public boolean isCanonical() {
+
+        return smallestCounterexampleInCents < 0;
+    }
+
+    /**
+     * @return the smallest amount for which taking the biggest coins first doesn't
+     *         give the change with the fewest coins, or -1 if the system is canonical.
+     */
+    public int getSmallestCounterexampleInCents() {
+
+        return smallestCounterexampleInCents;
+    }
+
+    /**
+     * @return the calculator chosen for this system, thread-safe.
+     */
+    public CoinCountsChangeCalculator getChangeCalculator() {
+
+        return changeCalculator;
+    }
+
+    /**
+     * <p>Reads the coin systems defined in a file.</p>
+     *
+     * @return the coin systems by currency, in the order of the file.
+     * @throws IOException if a line isn't a currency followed by ascending denominations.
+     */
+    public static Map<String, CoinSystem> read(Path file) throws IOException {
+
+        final Map<String, CoinSystem> coinSystems = new LinkedHashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                final String[] fields = line.split("\\s+");
+                try {
+                    final int[] valuesInCents = new int[fields.length - 1];
+                    for (int i = 1; i < fields.length; i++) {
+                        valuesInCents[i - 1] = Integer.parseInt(fields[i]);
+                    }
+                    coinSystems.put(fields[0], new CoinSystem(fields[0], valuesInCents));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid coin system line " + lineNumber + ": " + line, e);
+                }
+            }
+        }
+
+        return coinSystems;
+    }
+
+    @Override
+    public String toString() {
+
+        return currency + Arrays.toString(valuesInCents);
+    }
+
+    /**
+     * <p>Compares, for every amount below the sum of the two biggest denominations,
+     * the coins of the greedy change with the fewest coins possible, both with
+     * unlimited coins.</p>
+     *
+     * <p>Two denominations are also checked: with the unit coin greedy is always
+     * optimal, but without it greedy can miss amounts that do have change, like
+     * 6 with {3, 5}.</p>
+     */
+    private static int findSmallestCounterexample(int[] valuesInCents) {
+
+        final int n = valuesInCents.length;
+        if (n == 1)
+            return -1;
+
+        final int maxAmountInCents = valuesInCents[n - 2] + valuesInCents[n - 1];
+
+        final int[] minCoins = new int[maxAmountInCents];
+        Arrays.fill(minCoins, Integer.MAX_VALUE);
+        minCoins[0] = 0;
+
+        for (int amount = 1; amount < maxAmountInCents; amount++) {
+
+            for (int valueInCents : valuesInCents) {
+                if (valueInCents <= amount && minCoins[amount - valueInCents] != Integer.MAX_VALUE)
+                    minCoins[amount] = Math.min(minCoins[amount], minCoins[amount - valueInCents] + 1);
+            }
+
+            if (minCoins[amount] != Integer.MAX_VALUE && greedyCoins(valuesInCents, amount) != minCoins[amount])
+                return amount;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the coins of the greedy change of an amount, or -1 if it doesn't reach it.
+     */
+    private static int greedyCoins(int[] valuesInCents, int amountInCents) {
+
+        int coins = 0;
+        for (int i = valuesInCents.length - 1; i >= 0; i--) {
+            coins += amountInCents / valuesInCents[i];
+            amountInCents %= valuesInCents[i];
+        }
+
+        return amountInCents == 0 ? coins : -1;
+    }
+
+    private static int[] euroValuesInCents() {
+
+        final int[] valuesInCents = new int[Coins.COUNT];
+        for (Coin coin : Coins.ALL) {
+            valuesInCents[coin.ordinal()] = coin.getValueInCents();
+        }
+
+        return valuesInCents;
+    }
+
+    /**
+     * <p>Takes the biggest coins first, falling back to an exact calculator when the
+     * coins available leave it without change.</p>
+     */
+    private static final class GreedyChangeCalculator implements CoinCountsChangeCalculator {
+
+        private final int[] valuesInCents;
+        private final CoinCountsChangeCalculator fallbackChangeCalculator;
+
+        private GreedyChangeCalculator(int[] valuesInCents, CoinCountsChangeCalculator fallbackChangeCalculator) {
+
+            this.valuesInCents = valuesInCents;
+            this.fallbackChangeCalculator = fallbackChangeCalculator;
+        }
+
+        @Override
+        public boolean calculate(int[] availableCounts, int amountInCents, int[] changeCounts) {
+
+            int pendingAmountToChange = amountInCents;
+            for (int i = valuesInCents.length - 1; i >= 0; i--) {
+                final int count = Math.min(availableCounts[i], pendingAmountToChange / valuesInCents[i]);
+                changeCounts[i] = count;
+                pendingAmountToChange -= count * valuesInCents[i];
+            }
+
+            return pendingAmountToChange == 0
+                || fallbackChangeCalculator.calculate(availableCounts, amountInCents, changeCounts);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Helpers to convert between the different representations of a set of
+ * {@link Coin}: lists, maps and count arrays indexed by {@link Coin#ordinal()}.</p>
+ */
+public final class Coins {
+
+    /**
+     * <p>Cached copy of {@link Coin#values()}, ordered by ascending value.</p>
+     *
+     * <p>Must not be modified.</p>
+     */
+    static final Coin[] ALL = Coin.values();
+
+    public static final int COUNT = ALL.length;
+
+    private static final List<List<Coin>> SINGLETON_LISTS = singletonLists();
+
+    private Coins() {
+    }
+
+    /**
+     * <p>Writes into counts the count of each coin in the list.</p>
+     */
+    public static void toCounts(List<Coin> coins, int[] counts) {
+
+        Arrays.fill(counts, 0);
+        // Indexed instead of iterated, so it doesn't allocate an iterator
+        for (int i = 0; i < coins.size(); i++) {
+            counts[coins.get(i).ordinal()]++;
+        }
+    }
+
+    /**
+     * <p>Writes into counts the count of each coin in the map.</p>
+     */
+    public static void toCounts(Map<Coin, Integer> countByCoin, int[] counts) {
+
+        Arrays.fill(counts, 0);
+        for (Map.Entry<Coin, Integer> coinIntegerEntry : countByCoin.entrySet()) {
+            counts[coinIntegerEntry.getKey().ordinal()] = coinIntegerEntry.getValue();
+        }
+    }
+
+    /**
+     * @return a map with the count of each coin with a count greater than zero.
+     */
+    public static Map<Coin, Integer> toMap(int[] counts) {
+
+        final Map<Coin, Integer> countByCoin = new EnumMap<>(Coin.class);
+        for (int i = 0; i < ALL.length; i++) {
+            if (counts[i] > 0)
+                countByCoin.put(ALL[i], counts[i]);
+        }
+
+        return countByCoin;
+    }
+
+    /**
+     * @return a list with the coins represented by counts, biggest coins first.
+     */
+    public static List<Coin> toList(int[] counts) {
+
+        List<Coin> coins = new ArrayList<>();
+        for (int i = ALL.length - 1; i >= 0; i--) {
+            for (int j = 0; j < counts[i]; j++) {
+                coins.add(ALL[i]);
+            }
+        }
+
+        return coins;
+    }
+
+    /**
+     * @return an immutable list with just the coin, the same one every time.
+     */
+    public static List<Coin> singletonList(Coin coin) {
+
+        return SINGLETON_LISTS.get(coin.ordinal());
+    }
+
+    private static List<List<Coin>> singletonLists() {
+
+        final List<List<Coin>> singletonLists = new ArrayList<>();
+        for (Coin coin : ALL) {
+            singletonLists.add(Collections.singletonList(coin));
+        }
+
+        return singletonLists;
+    }
+}
@@ -0,0 +1,317 @@
+package com.jcsastre.vendingmachine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Append-only binary journal of {@link VendingMachineCommand}, written through
+ * memory-mapped segments of a file.</p>
+ *
+ * <p>Each record is two bytes, the command code and its argument, followed by the
+ * payload of the commands that have one, like the idempotency key of
+ * {@link VendingMachineCommand#PAY_CASHLESS}, so appending is a store into memory and
+ * never a system call. Records reach the disk by group commit:
+ * a background thread forces the mapped pages every flush interval if there are new
+ * records, so many commands share one fsync and the writer never waits for the disk.
+ * {@link #sync()} forces them right away.</p>
+ *
+ * <p>Records already appended survive a crash of the process, because they are in the
+ * page cache of the operating system. A crash of the operating system or a power loss
+ * may lose the records appended during the last flush interval.</p>
+ *
+ * <p>The file grows by segments filled with zeros, and a zero code marks the end of
+ * the records. The code and argument of a record are a single aligned two bytes store,
+ * done after storing its payload, so a record is never torn. A record never spans two
+ * segments: the end of a segment without room for the next record is filled with
+ * {@link #PADDING_CODE} records, skipped when replaying.</p>
+ *
+ * <p>Appending is not thread-safe: a journal must have a single writer.</p>
+ */
+public class CommandJournal implements Closeable {
+
+    /**
+     * <p>Size of the code and the argument, the whole record of commands without
+     * payload.</p>
+     */
+    public static final int RECORD_SIZE = 2;
+
+    /**
+     * <p>Size of the biggest record, the min size of a segment.</p>
+     */
+    public static final int MAX_RECORD_SIZE = maxRecordSize();
+
+    static final byte PADDING_CODE = (byte) 0xFF;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    private final FileChannel fileChannel;
+    private final int segmentSize;
+    private final ScheduledExecutorService flusher;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private int offsetInSegment;
+
+    // Position after the last appended record, published to the flusher
+    private final AtomicLong appendedPosition;
+    // Guarded by this
+    private long forcedPosition;
+
+    private CommandJournal(
+        FileChannel fileChannel,
+        long position,
+        int segmentSize,
+        long flushIntervalMillis
+    ) throws IOException {
+
+        this.fileChannel = fileChannel;
+        this.segmentSize = segmentSize;
+        this.appendedPosition = new AtomicLong(position);
+        this.forcedPosition = position;
+
+        this.segmentStart = position - position % segmentSize;
+        this.offsetInSegment = (int) (position - segmentStart);
+        this.segment = fileChannel.map(FileChannel.MapMode.READ_WRITE, segmentStart, segmentSize);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "command-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Opens a journal to append records after position, usually the one returned
+     * by {@link #replay(Path, long, VendingMachine)}. The file is created if it doesn't
+     * exist.</p>
+     */
+    public static CommandJournal open(Path file, long position) throws IOException {
+
+        return open(file, position, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public static CommandJournal open(
+        Path file,
+        long position,
+        int segmentSize,
+        long flushIntervalMillis
+    ) throws IOException {
+
+        if (position % RECORD_SIZE != 0 || segmentSize % RECORD_SIZE != 0 || segmentSize < MAX_RECORD_SIZE)
+            throw new IllegalArgumentException();
+
+        final FileChannel fileChannel = FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+
+        return new CommandJournal(fileChannel, position, segmentSize, flushIntervalMillis);
+    }
+
+    /**
+     * <p>Appends a record of a command without payload. It will be forced to disk by
+     * the next group commit.</p>
+     *
+     * @throws UncheckedIOException if the next segment can't be mapped.
+     */
+    public void append(VendingMachineCommand command, int argument) {
+
+        if (command.getPayloadSize() != 0)
+            throw new IllegalArgumentException(command + " has a payload");
+
+        reserve(RECORD_SIZE);
+        appendHeader(command, argument, RECORD_SIZE);
+    }
+
+    /**
+     * <p>Appends a record of a command with a long as payload, as the idempotency key
+     * of {@link VendingMachineCommand#PAY_CASHLESS}.</p>
+     *
+     * @throws UncheckedIOException if the next segment can't be mapped.
+     */
+    public void append(VendingMachineCommand command, int argument, long payload) {
+
+        if (command.getPayloadSize() != Long.BYTES)
+            throw new IllegalArgumentException(command + " hasn't a long payload");
+
+        final int recordSize = RECORD_SIZE + Long.BYTES;
+        reserve(recordSize);
+        segment.putLong(offsetInSegment + RECORD_SIZE, payload);
+        appendHeader(command, argument, recordSize);
+    }
+
+    /**
+     * <p>Appends a record of a command with the payload remaining in a buffer, as
+     * the basket and payment of {@link VendingMachineCommand#VEND_BASKET}.</p>
+     *
+     * @throws UncheckedIOException if the next segment can't be mapped.
+     */
+    public void append(VendingMachineCommand command, int argument, ByteBuffer payload) {
+
+        if (command.getPayloadSize() != payload.remaining())
+            throw new IllegalArgumentException(command + " hasn't a payload of " + payload.remaining() + " bytes");
+
+        final int recordSize = RECORD_SIZE + payload.remaining();
+        reserve(recordSize);
+        segment.position(offsetInSegment + RECORD_SIZE);
+        segment.put(payload);
+        appendHeader(command, argument, recordSize);
+    }
+
+    /**
+     * @return the size of the record of a command, with its payload.
+     */
+    public static int recordSizeOf(VendingMachineCommand command) {
+
+        return RECORD_SIZE + command.getPayloadSize();
+    }
+
+    /**
+     * <p>Moves to the next segment if there isn't room for a record in this one,
+     * padding the rest of this one.</p>
+     */
+    private void reserve(int recordSize) {
+
+        if (offsetInSegment + recordSize <= segmentSize)
+            return;
+
+        for (; offsetInSegment < segmentSize; offsetInSegment += RECORD_SIZE) {
+            segment.putShort(offsetInSegment, (short) (PADDING_CODE << 8));
+        }
+        nextSegment();
+    }
+
+    private void appendHeader(VendingMachineCommand command, int argument, int recordSize) {
+
+        segment.putShort(offsetInSegment, (short) (command.getCode() << 8 | argument));
+        offsetInSegment += recordSize;
+        appendedPosition.lazySet(segmentStart + offsetInSegment);
+    }
+
+    private static int maxRecordSize() {
+
+        int maxRecordSize = RECORD_SIZE;
+        for (VendingMachineCommand command : VendingMachineCommand.values()) {
+            maxRecordSize = Math.max(maxRecordSize, recordSizeOf(command));
+        }
+
+        return maxRecordSize;
+    }
+
+    /**
+     * @return the position after the last appended record.
+     */
+    public long getPosition() {
+
+        return appendedPosition.get();
+    }
+
+    /**
+     * <p>Forces to disk all the appended records.</p>
+     */
+    public void sync() {
+
+        flush();
+    }
+
+    private synchronized void flush() {
+
+        final long position = appendedPosition.get();
+        if (position > forcedPosition) {
+            segment.force();
+            forcedPosition = position;
+        }
+    }
+
+    private synchronized void nextSegment() {
+
+        segment.force();
+        try {
+            segment = fileChannel.map(FileChannel.MapMode.READ_WRITE, segmentStart + segmentSize, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segmentStart += segmentSize;
+        offsetInSegment = 0;
+    }
+
+    /**
+     * <p>Forces to disk all the appended records and releases the file.</p>
+     */
+    @Override
+    public void close() throws IOException {
+
+        flusher.shutdown();
+        flush();
+        fileChannel.close();
+    }
+
+    /**
+     * <p>Executes on a vending machine the commands recorded in a journal from a
+     * position, in the order they were appended.</p>
+     *
+     * <p>The vending machine must be in the same state it was when the record at
+     * that position was appended: replaying the journal from the beginning requires
+     * a vending machine with the same deposits and change calculator as the one
+     * that produced it.</p>
+     *
+     * @return the position after the last record, where new records have to be appended.
+     */
+    public static long replay(Path file, long fromPosition, VendingMachine vendingMachine) throws IOException {
+
+        if (!Files.exists(file))
+            return fromPosition;
+
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            final long size = fileChannel.size();
+            long position = fromPosition;
+            while (position < size) {
+
+                final int length = (int) Math.min(DEFAULT_SEGMENT_SIZE, size - position);
+                final MappedByteBuffer chunk = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                // A record not whole in the chunk is read from the start of the next one
+                int offset = 0;
+                while (offset + RECORD_SIZE <= length) {
+
+                    final byte code = chunk.get(offset);
+                    if (code == PADDING_CODE) {
+                        offset += RECORD_SIZE;
+                        continue;
+                    }
+
+                    final VendingMachineCommand command = VendingMachineCommand.ofCode(code);
+                    if (command == null)
+                        return position + offset;
+
+                    final int recordSize = recordSizeOf(command);
+                    if (offset + recordSize > length)
+                        break;
+
+                    chunk.position(offset + RECORD_SIZE);
+                    command.applyTo(vendingMachine, chunk.get(offset + 1), chunk);
+                    offset += recordSize;
+                }
+
+                if (offset == 0)
+                    break;
+                position += offset;
+            }
+
+            return position;
+        }
+    }
+}
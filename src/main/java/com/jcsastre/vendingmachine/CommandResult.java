@@ -0,0 +1,50 @@
+package com.jcsastre.vendingmachine;
+
+/**
+ * <p>Outcome of a command of a {@link CommandResultVendingMachine}: done, or the
+ * business reason it was rejected, each matching one of the exceptions of
+ * {@link VendingMachine}.</p>
+ *
+ * <p>Being an enum, every result is preallocated, so rejecting a command doesn't
+ * allocate nor capture a stack trace.</p>
+ */
+public enum CommandResult {
+
+    OK,
+
+    /**
+     * @see com.jcsastre.vendingmachine.exception.NoChangeException
+     */
+    NO_CHANGE,
+
+    /**
+     * @see com.jcsastre.vendingmachine.exception.NoProductStockException
+     */
+    NO_PRODUCT_STOCK,
+
+    /**
+     * @see com.jcsastre.vendingmachine.exception.ProductAlreadySelected
+     */
+    PRODUCT_ALREADY_SELECTED,
+
+    /**
+     * @see com.jcsastre.vendingmachine.exception.DepositCoinOverflowException
+     */
+    DEPOSIT_COIN_OVERFLOW,
+
+    /**
+     * <p>A cashless payment retried with the idempotency key of a payment already
+     * vended.</p>
+     */
+    ALREADY_PAID,
+
+    /**
+     * @see com.jcsastre.vendingmachine.exception.InsufficientBalanceException
+     */
+    INSUFFICIENT_BALANCE;
+
+    public boolean isOk() {
+
+        return this == OK;
+    }
+}
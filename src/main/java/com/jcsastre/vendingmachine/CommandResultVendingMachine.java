@@ -0,0 +1,39 @@
+package com.jcsastre.vendingmachine;
+
+/**
+ * <p>{@link VendingMachine} whose customer commands can also report their outcome
+ * as a {@link CommandResult} instead of throwing an exception.</p>
+ *
+ * <p>Running out of change or stock is an ordinary outcome, and when it happens
+ * every customer attempt is rejected. These commands reject them without creating
+ * exceptions, the exception based commands being thin wrappers over them.</p>
+ */
+public interface CommandResultVendingMachine extends VendingMachine {
+
+    /**
+     * <p>Same as {@link #insertCoin(Coin)}.</p>
+     *
+     * @return {@link CommandResult#OK}, {@link CommandResult#NO_CHANGE},
+     *         {@link CommandResult#NO_PRODUCT_STOCK} or
+     *         {@link CommandResult#DEPOSIT_COIN_OVERFLOW}.
+     */
+    CommandResult tryToInsertCoin(Coin coin);
+
+    /**
+     * <p>Same as {@link #selectProduct(Product)}.</p>
+     *
+     * @return {@link CommandResult#OK}, {@link CommandResult#NO_PRODUCT_STOCK},
+     *         {@link CommandResult#NO_CHANGE} or
+     *         {@link CommandResult#PRODUCT_ALREADY_SELECTED}.
+     */
+    CommandResult tryToSelectProduct(Product product);
+
+    /**
+     * <p>Same as {@link #payCashless(Product, long)}.</p>
+     *
+     * @return {@link CommandResult#OK}, {@link CommandResult#ALREADY_PAID},
+     *         {@link CommandResult#NO_PRODUCT_STOCK} or
+     *         {@link CommandResult#PRODUCT_ALREADY_SELECTED}.
+     */
+    CommandResult tryToPayCashless(Product product, long idempotencyKey);
+}
@@ -0,0 +1,518 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Vending machine shared by several customer sessions (touchscreen, NFC, remote
+ * app...) that vend concurrently from the same coins and products deposits.</p>
+ *
+ * <p>Each session, opened with {@link #openSession()}, is a {@link VendingMachine}
+ * with its own balance, selected product and ports. A session is meant to be used
+ * by one customer at a time.</p>
+ *
+ * <p>The shared deposits are guarded with one lock per coin and per product type
+ * instead of a global lock, so sessions vending different products don't block each
+ * other. Locks are always taken products first and then coins, each in ordinal
+ * order. The counts of the deposits are also read without locks, to calculate the
+ * change before locking the coin types it needs, so the deposits must be thread-safe,
+ * as {@link AtomicInventorizedDeposit} is.</p>
+ *
+ * <p>Prices are taken from a {@link Catalog} that can be replaced at any time with
+ * {@link #setCatalog(Catalog)}.</p>
+ *
+ * <p>Inserted coins are kept in the session escrow until a product is vended, so
+ * cancelling returns exactly the inserted coins. The deposit capacity they will use
+ * is reserved when they are inserted.</p>
+ *
+ * <p>The idempotency keys of the recent cashless payments are shared by all the
+ * sessions, so a payment retried through another session isn't vended twice.</p>
+ */
+public class ConcurrentVendingMachine {
+
+    private final InventorizedDeposit<Coin> coinsDeposit;
+    private final InventorizedDeposit<Product> productsDeposit;
+    private final CoinCountsChangeCalculator coinsChangeCalculator;
+
+    private final ReentrantLock[] coinLocks = newLocks(Coins.COUNT);
+    private final ReentrantLock[] productLocks = newLocks(Product.values().length);
+
+    // Guarded by coinLocks
+    private final int[] reservedCoinCapacity = new int[Coins.COUNT];
+
+    // Taken after the product lock, never with coin locks
+    private final ReentrantLock idempotencyKeysLock = new ReentrantLock();
+    // Guarded by idempotencyKeysLock
+    private final RecentIdempotencyKeys recentIdempotencyKeys = new RecentIdempotencyKeys();
+
+    private volatile Catalog catalog = Catalog.DEFAULT;
+
+    public ConcurrentVendingMachine(
+        InventorizedDeposit<Coin> coinsDeposit,
+        InventorizedDeposit<Product> productsDeposit,
+        CoinCountsChangeCalculator coinsChangeCalculator
+    ) {
+
+        this.coinsDeposit = coinsDeposit;
+        this.productsDeposit = productsDeposit;
+        this.coinsChangeCalculator = coinsChangeCalculator;
+    }
+
+    /**
+     * @return a new customer session.
+     */
+    public VendingMachine openSession() {
+
+        return new Session();
+    }
+
+    /**
+     * <p>Resets the shared deposits as {@link VendingMachine#reset()} does. Capacity
+     * reserved by coins in sessions escrow is kept, so a coin type may be normalized
+     * below half its capacity.</p>
+     */
+    public void reset() throws InvalidStateException {
+
+        lockAll(productLocks);
+        lockAll(coinLocks);
+        try {
+
+            coinsDeposit.empty();
+            final int halfCapacityPerEachCoinType = coinsDeposit.getMaxCapacityPerEachType() / 2;
+            for (Coin coin : Coins.ALL) {
+                final int freeCapacity = coinsDeposit.getMaxCapacityPerEachType() - reservedCoinCapacity[coin.ordinal()];
+                try {
+                    coinsDeposit.insert(coin, Math.min(halfCapacityPerEachCoinType, freeCapacity));
+                } catch (TypeLimitExceededException e) {
+                    throw new InvalidStateException();
+                }
+            }
+
+            productsDeposit.empty();
+            final Integer maxCapacityPerEachProductType = productsDeposit.getMaxCapacityPerEachType();
+            for (Product product : Product.values()) {
+                try {
+                    productsDeposit.insert(product, maxCapacityPerEachProductType);
+                } catch (TypeLimitExceededException e) {
+                    throw new InvalidStateException();
+                }
+            }
+
+        } finally {
+            unlockAll(coinLocks);
+            unlockAll(productLocks);
+        }
+    }
+
+    public Catalog getCatalog() {
+
+        return catalog;
+    }
+
+    /**
+     * <p>Replaces the catalog for all the sessions, as
+     * {@link VendingMachineImpl#setCatalog(Catalog)} does.</p>
+     */
+    public void setCatalog(Catalog catalog) {
+
+        this.catalog = catalog;
+    }
+
+    /**
+     * @return the deposit capacity reserved by the coins in sessions escrow.
+     */
+    int getReservedCoinCapacity(Coin coin) {
+
+        final ReentrantLock coinLock = coinLocks[coin.ordinal()];
+        coinLock.lock();
+        try {
+            return reservedCoinCapacity[coin.ordinal()];
+        } finally {
+            coinLock.unlock();
+        }
+    }
+
+    private static ReentrantLock[] newLocks(int count) {
+
+        final ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        return locks;
+    }
+
+    private static void lockAll(ReentrantLock[] locks) {
+
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private static void unlockAll(ReentrantLock[] locks) {
+
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private class Session implements VendingMachine {
+
+        private Product currentProduct;
+        private int currentBalanceInCents;
+
+        private final int[] escrowCoinCounts = new int[Coins.COUNT];
+
+        private final int[] productsAtTakeoutPort = new int[Product.values().length];
+        private final int[] coinsAtRepaymentPort = new int[Coins.COUNT];
+
+        private final int[] availableCoinCounts = new int[Coins.COUNT];
+        private final int[] changeCoinCounts = new int[Coins.COUNT];
+
+        private int lockedCoinTypes;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void insertCoin(Coin coin) throws NoChangeException, NoProductStockException, DepositCoinOverflowException {
+
+            final int index = coin.ordinal();
+            final ReentrantLock coinLock = coinLocks[index];
+            coinLock.lock();
+            try {
+                if (coinsDeposit.getCountByType(coin) + reservedCoinCapacity[index] >= coinsDeposit.getMaxCapacityPerEachType())
+                    throw new DepositCoinOverflowException();
+                reservedCoinCapacity[index]++;
+            } finally {
+                coinLock.unlock();
+            }
+
+            escrowCoinCounts[index]++;
+            currentBalanceInCents += coin.getValueInCents();
+
+            final int priceInCents = currentProduct != null ? catalog.getPriceInCents(currentProduct) : 0;
+            if (currentProduct != null && currentBalanceInCents >= priceInCents) {
+
+                try {
+
+                    vend(priceInCents);
+
+                } catch (NoChangeException e) {
+
+                    currentBalanceInCents -= coin.getValueInCents();
+                    escrowCoinCounts[index]--;
+                    releaseReservedCapacity(index, 1);
+                    coinsAtRepaymentPort[index]++;
+
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void selectProduct(Product product) throws NoProductStockException, NoChangeException, ProductAlreadySelected {
+
+            if (currentProduct != null)
+                throw new ProductAlreadySelected();
+
+            if (!productsDeposit.hasType(product))
+                throw new NoProductStockException();
+
+            currentProduct = product;
+
+            final int priceInCents = catalog.getPriceInCents(currentProduct);
+            if (currentBalanceInCents >= priceInCents)
+                vend(priceInCents);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean payCashless(Product product, long idempotencyKey) throws NoProductStockException, ProductAlreadySelected {
+
+            final ReentrantLock productLock = productLocks[product.ordinal()];
+            productLock.lock();
+            idempotencyKeysLock.lock();
+            try {
+
+                if (idempotencyKey != NO_IDEMPOTENCY_KEY && recentIdempotencyKeys.contains(idempotencyKey))
+                    return false;
+
+                if (currentProduct != null && currentProduct != product)
+                    throw new ProductAlreadySelected();
+
+                if (!productsDeposit.tryToRelease(product).isPresent())
+                    throw new NoProductStockException();
+
+                if (idempotencyKey != NO_IDEMPOTENCY_KEY)
+                    recentIdempotencyKeys.add(idempotencyKey);
+
+            } finally {
+                idempotencyKeysLock.unlock();
+                productLock.unlock();
+            }
+
+            productsAtTakeoutPort[product.ordinal()]++;
+            currentProduct = null;
+
+            return true;
+        }
+
+        /**
+         * <p>Returns the coins in escrow, so it never throws {@link InvalidStateException}.</p>
+         */
+        @Override
+        public void cancel() {
+
+            for (int i = 0; i < escrowCoinCounts.length; i++) {
+                if (escrowCoinCounts[i] > 0) {
+                    releaseReservedCapacity(i, escrowCoinCounts[i]);
+                    coinsAtRepaymentPort[i] += escrowCoinCounts[i];
+                    escrowCoinCounts[i] = 0;
+                }
+            }
+
+            currentBalanceInCents = 0;
+            currentProduct = null;
+        }
+
+        /**
+         * <p>Resets the shared deposits with {@link ConcurrentVendingMachine#reset()}
+         * and clears this session.</p>
+         */
+        @Override
+        public void reset() throws InvalidStateException {
+
+            for (int i = 0; i < escrowCoinCounts.length; i++) {
+                releaseReservedCapacity(i, escrowCoinCounts[i]);
+                escrowCoinCounts[i] = 0;
+                coinsAtRepaymentPort[i] = 0;
+            }
+            for (int i = 0; i < productsAtTakeoutPort.length; i++) {
+                productsAtTakeoutPort[i] = 0;
+            }
+
+            currentBalanceInCents = 0;
+            currentProduct = null;
+
+            ConcurrentVendingMachine.this.reset();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<Product> collectProductAtTakeoutPort() {
+
+            for (int i = 0; i < productsAtTakeoutPort.length; i++) {
+                if (productsAtTakeoutPort[i] > 0) {
+                    productsAtTakeoutPort[i]--;
+                    return Optional.of(Product.values()[i]);
+                }
+            }
+
+            return Optional.empty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<List<Coin>> collectCoinsAtRepaymentPort() {
+
+            int count = 0;
+            for (int coinCount : coinsAtRepaymentPort) {
+                count += coinCount;
+            }
+            if (count == 0)
+                return Optional.empty();
+
+            final List<Coin> coins = Coins.toList(coinsAtRepaymentPort);
+            for (int i = 0; i < coinsAtRepaymentPort.length; i++) {
+                coinsAtRepaymentPort[i] = 0;
+            }
+
+            return Optional.of(coins);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Integer readBalanceInCentsIndicator() {
+
+            return currentBalanceInCents;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<Product> readSelectedProductIndicator() {
+
+            return Optional.ofNullable(currentProduct);
+        }
+
+        /**
+         * <p>Releases the current product and the change, moving the escrow coins to
+         * the coins deposit. If there is no change, the product is put back.</p>
+         */
+        private void vend(int priceInCents) throws NoProductStockException, NoChangeException {
+
+            final ReentrantLock productLock = productLocks[currentProduct.ordinal()];
+            productLock.lock();
+            try {
+
+                if (!productsDeposit.tryToRelease(currentProduct).isPresent())
+                    throw new NoProductStockException();
+
+                final int amountToReturnInCents = currentBalanceInCents - priceInCents;
+                if (!reserveChangeAndDepositEscrow(amountToReturnInCents)) {
+                    putBack(currentProduct);
+                    throw new NoChangeException();
+                }
+
+            } finally {
+                productLock.unlock();
+            }
+
+            productsAtTakeoutPort[currentProduct.ordinal()]++;
+            currentBalanceInCents = 0;
+            currentProduct = null;
+        }
+
+        private void putBack(Product product) {
+
+            try {
+                productsDeposit.insert(product, 1);
+            } catch (TypeLimitExceededException e) {
+                // Not possible, the product lock has been held since it was released
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * <p>First tries to reserve the change locking only the coin types it needs,
+         * from counts read without locks. If those counts were outdated, or the change
+         * seems not possible, tries again locking all coin types.</p>
+         */
+        private boolean reserveChangeAndDepositEscrow(int amountInCents) {
+
+            readAvailableCoinCounts();
+            if (coinsChangeCalculator.calculate(availableCoinCounts, amountInCents, changeCoinCounts)) {
+
+                lockChangeAndEscrowCoinTypes();
+                try {
+                    if (changeIsStillAvailable()) {
+                        releaseChangeAndDepositEscrow();
+                        return true;
+                    }
+                } finally {
+                    unlockChangeAndEscrowCoinTypes();
+                }
+            }
+
+            lockAll(coinLocks);
+            try {
+                readAvailableCoinCounts();
+                if (!coinsChangeCalculator.calculate(availableCoinCounts, amountInCents, changeCoinCounts))
+                    return false;
+                releaseChangeAndDepositEscrow();
+                return true;
+            } finally {
+                unlockAll(coinLocks);
+            }
+        }
+
+        private void readAvailableCoinCounts() {
+
+            Coins.toCounts(coinsDeposit.getCountsForAllTypes(), availableCoinCounts);
+            for (int i = 0; i < availableCoinCounts.length; i++) {
+                availableCoinCounts[i] += escrowCoinCounts[i];
+            }
+        }
+
+        private boolean changeIsStillAvailable() {
+
+            for (int i = 0; i < changeCoinCounts.length; i++) {
+                if (changeCoinCounts[i] > escrowCoinCounts[i] + coinsDeposit.getCountByType(Coins.ALL[i]))
+                    return false;
+            }
+
+            return true;
+        }
+
+        private void releaseChangeAndDepositEscrow() {
+
+            for (int i = 0; i < changeCoinCounts.length; i++) {
+
+                // Types without change nor escrow may not be locked
+                if (changeCoinCounts[i] == 0 && escrowCoinCounts[i] == 0)
+                    continue;
+
+                final Coin coin = Coins.ALL[i];
+                final int fromEscrow = Math.min(escrowCoinCounts[i], changeCoinCounts[i]);
+                final int toDeposit = escrowCoinCounts[i] - fromEscrow;
+
+                for (int j = fromEscrow; j < changeCoinCounts[i]; j++) {
+                    coinsDeposit.tryToRelease(coin);
+                }
+
+                if (toDeposit > 0) {
+                    try {
+                        coinsDeposit.insert(coin, toDeposit);
+                    } catch (TypeLimitExceededException e) {
+                        // Not possible, the capacity was reserved when the coins were inserted
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                reservedCoinCapacity[i] -= escrowCoinCounts[i];
+                coinsAtRepaymentPort[i] += changeCoinCounts[i];
+                escrowCoinCounts[i] = 0;
+            }
+        }
+
+        private void lockChangeAndEscrowCoinTypes() {
+
+            lockedCoinTypes = 0;
+            for (int i = 0; i < coinLocks.length; i++) {
+                if (changeCoinCounts[i] > 0 || escrowCoinCounts[i] > 0) {
+                    coinLocks[i].lock();
+                    lockedCoinTypes |= 1 << i;
+                }
+            }
+        }
+
+        private void unlockChangeAndEscrowCoinTypes() {
+
+            for (int i = coinLocks.length - 1; i >= 0; i--) {
+                if ((lockedCoinTypes & (1 << i)) != 0)
+                    coinLocks[i].unlock();
+            }
+            lockedCoinTypes = 0;
+        }
+
+        private void releaseReservedCapacity(int index, int count) {
+
+            if (count == 0)
+                return;
+
+            final ReentrantLock coinLock = coinLocks[index];
+            coinLock.lock();
+            try {
+                reservedCoinCapacity[index] -= count;
+            } finally {
+                coinLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>Read-only live {@link Map} view over counts indexed by {@link Enum#ordinal()},
+ * containing only the types with a count greater than zero.</p>
+ */
+abstract class EnumCountsView<E extends Enum<E>> extends AbstractMap<E, Integer> {
+
+    private final E[] types;
+
+    private final Set<Entry<E, Integer>> entrySet = new AbstractSet<Entry<E, Integer>>() {
+
+        @Override
+        public Iterator<Entry<E, Integer>> iterator() {
+
+            return new CountsIterator();
+        }
+
+        @Override
+        public int size() {
+
+            int size = 0;
+            for (int i = 0; i < types.length; i++) {
+                if (countAt(i) > 0)
+                    size++;
+            }
+
+            return size;
+        }
+    };
+
+    EnumCountsView(E[] types) {
+
+        this.types = types;
+    }
+
+    abstract int countAt(int index);
+
+    @Override
+    public Set<Entry<E, Integer>> entrySet() {
+
+        return entrySet;
+    }
+
+    @Override
+    public Integer get(Object key) {
+
+        if (!isType(key))
+            return null;
+
+        final int count = countAt(((Enum<?>) key).ordinal());
+        return count > 0 ? count : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        return isType(key) && countAt(((Enum<?>) key).ordinal()) > 0;
+    }
+
+    private boolean isType(Object key) {
+
+        if (!(key instanceof Enum))
+            return false;
+
+        final int index = ((Enum<?>) key).ordinal();
+        return index < types.length && types[index] == key;
+    }
+
+    private final class CountsIterator implements Iterator<Map.Entry<E, Integer>> {
+
+        private int nextIndex = advanceFrom(0);
+        private int nextCount;
+
+        @Override
+        public boolean hasNext() {
+
+            return nextIndex < types.length;
+        }
+
+        @Override
+        public Map.Entry<E, Integer> next() {
+
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            final Map.Entry<E, Integer> entry = new SimpleImmutableEntry<>(types[nextIndex], nextCount);
+            nextIndex = advanceFrom(nextIndex + 1);
+
+            return entry;
+        }
+
+        /**
+         * <p>Reads each count once, so concurrent changes never produce entries with
+         * a count of zero.</p>
+         */
+        private int advanceFrom(int index) {
+
+            while (index < types.length) {
+                nextCount = countAt(index);
+                if (nextCount > 0)
+                    break;
+                index++;
+            }
+
+            return index;
+        }
+    }
+}
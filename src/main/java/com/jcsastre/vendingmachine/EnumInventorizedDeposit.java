@@ -0,0 +1,213 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>{@link InventorizedDeposit} for enum types, keeping the counts in an array
+ * indexed by {@link Enum#ordinal()}.</p>
+ *
+ * <p>Inserting, releasing and querying counts don't allocate, and
+ * {@link #getCountsForAllTypes()} returns a read-only view of the counts instead
+ * of the internal state.</p>
+ */
+public class EnumInventorizedDeposit<E extends Enum<E>> implements InventorizedDeposit<E> {
+
+    private final E[] types;
+    private final int[] counts;
+    // Returned by tryToRelease, indexed by ordinal, so releasing doesn't allocate
+    private final Optional<E>[] releasedTypes;
+
+    private final Integer maxCapacityPerEachType;
+
+    private final Map<E, Integer> countsView;
+
+    public EnumInventorizedDeposit(
+        Class<E> enumClass,
+        Integer maxCapacityPerEachType
+    ) {
+
+        this.types = enumClass.getEnumConstants();
+        this.counts = new int[types.length];
+        this.releasedTypes = releasedTypesOf(types);
+        this.maxCapacityPerEachType = maxCapacityPerEachType;
+        this.countsView = new EnumCountsView<E>(types) {
+            @Override
+            int countAt(int index) {
+                return counts[index];
+            }
+        };
+    }
+
+    @Override
+    public void insert(
+        E type,
+        Integer count
+    ) throws TypeLimitExceededException {
+
+        final int index = type.ordinal();
+        final int newCount = counts[index] + count;
+
+        if (newCount > maxCapacityPerEachType)
+            throw new TypeLimitExceededException();
+
+        counts[index] = newCount;
+    }
+
+    @Override
+    public boolean hasType(E type) {
+
+        return counts[type.ordinal()] > 0;
+    }
+
+    @Override
+    public Optional<E> tryToRelease(E type) {
+
+        final int index = type.ordinal();
+
+        if (counts[index] > 0) {
+            counts[index]--;
+            return releasedTypes[index];
+        }
+
+        return Optional.empty();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Optional<E>[] releasedTypesOf(E[] types) {
+
+        final Optional<E>[] releasedTypes = new Optional[types.length];
+        for (int i = 0; i < types.length; i++) {
+            releasedTypes[i] = Optional.of(types[i]);
+        }
+
+        return releasedTypes;
+    }
+
+    @Override
+    public boolean tryToReleaseAll(Map<E, Integer> countByType) {
+
+        for (Map.Entry<E, Integer> typeIntegerEntry : countByType.entrySet()) {
+            if (typeIntegerEntry.getValue() == null || typeIntegerEntry.getValue() < 0)
+                throw new IllegalArgumentException("Invalid count of " + typeIntegerEntry.getKey() + ": " + typeIntegerEntry.getValue());
+        }
+
+        for (Map.Entry<E, Integer> typeIntegerEntry : countByType.entrySet()) {
+
+            final int index = typeIntegerEntry.getKey().ordinal();
+            final int countToRelease = typeIntegerEntry.getValue();
+
+            if (counts[index] < countToRelease) {
+                rollback(countByType, index);
+                return false;
+            }
+
+            counts[index] -= countToRelease;
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Same as {@link #tryToReleaseAll(Map)} taking the counts to release indexed
+     * by {@link Enum#ordinal()}.</p>
+     */
+    public boolean tryToReleaseAll(int[] countsToRelease) {
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < countsToRelease[i])
+                return false;
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= countsToRelease[i];
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean tryToReleaseAll(E[] types, int[] countsToRelease) {
+
+        for (int i = 0; i < types.length; i++) {
+            if (counts[types[i].ordinal()] < countsToRelease[i])
+                return false;
+        }
+
+        for (int i = 0; i < types.length; i++) {
+            counts[types[i].ordinal()] -= countsToRelease[i];
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Gives back the units released by {@link #tryToReleaseAll(Map)} before
+     * reaching the type at failedIndex.</p>
+     */
+    private void rollback(Map<E, Integer> countByType, int failedIndex) {
+
+        for (Map.Entry<E, Integer> typeIntegerEntry : countByType.entrySet()) {
+
+            final int index = typeIntegerEntry.getKey().ordinal();
+            if (index == failedIndex)
+                return;
+
+            counts[index] += typeIntegerEntry.getValue();
+        }
+    }
+
+    @Override
+    public void empty() {
+
+        Arrays.fill(counts, 0);
+    }
+
+    @Override
+    public Integer getCountByType(E type) {
+
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * <p>Same as {@link #getCountByType(Enum)} without boxing the count.</p>
+     */
+    public int countOf(E type) {
+
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * <p>Copies the counts, indexed by {@link Enum#ordinal()}, into the given array.</p>
+     */
+    public void copyCountsTo(int[] destination) {
+
+        System.arraycopy(counts, 0, destination, 0, counts.length);
+    }
+
+    @Override
+    public void copyCountsTo(E[] types, int[] destination) {
+
+        for (int i = 0; i < types.length; i++) {
+            destination[i] = counts[types[i].ordinal()];
+        }
+    }
+
+    /**
+     * @return a read-only view of the types with a count greater than zero.
+     */
+    @Override
+    public Map<E, Integer> getCountsForAllTypes() {
+
+        return countsView;
+    }
+
+    @Override
+    public Integer getMaxCapacityPerEachType() {
+
+        return this.maxCapacityPerEachType;
+    }
+}
@@ -2,6 +2,7 @@ package com.jcsastre.vendingmachine;
 
 import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
@@ -17,11 +18,59 @@ public interface InventorizedDeposit<T> {
 
     Optional<T> tryToRelease(T type);
 
+    /**
+     * <p>Releases all the units in countByType, or none of them if any type hasn't
+     * enough units.</p>
+     *
+     * @param countByType count of units to release of each type.
+     * @return true if all the units have been released, false if none has.
+     * @throws IllegalArgumentException if a count is null or negative, releasing
+     *         none.
+     */
+    boolean tryToReleaseAll(Map<T, Integer> countByType);
+
+    /**
+     * <p>Same as {@link #tryToReleaseAll(Map)} taking the count to release of each
+     * type at its position in types.</p>
+     */
+    default boolean tryToReleaseAll(T[] types, int[] countsToRelease) {
+
+        final Map<T, Integer> countByType = new HashMap<>();
+        for (int i = 0; i < types.length; i++) {
+            if (countsToRelease[i] > 0)
+                countByType.put(types[i], countsToRelease[i]);
+        }
+
+        return tryToReleaseAll(countByType);
+    }
+
     void empty();
 
     Integer getCountByType(T type);
 
     Map<T, Integer> getCountsForAllTypes();
 
+    /**
+     * <p>Copies the count of each type of types into destination, at the same
+     * position.</p>
+     */
+    default void copyCountsTo(T[] types, int[] destination) {
+
+        final Map<T, Integer> countByType = getCountsForAllTypes();
+        for (int i = 0; i < types.length; i++) {
+            final Integer count = countByType.get(types[i]);
+            destination[i] = count != null ? count : 0;
+        }
+    }
+
     Integer getMaxCapacityPerEachType();
+
+    /**
+     * @return the max capacity of a type, the same for every type unless the deposit
+     *         has different capacities per type.
+     */
+    default Integer getMaxCapacityByType(T type) {
+
+        return getMaxCapacityPerEachType();
+    }
 }
@@ -51,6 +51,47 @@ public class InventorizedDepositImpl<T> implements InventorizedDeposit<T> {
         return Optional.empty();
     }
 
+    @Override
+    public boolean tryToReleaseAll(Map<T, Integer> countByTypeToRelease) {
+
+        for (Map.Entry<T, Integer> typeIntegerEntry : countByTypeToRelease.entrySet()) {
+            if (typeIntegerEntry.getValue() == null || typeIntegerEntry.getValue() < 0)
+                throw new IllegalArgumentException("Invalid count of " + typeIntegerEntry.getKey() + ": " + typeIntegerEntry.getValue());
+        }
+
+        for (Map.Entry<T, Integer> typeIntegerEntry : countByTypeToRelease.entrySet()) {
+
+            final T type = typeIntegerEntry.getKey();
+            final Integer currentCount = getCountByType(type);
+            final Integer countToRelease = typeIntegerEntry.getValue();
+
+            if (currentCount < countToRelease) {
+                rollback(countByTypeToRelease, type);
+                return false;
+            }
+
+            countByType.put(type, currentCount - countToRelease);
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Gives back the units released by {@link #tryToReleaseAll(Map)} before
+     * reaching failedType.</p>
+     */
+    private void rollback(Map<T, Integer> countByTypeToRelease, T failedType) {
+
+        for (Map.Entry<T, Integer> typeIntegerEntry : countByTypeToRelease.entrySet()) {
+
+            final T type = typeIntegerEntry.getKey();
+            if (type.equals(failedType))
+                return;
+
+            countByType.put(type, getCountByType(type) + typeIntegerEntry.getValue());
+        }
+    }
+
     @Override
     public void empty() {
 
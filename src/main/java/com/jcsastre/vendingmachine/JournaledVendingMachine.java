@@ -0,0 +1,399 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link VendingMachine} decorator appending each command to a {@link CommandJournal}
+ * before executing it, so its state can be rebuilt after a crash with
+ * {@link #recover(Path, VendingMachine)}.</p>
+ *
+ * <p>The commands of {@link BatchVendingMachine} and {@link SupplierVendingMachine}
+ * are journaled too, and require a decorated vending machine implementing them.</p>
+ *
+ * <p>Commands are appended even if they end with an exception, because replaying them
+ * ends the same way. Reading the indicators doesn't change the state and isn't
+ * appended.</p>
+ *
+ * <p>Optionally it keeps a {@link VendingMachineSnapshot} of a {@link VendingMachineImpl}
+ * in a file, so recovering only replays the commands appended after it. Every snapshot
+ * interval a background thread requests a snapshot, the next command copies the state
+ * after executing, and the background thread writes the copy: commands never wait for
+ * the disk. A snapshot that fails to be written is skipped, it only makes recovering
+ * replay more commands.</p>
+ */
+public class JournaledVendingMachine implements BatchVendingMachine, SupplierVendingMachine, Closeable {
+
+    private final VendingMachine vendingMachine;
+    private final CommandJournal commandJournal;
+
+    private final ByteBuffer payload = ByteBuffer.allocate(CommandJournal.MAX_RECORD_SIZE);
+
+    private final VendingMachineImpl snapshotSource;
+    private final Path snapshotFile;
+    private final ScheduledExecutorService snapshotWriter;
+    private volatile boolean snapshotRequested;
+
+    public JournaledVendingMachine(
+        VendingMachine vendingMachine,
+        CommandJournal commandJournal
+    ) {
+
+        this.vendingMachine = vendingMachine;
+        this.commandJournal = commandJournal;
+        this.snapshotSource = null;
+        this.snapshotFile = null;
+        this.snapshotWriter = null;
+    }
+
+    /**
+     * <p>Creates a journaled vending machine also writing a snapshot into snapshotFile
+     * every snapshotIntervalMillis, if any command has been executed meanwhile.</p>
+     */
+    public JournaledVendingMachine(
+        VendingMachineImpl vendingMachineImpl,
+        CommandJournal commandJournal,
+        Path snapshotFile,
+        long snapshotIntervalMillis
+    ) {
+
+        this.vendingMachine = vendingMachineImpl;
+        this.commandJournal = commandJournal;
+        this.snapshotSource = vendingMachineImpl;
+        this.snapshotFile = snapshotFile;
+        this.snapshotWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotWriter.scheduleWithFixedDelay(
+            () -> snapshotRequested = true, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * <p>Replays the whole journal on a vending machine in its initial state and keeps
+     * appending to it.</p>
+     */
+    public static JournaledVendingMachine recover(Path journalFile, VendingMachine vendingMachine) throws IOException {
+
+        final long position = CommandJournal.replay(journalFile, 0, vendingMachine);
+
+        return new JournaledVendingMachine(vendingMachine, CommandJournal.open(journalFile, position));
+    }
+
+    /**
+     * <p>Restores the snapshot, if there is one, on a vending machine with the same
+     * deposits and change calculator, replays the commands appended after it and
+     * keeps appending to the journal and writing snapshots.</p>
+     *
+     * @throws InvalidStateException if the deposits have no capacity for the snapshot.
+     */
+    public static JournaledVendingMachine recover(
+        Path journalFile,
+        Path snapshotFile,
+        VendingMachineImpl vendingMachineImpl,
+        long snapshotIntervalMillis
+    ) throws IOException, InvalidStateException {
+
+        long position = 0;
+        if (Files.exists(snapshotFile)) {
+            final VendingMachineSnapshot vendingMachineSnapshot = VendingMachineSnapshot.read(snapshotFile);
+            vendingMachineImpl.restore(vendingMachineSnapshot);
+            position = vendingMachineSnapshot.getJournalPosition();
+        }
+        position = CommandJournal.replay(journalFile, position, vendingMachineImpl);
+
+        return new JournaledVendingMachine(
+            vendingMachineImpl, CommandJournal.open(journalFile, position), snapshotFile, snapshotIntervalMillis
+        );
+    }
+
+    @Override
+    public void insertCoin(Coin coin) throws NoChangeException, NoProductStockException, DepositCoinOverflowException {
+
+        commandJournal.append(VendingMachineCommand.INSERT_COIN, coin.ordinal());
+        try {
+            vendingMachine.insertCoin(coin);
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public void selectProduct(Product product) throws NoProductStockException, NoChangeException, ProductAlreadySelected {
+
+        commandJournal.append(VendingMachineCommand.SELECT_PRODUCT, product.ordinal());
+        try {
+            vendingMachine.selectProduct(product);
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    /**
+     * <p>Only a vended payment is recorded, once vended, with its idempotency key, so
+     * the keys of the recent payments are recovered too and a payment retried after
+     * recovering isn't vended again.</p>
+     */
+    @Override
+    public boolean payCashless(Product product, long idempotencyKey) throws NoProductStockException, ProductAlreadySelected {
+
+        try {
+            final boolean vended = vendingMachine.payCashless(product, idempotencyKey);
+            if (vended)
+                commandJournal.append(VendingMachineCommand.PAY_CASHLESS, product.ordinal(), idempotencyKey);
+            return vended;
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the decorated vending machine isn't a
+     *         {@link BatchVendingMachine}.
+     */
+    @Override
+    public void vendBasket(
+        Map<Product, Integer> basket,
+        List<Coin> payment
+    ) throws ProductAlreadySelected, InsufficientBalanceException, DepositCoinOverflowException,
+        NoProductStockException, NoChangeException {
+
+        final BatchVendingMachine batchVendingMachine = batchVendingMachine();
+
+        payload.clear();
+        VendingMachineCommand.putBasket(payload, basket, payment);
+        payload.flip();
+        commandJournal.append(VendingMachineCommand.VEND_BASKET, 0, payload);
+        try {
+            batchVendingMachine.vendBasket(basket, payment);
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the decorated vending machine isn't a
+     *         {@link BatchVendingMachine}.
+     */
+    @Override
+    public Optional<Map<Product, Integer>> collectBasketAtTakeoutPort() {
+
+        final BatchVendingMachine batchVendingMachine = batchVendingMachine();
+
+        commandJournal.append(VendingMachineCommand.COLLECT_BASKET, 0);
+        try {
+            return batchVendingMachine.collectBasketAtTakeoutPort();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the decorated vending machine isn't a
+     *         {@link SupplierVendingMachine}.
+     */
+    @Override
+    public Catalog getCatalog() {
+
+        return supplierVendingMachine().getCatalog();
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the decorated vending machine isn't a
+     *         {@link SupplierVendingMachine}.
+     */
+    @Override
+    public void setCatalog(Catalog catalog) {
+
+        final SupplierVendingMachine supplierVendingMachine = supplierVendingMachine();
+
+        payload.clear();
+        VendingMachineCommand.putCatalog(payload, catalog);
+        payload.flip();
+        commandJournal.append(VendingMachineCommand.SET_CATALOG, 0, payload);
+        try {
+            supplierVendingMachine.setCatalog(catalog);
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the decorated vending machine isn't a
+     *         {@link SupplierVendingMachine}.
+     */
+    @Override
+    public RestockManifest restock() throws InvalidStateException {
+
+        final SupplierVendingMachine supplierVendingMachine = supplierVendingMachine();
+
+        commandJournal.append(VendingMachineCommand.RESTOCK, 0);
+        try {
+            return supplierVendingMachine.restock();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public void cancel() throws InvalidStateException {
+
+        commandJournal.append(VendingMachineCommand.CANCEL, 0);
+        try {
+            vendingMachine.cancel();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public void reset() throws InvalidStateException {
+
+        commandJournal.append(VendingMachineCommand.RESET, 0);
+        try {
+            vendingMachine.reset();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public Optional<Product> collectProductAtTakeoutPort() {
+
+        commandJournal.append(VendingMachineCommand.COLLECT_PRODUCT, 0);
+        try {
+            return vendingMachine.collectProductAtTakeoutPort();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public Optional<List<Coin>> collectCoinsAtRepaymentPort() {
+
+        commandJournal.append(VendingMachineCommand.COLLECT_COINS, 0);
+        try {
+            return vendingMachine.collectCoinsAtRepaymentPort();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public int collectProductIdAtTakeoutPort() {
+
+        commandJournal.append(VendingMachineCommand.COLLECT_PRODUCT, 0);
+        try {
+            return vendingMachine.collectProductIdAtTakeoutPort();
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public int collectCoinCountsAtRepaymentPort(int[] coinCounts) {
+
+        commandJournal.append(VendingMachineCommand.COLLECT_COINS, 0);
+        try {
+            return vendingMachine.collectCoinCountsAtRepaymentPort(coinCounts);
+        } finally {
+            snapshotIfRequested();
+        }
+    }
+
+    @Override
+    public Integer readBalanceInCentsIndicator() {
+
+        return vendingMachine.readBalanceInCentsIndicator();
+    }
+
+    @Override
+    public int readBalanceInCents() {
+
+        return vendingMachine.readBalanceInCents();
+    }
+
+    @Override
+    public Optional<Product> readSelectedProductIndicator() {
+
+        return vendingMachine.readSelectedProductIndicator();
+    }
+
+    @Override
+    public int readSelectedProductId() {
+
+        return vendingMachine.readSelectedProductId();
+    }
+
+    /**
+     * <p>Forces to disk all the commands executed so far.</p>
+     */
+    public void sync() {
+
+        commandJournal.sync();
+    }
+
+    private BatchVendingMachine batchVendingMachine() {
+
+        if (!(vendingMachine instanceof BatchVendingMachine))
+            throw new UnsupportedOperationException("Not a batch vending machine");
+
+        return (BatchVendingMachine) vendingMachine;
+    }
+
+    private SupplierVendingMachine supplierVendingMachine() {
+
+        if (!(vendingMachine instanceof SupplierVendingMachine))
+            throw new UnsupportedOperationException("Not a supplier vending machine");
+
+        return (SupplierVendingMachine) vendingMachine;
+    }
+
+    private void snapshotIfRequested() {
+
+        if (snapshotRequested) {
+            snapshotRequested = false;
+            final VendingMachineSnapshot vendingMachineSnapshot = snapshotSource.takeSnapshot(commandJournal.getPosition());
+            snapshotWriter.execute(() -> {
+                try {
+                    vendingMachineSnapshot.write(snapshotFile);
+                } catch (IOException e) {
+                    // Skipped, the next one will be written
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>Forces the journal to disk, writes a last snapshot if snapshots are enabled and
+     * releases the files.</p>
+     */
+    @Override
+    public void close() throws IOException {
+
+        commandJournal.close();
+
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdown();
+            try {
+                snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshotSource.takeSnapshot(commandJournal.getPosition()).write(snapshotFile);
+        }
+    }
+}
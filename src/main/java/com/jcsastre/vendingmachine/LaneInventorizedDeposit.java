@@ -0,0 +1,274 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>{@link InventorizedDeposit} of products modelling the lanes (spirals) of a real
+ * machine, each one with its own capacity and loaded with one product. The same
+ * product can be loaded in several lanes.</p>
+ *
+ * <p>Besides the count of each lane, it keeps the aggregate count of each product,
+ * so {@link #hasType(Product)} and {@link #getCountByType(Product)} don't scan the
+ * lanes. Releasing a product picks one of its lanes with a {@link LaneSelection},
+ * and {@link #getLastReleasedLane()} tells the one to drive. As
+ * {@link #tryToReleaseAll(Map)} can release from several lanes,
+ * {@link #copyLastReleasedLaneCountsTo(int[])} tells the units released from each
+ * lane by the last release.</p>
+ *
+ * <p>The capacity of a product is the sum of the capacities of its lanes, returned
+ * by {@link #getMaxCapacityByType(Product)}, up to which
+ * {@link VendingMachineImpl#restock()} tops it up. {@link #getMaxCapacityPerEachType()}
+ * returns the smallest one, which fits in the lanes of every product.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class LaneInventorizedDeposit implements InventorizedDeposit<Product> {
+
+    private static final Product[] PRODUCTS = Product.values();
+
+    /**
+     * <p>How the lane to release a product from is picked among the lanes of the
+     * product.</p>
+     */
+    public enum LaneSelection {
+
+        /**
+         * <p>The lane with more units, keeping the lanes of a product evenly loaded.</p>
+         */
+        FULLEST,
+
+        /**
+         * <p>Each lane in turn, skipping the empty ones, spreading the wear of the
+         * springs.</p>
+         */
+        ROUND_ROBIN
+    }
+
+    private final LaneSelection laneSelection;
+
+    private final int[] laneCapacities;
+    private final int[] laneCounts;
+
+    private final int[][] lanesByProduct;
+    private final int[] productCapacities;
+    private final int[] productCounts;
+    private final int[] nextLaneByProduct;
+
+    private final Integer maxCapacityPerEachType;
+    private final Map<Product, Integer> countsView;
+
+    private final int[] lastReleasedLaneCounts;
+    private int lastReleasedLane = -1;
+
+    /**
+     * @param laneProducts the product loaded in each lane.
+     * @param laneCapacities the capacity of each lane.
+     */
+    public LaneInventorizedDeposit(
+        Product[] laneProducts,
+        int[] laneCapacities,
+        LaneSelection laneSelection
+    ) {
+
+        if (laneProducts.length != laneCapacities.length)
+            throw new IllegalArgumentException("Expected a capacity per lane");
+
+        this.laneSelection = laneSelection;
+        this.laneCapacities = laneCapacities.clone();
+        this.laneCounts = new int[laneCapacities.length];
+        this.lastReleasedLaneCounts = new int[laneCapacities.length];
+
+        this.productCapacities = new int[PRODUCTS.length];
+        this.productCounts = new int[PRODUCTS.length];
+        this.nextLaneByProduct = new int[PRODUCTS.length];
+
+        final int[] lanesCountByProduct = new int[PRODUCTS.length];
+        for (Product laneProduct : laneProducts) {
+            lanesCountByProduct[laneProduct.ordinal()]++;
+        }
+        this.lanesByProduct = new int[PRODUCTS.length][];
+        for (int i = 0; i < PRODUCTS.length; i++) {
+            lanesByProduct[i] = new int[lanesCountByProduct[i]];
+        }
+        Arrays.fill(lanesCountByProduct, 0);
+        for (int lane = 0; lane < laneProducts.length; lane++) {
+            final int index = laneProducts[lane].ordinal();
+            lanesByProduct[index][lanesCountByProduct[index]++] = lane;
+            productCapacities[index] += laneCapacities[lane];
+        }
+
+        this.maxCapacityPerEachType = Arrays.stream(productCapacities).min().orElse(0);
+        this.countsView = new EnumCountsView<Product>(PRODUCTS) {
+            @Override
+            int countAt(int index) {
+                return productCounts[index];
+            }
+        };
+    }
+
+    /**
+     * <p>Loads the units in the lanes of the product, filling them in order.</p>
+     *
+     * @throws TypeLimitExceededException if the units don't fit in the lanes of the
+     *         product.
+     */
+    @Override
+    public void insert(Product type, Integer count) throws TypeLimitExceededException {
+
+        final int index = type.ordinal();
+        if (productCounts[index] + count > productCapacities[index])
+            throw new TypeLimitExceededException();
+
+        int pending = count;
+        for (int lane : lanesByProduct[index]) {
+            final int loaded = Math.min(pending, laneCapacities[lane] - laneCounts[lane]);
+            laneCounts[lane] += loaded;
+            pending -= loaded;
+        }
+
+        productCounts[index] += count;
+    }
+
+    @Override
+    public boolean hasType(Product type) {
+
+        return productCounts[type.ordinal()] > 0;
+    }
+
+    @Override
+    public Optional<Product> tryToRelease(Product type) {
+
+        Arrays.fill(lastReleasedLaneCounts, 0);
+
+        final int index = type.ordinal();
+        if (productCounts[index] == 0)
+            return Optional.empty();
+
+        releaseOne(index);
+
+        return Optional.of(type);
+    }
+
+    @Override
+    public boolean tryToReleaseAll(Map<Product, Integer> countByType) {
+
+        for (Map.Entry<Product, Integer> productIntegerEntry : countByType.entrySet()) {
+            if (productIntegerEntry.getValue() == null || productIntegerEntry.getValue() < 0)
+                throw new IllegalArgumentException("Invalid count of " + productIntegerEntry.getKey() + ": " + productIntegerEntry.getValue());
+        }
+
+        Arrays.fill(lastReleasedLaneCounts, 0);
+
+        for (Map.Entry<Product, Integer> productIntegerEntry : countByType.entrySet()) {
+            if (productCounts[productIntegerEntry.getKey().ordinal()] < productIntegerEntry.getValue())
+                return false;
+        }
+
+        for (Map.Entry<Product, Integer> productIntegerEntry : countByType.entrySet()) {
+            for (int i = 0; i < productIntegerEntry.getValue(); i++) {
+                releaseOne(productIntegerEntry.getKey().ordinal());
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void empty() {
+
+        Arrays.fill(laneCounts, 0);
+        Arrays.fill(productCounts, 0);
+    }
+
+    @Override
+    public Integer getCountByType(Product type) {
+
+        return productCounts[type.ordinal()];
+    }
+
+    /**
+     * @return a read-only view of the products with a count greater than zero.
+     */
+    @Override
+    public Map<Product, Integer> getCountsForAllTypes() {
+
+        return countsView;
+    }
+
+    @Override
+    public Integer getMaxCapacityPerEachType() {
+
+        return maxCapacityPerEachType;
+    }
+
+    @Override
+    public Integer getMaxCapacityByType(Product type) {
+
+        return productCapacities[type.ordinal()];
+    }
+
+    public int getLanesCount() {
+
+        return laneCounts.length;
+    }
+
+    public int getLaneCount(int lane) {
+
+        return laneCounts[lane];
+    }
+
+    /**
+     * @return the lane of the last unit released, or -1 if none has been released.
+     */
+    public int getLastReleasedLane() {
+
+        return lastReleasedLane;
+    }
+
+    /**
+     * <p>Copies the units released from each lane by the last call to
+     * {@link #tryToRelease(Product)} or {@link #tryToReleaseAll(Map)} into destination,
+     * at the position of the lane. All of them are 0 if it released nothing.</p>
+     *
+     * @param destination an array of at least {@link #getLanesCount()} elements.
+     */
+    public void copyLastReleasedLaneCountsTo(int[] destination) {
+
+        System.arraycopy(lastReleasedLaneCounts, 0, destination, 0, lastReleasedLaneCounts.length);
+    }
+
+    private void releaseOne(int productIndex) {
+
+        final int lane = selectLane(productIndex);
+        laneCounts[lane]--;
+        productCounts[productIndex]--;
+        lastReleasedLaneCounts[lane]++;
+        lastReleasedLane = lane;
+    }
+
+    private int selectLane(int productIndex) {
+
+        final int[] lanes = lanesByProduct[productIndex];
+
+        if (laneSelection == LaneSelection.FULLEST) {
+            int fullestLane = lanes[0];
+            for (int lane : lanes) {
+                if (laneCounts[lane] > laneCounts[fullestLane])
+                    fullestLane = lane;
+            }
+            return fullestLane;
+        }
+
+        int next = nextLaneByProduct[productIndex];
+        while (laneCounts[lanes[next]] == 0) {
+            next = (next + 1) % lanes.length;
+        }
+        nextLaneByProduct[productIndex] = (next + 1) % lanes.length;
+
+        return lanes[next];
+    }
+}
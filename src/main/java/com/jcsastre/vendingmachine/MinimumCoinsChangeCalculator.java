@@ -0,0 +1,307 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>{@link CoinCountsChangeCalculator} returning the change with the minimum
+ * number of coins, taking into account that the available coins are limited.</p>
+ *
+ * <p>Unlike {@link CoinCountsChangeCalculator#coinCountsChangeCalculatorAsBiggestAsPossible}
+ * it always finds a change when one exists. For example, 60 cents from
+ * {50, 20, 20, 20} is returned as {20, 20, 20}.</p>
+ *
+ * <p>The change is calculated with a bounded knapsack dynamic programming over the
+ * denominations. The resulting tables are cached keyed by the available counts, so
+ * repeated calculations over the same deposit don't recompute them. Counts are
+ * clamped to the most coins of each type that can be part of a change, so big
+ * deposits keep hitting the same table while they change.</p>
+ *
+ * <p>Is thread-safe.</p>
+ */
+public class MinimumCoinsChangeCalculator implements CoinCountsChangeCalculator {
+
+    public static final int DEFAULT_CACHE_CAPACITY = 64;
+
+    private static final int MIN_TABLE_AMOUNT_IN_UNITS = 64;
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+
+    private final int[] valuesInUnits;
+    private final int unitInCents;
+
+    private final Map<SolutionTableKey, SolutionTable> solutionTables;
+    private final int cacheCapacity;
+
+    private volatile SolutionTable lastSolutionTable;
+
+    public MinimumCoinsChangeCalculator() {
+
+        this(DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * @param cacheCapacity how many solution tables are cached. Zero disables caching.
+     */
+    public MinimumCoinsChangeCalculator(int cacheCapacity) {
+
+        this(valuesInCentsOf(Coins.ALL), cacheCapacity);
+    }
+
+    /**
+     * <p>Creates a calculator for any set of denominations, with the counts indexed
+     * as the values are.</p>
+     *
+     * @param valuesInCents the value of each denomination.
+     * @param cacheCapacity how many solution tables are cached. Zero disables caching.
+     */
+    public MinimumCoinsChangeCalculator(int[] valuesInCents, int cacheCapacity) {
+
+        int unitInCents = 0;
+        for (int valueInCents : valuesInCents) {
+            unitInCents = gcd(unitInCents, valueInCents);
+        }
+
+        this.unitInCents = unitInCents;
+        this.valuesInUnits = new int[valuesInCents.length];
+        for (int i = 0; i < valuesInCents.length; i++) {
+            valuesInUnits[i] = valuesInCents[i] / unitInCents;
+        }
+
+        this.cacheCapacity = cacheCapacity;
+        this.solutionTables = new LruCache<>(cacheCapacity);
+    }
+
+    @Override
+    public boolean calculate(
+        int[] availableCounts,
+        int amountInCents,
+        int[] changeCounts
+    ) {
+
+        Arrays.fill(changeCounts, 0);
+
+        if (amountInCents == 0)
+            return true;
+        if (amountInCents < 0 || amountInCents % unitInCents != 0)
+            return false;
+
+        final int amountInUnits = amountInCents / unitInCents;
+        final SolutionTable solutionTable = getSolutionTable(availableCounts, amountInUnits);
+
+        return solutionTable.reconstruct(amountInUnits, changeCounts);
+    }
+
+    private SolutionTable getSolutionTable(int[] availableCounts, int amountInUnits) {
+
+        final int maxAmountInUnits = tableAmountFor(amountInUnits);
+
+        if (cacheCapacity == 0)
+            return new SolutionTable(clamp(availableCounts, maxAmountInUnits), maxAmountInUnits);
+
+        final SolutionTable last = lastSolutionTable;
+        if (last != null && last.covers(availableCounts, amountInUnits))
+            return last;
+
+        final int[] clampedCounts = clamp(availableCounts, maxAmountInUnits);
+        final SolutionTableKey key = new SolutionTableKey(clampedCounts, maxAmountInUnits);
+
+        SolutionTable solutionTable;
+        synchronized (solutionTables) {
+            solutionTable = solutionTables.get(key);
+            if (solutionTable == null) {
+                solutionTable = new SolutionTable(clampedCounts, maxAmountInUnits);
+                solutionTables.put(key, solutionTable);
+            }
+        }
+
+        lastSolutionTable = solutionTable;
+        return solutionTable;
+    }
+
+    private static int tableAmountFor(int amountInUnits) {
+
+        int maxAmountInUnits = MIN_TABLE_AMOUNT_IN_UNITS;
+        while (maxAmountInUnits < amountInUnits) {
+            maxAmountInUnits <<= 1;
+        }
+
+        return maxAmountInUnits;
+    }
+
+    private int[] clamp(int[] availableCounts, int maxAmountInUnits) {
+
+        final int[] clampedCounts = new int[valuesInUnits.length];
+        for (int i = 0; i < valuesInUnits.length; i++) {
+            clampedCounts[i] = Math.min(availableCounts[i], maxAmountInUnits / valuesInUnits[i]);
+        }
+
+        return clampedCounts;
+    }
+
+    private static int[] valuesInCentsOf(Coin[] coins) {
+
+        final int[] valuesInCents = new int[coins.length];
+        for (int i = 0; i < coins.length; i++) {
+            valuesInCents[i] = coins[i].getValueInCents();
+        }
+
+        return valuesInCents;
+    }
+
+    private static int gcd(int a, int b) {
+
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * <p>Map evicting the least recently used entry beyond its capacity.</p>
+     */
+    private static final class LruCache<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private LruCache(int capacity) {
+
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+
+            return size() > capacity;
+        }
+    }
+
+    private static final class SolutionTableKey {
+
+        private final int[] clampedCounts;
+        private final int maxAmountInUnits;
+        private final int hash;
+
+        private SolutionTableKey(int[] clampedCounts, int maxAmountInUnits) {
+
+            this.clampedCounts = clampedCounts;
+            this.maxAmountInUnits = maxAmountInUnits;
+            this.hash = 31 * Arrays.hashCode(clampedCounts) + maxAmountInUnits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o)
+                return true;
+            if (!(o instanceof SolutionTableKey))
+                return false;
+
+            final SolutionTableKey that = (SolutionTableKey) o;
+            return maxAmountInUnits == that.maxAmountInUnits
+                && Arrays.equals(clampedCounts, that.clampedCounts);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hash;
+        }
+    }
+
+    /**
+     * <p>Minimum number of coins for every amount up to maxAmountInUnits, using
+     * only the first i denominations, for every i.</p>
+     */
+    private final class SolutionTable {
+
+        private final int[] clampedCounts;
+        private final int maxAmountInUnits;
+        private final int[][] minCoins;
+
+        private SolutionTable(int[] clampedCounts, int maxAmountInUnits) {
+
+            this.clampedCounts = clampedCounts;
+            this.maxAmountInUnits = maxAmountInUnits;
+            this.minCoins = new int[valuesInUnits.length + 1][maxAmountInUnits + 1];
+
+            Arrays.fill(minCoins[0], UNREACHABLE);
+            minCoins[0][0] = 0;
+
+            final int[] window = new int[maxAmountInUnits + 1];
+            for (int i = 0; i < valuesInUnits.length; i++) {
+                addDenomination(minCoins[i], minCoins[i + 1], valuesInUnits[i], clampedCounts[i], window);
+            }
+        }
+
+        /**
+         * <p>current[a] = min(previous[a - k * value] + k) for k in [0, count], using a
+         * sliding window minimum for each residue of a modulo value.</p>
+         */
+        private void addDenomination(int[] previous, int[] current, int value, int count, int[] window) {
+
+            for (int residue = 0; residue < value && residue <= maxAmountInUnits; residue++) {
+
+                int head = 0;
+                int tail = 0;
+
+                for (int j = 0, amount = residue; amount <= maxAmountInUnits; j++, amount += value) {
+
+                    if (previous[amount] != UNREACHABLE) {
+                        final int candidate = previous[amount] - j;
+                        while (tail > head && previous[residue + window[tail - 1] * value] - window[tail - 1] >= candidate) {
+                            tail--;
+                        }
+                        window[tail++] = j;
+                    }
+
+                    while (tail > head && window[head] < j - count) {
+                        head++;
+                    }
+
+                    current[amount] =
+                        tail > head
+                            ? previous[residue + window[head] * value] - window[head] + j
+                            : UNREACHABLE;
+                }
+            }
+        }
+
+        private boolean covers(int[] availableCounts, int amountInUnits) {
+
+            if (amountInUnits > maxAmountInUnits)
+                return false;
+
+            for (int i = 0; i < valuesInUnits.length; i++) {
+                if (Math.min(availableCounts[i], maxAmountInUnits / valuesInUnits[i]) != clampedCounts[i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        private boolean reconstruct(int amountInUnits, int[] changeCounts) {
+
+            if (minCoins[valuesInUnits.length][amountInUnits] == UNREACHABLE)
+                return false;
+
+            int pendingAmountInUnits = amountInUnits;
+            for (int i = valuesInUnits.length; i > 0; i--) {
+
+                final int value = valuesInUnits[i - 1];
+                final int target = minCoins[i][pendingAmountInUnits];
+
+                int count = 0;
+                while (minCoins[i - 1][pendingAmountInUnits - count * value] + count != target) {
+                    count++;
+                }
+
+                changeCounts[i - 1] = count;
+                pendingAmountInUnits -= count * value;
+            }
+
+            return true;
+        }
+    }
+}
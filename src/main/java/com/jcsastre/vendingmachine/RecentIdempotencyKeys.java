@@ -0,0 +1,131 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.Arrays;
+
+/**
+ * <p>The last {@link #CAPACITY} idempotency keys of the cashless payments, to detect
+ * the retried authorizations. Retries come shortly after the original payment, so a
+ * few keys are enough.</p>
+ *
+ * <p>Keys are kept in an open addressing hash table with linear probing, at most half
+ * full, so looking a key up takes one or two probes without boxing it. A ring with
+ * the keys in insertion order tells the oldest one to remove, shifting back the keys
+ * probed after it.</p>
+ *
+ * <p>{@link VendingMachine#NO_IDEMPOTENCY_KEY} can't be added: it marks the empty
+ * slots.</p>
+ *
+ * <p>The table and the ring, about 1.5 KB, are allocated when the first key is
+ * added, so the machines that never take a cashless payment don't pay for them.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+class RecentIdempotencyKeys {
+
+    static final int CAPACITY = 64;
+
+    private static final int TABLE_BITS = 7;
+    private static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+
+    private static final long EMPTY = VendingMachine.NO_IDEMPOTENCY_KEY;
+
+    // Null until the first key is added
+    private long[] table;
+    private long[] ring;
+    private int size;
+    private int next;
+
+    boolean contains(long key) {
+
+        if (table == null)
+            return false;
+
+        for (int i = slotOf(key); table[i] != EMPTY; i = (i + 1) & TABLE_MASK) {
+            if (table[i] == key)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>Adds a key not contained yet, forgetting the oldest one if there are already
+     * {@link #CAPACITY}.</p>
+     */
+    void add(long key) {
+
+        if (table == null) {
+            table = new long[1 << TABLE_BITS];
+            Arrays.fill(table, EMPTY);
+            ring = new long[CAPACITY];
+        }
+
+        if (size == CAPACITY)
+            remove(ring[next]);
+        else
+            size++;
+
+        int i = slotOf(key);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & TABLE_MASK;
+        }
+        table[i] = key;
+
+        ring[next] = key;
+        next = (next + 1) % CAPACITY;
+    }
+
+    /**
+     * <p>Copies the keys, oldest first, into an array of {@link #CAPACITY} keys,
+     * filling the rest with {@link VendingMachine#NO_IDEMPOTENCY_KEY}.</p>
+     */
+    void copyTo(long[] keys) {
+
+        Arrays.fill(keys, EMPTY);
+        final int oldest = size == CAPACITY ? next : 0;
+        for (int i = 0; i < size; i++) {
+            keys[i] = ring[(oldest + i) % CAPACITY];
+        }
+    }
+
+    /**
+     * <p>Replaces the keys with the ones copied by {@link #copyTo(long[])}.</p>
+     */
+    void restore(long[] keys) {
+
+        if (table != null)
+            Arrays.fill(table, EMPTY);
+        size = 0;
+        next = 0;
+        for (long key : keys) {
+            if (key != EMPTY && !contains(key))
+                add(key);
+        }
+    }
+
+    private void remove(long key) {
+
+        int i = slotOf(key);
+        while (table[i] != key) {
+            i = (i + 1) & TABLE_MASK;
+        }
+        table[i] = EMPTY;
+
+        // Shifts back the following keys that can't be reached anymore from their slot
+        for (int j = (i + 1) & TABLE_MASK; table[j] != EMPTY; j = (j + 1) & TABLE_MASK) {
+
+            final int slot = slotOf(table[j]);
+            final boolean reachable = i <= j ? (slot > i && slot <= j) : (slot > i || slot <= j);
+            if (!reachable) {
+                table[i] = table[j];
+                table[j] = EMPTY;
+                i = j;
+            }
+        }
+    }
+
+    private static int slotOf(long key) {
+
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - TABLE_BITS));
+    }
+}
@@ -0,0 +1,100 @@
+package com.jcsastre.vendingmachine;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>What an operator added to and removed from a vending machine in a restock, as
+ * returned by {@link VendingMachineImpl#restock()}.</p>
+ *
+ * <p>Counts are indexed by {@link Product#ordinal()} and {@link Coin#ordinal()}. It
+ * is written for the route planner as text, one line per product or coin moved with
+ * its kind, name and signed count:</p>
+ *
+ * <pre>
+ * product COKE 12
+ * coin TWO_EUROS -8
+ * coin TEN_CENTS 5
+ * </pre>
+ */
+public final class RestockManifest {
+
+    private static final Product[] PRODUCTS = Product.values();
+
+    private final int[] productsAdded;
+    private final int[] coinsAdded;
+    private final int[] coinsRemoved;
+
+    RestockManifest(int[] productsAdded, int[] coinsAdded, int[] coinsRemoved) {
+
+        this.productsAdded = productsAdded;
+        this.coinsAdded = coinsAdded;
+        this.coinsRemoved = coinsRemoved;
+    }
+
+    public int getProductsAdded(Product product) {
+
+        return productsAdded[product.ordinal()];
+    }
+
+    public int getCoinsAdded(Coin coin) {
+
+        return coinsAdded[coin.ordinal()];
+    }
+
+    public int getCoinsRemoved(Coin coin) {
+
+        return coinsRemoved[coin.ordinal()];
+    }
+
+    public int getTotalProductsAdded() {
+
+        return Arrays.stream(productsAdded).sum();
+    }
+
+    /**
+     * @return the value of the coins added minus the value of the coins removed.
+     */
+    public int getNetCoinsInCents() {
+
+        int netCoinsInCents = 0;
+        for (Coin coin : Coins.ALL) {
+            netCoinsInCents += (coinsAdded[coin.ordinal()] - coinsRemoved[coin.ordinal()]) * coin.getValueInCents();
+        }
+
+        return netCoinsInCents;
+    }
+
+    /**
+     * <p>Writes a line per product or coin moved.</p>
+     */
+    public void writeTo(Appendable appendable) throws IOException {
+
+        for (Product product : PRODUCTS) {
+            if (productsAdded[product.ordinal()] != 0)
+                appendable.append("product ").append(product.name()).append(' ')
+                    .append(Integer.toString(productsAdded[product.ordinal()])).append('\n');
+        }
+
+        for (Coin coin : Coins.ALL) {
+            final int count = coinsAdded[coin.ordinal()] - coinsRemoved[coin.ordinal()];
+            if (count != 0)
+                appendable.append("coin ").append(coin.name()).append(' ')
+                    .append(Integer.toString(count)).append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeTo(stringBuilder);
+        } catch (IOException e) {
+            // Not possible, StringBuilder doesn't throw
+            throw new IllegalStateException(e);
+        }
+
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package com.jcsastre.vendingmachine;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@link CoinCountsChangeCalculator} returning the change that keeps the coin types
+ * of the deposit as far from running out as possible.</p>
+ *
+ * <p>Taking a coin costs the max capacity per each type divided by the coins of its
+ * type left after taking it, plus one: a coin from a full type costs about 1, and the
+ * last coin of a type costs the whole capacity. The change returned is the one with
+ * the minimum total cost, so it prefers fewer coins while the deposit is well filled,
+ * and switches to the plentiful types as any type gets scarce. For example, with few
+ * 50c left, 60c is returned as {20, 20, 20} instead of {50, 10}.</p>
+ *
+ * <p>The change is calculated with a dynamic programming over the denominations,
+ * trying every count of each one, in O(types * amount^2 / smallest value) steps:
+ * cheap for the amounts of a vending machine. Like {@link MinimumCoinsChangeCalculator}
+ * it always finds a change when one exists.</p>
+ *
+ * <p>Is thread-safe: each thread works on its own buffers.</p>
+ */
+public class ScarcityAwareChangeCalculator implements CoinCountsChangeCalculator {
+
+    private static final long UNREACHABLE = Long.MAX_VALUE / 2;
+
+    // Costs are kept as fixed point longs, so a coin from a full type costs about SCALE
+    private static final long SCALE = 1 << 16;
+
+    private final int maxCapacityPerEachType;
+
+    private final int[] valuesInUnits;
+    private final int unitInCents;
+
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * @param maxCapacityPerEachType the max capacity per each type of the coins deposit,
+     *        relative to which the fill level of each type is measured.
+     */
+    public ScarcityAwareChangeCalculator(int maxCapacityPerEachType) {
+
+        this.maxCapacityPerEachType = maxCapacityPerEachType;
+
+        int unitInCents = 0;
+        for (Coin coin : Coins.ALL) {
+            unitInCents = gcd(unitInCents, coin.getValueInCents());
+        }
+
+        this.unitInCents = unitInCents;
+        this.valuesInUnits = new int[Coins.COUNT];
+        for (int i = 0; i < Coins.COUNT; i++) {
+            valuesInUnits[i] = Coins.ALL[i].getValueInCents() / unitInCents;
+        }
+    }
+
+    @Override
+    public boolean calculate(
+        int[] availableCounts,
+        int amountInCents,
+        int[] changeCounts
+    ) {
+
+        Arrays.fill(changeCounts, 0);
+
+        if (amountInCents % unitInCents != 0)
+            return false;
+
+        final int amountInUnits = amountInCents / unitInCents;
+        final Buffers buffers = this.buffers.get().ensureCapacity(amountInUnits + 1);
+
+        long[] costs = buffers.costs;
+        long[] nextCosts = buffers.nextCosts;
+        Arrays.fill(costs, 0, amountInUnits + 1, UNREACHABLE);
+        costs[0] = 0;
+
+        for (int i = 0; i < Coins.COUNT; i++) {
+
+            final int value = valuesInUnits[i];
+            final int available = availableCounts[i];
+            final int[] chosenCounts = buffers.chosenCounts[i];
+
+            for (int amount = 0; amount <= amountInUnits; amount++) {
+
+                long bestCost = costs[amount];
+                int bestCount = 0;
+
+                long takenCost = 0;
+                final int maxCount = Math.min(available, amount / value);
+                for (int count = 1; count <= maxCount; count++) {
+
+                    takenCost += costOfTaking(available - count);
+
+                    final long cost = costs[amount - count * value] + takenCost;
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestCount = count;
+                    }
+                }
+
+                nextCosts[amount] = bestCost;
+                chosenCounts[amount] = bestCount;
+            }
+
+            final long[] swap = costs;
+            costs = nextCosts;
+            nextCosts = swap;
+        }
+
+        if (costs[amountInUnits] >= UNREACHABLE)
+            return false;
+
+        int amount = amountInUnits;
+        for (int i = Coins.COUNT - 1; i >= 0; i--) {
+            changeCounts[i] = buffers.chosenCounts[i][amount];
+            amount -= changeCounts[i] * valuesInUnits[i];
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the cost of taking a coin leaving remaining coins of its type.
+     */
+    private long costOfTaking(int remaining) {
+
+        return SCALE * maxCapacityPerEachType / (remaining + 1);
+    }
+
+    private static int gcd(int a, int b) {
+
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static class Buffers {
+
+        long[] costs = new long[0];
+        long[] nextCosts = new long[0];
+        int[][] chosenCounts = new int[Coins.COUNT][0];
+
+        Buffers ensureCapacity(int capacity) {
+
+            if (costs.length < capacity) {
+                costs = new long[capacity];
+                nextCosts = new long[capacity];
+                chosenCounts = new int[Coins.COUNT][capacity];
+            }
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.InvalidStateException;
+
+/**
+ * <p>{@link VendingMachine} with the commands a Supplier runs through the backdoor
+ * besides {@link #reset()}, like changing the prices or restocking.</p>
+ *
+ * <p>They change the state as the customer commands do, so they are journaled and
+ * replicated as them and must be called on the same thread.</p>
+ */
+public interface SupplierVendingMachine extends VendingMachine {
+
+    Catalog getCatalog();
+
+    /**
+     * <p>Command representing a Supplier replacing the catalog, so the next products
+     * are vended at its prices without restarting the machine.</p>
+     */
+    void setCatalog(Catalog catalog);
+
+    /**
+     * <p>Command representing a Supplier restocking the machine, bringing the
+     * deposits to their stock levels.</p>
+     *
+     * <p>The balance, the selected product and the ports are kept, so it must be
+     * done when no customer is using the machine.</p>
+     *
+     * @return what has been added and removed.
+     * @throws InvalidStateException if the deposits don't accept the changes, which
+     *         are then not applied.
+     */
+    RestockManifest restock() throws InvalidStateException;
+}
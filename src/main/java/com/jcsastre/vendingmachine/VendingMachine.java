@@ -2,6 +2,7 @@ package com.jcsastre.vendingmachine;
 
 import com.jcsastre.vendingmachine.exception.*;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +24,17 @@ import java.util.Optional;
  */
 public interface VendingMachine {
 
+    /**
+     * <p>Idempotency key of the cashless payments that are never retried, so they
+     * don't need to be remembered.</p>
+     */
+    long NO_IDEMPOTENCY_KEY = Long.MIN_VALUE;
+
+    /**
+     * <p>Product id meaning no product, as product ids are {@link Product#ordinal()}.</p>
+     */
+    int NO_PRODUCT_ID = -1;
+
     /**
      * <p>Command representing a Customer inserting a coin.</p>
      *
@@ -44,6 +56,27 @@ public interface VendingMachine {
      */
     void selectProduct(Product product) throws NoProductStockException, NoChangeException, ProductAlreadySelected;
 
+    /**
+     * <p>Command representing a Customer paying a product by card or app.</p>
+     *
+     * <p>The exact price of the product is charged, so the product is released at the
+     * takeout port without going through the balance nor the coins deposit, and
+     * without calculating any change. If the product is the selected one, it is no
+     * longer selected.</p>
+     *
+     * @param product the {@link Product} paid.
+     * @param idempotencyKey key of the payment authorization. A payment retried with
+     *        the key of a recently vended payment is not vended again.
+     * @return true if the product has been vended, false if the payment had already
+     *         been vended.
+     * @throws NoProductStockException if no stock available.
+     * @throws ProductAlreadySelected if another product is selected.
+     */
+    boolean payCashless(
+        Product product,
+        long idempotencyKey
+    ) throws NoProductStockException, ProductAlreadySelected;
+
     /**
      * <p>Command representing a Customer pressing the cancel button.</p>
      *
@@ -96,4 +129,53 @@ public interface VendingMachine {
      * @return A {@link Product} representing the current selected product or empty.
      */
     Optional<Product> readSelectedProductIndicator();
+
+    /**
+     * <p>Same as {@link #collectProductAtTakeoutPort()}, without allocating.</p>
+     *
+     * @return The {@link Product#ordinal()} of the product or {@link #NO_PRODUCT_ID}
+     *         if no product has been released.
+     */
+    default int collectProductIdAtTakeoutPort() {
+
+        final Optional<Product> optProduct = collectProductAtTakeoutPort();
+
+        return optProduct.isPresent() ? optProduct.get().ordinal() : NO_PRODUCT_ID;
+    }
+
+    /**
+     * <p>Same as {@link #collectCoinsAtRepaymentPort()}, without allocating.</p>
+     *
+     * @param coinCounts where the count of each {@link Coin} collected is written, by
+     *        {@link Coin#ordinal()}. All zero if no change has been released.
+     * @return The count of coins collected, zero if no change has been released.
+     */
+    default int collectCoinCountsAtRepaymentPort(int[] coinCounts) {
+
+        final Optional<List<Coin>> optCoins = collectCoinsAtRepaymentPort();
+        Coins.toCounts(optCoins.orElse(Collections.emptyList()), coinCounts);
+
+        return optCoins.map(List::size).orElse(0);
+    }
+
+    /**
+     * <p>Same as {@link #readBalanceInCentsIndicator()}, without boxing.</p>
+     */
+    default int readBalanceInCents() {
+
+        return readBalanceInCentsIndicator();
+    }
+
+    /**
+     * <p>Same as {@link #readSelectedProductIndicator()}, without allocating.</p>
+     *
+     * @return The {@link Product#ordinal()} of the selected product or
+     *         {@link #NO_PRODUCT_ID}.
+     */
+    default int readSelectedProductId() {
+
+        final Optional<Product> optProduct = readSelectedProductIndicator();
+
+        return optProduct.isPresent() ? optProduct.get().ordinal() : NO_PRODUCT_ID;
+    }
 }
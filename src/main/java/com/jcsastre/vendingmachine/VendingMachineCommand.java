@@ -0,0 +1,264 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.*;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Commands of {@link VendingMachine} that change its state, with a compact
+ * one byte code used to record and replay them.</p>
+ *
+ * <p>The argument of a command is the ordinal of its {@link Coin} or
+ * {@link Product}, and zero for commands without argument. Some commands also have a
+ * payload of {@link #getPayloadSize()} bytes, like the idempotency key of
+ * {@link #PAY_CASHLESS} or the basket and payment of {@link #VEND_BASKET}.</p>
+ *
+ * <p>{@link #VEND_BASKET} and {@link #COLLECT_BASKET} are commands of a
+ * {@link BatchVendingMachine}, and {@link #SET_CATALOG} and {@link #RESTOCK} of a
+ * {@link SupplierVendingMachine}.</p>
+ */
+public enum VendingMachineCommand {
+
+    INSERT_COIN,
+    SELECT_PRODUCT,
+    CANCEL,
+    RESET,
+    COLLECT_PRODUCT,
+    COLLECT_COINS,
+    PAY_CASHLESS,
+    VEND_BASKET,
+    COLLECT_BASKET,
+    SET_CATALOG,
+    RESTOCK;
+
+    private static final VendingMachineCommand[] ALL = values();
+    private static final Coin[] COINS = Coin.values();
+    private static final Product[] PRODUCTS = Product.values();
+
+    /**
+     * @return the code of the command, never zero.
+     */
+    public byte getCode() {
+
+        return (byte) (ordinal() + 1);
+    }
+
+    /**
+     * @return the bytes of the payload recorded after the code and the argument.
+     */
+    public int getPayloadSize() {
+
+        switch (this) {
+            case PAY_CASHLESS:
+                return Long.BYTES;
+            case VEND_BASKET:
+                return Integer.BYTES * (PRODUCTS.length + Coins.COUNT);
+            case SET_CATALOG:
+                return Integer.BYTES * PRODUCTS.length;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * <p>Writes the payload of {@link #VEND_BASKET} into a buffer: the count of each
+     * product of the basket, by product ordinal, and the count of each coin of the
+     * payment, by coin ordinal.</p>
+     *
+     * @throws IllegalArgumentException if the basket is empty or a count isn't
+     *         positive, without writing anything.
+     */
+    public static void putBasket(ByteBuffer payload, Map<Product, Integer> basket, List<Coin> payment) {
+
+        checkBasket(basket);
+
+        for (Product product : PRODUCTS) {
+            final Integer count = basket.get(product);
+            payload.putInt(count != null ? count : 0);
+        }
+
+        for (Coin coin : COINS) {
+            int count = 0;
+            // Indexed instead of iterated, so it doesn't allocate an iterator
+            for (int i = 0; i < payment.size(); i++) {
+                if (payment.get(i) == coin)
+                    count++;
+            }
+            payload.putInt(count);
+        }
+    }
+
+    /**
+     * @return the command with the given code or null if there is none.
+     */
+    public static VendingMachineCommand ofCode(int code) {
+
+        return code > 0 && code <= ALL.length ? ALL[code - 1] : null;
+    }
+
+    /**
+     * <p>Writes the payload of {@link #SET_CATALOG} into a buffer: the price of each
+     * product, by product ordinal.</p>
+     */
+    public static void putCatalog(ByteBuffer payload, Catalog catalog) {
+
+        for (Product product : PRODUCTS) {
+            payload.putInt(catalog.getPriceInCents(product));
+        }
+    }
+
+    /**
+     * <p>Executes the command on a vending machine, ignoring the exceptions it
+     * throws: they are outcomes of the command, and the vending machine state
+     * after them is the same as when it was first executed.</p>
+     *
+     * <p>On a {@link CommandResultVendingMachine} the customer commands are executed
+     * without exceptions, so replaying the rejected ones is as cheap as the rest.</p>
+     *
+     * <p>{@link #PAY_CASHLESS} is executed without idempotency key.</p>
+     *
+     * @throws IllegalArgumentException if the command can't be executed without its
+     *         payload, as {@link #VEND_BASKET} and {@link #SET_CATALOG}, isn't a
+     *         command of the vending machine, or its payload isn't valid.
+     */
+    public void applyTo(VendingMachine vendingMachine, int argument) {
+
+        applyTo(vendingMachine, argument, null);
+    }
+
+    /**
+     * <p>Same as {@link #applyTo(VendingMachine, int)}, reading the payload of the
+     * command from the position of a buffer.</p>
+     */
+    public void applyTo(VendingMachine vendingMachine, int argument, ByteBuffer payload) {
+
+        if (payload == null && (this == VEND_BASKET || this == SET_CATALOG))
+            throw new IllegalArgumentException(this + " requires its payload");
+
+        final long idempotencyKey =
+            payload != null && this == PAY_CASHLESS ? payload.getLong() : VendingMachine.NO_IDEMPOTENCY_KEY;
+
+        if (vendingMachine instanceof CommandResultVendingMachine) {
+            final CommandResultVendingMachine commandResultVendingMachine = (CommandResultVendingMachine) vendingMachine;
+            switch (this) {
+                case INSERT_COIN:
+                    commandResultVendingMachine.tryToInsertCoin(COINS[argument]);
+                    return;
+                case SELECT_PRODUCT:
+                    commandResultVendingMachine.tryToSelectProduct(PRODUCTS[argument]);
+                    return;
+                case PAY_CASHLESS:
+                    commandResultVendingMachine.tryToPayCashless(PRODUCTS[argument], idempotencyKey);
+                    return;
+            }
+        }
+
+        try {
+            switch (this) {
+                case INSERT_COIN:
+                    vendingMachine.insertCoin(COINS[argument]);
+                    break;
+                case SELECT_PRODUCT:
+                    vendingMachine.selectProduct(PRODUCTS[argument]);
+                    break;
+                case CANCEL:
+                    vendingMachine.cancel();
+                    break;
+                case RESET:
+                    vendingMachine.reset();
+                    break;
+                case COLLECT_PRODUCT:
+                    vendingMachine.collectProductAtTakeoutPort();
+                    break;
+                case COLLECT_COINS:
+                    vendingMachine.collectCoinsAtRepaymentPort();
+                    break;
+                case PAY_CASHLESS:
+                    vendingMachine.payCashless(PRODUCTS[argument], idempotencyKey);
+                    break;
+                case VEND_BASKET:
+                    batchVendingMachineOf(vendingMachine).vendBasket(basketOf(payload), paymentOf(payload));
+                    break;
+                case COLLECT_BASKET:
+                    batchVendingMachineOf(vendingMachine).collectBasketAtTakeoutPort();
+                    break;
+                case SET_CATALOG:
+                    supplierVendingMachineOf(vendingMachine).setCatalog(catalogOf(payload));
+                    break;
+                case RESTOCK:
+                    supplierVendingMachineOf(vendingMachine).restock();
+                    break;
+            }
+        } catch (NoChangeException | NoProductStockException | DepositCoinOverflowException
+            | ProductAlreadySelected | InsufficientBalanceException | InvalidStateException e) {
+            // Same outcome as when the command was first executed
+        }
+    }
+
+    private BatchVendingMachine batchVendingMachineOf(VendingMachine vendingMachine) {
+
+        if (!(vendingMachine instanceof BatchVendingMachine))
+            throw new IllegalArgumentException(this + " requires a BatchVendingMachine");
+
+        return (BatchVendingMachine) vendingMachine;
+    }
+
+    private SupplierVendingMachine supplierVendingMachineOf(VendingMachine vendingMachine) {
+
+        if (!(vendingMachine instanceof SupplierVendingMachine))
+            throw new IllegalArgumentException(this + " requires a SupplierVendingMachine");
+
+        return (SupplierVendingMachine) vendingMachine;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the basket is empty or a count isn't
+     *         positive.
+     */
+    static void checkBasket(Map<Product, Integer> basket) {
+
+        if (basket.isEmpty())
+            throw new IllegalArgumentException("Empty basket");
+        for (Map.Entry<Product, Integer> productIntegerEntry : basket.entrySet()) {
+            if (productIntegerEntry.getKey() == null || productIntegerEntry.getValue() == null || productIntegerEntry.getValue() <= 0)
+                throw new IllegalArgumentException("Invalid count of " + productIntegerEntry.getKey() + ": " + productIntegerEntry.getValue());
+        }
+    }
+
+    private static Map<Product, Integer> basketOf(ByteBuffer payload) {
+
+        final Map<Product, Integer> basket = new EnumMap<>(Product.class);
+        for (Product product : PRODUCTS) {
+            final int count = payload.getInt();
+            if (count < 0)
+                throw new IllegalArgumentException("Invalid count of " + product + ": " + count);
+            if (count > 0)
+                basket.put(product, count);
+        }
+
+        return basket;
+    }
+
+    private static Catalog catalogOf(ByteBuffer payload) {
+
+        final int[] pricesInCents = new int[PRODUCTS.length];
+        for (int i = 0; i < pricesInCents.length; i++) {
+            pricesInCents[i] = payload.getInt();
+        }
+
+        return new Catalog(pricesInCents);
+    }
+
+    private static List<Coin> paymentOf(ByteBuffer payload) {
+
+        final int[] coinCounts = new int[Coins.COUNT];
+        for (int i = 0; i < coinCounts.length; i++) {
+            coinCounts[i] = payload.getInt();
+        }
+
+        return Coins.toList(coinCounts);
+    }
+}
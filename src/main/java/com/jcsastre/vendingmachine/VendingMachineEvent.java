@@ -0,0 +1,97 @@
+package com.jcsastre.vendingmachine;
+
+/**
+ * <p>Compact record of a command executed by a vending machine, packed in a long so
+ * emitting it doesn't allocate:</p>
+ *
+ * <pre>
+ * bits 56-63  command code, {@link VendingMachineCommand#getCode()}
+ * bits 48-55  argument, coin or product ordinal or zero
+ * bits 40-47  {@link CommandResult} ordinal
+ * bits 36-39  {@link VendingMachineState} ordinal before the command
+ * bits 32-35  {@link VendingMachineState} ordinal after the command
+ * bits  0-31  balance in cents after the command
+ * </pre>
+ *
+ * <p>Commands and arguments are the ones of the {@link CommandJournal}, so an event
+ * stream replays as a journal does, with
+ * {@code commandOf(event).applyTo(vendingMachine, argumentOf(event))}, and the rest
+ * of the event tells the outcome expected from it.</p>
+ *
+ * <p>The payload of a command isn't in its event, so the commands with one don't
+ * replay as they were executed:</p>
+ *
+ * <ul>
+ *     <li>{@link VendingMachineCommand#VEND_BASKET} and
+ *     {@link VendingMachineCommand#SET_CATALOG} can't be replayed: without the basket
+ *     or the prices {@link VendingMachineCommand#applyTo(VendingMachine, int)} throws
+ *     IllegalArgumentException.</li>
+ *     <li>{@link VendingMachineCommand#PAY_CASHLESS} is replayed without its
+ *     idempotency key, so a retried payment isn't recognized.</li>
+ * </ul>
+ *
+ * <p>Use the {@link CommandJournal}, which records the payloads, to replay them.</p>
+ */
+public final class VendingMachineEvent {
+
+    private static final CommandResult[] RESULTS = CommandResult.values();
+
+    private VendingMachineEvent() {
+    }
+
+    public static long of(
+        VendingMachineCommand command,
+        int argument,
+        CommandResult result,
+        VendingMachineState fromState,
+        VendingMachineState toState,
+        int balanceInCents
+    ) {
+
+        return ((long) command.getCode() & 0xFF) << 56
+            | ((long) argument & 0xFF) << 48
+            | ((long) result.ordinal() & 0xFF) << 40
+            | ((long) fromState.ordinal() & 0xF) << 36
+            | ((long) toState.ordinal() & 0xF) << 32
+            | balanceInCents & 0xFFFFFFFFL;
+    }
+
+    public static VendingMachineCommand commandOf(long event) {
+
+        return VendingMachineCommand.ofCode((int) (event >>> 56));
+    }
+
+    public static int argumentOf(long event) {
+
+        return (int) (event >>> 48) & 0xFF;
+    }
+
+    public static CommandResult resultOf(long event) {
+
+        return RESULTS[(int) (event >>> 40) & 0xFF];
+    }
+
+    public static VendingMachineState fromStateOf(long event) {
+
+        return VendingMachineState.ofOrdinal((int) (event >>> 36) & 0xF);
+    }
+
+    public static VendingMachineState toStateOf(long event) {
+
+        return VendingMachineState.ofOrdinal((int) (event >>> 32) & 0xF);
+    }
+
+    public static int balanceInCentsOf(long event) {
+
+        return (int) event;
+    }
+
+    /**
+     * @return a readable form of the event, for audit logs.
+     */
+    public static String toString(long event) {
+
+        return commandOf(event) + " " + argumentOf(event) + " " + resultOf(event)
+            + " " + fromStateOf(event) + "->" + toStateOf(event) + " " + balanceInCentsOf(event);
+    }
+}
@@ -0,0 +1,20 @@
+package com.jcsastre.vendingmachine;
+
+/**
+ * <p>Receives the {@link VendingMachineEvent} emitted by a vending machine after each
+ * command, to replicate or audit it.</p>
+ *
+ * <p>Called in the middle of the commands, so implementations must not allocate nor
+ * block.</p>
+ */
+@FunctionalInterface
+public interface VendingMachineEventListener {
+
+    VendingMachineEventListener NONE = event -> {
+    };
+
+    /**
+     * @param event the command executed, packed as described by {@link VendingMachineEvent}.
+     */
+    void onEvent(long event);
+}
@@ -2,22 +2,58 @@ package com.jcsastre.vendingmachine;
 
 import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
 import com.jcsastre.vendingmachine.exception.*;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
 
 import java.util.*;
 
 /**
- * <p>Class implementing the {@link VendingMachine} interface.</p>
+ * <p>Class implementing the {@link VendingMachine}, {@link BatchVendingMachine},
+ * {@link SupplierVendingMachine} and {@link CommandResultVendingMachine} interfaces.</p>
  *
  * <p>Is based in {@link InventorizedDeposit} to manage the deposited coins and
  * products.</p>
  *
+ * <p>Reports its events to a {@link VendingMachineMetrics}, including the latency
+ * of the customer commands inserting coins, selecting products and cancelling. With
+ * {@link VendingMachineMetrics#NONE}, the default, the latency isn't even measured.</p>
+ *
+ * <p>Prices are taken from a {@link Catalog}, {@link Catalog#DEFAULT} unless another
+ * one is set with {@link #setCatalog(Catalog)}.</p>
+ *
+ * <p>Its state, a {@link VendingMachineState}, is derived from the selected product
+ * and the balance. The customer commands dispatch on what they do in the current
+ * state, a {@link VendingMachineTransition}, and every command emits a
+ * {@link VendingMachineEvent} to a {@link VendingMachineEventListener}.</p>
+ *
+ * <p>Optionally keeps a {@link ChangeFeasibilityIndex} of the coins deposit, to reject
+ * without running the change calculator the amounts it can't pay, and to answer
+ * {@link #canVend(Product, int)} in constant time. The coins deposit must then only
+ * be changed through this vending machine.</p>
+ *
  * @author Juan Carlos Sastre
  */
-public class VendingMachineImpl implements VendingMachine {
+public class VendingMachineImpl implements BatchVendingMachine, SupplierVendingMachine, CommandResultVendingMachine {
+
+    private static final Product[] PRODUCTS = Product.values();
 
     private InventorizedDeposit<Coin> coinsDeposit;
     private InventorizedDeposit<Product> productsDeposit;
-    private CoinsChangeCalculator coinsChangeCalculator;
+    private CoinCountsChangeCalculator coinsChangeCalculator;
+
+    private final VendingMachineMetrics metrics;
+    private final boolean metricsEnabled;
+
+    private final ChangeFeasibilityIndex changeFeasibilityIndex;
+
+    private final VendingMachineEventListener eventListener;
+
+    private volatile Catalog catalog = Catalog.DEFAULT;
+
+    private final int[] availableCoinCounts = new int[Coins.COUNT];
+    private final int[] changeCoinCounts = new int[Coins.COUNT];
+    private final int[] paymentCoinCounts = new int[Coins.COUNT];
+
+    private final RecentIdempotencyKeys recentIdempotencyKeys = new RecentIdempotencyKeys();
 
     private Product currentProduct;
     private int currentBalanceInCents;
@@ -26,16 +62,78 @@ public class VendingMachineImpl implements VendingMachine {
     // See discussion at https://stackoverflow.com/questions/23454952/uses-for-optional
     private Product productAtTakeoutPort;
     private List<Coin> coinsAtRepaymentPort;
+    private Map<Product, Integer> basketAtTakeoutPort;
 
+    /**
+     * <p>Creates a vending machine using a list based {@link CoinsChangeCalculator},
+     * adapted with {@link CoinCountsChangeCalculator#adapt(CoinsChangeCalculator)}.</p>
+     */
     public VendingMachineImpl(
         InventorizedDeposit<Coin> coinsDeposit,
         InventorizedDeposit<Product> productsDeposit,
         CoinsChangeCalculator coinsChangeCalculator
     )  {
 
+        this(coinsDeposit, productsDeposit, CoinCountsChangeCalculator.adapt(coinsChangeCalculator));
+    }
+
+    public VendingMachineImpl(
+        InventorizedDeposit<Coin> coinsDeposit,
+        InventorizedDeposit<Product> productsDeposit,
+        CoinCountsChangeCalculator coinsChangeCalculator
+    )  {
+
+        this(coinsDeposit, productsDeposit, coinsChangeCalculator, VendingMachineMetrics.NONE);
+    }
+
+    public VendingMachineImpl(
+        InventorizedDeposit<Coin> coinsDeposit,
+        InventorizedDeposit<Product> productsDeposit,
+        CoinCountsChangeCalculator coinsChangeCalculator,
+        VendingMachineMetrics metrics
+    )  {
+
+        this(coinsDeposit, productsDeposit, coinsChangeCalculator, metrics, null);
+    }
+
+    /**
+     * @param changeFeasibilityIndex index to keep up to date with the coins deposit,
+     *        or null to go without it.
+     */
+    public VendingMachineImpl(
+        InventorizedDeposit<Coin> coinsDeposit,
+        InventorizedDeposit<Product> productsDeposit,
+        CoinCountsChangeCalculator coinsChangeCalculator,
+        VendingMachineMetrics metrics,
+        ChangeFeasibilityIndex changeFeasibilityIndex
+    )  {
+
+        this(coinsDeposit, productsDeposit, coinsChangeCalculator, metrics, changeFeasibilityIndex, VendingMachineEventListener.NONE);
+    }
+
+    /**
+     * @param changeFeasibilityIndex index to keep up to date with the coins deposit,
+     *        or null to go without it.
+     * @param eventListener listener of the events of the commands.
+     */
+    public VendingMachineImpl(
+        InventorizedDeposit<Coin> coinsDeposit,
+        InventorizedDeposit<Product> productsDeposit,
+        CoinCountsChangeCalculator coinsChangeCalculator,
+        VendingMachineMetrics metrics,
+        ChangeFeasibilityIndex changeFeasibilityIndex,
+        VendingMachineEventListener eventListener
+    )  {
+
         this.coinsDeposit = coinsDeposit;
         this.productsDeposit = productsDeposit;
         this.coinsChangeCalculator = coinsChangeCalculator;
+        this.metrics = metrics;
+        this.metricsEnabled = metrics != VendingMachineMetrics.NONE;
+        this.changeFeasibilityIndex = changeFeasibilityIndex;
+        this.eventListener = eventListener;
+
+        rebuildChangeFeasibilityIndex();
     }
 
     /**
@@ -44,73 +142,174 @@ public class VendingMachineImpl implements VendingMachine {
     @Override
     public void insertCoin(Coin coin) throws NoChangeException, NoProductStockException, DepositCoinOverflowException {
 
-        try {
-            coinsDeposit.insert(coin, 1);
-        } catch (TypeLimitExceededException e) {
-            throw new DepositCoinOverflowException();
+        switch (tryToInsertCoin(coin)) {
+            case NO_CHANGE:
+                throw new NoChangeException();
+            case NO_PRODUCT_STOCK:
+                throw new NoProductStockException();
+            case DEPOSIT_COIN_OVERFLOW:
+                throw new DepositCoinOverflowException();
         }
+    }
 
-        currentBalanceInCents += coin.getValueInCents();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommandResult tryToInsertCoin(Coin coin) {
 
-        if (currentProduct != null) {
+        final long startNanos = startNanos();
+        final VendingMachineState state = getState();
+        CommandResult result = CommandResult.OK;
+        try {
 
-            if (currentBalanceInCents >= currentProduct.getPriceInCents()) {
+            switch (VendingMachineTransition.of(state, VendingMachineCommand.INSERT_COIN)) {
+                case ACCUMULATE_COIN:
+                    result = accumulateCoin(coin);
+                    break;
+                case ACCUMULATE_COIN_AND_VEND:
+                    result = accumulateCoin(coin);
+                    if (result == CommandResult.OK)
+                        result = vendIfBalanceReached(coin);
+                    break;
+            }
 
-                try {
+            return result;
 
-                    tryToReleaseProductAndReturnChangeIfRequired();
+        } finally {
+            emit(VendingMachineCommand.INSERT_COIN, coin.ordinal(), result, state);
+            recordLatency(VendingMachineCommand.INSERT_COIN, startNanos);
+        }
+    }
 
-                } catch (NoChangeException e) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void selectProduct(Product product) throws NoProductStockException, NoChangeException, ProductAlreadySelected {
 
-                    currentBalanceInCents = currentBalanceInCents - coin.getValueInCents();
-                    coinsAtRepaymentPort = Collections.singletonList(coin);
+        switch (tryToSelectProduct(product)) {
+            case NO_PRODUCT_STOCK:
+                throw new NoProductStockException();
+            case NO_CHANGE:
+                throw new NoChangeException();
+            case PRODUCT_ALREADY_SELECTED:
+                throw new ProductAlreadySelected();
+        }
+    }
 
-                    throw e;
-                }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommandResult tryToSelectProduct(Product product) {
+
+        final long startNanos = startNanos();
+        final VendingMachineState state = getState();
+        CommandResult result = CommandResult.OK;
+        try {
+
+            switch (VendingMachineTransition.of(state, VendingMachineCommand.SELECT_PRODUCT)) {
+                case REJECT_PRODUCT_ALREADY_SELECTED:
+                    result = CommandResult.PRODUCT_ALREADY_SELECTED;
+                    break;
+                case SELECT:
+                    result = select(product);
+                    break;
+                case SELECT_AND_VEND:
+                    result = select(product);
+                    if (result == CommandResult.OK) {
+                        final int priceInCents = catalog.getPriceInCents(currentProduct);
+                        if (currentBalanceInCents >= priceInCents)
+                            result = tryToReleaseProductAndReturnChangeIfRequired(priceInCents);
+                    }
+                    break;
             }
+
+            return result;
+
+        } finally {
+            emit(VendingMachineCommand.SELECT_PRODUCT, product.ordinal(), result, state);
+            recordLatency(VendingMachineCommand.SELECT_PRODUCT, startNanos);
         }
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Remembers the keys of the last {@link RecentIdempotencyKeys#CAPACITY} vended
+     * payments.</p>
      */
     @Override
-    public void selectProduct(Product product) throws NoProductStockException, NoChangeException, ProductAlreadySelected {
+    public boolean payCashless(Product product, long idempotencyKey) throws NoProductStockException, ProductAlreadySelected {
 
-        if (currentProduct != null)
-            throw new ProductAlreadySelected();
+        switch (tryToPayCashless(product, idempotencyKey)) {
+            case ALREADY_PAID:
+                return false;
+            case NO_PRODUCT_STOCK:
+                throw new NoProductStockException();
+            case PRODUCT_ALREADY_SELECTED:
+                throw new ProductAlreadySelected();
+            default:
+                return true;
+        }
+    }
 
-        if (productsDeposit.hasType(product)) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommandResult tryToPayCashless(Product product, long idempotencyKey) {
 
-            currentProduct = product;
+        final long startNanos = startNanos();
+        final VendingMachineState state = getState();
+        CommandResult result = CommandResult.OK;
+        try {
 
-            if (currentBalanceInCents >= currentProduct.getPriceInCents()) {
-                tryToReleaseProductAndReturnChangeIfRequired();
-            }
-        } else {
-            throw new NoProductStockException();
+            if (VendingMachineTransition.of(state, VendingMachineCommand.PAY_CASHLESS) == VendingMachineTransition.VEND_CASHLESS)
+                result = vendCashless(product, idempotencyKey);
+
+            return result;
+
+        } finally {
+            emit(VendingMachineCommand.PAY_CASHLESS, product.ordinal(), result, state);
+            recordLatency(VendingMachineCommand.PAY_CASHLESS, startNanos);
         }
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>No event is emitted if it throws, the state being the same as before.</p>
      */
     @Override
     public void cancel() throws InvalidStateException {
 
-        if (currentBalanceInCents > 0) {
+        final long startNanos = startNanos();
+        final VendingMachineState state = getState();
+        try {
 
-            final Optional<List<Coin>> optChange = tryToReleaseAmount(currentBalanceInCents);
-            if (!optChange.isPresent()) {
-                throw new InvalidStateException();
+            switch (VendingMachineTransition.of(state, VendingMachineCommand.CANCEL)) {
+                case REFUND:
+                    final Optional<List<Coin>> optChange = tryToReleaseAmount(currentBalanceInCents);
+                    if (!optChange.isPresent()) {
+                        throw new InvalidStateException();
+                    }
+
+                    coinsAtRepaymentPort = optChange.get();
+                    currentBalanceInCents = 0;
+                    currentProduct = null;
+                    break;
+                case DESELECT:
+                    currentProduct = null;
+                    break;
             }
 
-            coinsAtRepaymentPort = optChange.get();
-            currentBalanceInCents = 0;
+            emit(VendingMachineCommand.CANCEL, 0, CommandResult.OK, state);
 
+        } finally {
+            recordLatency(VendingMachineCommand.CANCEL, startNanos);
         }
-
-        currentProduct = null;
     }
 
     /**
@@ -119,6 +318,8 @@ public class VendingMachineImpl implements VendingMachine {
     @Override
     public void reset() throws InvalidStateException {
 
+        final VendingMachineState state = getState();
+
         // For each coin type, normalize to half the max capacity
         coinsDeposit.empty();
         final Integer maxCapacityPerEachCoinType = coinsDeposit.getMaxCapacityPerEachType();
@@ -147,22 +348,241 @@ public class VendingMachineImpl implements VendingMachine {
 
         coinsAtRepaymentPort = null;
         productAtTakeoutPort = null;
+        basketAtTakeoutPort = null;
+
+        rebuildChangeFeasibilityIndex();
+
+        eventListener.onEvent(
+            VendingMachineEvent.of(
+                VendingMachineCommand.RESET, 0, CommandResult.OK, state, VendingMachineState.IDLE, 0
+            )
+        );
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Applies only the difference with the current stock instead of emptying and
+     * refilling the deposits as {@link #reset()} does:</p>
+     *
+     * <ul>
+     *     <li>Tops up each product to its max capacity.</li>
+     *     <li>Brings each coin type to half the max capacity, adding or removing coins.</li>
+     * </ul>
+     *
+     * <p>All the changes are calculated and checked against the deposits before
+     * applying any of them, so the deposits are left untouched when they don't
+     * accept them.</p>
      */
     @Override
-    public Optional<Product> collectProductAtTakeoutPort() {
+    public RestockManifest restock() throws InvalidStateException {
+
+        final int[] productsAdded = new int[PRODUCTS.length];
+        final int[] coinsAdded = new int[Coins.COUNT];
+        final int[] coinsRemoved = new int[Coins.COUNT];
+
+        for (Product product : PRODUCTS) {
+            final int count = productsDeposit.getMaxCapacityByType(product) - productsDeposit.getCountByType(product);
+            if (count > 0)
+                productsAdded[product.ordinal()] = count;
+        }
+
+        final int halfCapacityPerEachCoinType = coinsDeposit.getMaxCapacityPerEachType() / 2;
+        coinsDeposit.copyCountsTo(Coins.ALL, availableCoinCounts);
+        for (int i = 0; i < Coins.COUNT; i++) {
+            final int count = halfCapacityPerEachCoinType - availableCoinCounts[i];
+            if (count > 0)
+                coinsAdded[i] = count;
+            else
+                coinsRemoved[i] = -count;
+        }
+
+        // The removed coins go first: it is the only change that may be rejected
+        if (!coinsDeposit.tryToReleaseAll(Coins.ALL, coinsRemoved))
+            throw new InvalidStateException();
+
+        try {
+            for (Product product : PRODUCTS) {
+                if (productsAdded[product.ordinal()] > 0)
+                    productsDeposit.insert(product, productsAdded[product.ordinal()]);
+            }
+            for (Coin coin : Coins.ALL) {
+                if (coinsAdded[coin.ordinal()] > 0)
+                    coinsDeposit.insert(coin, coinsAdded[coin.ordinal()]);
+            }
+        } catch (TypeLimitExceededException e) {
+            // Not possible, nothing is added beyond the capacity
+            throw new IllegalStateException(e);
+        }
+
+        rebuildChangeFeasibilityIndex();
+        emitWithSameState(VendingMachineCommand.RESTOCK);
+
+        return new RestockManifest(productsAdded, coinsAdded, coinsRemoved);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The whole basket is released from the products deposit with a single
+     * {@link InventorizedDeposit#tryToReleaseAll(Map)}, and its change is calculated
+     * with a single invocation of the change calculator. If the change can't be
+     * returned, the basket is put back and the payment released again.</p>
+     *
+     * <p>The change, or the payment if the basket isn't vended, is added to the coins
+     * already at the repayment port.</p>
+     */
+    @Override
+    public void vendBasket(
+        Map<Product, Integer> basket,
+        List<Coin> payment
+    ) throws ProductAlreadySelected, InsufficientBalanceException, DepositCoinOverflowException,
+        NoProductStockException, NoChangeException {
+
+        VendingMachineCommand.checkBasket(basket);
+
+        switch (tryToVendBasket(basket, payment)) {
+            case PRODUCT_ALREADY_SELECTED:
+                throw new ProductAlreadySelected();
+            case INSUFFICIENT_BALANCE:
+                throw new InsufficientBalanceException();
+            case DEPOSIT_COIN_OVERFLOW:
+                throw new DepositCoinOverflowException();
+            case NO_PRODUCT_STOCK:
+                throw new NoProductStockException();
+            case NO_CHANGE:
+                throw new NoChangeException();
+        }
+    }
+
+    private CommandResult tryToVendBasket(Map<Product, Integer> basket, List<Coin> payment) {
+
+        final VendingMachineState state = getState();
+
+        final CommandResult result = vendBasketIfPossible(basket, payment);
+        if (result != CommandResult.OK && !payment.isEmpty())
+            addToRepaymentPort(payment);
+        emit(VendingMachineCommand.VEND_BASKET, 0, result, state);
+
+        return result;
+    }
+
+    private CommandResult vendBasketIfPossible(Map<Product, Integer> basket, List<Coin> payment) {
+
+        if (VendingMachineTransition.of(getState(), VendingMachineCommand.VEND_BASKET)
+            == VendingMachineTransition.REJECT_PRODUCT_ALREADY_SELECTED)
+            return CommandResult.PRODUCT_ALREADY_SELECTED;
+
+        final Catalog catalog = this.catalog;
+        int priceInCents = 0;
+        for (Map.Entry<Product, Integer> productIntegerEntry : basket.entrySet()) {
+            priceInCents += catalog.getPriceInCents(productIntegerEntry.getKey()) * productIntegerEntry.getValue();
+        }
+
+        int balanceInCents = currentBalanceInCents;
+        for (Coin coin : payment) {
+            balanceInCents += coin.getValueInCents();
+        }
 
-        Optional<Product> optProduct = Optional.empty();
+        if (balanceInCents < priceInCents)
+            return CommandResult.INSUFFICIENT_BALANCE;
+
+        Coins.toCounts(payment, paymentCoinCounts);
+        for (Coin coin : Coins.ALL) {
+            final int count = coinsDeposit.getCountByType(coin) + paymentCoinCounts[coin.ordinal()];
+            if (count > coinsDeposit.getMaxCapacityPerEachType()) {
+                metrics.recordDepositCoinOverflow(coin);
+                return CommandResult.DEPOSIT_COIN_OVERFLOW;
+            }
+        }
 
-        if (productAtTakeoutPort != null) {
-            optProduct = Optional.of(productAtTakeoutPort);
-            productAtTakeoutPort = null;
+        if (!productsDeposit.tryToReleaseAll(basket)) {
+            for (Map.Entry<Product, Integer> productIntegerEntry : basket.entrySet()) {
+                if (productsDeposit.getCountByType(productIntegerEntry.getKey()) < productIntegerEntry.getValue())
+                    metrics.recordNoProductStock(productIntegerEntry.getKey());
+            }
+            return CommandResult.NO_PRODUCT_STOCK;
         }
 
-        return optProduct;
+        insertPayment(payment);
+
+        final int amountToReturnInCents = balanceInCents - priceInCents;
+        if (amountToReturnInCents > 0) {
+
+            final Optional<List<Coin>> optChange = tryToReleaseAmount(amountToReturnInCents);
+            if (!optChange.isPresent()) {
+                putBackBasketAndReleasePayment(basket);
+                for (Product product : basket.keySet()) {
+                    metrics.recordNoChange(product);
+                }
+                return CommandResult.NO_CHANGE;
+            }
+
+            addToRepaymentPort(optChange.get());
+        }
+
+        for (Map.Entry<Product, Integer> productIntegerEntry : basket.entrySet()) {
+            for (int i = 0; i < productIntegerEntry.getValue(); i++) {
+                metrics.recordVend(productIntegerEntry.getKey());
+            }
+        }
+
+        basketAtTakeoutPort = new EnumMap<>(Product.class);
+        basketAtTakeoutPort.putAll(basket);
+        currentBalanceInCents = 0;
+
+        return CommandResult.OK;
+    }
+
+    private void addToRepaymentPort(List<Coin> coins) {
+
+        final List<Coin> allCoins = new ArrayList<>();
+        if (coinsAtRepaymentPort != null)
+            allCoins.addAll(coinsAtRepaymentPort);
+        allCoins.addAll(coins);
+
+        coinsAtRepaymentPort = allCoins;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Map<Product, Integer>> collectBasketAtTakeoutPort() {
+
+        Optional<Map<Product, Integer>> optBasket = Optional.empty();
+
+        if (basketAtTakeoutPort != null) {
+            optBasket = Optional.of(basketAtTakeoutPort);
+            basketAtTakeoutPort = null;
+        }
+        emitWithSameState(VendingMachineCommand.COLLECT_BASKET);
+
+        return optBasket;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Product> collectProductAtTakeoutPort() {
+
+        final int productId = collectProductIdAtTakeoutPort();
+
+        return productId == NO_PRODUCT_ID ? Optional.empty() : Optional.of(PRODUCTS[productId]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int collectProductIdAtTakeoutPort() {
+
+        final int productId = productAtTakeoutPort != null ? productAtTakeoutPort.ordinal() : NO_PRODUCT_ID;
+        productAtTakeoutPort = null;
+        emitWithSameState(VendingMachineCommand.COLLECT_PRODUCT);
+
+        return productId;
     }
 
     /**
@@ -177,15 +597,43 @@ public class VendingMachineImpl implements VendingMachine {
             optCoins = Optional.of(coinsAtRepaymentPort);
             coinsAtRepaymentPort = null;
         }
+        emitWithSameState(VendingMachineCommand.COLLECT_COINS);
 
         return optCoins;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int collectCoinCountsAtRepaymentPort(int[] coinCounts) {
+
+        int count = 0;
+        if (coinsAtRepaymentPort == null) {
+            Arrays.fill(coinCounts, 0);
+        } else {
+            Coins.toCounts(coinsAtRepaymentPort, coinCounts);
+            count = coinsAtRepaymentPort.size();
+            coinsAtRepaymentPort = null;
+        }
+        emitWithSameState(VendingMachineCommand.COLLECT_COINS);
+
+        return count;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Integer readBalanceInCentsIndicator() {
+        return readBalanceInCents();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readBalanceInCents() {
         return currentBalanceInCents;
     }
 
@@ -195,19 +643,279 @@ public class VendingMachineImpl implements VendingMachine {
     @Override
     public Optional<Product> readSelectedProductIndicator() {
 
-        return
-            Optional.ofNullable(currentProduct);
+        final int productId = readSelectedProductId();
+
+        return productId == NO_PRODUCT_ID ? Optional.empty() : Optional.of(PRODUCTS[productId]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readSelectedProductId() {
+
+        final Product product = currentProduct;
+
+        return product != null ? product.ordinal() : NO_PRODUCT_ID;
+    }
+
+    /**
+     * @return the state, derived from the selected product and the balance.
+     */
+    public VendingMachineState getState() {
+
+        return VendingMachineState.of(currentProduct, currentBalanceInCents);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Catalog getCatalog() {
+
+        return catalog;
     }
 
-    private void tryToReleaseProductAndReturnChangeIfRequired() throws NoChangeException, NoProductStockException {
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A selected product is vended at the price of the catalog set when the
+     * balance reaches it. The catalog is published safely, so threads only reading
+     * prices through {@link #getCatalog()} see it.</p>
+     */
+    @Override
+    public void setCatalog(Catalog catalog) {
+
+        this.catalog = catalog;
+        emitWithSameState(VendingMachineCommand.SET_CATALOG);
+    }
+
+    /**
+     * <p>Copies the current state. Only copies a few counts, so it can be taken
+     * between commands without delaying them, and written to disk later.</p>
+     *
+     * @param journalPosition position of the {@link CommandJournal} after the last
+     *        command executed.
+     */
+    public VendingMachineSnapshot takeSnapshot(long journalPosition) {
+
+        final int[] coinCounts = new int[Coins.COUNT];
+        coinsDeposit.copyCountsTo(Coins.ALL, coinCounts);
+
+        final int[] productCounts = new int[PRODUCTS.length];
+        productsDeposit.copyCountsTo(PRODUCTS, productCounts);
+
+        final int[] coinCountsAtRepaymentPort = new int[Coins.COUNT];
+        if (coinsAtRepaymentPort != null)
+            Coins.toCounts(coinsAtRepaymentPort, coinCountsAtRepaymentPort);
+
+        final int[] productCountsAtTakeoutPort = new int[PRODUCTS.length];
+        if (basketAtTakeoutPort != null) {
+            for (Map.Entry<Product, Integer> productIntegerEntry : basketAtTakeoutPort.entrySet()) {
+                productCountsAtTakeoutPort[productIntegerEntry.getKey().ordinal()] = productIntegerEntry.getValue();
+            }
+        }
+
+        final Catalog catalog = this.catalog;
+        final int[] pricesInCents = new int[PRODUCTS.length];
+        for (Product product : PRODUCTS) {
+            pricesInCents[product.ordinal()] = catalog.getPriceInCents(product);
+        }
+
+        final long[] recentIdempotencyKeys = new long[RecentIdempotencyKeys.CAPACITY];
+        this.recentIdempotencyKeys.copyTo(recentIdempotencyKeys);
+
+        return new VendingMachineSnapshot(
+            journalPosition, coinCounts, productCounts, currentBalanceInCents,
+            currentProduct, productAtTakeoutPort, coinCountsAtRepaymentPort, productCountsAtTakeoutPort,
+            pricesInCents, recentIdempotencyKeys
+        );
+    }
+
+    /**
+     * <p>Replaces the current state with the one of a snapshot.</p>
+     *
+     * @throws InvalidStateException if the deposits don't have capacity for the
+     *         counts of the snapshot.
+     */
+    public void restore(VendingMachineSnapshot vendingMachineSnapshot) throws InvalidStateException {
+
+        try {
+            coinsDeposit.empty();
+            final int[] coinCounts = vendingMachineSnapshot.getCoinCounts();
+            for (Coin coin : Coins.ALL) {
+                if (coinCounts[coin.ordinal()] > 0)
+                    coinsDeposit.insert(coin, coinCounts[coin.ordinal()]);
+            }
+
+            productsDeposit.empty();
+            final int[] productCounts = vendingMachineSnapshot.getProductCounts();
+            for (Product product : Product.values()) {
+                if (productCounts[product.ordinal()] > 0)
+                    productsDeposit.insert(product, productCounts[product.ordinal()]);
+            }
+        } catch (TypeLimitExceededException e) {
+            throw new InvalidStateException();
+        }
+
+        currentBalanceInCents = vendingMachineSnapshot.getBalanceInCents();
+        currentProduct = vendingMachineSnapshot.getCurrentProduct();
+
+        productAtTakeoutPort = vendingMachineSnapshot.getProductAtTakeoutPort();
+        final List<Coin> coins = Coins.toList(vendingMachineSnapshot.getCoinCountsAtRepaymentPort());
+        coinsAtRepaymentPort = coins.isEmpty() ? null : coins;
+        basketAtTakeoutPort = basketOf(vendingMachineSnapshot.getBasketAtTakeoutPort());
+        catalog = new Catalog(vendingMachineSnapshot.getPricesInCents());
+        recentIdempotencyKeys.restore(vendingMachineSnapshot.getRecentIdempotencyKeys());
+
+        rebuildChangeFeasibilityIndex();
+    }
+
+    private static Map<Product, Integer> basketOf(int[] productCounts) {
+
+        Map<Product, Integer> basket = null;
+        for (Product product : PRODUCTS) {
+            if (productCounts[product.ordinal()] > 0) {
+                if (basket == null)
+                    basket = new EnumMap<>(Product.class);
+                basket.put(product, productCounts[product.ordinal()]);
+            }
+        }
+
+        return basket;
+    }
+
+    /**
+     * <p>Checks, without changing anything, if a product would be vended with a
+     * balance: there is stock, the balance is enough and the change can be returned.</p>
+     *
+     * <p>With a {@link ChangeFeasibilityIndex} it takes constant time, without running
+     * the change calculator.</p>
+     *
+     * <p>It must be called on the thread executing the commands, as them: it reads
+     * the {@link ChangeFeasibilityIndex}, which isn't thread-safe, and calculates the
+     * change in the same buffers the commands use.</p>
+     */
+    public boolean canVend(Product product, int balanceInCents) {
+
+        final int priceInCents = catalog.getPriceInCents(product);
+        if (balanceInCents < priceInCents || !productsDeposit.hasType(product))
+            return false;
+
+        final int amountToReturnInCents = balanceInCents - priceInCents;
+        if (amountToReturnInCents == 0)
+            return true;
+
+        if (changeFeasibilityIndex != null && amountToReturnInCents <= changeFeasibilityIndex.getMaxAmountInCents())
+            return changeFeasibilityIndex.canPay(amountToReturnInCents);
+
+        coinsDeposit.copyCountsTo(Coins.ALL, availableCoinCounts);
+
+        return coinsChangeCalculator.calculate(availableCoinCounts, amountToReturnInCents, changeCoinCounts);
+    }
+
+    private CommandResult accumulateCoin(Coin coin) {
+
+        try {
+            coinsDeposit.insert(coin, 1);
+        } catch (TypeLimitExceededException e) {
+            metrics.recordDepositCoinOverflow(coin);
+            return CommandResult.DEPOSIT_COIN_OVERFLOW;
+        }
+
+        metrics.recordCoinIn(coin);
+        if (changeFeasibilityIndex != null)
+            changeFeasibilityIndex.add(coin);
+        currentBalanceInCents += coin.getValueInCents();
+
+        return CommandResult.OK;
+    }
+
+    /**
+     * <p>Vends the selected product if the balance reaches its price, returning the
+     * last coin inserted if there isn't change.</p>
+     */
+    private CommandResult vendIfBalanceReached(Coin lastCoin) {
+
+        final int priceInCents = catalog.getPriceInCents(currentProduct);
+        if (currentBalanceInCents < priceInCents)
+            return CommandResult.OK;
+
+        final CommandResult result = tryToReleaseProductAndReturnChangeIfRequired(priceInCents);
+        if (result == CommandResult.NO_CHANGE) {
+            // The coin given back must leave the deposit where it was just accumulated
+            coinsDeposit.tryToRelease(lastCoin);
+            rebuildChangeFeasibilityIndex();
+            currentBalanceInCents = currentBalanceInCents - lastCoin.getValueInCents();
+            coinsAtRepaymentPort = Coins.singletonList(lastCoin);
+            metrics.recordCoinOut(lastCoin);
+        }
+
+        return result;
+    }
+
+    private CommandResult vendCashless(Product product, long idempotencyKey) {
+
+        if (idempotencyKey != NO_IDEMPOTENCY_KEY && recentIdempotencyKeys.contains(idempotencyKey))
+            return CommandResult.ALREADY_PAID;
+
+        if (currentProduct != null && currentProduct != product)
+            return CommandResult.PRODUCT_ALREADY_SELECTED;
+
+        if (!productsDeposit.tryToRelease(product).isPresent()) {
+            metrics.recordNoProductStock(product);
+            return CommandResult.NO_PRODUCT_STOCK;
+        }
+
+        if (idempotencyKey != NO_IDEMPOTENCY_KEY)
+            recentIdempotencyKeys.add(idempotencyKey);
+
+        metrics.recordVend(product);
+        productAtTakeoutPort = product;
+        currentProduct = null;
+
+        return CommandResult.OK;
+    }
+
+    private CommandResult select(Product product) {
+
+        if (!productsDeposit.hasType(product)) {
+            metrics.recordNoProductStock(product);
+            return CommandResult.NO_PRODUCT_STOCK;
+        }
+
+        currentProduct = product;
+
+        return CommandResult.OK;
+    }
+
+    private void emit(VendingMachineCommand command, int argument, CommandResult result, VendingMachineState fromState) {
+
+        eventListener.onEvent(
+            VendingMachineEvent.of(command, argument, result, fromState, getState(), currentBalanceInCents)
+        );
+    }
+
+    private void emitWithSameState(VendingMachineCommand command) {
+
+        final VendingMachineState state = getState();
+        eventListener.onEvent(
+            VendingMachineEvent.of(command, 0, CommandResult.OK, state, state, currentBalanceInCents)
+        );
+    }
+
+    private CommandResult tryToReleaseProductAndReturnChangeIfRequired(int priceInCents) {
 
         final Optional<Product> optProduct = productsDeposit.tryToRelease(currentProduct);
-        if (!optProduct.isPresent())
-            throw new NoProductStockException();
+        if (!optProduct.isPresent()) {
+            metrics.recordNoProductStock(currentProduct);
+            return CommandResult.NO_PRODUCT_STOCK;
+        }
 
-        Integer amountToReturnInCents = currentBalanceInCents - currentProduct.getPriceInCents();
+        Integer amountToReturnInCents = currentBalanceInCents - priceInCents;
         if (amountToReturnInCents == 0) {
 
+            metrics.recordVend(currentProduct);
             productAtTakeoutPort = currentProduct;
             currentBalanceInCents = 0;
             currentProduct = null;
@@ -215,46 +923,124 @@ public class VendingMachineImpl implements VendingMachine {
         } else if (amountToReturnInCents > 0) {
 
             final Optional<List<Coin>> optChange = tryToReleaseAmount(amountToReturnInCents);
-            if (!optChange.isPresent())
-                throw new NoChangeException();
+            if (!optChange.isPresent()) {
+                putBackCurrentProduct();
+                metrics.recordNoChange(currentProduct);
+                return CommandResult.NO_CHANGE;
+            }
 
+            metrics.recordVend(currentProduct);
             coinsAtRepaymentPort = optChange.get();
             productAtTakeoutPort = currentProduct;
             currentBalanceInCents = 0;
             currentProduct = null;
         }
+
+        return CommandResult.OK;
     }
 
-    private Optional<List<Coin>> tryToReleaseAmount(Integer amountToProvideInCents) {
+    private void putBackCurrentProduct() {
 
-        // TODO: Try using a declarative approach to see if readability is improved
+        try {
+            productsDeposit.insert(currentProduct, 1);
+        } catch (TypeLimitExceededException e) {
+            // Not possible, the product has just been released
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void insertPayment(List<Coin> payment) {
 
-        List<Coin> availableCoins = new ArrayList<>();
-        final Map<Coin, Integer> countsByCoin = coinsDeposit.getCountsForAllTypes();
-        for (Map.Entry<Coin, Integer> coinIntegerEntry : countsByCoin.entrySet()) {
-            final Coin coin = coinIntegerEntry.getKey();
-            final Integer count = coinIntegerEntry.getValue();
-            for (int i=0; i<count; i++) {
-                availableCoins.add(coin);
+        for (Coin coin : Coins.ALL) {
+            if (paymentCoinCounts[coin.ordinal()] > 0) {
+                try {
+                    coinsDeposit.insert(coin, paymentCoinCounts[coin.ordinal()]);
+                } catch (TypeLimitExceededException e) {
+                    // Not possible, the capacity has just been checked
+                    throw new IllegalStateException(e);
+                }
             }
         }
 
-        final Optional<List<Coin>> optChange =
+        for (Coin coin : payment) {
+            metrics.recordCoinIn(coin);
+            if (changeFeasibilityIndex != null)
+                changeFeasibilityIndex.add(coin);
+        }
+    }
+
+    private void putBackBasketAndReleasePayment(Map<Product, Integer> basket) {
+
+        try {
+            for (Map.Entry<Product, Integer> productIntegerEntry : basket.entrySet()) {
+                if (productIntegerEntry.getValue() > 0)
+                    productsDeposit.insert(productIntegerEntry.getKey(), productIntegerEntry.getValue());
+            }
+        } catch (TypeLimitExceededException e) {
+            // Not possible, the products have just been released
+            throw new IllegalStateException(e);
+        }
+
+        if (!coinsDeposit.tryToReleaseAll(Coins.ALL, paymentCoinCounts))
+            // Not possible, the payment has just been inserted and no change released
+            throw new IllegalStateException();
+
+        rebuildChangeFeasibilityIndex();
+    }
+
+    private Optional<List<Coin>> tryToReleaseAmount(Integer amountToProvideInCents) {
+
+        if (!changeIsPayable(amountToProvideInCents))
+            return Optional.empty();
+
+        coinsDeposit.copyCountsTo(Coins.ALL, availableCoinCounts);
+
+        final boolean changeIsPossible =
             coinsChangeCalculator.calculate(
-                availableCoins,
-                amountToProvideInCents
+                availableCoinCounts,
+                amountToProvideInCents,
+                changeCoinCounts
             );
 
-        if (optChange.isPresent()) {
-            final List<Coin> coinsRequiredForChange = optChange.get();
-            for (Coin coin : coinsRequiredForChange) {
-                final Optional<Coin> optReleasedCoin = coinsDeposit.tryToRelease(coin);
-                if (!optReleasedCoin.isPresent())
-                    return Optional.empty();
+        if (changeIsPossible && coinsDeposit.tryToReleaseAll(Coins.ALL, changeCoinCounts)) {
+            metrics.recordCoinsOut(changeCoinCounts);
+            if (changeFeasibilityIndex != null) {
+                for (int i = 0; i < Coins.COUNT; i++) {
+                    availableCoinCounts[i] -= changeCoinCounts[i];
+                }
+                changeFeasibilityIndex.rebuild(availableCoinCounts);
             }
-            return Optional.of(coinsRequiredForChange);
+            return Optional.of(Coins.toList(changeCoinCounts));
         }
 
         return Optional.empty();
     }
+
+    /**
+     * @return false only if the {@link ChangeFeasibilityIndex} knows the amount can't
+     *         be paid with the coins deposit.
+     */
+    private boolean changeIsPayable(int amountInCents) {
+
+        return amountInCents <= 0 || changeFeasibilityIndex == null || changeFeasibilityIndex.canPay(amountInCents);
+    }
+
+    private void rebuildChangeFeasibilityIndex() {
+
+        if (changeFeasibilityIndex != null) {
+            coinsDeposit.copyCountsTo(Coins.ALL, availableCoinCounts);
+            changeFeasibilityIndex.rebuild(availableCoinCounts);
+        }
+    }
+
+    private long startNanos() {
+
+        return metricsEnabled ? System.nanoTime() : 0;
+    }
+
+    private void recordLatency(VendingMachineCommand command, long startNanos) {
+
+        if (metricsEnabled)
+            metrics.recordCommandLatency(command, System.nanoTime() - startNanos);
+    }
 }
@@ -0,0 +1,304 @@
+package com.jcsastre.vendingmachine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Immutable copy of the state of a {@link VendingMachineImpl}, taken with
+ * {@link VendingMachineImpl#takeSnapshot(long)} and loaded with
+ * {@link VendingMachineImpl#restore(VendingMachineSnapshot)}.</p>
+ *
+ * <p>It also holds the position of the {@link CommandJournal} when it was taken, so
+ * recovering only requires to replay the commands appended after it.</p>
+ *
+ * <p>It is stored with a versioned and fixed layout of big-endian values, ending with
+ * a CRC32 of the previous bytes:</p>
+ *
+ * <pre>
+ * int     magic
+ * int     version
+ * long    journal position
+ * int     coin types count (n)
+ * int     product types count (m)
+ * int[n]  coins deposit counts, by coin ordinal
+ * int[m]  products deposit counts, by product ordinal
+ * int     balance in cents
+ * int     selected product ordinal or -1
+ * int     product ordinal at the takeout port or -1
+ * int[n]  coin counts at the repayment port, by coin ordinal
+ * int[m]  product counts of the basket at the takeout port, by product ordinal
+ * int[m]  prices in cents of the {@link Catalog}, by product ordinal
+ * long[k] idempotency keys of the recent cashless payments, oldest first, padded
+ *         with {@link VendingMachine#NO_IDEMPOTENCY_KEY}
+ * int     CRC32
+ * </pre>
+ *
+ * <p>The idempotency keys are kept so a payment retried after recovering or taking
+ * over from another board isn't vended twice.</p>
+ */
+public final class VendingMachineSnapshot {
+
+    private static final int MAGIC = 0x564D534E;
+    private static final int VERSION = 4;
+
+    private static final Product[] PRODUCTS = Product.values();
+
+    public static final int SIZE =
+        4 + 4 + 8 + 4 + 4 + 4 * Coins.COUNT + 4 * PRODUCTS.length + 4 + 4 + 4 + 4 * Coins.COUNT
+            + 4 * PRODUCTS.length + 4 * PRODUCTS.length + 8 * RecentIdempotencyKeys.CAPACITY + 4;
+
+    private final long journalPosition;
+    private final int[] coinCounts;
+    private final int[] productCounts;
+    private final int balanceInCents;
+    private final Product currentProduct;
+    private final Product productAtTakeoutPort;
+    private final int[] coinCountsAtRepaymentPort;
+    private final int[] basketAtTakeoutPort;
+    private final int[] pricesInCents;
+    private final long[] recentIdempotencyKeys;
+
+    VendingMachineSnapshot(
+        long journalPosition,
+        int[] coinCounts,
+        int[] productCounts,
+        int balanceInCents,
+        Product currentProduct,
+        Product productAtTakeoutPort,
+        int[] coinCountsAtRepaymentPort,
+        int[] basketAtTakeoutPort,
+        int[] pricesInCents,
+        long[] recentIdempotencyKeys
+    ) {
+
+        this.journalPosition = journalPosition;
+        this.coinCounts = coinCounts;
+        this.productCounts = productCounts;
+        this.balanceInCents = balanceInCents;
+        this.currentProduct = currentProduct;
+        this.productAtTakeoutPort = productAtTakeoutPort;
+        this.coinCountsAtRepaymentPort = coinCountsAtRepaymentPort;
+        this.basketAtTakeoutPort = basketAtTakeoutPort;
+        this.pricesInCents = pricesInCents;
+        this.recentIdempotencyKeys = recentIdempotencyKeys;
+    }
+
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    int[] getCoinCounts() {
+        return coinCounts;
+    }
+
+    int[] getProductCounts() {
+        return productCounts;
+    }
+
+    int getBalanceInCents() {
+        return balanceInCents;
+    }
+
+    Product getCurrentProduct() {
+        return currentProduct;
+    }
+
+    Product getProductAtTakeoutPort() {
+        return productAtTakeoutPort;
+    }
+
+    int[] getCoinCountsAtRepaymentPort() {
+        return coinCountsAtRepaymentPort;
+    }
+
+    int[] getBasketAtTakeoutPort() {
+        return basketAtTakeoutPort;
+    }
+
+    int[] getPricesInCents() {
+        return pricesInCents;
+    }
+
+    long[] getRecentIdempotencyKeys() {
+        return recentIdempotencyKeys;
+    }
+
+    /**
+     * <p>Writes the snapshot into a buffer, which must have {@link #SIZE} bytes remaining.</p>
+     */
+    public void writeTo(ByteBuffer buffer) {
+
+        final int start = buffer.position();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(journalPosition);
+        buffer.putInt(coinCounts.length);
+        buffer.putInt(productCounts.length);
+        putAll(buffer, coinCounts);
+        putAll(buffer, productCounts);
+        buffer.putInt(balanceInCents);
+        buffer.putInt(currentProduct != null ? currentProduct.ordinal() : -1);
+        buffer.putInt(productAtTakeoutPort != null ? productAtTakeoutPort.ordinal() : -1);
+        putAll(buffer, coinCountsAtRepaymentPort);
+        putAll(buffer, basketAtTakeoutPort);
+        putAll(buffer, pricesInCents);
+        for (long recentIdempotencyKey : recentIdempotencyKeys) {
+            buffer.putLong(recentIdempotencyKey);
+        }
+
+        buffer.putInt(crc32(buffer, start, buffer.position()));
+    }
+
+    /**
+     * <p>Reads a snapshot from a buffer.</p>
+     *
+     * @throws IOException if the buffer doesn't hold a valid snapshot of this version.
+     */
+    public static VendingMachineSnapshot readFrom(ByteBuffer buffer) throws IOException {
+
+        final int start = buffer.position();
+        if (buffer.remaining() < SIZE
+            || buffer.getInt() != MAGIC
+            || buffer.getInt() != VERSION)
+            throw new IOException("Not a vending machine snapshot of version " + VERSION);
+
+        final long journalPosition = buffer.getLong();
+        if (buffer.getInt() != Coins.COUNT || buffer.getInt() != PRODUCTS.length)
+            throw new IOException("Snapshot of a different set of coins or products");
+
+        final int[] coinCounts = getAll(buffer, new int[Coins.COUNT]);
+        final int[] productCounts = getAll(buffer, new int[PRODUCTS.length]);
+        final int balanceInCents = buffer.getInt();
+        final Product currentProduct = productOf(buffer.getInt());
+        final Product productAtTakeoutPort = productOf(buffer.getInt());
+        final int[] coinCountsAtRepaymentPort = getAll(buffer, new int[Coins.COUNT]);
+        final int[] basketAtTakeoutPort = getAll(buffer, new int[PRODUCTS.length]);
+        final int[] pricesInCents = getAll(buffer, new int[PRODUCTS.length]);
+        for (int priceInCents : pricesInCents) {
+            if (!Catalog.isValidPrice(priceInCents))
+                throw new IOException("Corrupted snapshot");
+        }
+        final long[] recentIdempotencyKeys = new long[RecentIdempotencyKeys.CAPACITY];
+        for (int i = 0; i < recentIdempotencyKeys.length; i++) {
+            recentIdempotencyKeys[i] = buffer.getLong();
+        }
+
+        if (buffer.getInt() != crc32(buffer, start, buffer.position() - 4))
+            throw new IOException("Corrupted snapshot");
+
+        return new VendingMachineSnapshot(
+            journalPosition, coinCounts, productCounts, balanceInCents,
+            currentProduct, productAtTakeoutPort, coinCountsAtRepaymentPort, basketAtTakeoutPort,
+            pricesInCents, recentIdempotencyKeys
+        );
+    }
+
+    /**
+     * <p>Writes the snapshot into a file, replacing it atomically once the new content
+     * is on disk, so a crash leaves either the previous snapshot or this one.</p>
+     */
+    public void write(Path file) throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        writeTo(buffer);
+        buffer.flip();
+
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel fileChannel = FileChannel.open(
+            temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        )) {
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+            fileChannel.force(true);
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the snapshot stored in a file.
+     * @throws IOException if the file doesn't hold a valid snapshot of this version.
+     */
+    public static VendingMachineSnapshot read(Path file) throws IOException {
+
+        return readFrom(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    private static void putAll(ByteBuffer buffer, int[] values) {
+
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+    }
+
+    private static int[] getAll(ByteBuffer buffer, int[] values) {
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt();
+        }
+
+        return values;
+    }
+
+    private static Product productOf(int ordinal) throws IOException {
+
+        if (ordinal < -1 || ordinal >= PRODUCTS.length)
+            throw new IOException("Corrupted snapshot");
+
+        return ordinal >= 0 ? PRODUCTS[ordinal] : null;
+    }
+
+    private static int crc32(ByteBuffer buffer, int start, int end) {
+
+        final CRC32 crc32 = new CRC32();
+        for (int i = start; i < end; i++) {
+            crc32.update(buffer.get(i));
+        }
+
+        return (int) crc32.getValue();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final VendingMachineSnapshot that = (VendingMachineSnapshot) o;
+
+        return journalPosition == that.journalPosition
+            && balanceInCents == that.balanceInCents
+            && Arrays.equals(coinCounts, that.coinCounts)
+            && Arrays.equals(productCounts, that.productCounts)
+            && currentProduct == that.currentProduct
+            && productAtTakeoutPort == that.productAtTakeoutPort
+            && Arrays.equals(coinCountsAtRepaymentPort, that.coinCountsAtRepaymentPort)
+            && Arrays.equals(basketAtTakeoutPort, that.basketAtTakeoutPort)
+            && Arrays.equals(pricesInCents, that.pricesInCents)
+            && Arrays.equals(recentIdempotencyKeys, that.recentIdempotencyKeys);
+    }
+
+    @Override
+    public int hashCode() {
+
+        int result = Long.hashCode(journalPosition);
+        result = 31 * result + Arrays.hashCode(coinCounts);
+        result = 31 * result + Arrays.hashCode(productCounts);
+        result = 31 * result + balanceInCents;
+        result = 31 * result + Arrays.hashCode(coinCountsAtRepaymentPort);
+        result = 31 * result + Arrays.hashCode(basketAtTakeoutPort);
+        result = 31 * result + Arrays.hashCode(pricesInCents);
+        result = 31 * result + Arrays.hashCode(recentIdempotencyKeys);
+
+        return result;
+    }
+}
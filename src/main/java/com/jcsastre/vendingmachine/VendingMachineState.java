@@ -0,0 +1,42 @@
+package com.jcsastre.vendingmachine;
+
+/**
+ * <p>States of a vending machine, by whether a product is selected and whether there
+ * is balance. The takeout and repayment ports don't take part: they are collected the
+ * same way in every state.</p>
+ *
+ * <p>The ordinal is a two bit code, product selected and balance, so the state of a
+ * machine is derived from its selected product and balance without branching.</p>
+ */
+public enum VendingMachineState {
+
+    IDLE,
+    BALANCE,
+    PRODUCT_SELECTED,
+    PRODUCT_SELECTED_WITH_BALANCE;
+
+    private static final VendingMachineState[] ALL = values();
+
+    public static VendingMachineState of(Product selectedProduct, int balanceInCents) {
+
+        return ALL[(selectedProduct != null ? 2 : 0) | (balanceInCents > 0 ? 1 : 0)];
+    }
+
+    /**
+     * @return the state with the given ordinal.
+     */
+    public static VendingMachineState ofOrdinal(int ordinal) {
+
+        return ALL[ordinal];
+    }
+
+    public boolean isProductSelected() {
+
+        return (ordinal() & 2) != 0;
+    }
+
+    public boolean hasBalance() {
+
+        return (ordinal() & 1) != 0;
+    }
+}
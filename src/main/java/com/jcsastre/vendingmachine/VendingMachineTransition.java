@@ -0,0 +1,118 @@
+package com.jcsastre.vendingmachine;
+
+/**
+ * <p>What a {@link VendingMachineCommand} does in each {@link VendingMachineState},
+ * looked up in a table precomputed for every state and command, so the commands
+ * dispatch with a single switch instead of checking the selected product and the
+ * balance.</p>
+ *
+ * <pre>
+ *                  IDLE             BALANCE          PRODUCT_SELECTED   PRODUCT_SELECTED_WITH_BALANCE
+ * INSERT_COIN      ACCUMULATE_COIN  ACCUMULATE_COIN  ACCUMULATE_COIN_AND_VEND
+ * SELECT_PRODUCT   SELECT           SELECT_AND_VEND  REJECT_PRODUCT_ALREADY_SELECTED
+ * CANCEL           NONE             REFUND           DESELECT           REFUND
+ * PAY_CASHLESS     VEND_CASHLESS in every state
+ * RESET            RESET in every state
+ * COLLECT_PRODUCT  COLLECT_PRODUCT in every state
+ * COLLECT_COINS    COLLECT_COINS in every state
+ * VEND_BASKET      VEND_BASKET      VEND_BASKET      REJECT_PRODUCT_ALREADY_SELECTED
+ * COLLECT_BASKET   COLLECT_BASKET in every state
+ * SET_CATALOG      SET_CATALOG in every state
+ * RESTOCK          RESTOCK in every state
+ * </pre>
+ */
+public enum VendingMachineTransition {
+
+    NONE,
+
+    /**
+     * <p>Adds the coin to the balance.</p>
+     */
+    ACCUMULATE_COIN,
+
+    /**
+     * <p>Adds the coin to the balance, vending the selected product if it is reached.</p>
+     */
+    ACCUMULATE_COIN_AND_VEND,
+
+    /**
+     * <p>Selects the product.</p>
+     */
+    SELECT,
+
+    /**
+     * <p>Selects the product, vending it if the balance reaches its price.</p>
+     */
+    SELECT_AND_VEND,
+
+    REJECT_PRODUCT_ALREADY_SELECTED,
+
+    /**
+     * <p>Unselects the product.</p>
+     */
+    DESELECT,
+
+    /**
+     * <p>Returns the balance and unselects the product.</p>
+     */
+    REFUND,
+
+    VEND_CASHLESS,
+    RESET,
+    COLLECT_PRODUCT,
+    COLLECT_COINS,
+
+    /**
+     * <p>Vends a basket paid with the balance and its payment.</p>
+     */
+    VEND_BASKET,
+
+    COLLECT_BASKET,
+
+    /**
+     * <p>Replaces the prices, keeping the selected product and the balance.</p>
+     */
+    SET_CATALOG,
+
+    /**
+     * <p>Brings the deposits to their stock levels, keeping the selected product and
+     * the balance.</p>
+     */
+    RESTOCK;
+
+    private static final VendingMachineTransition[][] TABLE = table();
+
+    public static VendingMachineTransition of(VendingMachineState state, VendingMachineCommand command) {
+
+        return TABLE[state.ordinal()][command.ordinal()];
+    }
+
+    private static VendingMachineTransition[][] table() {
+
+        final VendingMachineTransition[][] table =
+            new VendingMachineTransition[VendingMachineState.values().length][VendingMachineCommand.values().length];
+
+        for (VendingMachineState state : VendingMachineState.values()) {
+
+            final VendingMachineTransition[] row = table[state.ordinal()];
+
+            row[VendingMachineCommand.INSERT_COIN.ordinal()] =
+                state.isProductSelected() ? ACCUMULATE_COIN_AND_VEND : ACCUMULATE_COIN;
+            row[VendingMachineCommand.SELECT_PRODUCT.ordinal()] =
+                state.isProductSelected() ? REJECT_PRODUCT_ALREADY_SELECTED : state.hasBalance() ? SELECT_AND_VEND : SELECT;
+            row[VendingMachineCommand.CANCEL.ordinal()] =
+                state.hasBalance() ? REFUND : state.isProductSelected() ? DESELECT : NONE;
+            row[VendingMachineCommand.PAY_CASHLESS.ordinal()] = VEND_CASHLESS;
+            row[VendingMachineCommand.RESET.ordinal()] = RESET;
+            row[VendingMachineCommand.COLLECT_PRODUCT.ordinal()] = COLLECT_PRODUCT;
+            row[VendingMachineCommand.COLLECT_COINS.ordinal()] = COLLECT_COINS;
+            row[VendingMachineCommand.VEND_BASKET.ordinal()] =
+                state.isProductSelected() ? REJECT_PRODUCT_ALREADY_SELECTED : VEND_BASKET;
+            row[VendingMachineCommand.COLLECT_BASKET.ordinal()] = COLLECT_BASKET;
+            row[VendingMachineCommand.SET_CATALOG.ordinal()] = SET_CATALOG;
+            row[VendingMachineCommand.RESTOCK.ordinal()] = RESTOCK;
+        }
+
+        return table;
+    }
+}
@@ -0,0 +1,4 @@
+package com.jcsastre.vendingmachine.exception;
+
+public class InsufficientBalanceException extends Exception {
+}
@@ -0,0 +1,41 @@
+package com.jcsastre.vendingmachine.forecast;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Fixed layout of the vend and coin flow events of a fleet, as stored in the
+ * history files consumed by {@link FleetDemandForecaster#consume(java.nio.channels.ReadableByteChannel)}.</p>
+ *
+ * <p>Each event is a record of {@link #RECORD_SIZE} big-endian bytes:</p>
+ *
+ * <pre>
+ * long   time in millis
+ * int    machine id
+ * byte   kind: {@link #VEND}, {@link #COIN_IN} or {@link #COIN_OUT}
+ * byte   product or coin ordinal
+ * short  count
+ * </pre>
+ */
+public final class DemandHistory {
+
+    public static final int RECORD_SIZE = 8 + 4 + 1 + 1 + 2;
+
+    public static final byte VEND = 1;
+    public static final byte COIN_IN = 2;
+    public static final byte COIN_OUT = 3;
+
+    private DemandHistory() {
+    }
+
+    /**
+     * <p>Writes an event at the position of the buffer.</p>
+     */
+    public static void put(ByteBuffer buffer, long millis, int machine, byte kind, int ordinal, int count) {
+
+        buffer.putLong(millis);
+        buffer.putInt(machine);
+        buffer.put(kind);
+        buffer.put((byte) ordinal);
+        buffer.putShort((short) count);
+    }
+}
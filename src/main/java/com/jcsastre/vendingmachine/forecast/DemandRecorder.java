@@ -0,0 +1,180 @@
+package com.jcsastre.vendingmachine.forecast;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.VendingMachineCommand;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Metrics of a vending machine feeding its vends and coin flows, as they happen,
+ * to a {@link FleetDemandForecaster}. All the events are also passed to other
+ * metrics, so the machine can still be measured.</p>
+ *
+ * <p>Coins inserted and then returned, as when a product is canceled, go both in and
+ * out, so they don't change the net flow of coins.</p>
+ *
+ * <p>The forecaster isn't thread-safe and the machines of a fleet run on different
+ * threads, so the events are queued in the recorder of each machine, with the time
+ * they happened, and recorded in the forecaster only by {@link #drain()}, called
+ * by the thread that owns the forecaster. Queueing takes a lock of the recorder,
+ * never contended by other machines. When the queue is full, the events are
+ * dropped and counted by {@link #getDroppedCount()}.</p>
+ */
+public class DemandRecorder implements VendingMachineMetrics {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final FleetDemandForecaster forecaster;
+    private final int machine;
+    private final LongSupplier clockMillis;
+    private final VendingMachineMetrics metrics;
+
+    // Guarded by this, swapped with the drained ones by drain
+    private long[] pendingMillis;
+    private int[] pendingEvents;
+    private int pendingCount;
+    private long droppedCount;
+
+    // Owned by the thread draining
+    private long[] drainedMillis;
+    private int[] drainedEvents;
+
+    public DemandRecorder(FleetDemandForecaster forecaster, int machine) {
+
+        this(forecaster, machine, System::currentTimeMillis, VendingMachineMetrics.NONE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param clockMillis the current time in millis of the events.
+     * @param metrics the metrics all the events are also passed to.
+     * @param capacity the events queued until the next {@link #drain()}.
+     */
+    public DemandRecorder(
+        FleetDemandForecaster forecaster,
+        int machine,
+        LongSupplier clockMillis,
+        VendingMachineMetrics metrics,
+        int capacity
+    ) {
+
+        this.forecaster = forecaster;
+        this.machine = machine;
+        this.clockMillis = clockMillis;
+        this.metrics = metrics;
+        this.pendingMillis = new long[capacity];
+        this.pendingEvents = new int[capacity];
+        this.drainedMillis = new long[capacity];
+        this.drainedEvents = new int[capacity];
+    }
+
+    /**
+     * <p>Records the queued events in the forecaster. Must be called by the only
+     * thread using the forecaster.</p>
+     *
+     * @return the count of events recorded.
+     */
+    public int drain() {
+
+        final long[] millis = drainedMillis;
+        final int[] events = drainedEvents;
+        final int count;
+        synchronized (this) {
+            count = pendingCount;
+            drainedMillis = pendingMillis;
+            drainedEvents = pendingEvents;
+            pendingMillis = millis;
+            pendingEvents = events;
+            pendingCount = 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            final int event = drainedEvents[i];
+            forecaster.record(drainedMillis[i], machine, (byte) (event >>> 24), event >>> 16 & 0xFF, event & 0xFFFF);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the count of events dropped because the queue was full.
+     */
+    public synchronized long getDroppedCount() {
+
+        return droppedCount;
+    }
+
+    @Override
+    public void recordCommandLatency(VendingMachineCommand command, long latencyNanos) {
+
+        metrics.recordCommandLatency(command, latencyNanos);
+    }
+
+    @Override
+    public void recordVend(Product product) {
+
+        enqueue(DemandHistory.VEND, product.ordinal(), 1);
+        metrics.recordVend(product);
+    }
+
+    @Override
+    public void recordCoinIn(Coin coin) {
+
+        enqueue(DemandHistory.COIN_IN, coin.ordinal(), 1);
+        metrics.recordCoinIn(coin);
+    }
+
+    @Override
+    public void recordCoinOut(Coin coin) {
+
+        enqueue(DemandHistory.COIN_OUT, coin.ordinal(), 1);
+        metrics.recordCoinOut(coin);
+    }
+
+    @Override
+    public void recordCoinsOut(int[] coinCounts) {
+
+        synchronized (this) {
+            for (int i = 0; i < coinCounts.length; i++) {
+                if (coinCounts[i] > 0)
+                    enqueue(DemandHistory.COIN_OUT, i, coinCounts[i]);
+            }
+        }
+        metrics.recordCoinsOut(coinCounts);
+    }
+
+    @Override
+    public void recordNoChange(Product product) {
+
+        metrics.recordNoChange(product);
+    }
+
+    @Override
+    public void recordNoProductStock(Product product) {
+
+        metrics.recordNoProductStock(product);
+    }
+
+    @Override
+    public void recordDepositCoinOverflow(Coin coin) {
+
+        metrics.recordDepositCoinOverflow(coin);
+    }
+
+    /**
+     * <p>The time is taken holding the lock, so the events of the machine are queued
+     * in time order.</p>
+     */
+    private synchronized void enqueue(byte kind, int ordinal, int count) {
+
+        if (pendingCount == pendingMillis.length) {
+            droppedCount++;
+            return;
+        }
+
+        pendingMillis[pendingCount] = clockMillis.getAsLong();
+        pendingEvents[pendingCount] = kind << 24 | ordinal << 16 | Math.min(count, 0xFFFF);
+        pendingCount++;
+    }
+}
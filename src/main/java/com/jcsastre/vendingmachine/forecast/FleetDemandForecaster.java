@@ -0,0 +1,230 @@
+package com.jcsastre.vendingmachine.forecast;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * <p>Streaming estimate of the demand of each product and the coin flows of each
+ * machine of a fleet, to predict when the products and the coins of a machine will
+ * run out or the coins overflow, and which machines the refill trucks must visit.</p>
+ *
+ * <p>Each rate is an exponentially decayed count of events: on every event the count
+ * decays by exp(-elapsed / tau) and the new events are added, so the recent history
+ * weighs more and old one fades out with the given half-life. At a steady rate r the
+ * count tends to r * tau.</p>
+ *
+ * <p>Memory is bounded by the fleet size, not by the history: a few doubles per
+ * product and coin of each machine, in flat arrays indexed by machine id. A year of
+ * fleet events is consumed in a single pass through a fixed size buffer with
+ * {@link #consume(ReadableByteChannel)}, or live from each machine with a
+ * {@link DemandRecorder}, which queues the events of its machine until
+ * {@link DemandRecorder#drain()}.</p>
+ *
+ * <p>Events of a machine must come in time order. Not thread-safe: recording and
+ * querying, including draining the recorders, must be done by a single thread.</p>
+ */
+public class FleetDemandForecaster {
+
+    private static final Product[] PRODUCTS = Product.values();
+    private static final Coin[] COINS = Coin.values();
+
+    private static final int VENDS = 0;
+    private static final int COINS_IN = VENDS + PRODUCTS.length;
+    private static final int COINS_OUT = COINS_IN + COINS.length;
+    private static final int SERIES = COINS_OUT + COINS.length;
+
+    private static final double MILLIS_PER_HOUR = 3_600_000;
+
+    private static final int BUFFER_RECORDS = 64 * 1024;
+
+    private final int machinesCount;
+    private final double tauMillis;
+
+    private final double[] decayedCounts;
+    private final long[] lastMillis;
+
+    /**
+     * @param machinesCount the size of the fleet, machine ids go from zero to it.
+     * @param halfLifeMillis time for an event to weigh half.
+     */
+    public FleetDemandForecaster(int machinesCount, long halfLifeMillis) {
+
+        this.machinesCount = machinesCount;
+        this.tauMillis = halfLifeMillis / Math.log(2);
+        this.decayedCounts = new double[machinesCount * SERIES];
+        this.lastMillis = new long[machinesCount];
+    }
+
+    public int getMachinesCount() {
+
+        return machinesCount;
+    }
+
+    /**
+     * @param kind {@link DemandHistory#VEND}, {@link DemandHistory#COIN_IN} or
+     *        {@link DemandHistory#COIN_OUT}.
+     * @param ordinal the product or coin ordinal.
+     */
+    public void record(long millis, int machine, byte kind, int ordinal, int count) {
+
+        decayTo(machine, millis);
+
+        final int series = kind == DemandHistory.VEND ? VENDS : kind == DemandHistory.COIN_IN ? COINS_IN : COINS_OUT;
+        decayedCounts[machine * SERIES + series + ordinal] += count;
+    }
+
+    /**
+     * <p>Records all the events of a history, in the {@link DemandHistory} layout.</p>
+     *
+     * @return the count of events recorded.
+     */
+    public long consume(ReadableByteChannel channel) throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * DemandHistory.RECORD_SIZE);
+
+        long events = 0;
+        while (channel.read(buffer) >= 0) {
+
+            buffer.flip();
+            while (buffer.remaining() >= DemandHistory.RECORD_SIZE) {
+                record(buffer.getLong(), buffer.getInt(), buffer.get(), buffer.get(), buffer.getShort());
+                events++;
+            }
+            buffer.compact();
+        }
+
+        return events;
+    }
+
+    public double getVendsPerHour(int machine, Product product, long nowMillis) {
+
+        return ratePerHour(machine, VENDS + product.ordinal(), nowMillis);
+    }
+
+    public double getCoinsInPerHour(int machine, Coin coin, long nowMillis) {
+
+        return ratePerHour(machine, COINS_IN + coin.ordinal(), nowMillis);
+    }
+
+    public double getCoinsOutPerHour(int machine, Coin coin, long nowMillis) {
+
+        return ratePerHour(machine, COINS_OUT + coin.ordinal(), nowMillis);
+    }
+
+    /**
+     * @return the hours until the product runs out, or infinity if it isn't vended.
+     */
+    public double getHoursUntilStockout(int machine, Product product, int count, long nowMillis) {
+
+        return hoursUntil(count, getVendsPerHour(machine, product, nowMillis));
+    }
+
+    /**
+     * @return the hours until the coin runs out, or infinity if more coins go in
+     *         than out.
+     */
+    public double getHoursUntilCoinsRunOut(int machine, Coin coin, int count, long nowMillis) {
+
+        return hoursUntil(count, getCoinsOutPerHour(machine, coin, nowMillis) - getCoinsInPerHour(machine, coin, nowMillis));
+    }
+
+    /**
+     * @return the hours until the coin overflows its capacity, or infinity if more
+     *         coins go out than in.
+     */
+    public double getHoursUntilCoinsOverflow(int machine, Coin coin, int count, int capacity, long nowMillis) {
+
+        return hoursUntil(capacity - count, getCoinsInPerHour(machine, coin, nowMillis) - getCoinsOutPerHour(machine, coin, nowMillis));
+    }
+
+    /**
+     * @return the hours until any product or coin of the machine runs out or any coin
+     *         overflows.
+     */
+    public double getHoursUntilRestockRequired(
+        int machine,
+        int[] productCounts,
+        int[] coinCounts,
+        int coinsCapacity,
+        long nowMillis
+    ) {
+
+        double hours = Double.POSITIVE_INFINITY;
+        for (Product product : PRODUCTS) {
+            hours = Math.min(hours, getHoursUntilStockout(machine, product, productCounts[product.ordinal()], nowMillis));
+        }
+        for (Coin coin : COINS) {
+            final int count = coinCounts[coin.ordinal()];
+            hours = Math.min(hours, getHoursUntilCoinsRunOut(machine, coin, count, nowMillis));
+            hours = Math.min(hours, getHoursUntilCoinsOverflow(machine, coin, count, coinsCapacity, nowMillis));
+        }
+
+        return hours;
+    }
+
+    /**
+     * <p>Plans the machines to visit: the ones requiring a restock within the horizon,
+     * the most urgent first.</p>
+     *
+     * @param productCounts the product counts of a machine, by product ordinal.
+     * @param coinCounts the coin counts of a machine, by coin ordinal.
+     */
+    public int[] planRestockRoute(
+        double horizonHours,
+        IntFunction<int[]> productCounts,
+        IntFunction<int[]> coinCounts,
+        int coinsCapacity,
+        long nowMillis
+    ) {
+
+        final double[] hours = new double[machinesCount];
+        int selected = 0;
+        final int[] machines = new int[machinesCount];
+        for (int machine = 0; machine < machinesCount; machine++) {
+            hours[machine] = getHoursUntilRestockRequired(
+                machine, productCounts.apply(machine), coinCounts.apply(machine), coinsCapacity, nowMillis
+            );
+            if (hours[machine] <= horizonHours)
+                machines[selected++] = machine;
+        }
+
+        return Arrays.stream(machines, 0, selected)
+            .boxed()
+            .sorted((a, b) -> Double.compare(hours[a], hours[b]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    private void decayTo(int machine, long millis) {
+
+        final long elapsedMillis = millis - lastMillis[machine];
+        if (elapsedMillis <= 0)
+            return;
+
+        final double decay = Math.exp(-elapsedMillis / tauMillis);
+        final int offset = machine * SERIES;
+        for (int i = offset; i < offset + SERIES; i++) {
+            decayedCounts[i] *= decay;
+        }
+        lastMillis[machine] = millis;
+    }
+
+    private double ratePerHour(int machine, int series, long nowMillis) {
+
+        final long elapsedMillis = Math.max(0, nowMillis - lastMillis[machine]);
+        final double decayedCount = decayedCounts[machine * SERIES + series] * Math.exp(-elapsedMillis / tauMillis);
+
+        return decayedCount / tauMillis * MILLIS_PER_HOUR;
+    }
+
+    private static double hoursUntil(int count, double ratePerHour) {
+
+        return ratePerHour > 0 ? Math.max(0, count) / ratePerHour : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,121 @@
+package com.jcsastre.vendingmachine.metrics;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.VendingMachineCommand;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Thread-safe and lock-free {@link VendingMachineMetrics}: a
+ * {@link LatencyHistogram} per command and atomic counters indexed by the ordinal of
+ * the product or the coin. Recording never allocates nor blocks, and may be shared
+ * by several vending machines.</p>
+ *
+ * <p>{@link #snapshot()} copies all of them so they can be polled by another thread.</p>
+ */
+public class AtomicVendingMachineMetrics implements VendingMachineMetrics {
+
+    private static final int COMMANDS = VendingMachineCommand.values().length;
+    private static final int PRODUCTS = Product.values().length;
+    private static final int COINS = Coin.values().length;
+
+    private final LatencyHistogram[] latencyHistograms = new LatencyHistogram[COMMANDS];
+
+    private final AtomicLongArray vends = new AtomicLongArray(PRODUCTS);
+    private final AtomicLongArray coinsIn = new AtomicLongArray(COINS);
+    private final AtomicLongArray coinsOut = new AtomicLongArray(COINS);
+    private final AtomicLongArray noChanges = new AtomicLongArray(PRODUCTS);
+    private final AtomicLongArray noProductStocks = new AtomicLongArray(PRODUCTS);
+    private final AtomicLongArray depositCoinOverflows = new AtomicLongArray(COINS);
+
+    public AtomicVendingMachineMetrics() {
+
+        for (int i = 0; i < COMMANDS; i++) {
+            latencyHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void recordCommandLatency(VendingMachineCommand command, long latencyNanos) {
+
+        latencyHistograms[command.ordinal()].record(latencyNanos);
+    }
+
+    @Override
+    public void recordVend(Product product) {
+
+        vends.incrementAndGet(product.ordinal());
+    }
+
+    @Override
+    public void recordCoinIn(Coin coin) {
+
+        coinsIn.incrementAndGet(coin.ordinal());
+    }
+
+    @Override
+    public void recordCoinOut(Coin coin) {
+
+        coinsOut.incrementAndGet(coin.ordinal());
+    }
+
+    @Override
+    public void recordCoinsOut(int[] coinCounts) {
+
+        for (int i = 0; i < COINS; i++) {
+            if (coinCounts[i] > 0)
+                coinsOut.addAndGet(i, coinCounts[i]);
+        }
+    }
+
+    @Override
+    public void recordNoChange(Product product) {
+
+        noChanges.incrementAndGet(product.ordinal());
+    }
+
+    @Override
+    public void recordNoProductStock(Product product) {
+
+        noProductStocks.incrementAndGet(product.ordinal());
+    }
+
+    @Override
+    public void recordDepositCoinOverflow(Coin coin) {
+
+        depositCoinOverflows.incrementAndGet(coin.ordinal());
+    }
+
+    /**
+     * <p>Copies all the metrics. Each one is copied atomically, but events recorded
+     * meanwhile may be included in some of them only.</p>
+     */
+    public MetricsSnapshot snapshot() {
+
+        final HistogramSnapshot[] histogramSnapshots = new HistogramSnapshot[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            histogramSnapshots[i] = latencyHistograms[i].snapshot();
+        }
+
+        return new MetricsSnapshot(
+            histogramSnapshots,
+            copyOf(vends),
+            copyOf(coinsIn),
+            copyOf(coinsOut),
+            copyOf(noChanges),
+            copyOf(noProductStocks),
+            copyOf(depositCoinOverflows)
+        );
+    }
+
+    private static long[] copyOf(AtomicLongArray atomicLongArray) {
+
+        final long[] copy = new long[atomicLongArray.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = atomicLongArray.get(i);
+        }
+
+        return copy;
+    }
+}
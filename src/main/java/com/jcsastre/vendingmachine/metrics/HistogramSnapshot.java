@@ -0,0 +1,59 @@
+package com.jcsastre.vendingmachine.metrics;
+
+/**
+ * <p>Immutable copy of the counts of a {@link LatencyHistogram}.</p>
+ *
+ * <p>Values are reported as the highest value of their bucket, so they are never
+ * underestimated.</p>
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long totalCount;
+
+    HistogramSnapshot(long[] counts) {
+
+        this.counts = counts;
+
+        long totalCount = 0;
+        for (long count : counts) {
+            totalCount += count;
+        }
+        this.totalCount = totalCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the value below or equal to which are the given percentile of the
+     *         recorded values, or zero if there are none.
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (totalCount == 0)
+            return 0;
+
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= countAtPercentile)
+                return LatencyHistogram.highestValueAt(i);
+        }
+
+        return LatencyHistogram.highestValueAt(counts.length - 1);
+    }
+
+    public long getMaxValue() {
+
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0)
+                return LatencyHistogram.highestValueAt(i);
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.jcsastre.vendingmachine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Lock-free histogram of non negative values, with log-linear buckets in the style
+ * of HdrHistogram: every power of two range is split in {@link #SUB_BUCKETS} linear
+ * buckets, so a value is counted with a relative error below 1/16 and the whole long
+ * range needs under a thousand counters.</p>
+ *
+ * <p>Recording is a single atomic increment, it never allocates nor blocks.</p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below 2 * SUB_BUCKETS have a bucket each
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long value) {
+
+        counts.incrementAndGet(index(Math.max(0, value)));
+    }
+
+    /**
+     * <p>Copies the counts. Values recorded meanwhile may be partially included.</p>
+     */
+    public HistogramSnapshot snapshot() {
+
+        final long[] countsCopy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            countsCopy[i] = counts.get(i);
+        }
+
+        return new HistogramSnapshot(countsCopy);
+    }
+
+    static int index(long value) {
+
+        if (value < LINEAR_LIMIT)
+            return (int) value;
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the lowest value counted in the bucket.
+     */
+    static long lowestValueAt(int index) {
+
+        if (index < LINEAR_LIMIT)
+            return index;
+
+        final int shift = (index >> SUB_BUCKET_BITS) - 1;
+
+        return (long) (index & (SUB_BUCKETS - 1) | SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @return the highest value counted in the bucket.
+     */
+    static long highestValueAt(int index) {
+
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValueAt(index + 1) - 1;
+    }
+}
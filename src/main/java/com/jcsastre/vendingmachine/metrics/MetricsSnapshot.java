@@ -0,0 +1,119 @@
+package com.jcsastre.vendingmachine.metrics;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.VendingMachineCommand;
+
+import java.io.IOException;
+
+/**
+ * <p>Immutable copy of the metrics of an {@link AtomicVendingMachineMetrics}, taken
+ * with {@link AtomicVendingMachineMetrics#snapshot()}.</p>
+ *
+ * <p>{@link #writeTo(Appendable)} exports it in the Prometheus text format, so a
+ * local scraper can poll it.</p>
+ */
+public final class MetricsSnapshot {
+
+    private static final double[] EXPORTED_PERCENTILES = {50, 90, 99, 99.9, 100};
+
+    private final HistogramSnapshot[] latencies;
+    private final long[] vends;
+    private final long[] coinsIn;
+    private final long[] coinsOut;
+    private final long[] noChanges;
+    private final long[] noProductStocks;
+    private final long[] depositCoinOverflows;
+
+    MetricsSnapshot(
+        HistogramSnapshot[] latencies,
+        long[] vends,
+        long[] coinsIn,
+        long[] coinsOut,
+        long[] noChanges,
+        long[] noProductStocks,
+        long[] depositCoinOverflows
+    ) {
+
+        this.latencies = latencies;
+        this.vends = vends;
+        this.coinsIn = coinsIn;
+        this.coinsOut = coinsOut;
+        this.noChanges = noChanges;
+        this.noProductStocks = noProductStocks;
+        this.depositCoinOverflows = depositCoinOverflows;
+    }
+
+    public HistogramSnapshot getLatency(VendingMachineCommand command) {
+        return latencies[command.ordinal()];
+    }
+
+    public long getVends(Product product) {
+        return vends[product.ordinal()];
+    }
+
+    public long getCoinsIn(Coin coin) {
+        return coinsIn[coin.ordinal()];
+    }
+
+    public long getCoinsOut(Coin coin) {
+        return coinsOut[coin.ordinal()];
+    }
+
+    public long getNoChanges(Product product) {
+        return noChanges[product.ordinal()];
+    }
+
+    public long getNoProductStocks(Product product) {
+        return noProductStocks[product.ordinal()];
+    }
+
+    public long getDepositCoinOverflows(Coin coin) {
+        return depositCoinOverflows[coin.ordinal()];
+    }
+
+    /**
+     * <p>Writes the metrics in the Prometheus text format, latencies as summaries in
+     * nanoseconds.</p>
+     */
+    public void writeTo(Appendable appendable) throws IOException {
+
+        writeCounters(appendable, "vending_machine_vends_total", "product", Product.values(), vends);
+        writeCounters(appendable, "vending_machine_coins_in_total", "coin", Coin.values(), coinsIn);
+        writeCounters(appendable, "vending_machine_coins_out_total", "coin", Coin.values(), coinsOut);
+        writeCounters(appendable, "vending_machine_no_change_total", "product", Product.values(), noChanges);
+        writeCounters(appendable, "vending_machine_no_product_stock_total", "product", Product.values(), noProductStocks);
+        writeCounters(appendable, "vending_machine_deposit_coin_overflow_total", "coin", Coin.values(), depositCoinOverflows);
+
+        appendable.append("# TYPE vending_machine_command_latency_nanos summary\n");
+        for (VendingMachineCommand command : VendingMachineCommand.values()) {
+
+            final HistogramSnapshot histogramSnapshot = latencies[command.ordinal()];
+            for (double percentile : EXPORTED_PERCENTILES) {
+                appendable
+                    .append("vending_machine_command_latency_nanos{command=\"").append(command.name())
+                    .append("\",quantile=\"").append(Double.toString(percentile / 100)).append("\"} ")
+                    .append(Long.toString(histogramSnapshot.getValueAtPercentile(percentile))).append('\n');
+            }
+            appendable
+                .append("vending_machine_command_latency_nanos_count{command=\"").append(command.name()).append("\"} ")
+                .append(Long.toString(histogramSnapshot.getTotalCount())).append('\n');
+        }
+    }
+
+    private static void writeCounters(
+        Appendable appendable,
+        String name,
+        String label,
+        Enum<?>[] types,
+        long[] counts
+    ) throws IOException {
+
+        appendable.append("# TYPE ").append(name).append(" counter\n");
+        for (Enum<?> type : types) {
+            appendable
+                .append(name).append('{').append(label).append("=\"").append(type.name()).append("\"} ")
+                .append(Long.toString(counts[type.ordinal()])).append('\n');
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jcsastre.vendingmachine.metrics;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.VendingMachineCommand;
+
+/**
+ * <p>Receives the events of a vending machine: the latency of its commands, the
+ * products vended, the coins going in and out and the failures.</p>
+ *
+ * <p>Methods are called in the middle of the commands, so implementations must not
+ * allocate nor block.</p>
+ */
+public interface VendingMachineMetrics {
+
+    /**
+     * <p>Metrics discarding all the events. A vending machine with them doesn't even
+     * measure the latency of its commands.</p>
+     */
+    VendingMachineMetrics NONE = new VendingMachineMetrics() {
+
+        @Override
+        public void recordCommandLatency(VendingMachineCommand command, long latencyNanos) {
+        }
+
+        @Override
+        public void recordVend(Product product) {
+        }
+
+        @Override
+        public void recordCoinIn(Coin coin) {
+        }
+
+        @Override
+        public void recordCoinOut(Coin coin) {
+        }
+
+        @Override
+        public void recordCoinsOut(int[] coinCounts) {
+        }
+
+        @Override
+        public void recordNoChange(Product product) {
+        }
+
+        @Override
+        public void recordNoProductStock(Product product) {
+        }
+
+        @Override
+        public void recordDepositCoinOverflow(Coin coin) {
+        }
+    };
+
+    void recordCommandLatency(VendingMachineCommand command, long latencyNanos);
+
+    void recordVend(Product product);
+
+    void recordCoinIn(Coin coin);
+
+    void recordCoinOut(Coin coin);
+
+    /**
+     * @param coinCounts count of each coin going out, by {@link Coin#ordinal()}.
+     *        Must not be kept, it is reused by the caller.
+     */
+    void recordCoinsOut(int[] coinCounts);
+
+    void recordNoChange(Product product);
+
+    void recordNoProductStock(Product product);
+
+    void recordDepositCoinOverflow(Coin coin);
+}
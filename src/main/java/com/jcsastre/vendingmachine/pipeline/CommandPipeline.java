@@ -0,0 +1,233 @@
+package com.jcsastre.vendingmachine.pipeline;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.InvalidStateException;
+import com.jcsastre.vendingmachine.metrics.HistogramSnapshot;
+import com.jcsastre.vendingmachine.metrics.LatencyHistogram;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Pipeline in front of a vending machine, so the hardware threads never wait for
+ * the vending logic: a dedicated logic thread is the only one calling the vending
+ * machine, applying the commands the hardware threads offer to their
+ * {@link CommandPort} and sending back a {@link CommandReply} for each one.</p>
+ *
+ * <p>Besides the customer commands, the reset of an operator and the cashless
+ * payments of a card reader are offered through a port too, with
+ * {@link CommandPort#offerCashlessPayment(com.jcsastre.vendingmachine.Product, long)}
+ * for the payments, so they don't race with the logic thread. The vending machine
+ * isn't thread-safe: the rest of its commands, like the ones of a
+ * {@link SupplierVendingMachine}, must only be called once the pipeline is closed.</p>
+ *
+ * <p>Each hardware thread has its own port, so every ring has a single producer and a
+ * single consumer and needs neither locks nor compare and set. The commands of a port
+ * are applied in the order they were offered, and the logic thread takes up to
+ * {@link #BATCH_SIZE} commands of each port in turn, so a busy port doesn't starve the
+ * rest. While the reply ring of a port is full the logic thread leaves its commands
+ * waiting.</p>
+ *
+ * <p>Commands are applied through {@link CommandResultVendingMachine}, without
+ * exceptions. A cancel that can't return the balance is replied as
+ * {@link CommandResult#NO_CHANGE}. A command that throws anyway, like a bug or a
+ * failing listener, is replied as failed and the logic thread goes on with the next
+ * one, keeping the last of those exceptions for {@link #getLastFailure()}.</p>
+ *
+ * <p>When idle, the logic thread spins, then yields, and then parks for
+ * {@link #IDLE_PARK_NANOS} at a time, so an idle pipeline barely uses CPU and a busy
+ * one never makes a system call. The time from offering a command to taking its
+ * reply is recorded in a {@link LatencyHistogram} for all the ports.</p>
+ *
+ * <p>The vending machine may be observed through its
+ * {@link VendingMachineEventListener}, called on the logic thread.</p>
+ */
+public class CommandPipeline implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    static final int BATCH_SIZE = 16;
+
+    private static final int IDLE_SPINS = 100;
+    private static final int IDLE_YIELDS = 100;
+    static final long IDLE_PARK_NANOS = 50_000;
+
+    private static final Coin[] COINS = Coin.values();
+    private static final Product[] PRODUCTS = Product.values();
+
+    private final CommandResultVendingMachine vendingMachine;
+    private final CommandPort[] ports;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private volatile RuntimeException lastFailure;
+    private volatile boolean running = true;
+    private final Thread logicThread;
+
+    public CommandPipeline(CommandResultVendingMachine vendingMachine, int portsCount) {
+
+        this(vendingMachine, portsCount, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity commands of each port waiting to be applied or replies waiting
+     *        to be taken, a power of two.
+     */
+    public CommandPipeline(CommandResultVendingMachine vendingMachine, int portsCount, int capacity) {
+
+        this.vendingMachine = vendingMachine;
+        this.ports = new CommandPort[portsCount];
+        for (int i = 0; i < portsCount; i++) {
+            ports[i] = new CommandPort(capacity, latencies);
+        }
+
+        this.logicThread = new Thread(this::run, "vending-logic");
+        this.logicThread.setDaemon(true);
+        this.logicThread.start();
+    }
+
+    /**
+     * @return the port of a hardware thread, the same one every time.
+     */
+    public CommandPort getPort(int index) {
+
+        return ports[index];
+    }
+
+    /**
+     * @return the times, in nanoseconds, from offering a command to taking its reply.
+     */
+    public HistogramSnapshot snapshotLatencies() {
+
+        return latencies.snapshot();
+    }
+
+    /**
+     * @return the last exception thrown by a command replied as failed, if any.
+     */
+    public Optional<RuntimeException> getLastFailure() {
+
+        return Optional.ofNullable(lastFailure);
+    }
+
+    /**
+     * <p>Applies the commands already offered, as long as there is room for their
+     * replies, and stops the logic thread.</p>
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        LockSupport.unpark(logicThread);
+        try {
+            logicThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+
+        int idleCount = 0;
+        while (true) {
+
+            int appliedCount = 0;
+            for (CommandPort port : ports) {
+                appliedCount += applyBatch(port);
+            }
+
+            if (appliedCount > 0) {
+                idleCount = 0;
+            } else if (!running) {
+                return;
+            } else {
+                idle(idleCount++);
+            }
+        }
+    }
+
+    private int applyBatch(CommandPort port) {
+
+        int appliedCount = 0;
+        while (appliedCount < BATCH_SIZE && port.replies.hasRoom()) {
+
+            // Peeked, so its index isn't reused before its idempotency key is read
+            final long command = port.commands.peek();
+            if (command == SpscLongRing.EMPTY)
+                break;
+            final long idempotencyKey = port.idempotencyKeys[port.commands.headIndex()];
+            port.commands.skip();
+
+            port.replies.offer(tryToApply(port, command, idempotencyKey));
+            appliedCount++;
+        }
+
+        return appliedCount;
+    }
+
+    private long tryToApply(CommandPort port, long command, long idempotencyKey) {
+
+        try {
+            return apply(port, command, idempotencyKey);
+        } catch (RuntimeException e) {
+            lastFailure = e;
+            return CommandReply.failedOf(CommandPort.offeredNanosOf(command), CommandPort.commandOf(command));
+        }
+    }
+
+    private long apply(CommandPort port, long command, long idempotencyKey) {
+
+        final VendingMachineCommand vendingMachineCommand = CommandPort.commandOf(command);
+        final int argument = CommandPort.argumentOf(command);
+
+        CommandResult result = CommandResult.OK;
+        int value = 0;
+        switch (vendingMachineCommand) {
+            case INSERT_COIN:
+                result = vendingMachine.tryToInsertCoin(COINS[argument]);
+                break;
+            case SELECT_PRODUCT:
+                result = vendingMachine.tryToSelectProduct(PRODUCTS[argument]);
+                break;
+            case CANCEL:
+                try {
+                    vendingMachine.cancel();
+                } catch (InvalidStateException e) {
+                    result = CommandResult.NO_CHANGE;
+                }
+                break;
+            case RESET:
+                try {
+                    vendingMachine.reset();
+                } catch (InvalidStateException e) {
+                    // The deposits can't hold their stock levels, replied as failed
+                    throw new IllegalStateException(e);
+                }
+                break;
+            case PAY_CASHLESS:
+                result = vendingMachine.tryToPayCashless(PRODUCTS[argument], idempotencyKey);
+                break;
+            case COLLECT_PRODUCT:
+                value = vendingMachine.collectProductIdAtTakeoutPort();
+                break;
+            case COLLECT_COINS:
+                value = vendingMachine.collectCoinCountsAtRepaymentPort(
+                    port.collectedCoinCounts[port.replies.tailIndex()]
+                );
+                break;
+        }
+
+        return CommandReply.of(CommandPort.offeredNanosOf(command), vendingMachineCommand, result, value);
+    }
+
+    private static void idle(int idleCount) {
+
+        if (idleCount < IDLE_SPINS)
+            return;
+
+        if (idleCount < IDLE_SPINS + IDLE_YIELDS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+    }
+}
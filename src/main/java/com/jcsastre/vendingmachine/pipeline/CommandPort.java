@@ -0,0 +1,184 @@
+package com.jcsastre.vendingmachine.pipeline;
+
+import com.jcsastre.vendingmachine.Coins;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.VendingMachine;
+import com.jcsastre.vendingmachine.VendingMachineCommand;
+import com.jcsastre.vendingmachine.metrics.LatencyHistogram;
+
+/**
+ * <p>Entry of a hardware thread, like the coin acceptor or the buttons, to a
+ * {@link CommandPipeline}: a ring of commands to the logic thread and a ring of
+ * {@link CommandReply} back, each with a single producer and a single consumer.</p>
+ *
+ * <p>Offering a command is a couple of ordered stores and never waits, even while the
+ * logic thread is busy calculating change. The replies come in the order of the
+ * commands. Taking a reply records the time since its command was offered.</p>
+ *
+ * <p>The counts of the coins collected by a {@link VendingMachineCommand#COLLECT_COINS}
+ * don't fit in a reply: the logic thread writes them in a buffer of the port, at the
+ * index of the reply in its ring, before publishing the reply, and
+ * {@link #pollReply(int[])} copies them before giving the index back.</p>
+ *
+ * <p>Likewise the idempotency key of a {@link VendingMachineCommand#PAY_CASHLESS}
+ * doesn't fit in a command: {@link #offerCashlessPayment(Product, long)} writes it in
+ * a buffer of the port, at the index of the command in its ring, before publishing
+ * the command, and the logic thread reads it before giving the index back.</p>
+ *
+ * <p>A port must be used by a single thread.</p>
+ */
+public class CommandPort {
+
+    /**
+     * <p>Returned by {@link #pollReply()} when there is no reply yet.</p>
+     */
+    public static final long NO_REPLY = SpscLongRing.EMPTY;
+
+    private static final int PRODUCTS_COUNT = Product.values().length;
+
+    final SpscLongRing commands;
+    final SpscLongRing replies;
+    // Written by the logic thread at the index of the reply they go with
+    final int[][] collectedCoinCounts;
+    // Written by the hardware thread at the index of the command they go with
+    final long[] idempotencyKeys;
+    private final LatencyHistogram latencies;
+
+    CommandPort(int capacity, LatencyHistogram latencies) {
+
+        this.commands = new SpscLongRing(capacity);
+        this.replies = new SpscLongRing(capacity);
+        this.collectedCoinCounts = new int[capacity][Coins.COUNT];
+        this.idempotencyKeys = new long[capacity];
+        this.latencies = latencies;
+    }
+
+    /**
+     * <p>Offers a command to the logic thread, without waiting.</p>
+     *
+     * <p>{@link VendingMachineCommand#PAY_CASHLESS} is offered without idempotency
+     * key, see {@link #offerCashlessPayment(Product, long)}.</p>
+     *
+     * @param argument the ordinal of the {@link com.jcsastre.vendingmachine.Coin} or
+     *        {@link com.jcsastre.vendingmachine.Product}, or zero.
+     * @return false if the port is full, so the hardware can reject the coin or
+     *         ignore the button instead of blocking.
+     * @throws IllegalArgumentException if the pipeline doesn't apply the command, as
+     *         {@link VendingMachineCommand#RESTOCK}, or the argument isn't valid for
+     *         the command.
+     */
+    public boolean offer(VendingMachineCommand command, int argument) {
+
+        return offer(command, argument, VendingMachine.NO_IDEMPOTENCY_KEY);
+    }
+
+    /**
+     * <p>Offers a {@link VendingMachineCommand#PAY_CASHLESS} with the idempotency key
+     * of its payment, without waiting.</p>
+     *
+     * @return false if the port is full.
+     */
+    public boolean offerCashlessPayment(Product product, long idempotencyKey) {
+
+        return offer(VendingMachineCommand.PAY_CASHLESS, product.ordinal(), idempotencyKey);
+    }
+
+    private boolean offer(VendingMachineCommand command, int argument, long idempotencyKey) {
+
+        final int argumentsCount = argumentsCountOf(command);
+        if (argumentsCount == 0)
+            throw new IllegalArgumentException("Not a pipeline command: " + command);
+        if (argument < 0 || argument >= argumentsCount)
+            throw new IllegalArgumentException("Invalid argument for " + command + ": " + argument);
+
+        if (command == VendingMachineCommand.PAY_CASHLESS) {
+            // The index isn't ours until there is room, it may still be being applied
+            if (!commands.hasRoom())
+                return false;
+            idempotencyKeys[commands.tailIndex()] = idempotencyKey;
+        }
+
+        return commands.offer(
+            (System.nanoTime() & CommandReply.OFFERED_NANOS_MASK) << 16
+                | (command.getCode() & 0xFF) << 8
+                | argument
+        );
+    }
+
+    /**
+     * @return the reply to the oldest command not replied yet, or {@link #NO_REPLY}
+     *         if the logic thread hasn't applied it yet.
+     */
+    public long pollReply() {
+
+        final long reply = replies.poll();
+        if (reply != NO_REPLY)
+            recordLatency(reply);
+
+        return reply;
+    }
+
+    /**
+     * <p>Same as {@link #pollReply()}, also taking the coins collected by a
+     * {@link VendingMachineCommand#COLLECT_COINS}.</p>
+     *
+     * @param coinCounts where the counts of the coins collected are copied, indexed
+     *        by {@link com.jcsastre.vendingmachine.Coin#ordinal()}, when the reply is
+     *        to a {@link VendingMachineCommand#COLLECT_COINS}. Untouched otherwise.
+     */
+    public long pollReply(int[] coinCounts) {
+
+        final long reply = replies.peek();
+        if (reply == NO_REPLY)
+            return reply;
+
+        if (!CommandReply.isFailed(reply) && CommandReply.commandOf(reply) == VendingMachineCommand.COLLECT_COINS)
+            System.arraycopy(collectedCoinCounts[replies.headIndex()], 0, coinCounts, 0, Coins.COUNT);
+        replies.skip();
+        recordLatency(reply);
+
+        return reply;
+    }
+
+    private void recordLatency(long reply) {
+
+        latencies.record((System.nanoTime() - CommandReply.offeredNanosOf(reply)) & CommandReply.OFFERED_NANOS_MASK);
+    }
+
+    /**
+     * @return the count of valid arguments of a command applied by the pipeline, or
+     *         zero if it isn't one.
+     */
+    private static int argumentsCountOf(VendingMachineCommand command) {
+
+        switch (command) {
+            case INSERT_COIN:
+                return Coins.COUNT;
+            case SELECT_PRODUCT:
+            case PAY_CASHLESS:
+                return PRODUCTS_COUNT;
+            case CANCEL:
+            case RESET:
+            case COLLECT_PRODUCT:
+            case COLLECT_COINS:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    static long offeredNanosOf(long command) {
+
+        return command >>> 16;
+    }
+
+    static VendingMachineCommand commandOf(long command) {
+
+        return VendingMachineCommand.ofCode((int) (command >>> 8) & 0xFF);
+    }
+
+    static int argumentOf(long command) {
+
+        return (int) command & 0xFF;
+    }
+}
@@ -0,0 +1,97 @@
+package com.jcsastre.vendingmachine.pipeline;
+
+import com.jcsastre.vendingmachine.CommandResult;
+import com.jcsastre.vendingmachine.VendingMachine;
+import com.jcsastre.vendingmachine.VendingMachineCommand;
+
+/**
+ * <p>Reply of the {@link CommandPipeline} to a command, packed in a long so it travels
+ * through a ring without allocating:</p>
+ *
+ * <pre>
+ * bits 24-63  lowest 40 bits of the {@link System#nanoTime()} the command was offered
+ * bits 20-23  command code, {@link VendingMachineCommand#getCode()}
+ * bits 16-19  {@link CommandResult} ordinal, or 15 if the command failed
+ * bits  0-15  value, signed
+ * </pre>
+ *
+ * <p>The value is the product id collected by {@link VendingMachineCommand#COLLECT_PRODUCT},
+ * or {@link VendingMachine#NO_PRODUCT_ID}, the count of coins collected by
+ * {@link VendingMachineCommand#COLLECT_COINS}, and zero for the rest of commands.</p>
+ *
+ * <p>A command that fails with an unexpected exception is replied as failed, without a
+ * result nor a value, so the port that offered it doesn't wait forever.</p>
+ *
+ * <p>The command code is never zero, so neither is a reply.</p>
+ */
+public final class CommandReply {
+
+    static final long OFFERED_NANOS_MASK = (1L << 40) - 1;
+
+    private static final CommandResult[] RESULTS = CommandResult.values();
+
+    private static final int FAILED = 0xF;
+
+    private CommandReply() {
+    }
+
+    static long of(long offeredNanos, VendingMachineCommand command, CommandResult result, int value) {
+
+        return (offeredNanos & OFFERED_NANOS_MASK) << 24
+            | ((long) command.getCode() & 0xF) << 20
+            | ((long) result.ordinal() & 0xF) << 16
+            | value & 0xFFFF;
+    }
+
+    static long failedOf(long offeredNanos, VendingMachineCommand command) {
+
+        return (offeredNanos & OFFERED_NANOS_MASK) << 24
+            | ((long) command.getCode() & 0xF) << 20
+            | (long) FAILED << 16;
+    }
+
+    static long offeredNanosOf(long reply) {
+
+        return reply >>> 24;
+    }
+
+    public static VendingMachineCommand commandOf(long reply) {
+
+        return VendingMachineCommand.ofCode((int) (reply >>> 20) & 0xF);
+    }
+
+    /**
+     * @return true if the command failed with an unexpected exception.
+     */
+    public static boolean isFailed(long reply) {
+
+        return ((int) (reply >>> 16) & 0xF) == FAILED;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the command failed.
+     */
+    public static CommandResult resultOf(long reply) {
+
+        if (isFailed(reply))
+            throw new IllegalArgumentException("Failed command has no result");
+
+        return RESULTS[(int) (reply >>> 16) & 0xF];
+    }
+
+    public static int valueOf(long reply) {
+
+        return (short) reply;
+    }
+
+    /**
+     * @return a readable form of the reply, for logs.
+     */
+    public static String toString(long reply) {
+
+        if (isFailed(reply))
+            return commandOf(reply) + " FAILED";
+
+        return commandOf(reply) + " " + resultOf(reply) + " " + valueOf(reply);
+    }
+}
@@ -0,0 +1,149 @@
+package com.jcsastre.vendingmachine.pipeline;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Bounded lock-free queue of longs for one producer thread and one consumer thread,
+ * in the style of the Disruptor and JCTools: a power of two array, and a head and a
+ * tail counters that each thread publishes with an ordered store, never with a
+ * compare and set.</p>
+ *
+ * <p>Each thread keeps a cached copy of the counter of the other one and only reads it
+ * again when the cached copy says the ring is full or empty, so in the steady state
+ * offering and polling don't touch the cache line the other thread writes. Head and
+ * tail are 128 bytes apart in the same array, so they never share a cache line nor an
+ * adjacent prefetched line.</p>
+ *
+ * <p>{@link #EMPTY} can't be offered: polling returns it when there is nothing to
+ * take.</p>
+ */
+class SpscLongRing {
+
+    static final long EMPTY = 0;
+
+    private static final int PADDING = 16;
+    private static final int HEAD = PADDING;
+    private static final int TAIL = 2 * PADDING;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    // Published consumer and producer positions, padded from each other
+    private final AtomicLongArray positions = new AtomicLongArray(3 * PADDING);
+
+    // Owned by the producer
+    private long tail;
+    private long cachedHead;
+    // Owned by the consumer
+    private long head;
+    private long cachedTail;
+
+    /**
+     * @param capacity a power of two.
+     */
+    SpscLongRing(int capacity) {
+
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two");
+
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    int getCapacity() {
+
+        return mask + 1;
+    }
+
+    /**
+     * <p>Called only by the producer.</p>
+     *
+     * @return false, without waiting, if the ring is full.
+     */
+    boolean offer(long value) {
+
+        if (tail - cachedHead > mask) {
+            cachedHead = positions.get(HEAD);
+            if (tail - cachedHead > mask)
+                return false;
+        }
+
+        slots.lazySet((int) tail & mask, value);
+        positions.lazySet(TAIL, ++tail);
+
+        return true;
+    }
+
+    /**
+     * <p>Called only by the producer.</p>
+     *
+     * @return true if there is room for one more value.
+     */
+    boolean hasRoom() {
+
+        if (tail - cachedHead > mask)
+            cachedHead = positions.get(HEAD);
+
+        return tail - cachedHead <= mask;
+    }
+
+    /**
+     * <p>Called only by the producer.</p>
+     *
+     * @return the index, below the capacity, where the next value offered goes.
+     */
+    int tailIndex() {
+
+        return (int) tail & mask;
+    }
+
+    /**
+     * <p>Called only by the consumer.</p>
+     *
+     * @return the oldest value, or {@link #EMPTY} if there is none.
+     */
+    long poll() {
+
+        final long value = peek();
+        if (value != EMPTY)
+            skip();
+
+        return value;
+    }
+
+    /**
+     * <p>Called only by the consumer. The value stays in the ring, at
+     * {@link #headIndex()}, until {@link #skip()} is called, so the producer can't
+     * reuse its index meanwhile.</p>
+     *
+     * @return the oldest value, or {@link #EMPTY} if there is none.
+     */
+    long peek() {
+
+        if (head == cachedTail) {
+            cachedTail = positions.get(TAIL);
+            if (head == cachedTail)
+                return EMPTY;
+        }
+
+        return slots.get((int) head & mask);
+    }
+
+    /**
+     * <p>Called only by the consumer.</p>
+     *
+     * @return the index of the value returned by {@link #peek()}.
+     */
+    int headIndex() {
+
+        return (int) head & mask;
+    }
+
+    /**
+     * <p>Called only by the consumer, to take the value returned by {@link #peek()}.</p>
+     */
+    void skip() {
+
+        positions.lazySet(HEAD, ++head);
+    }
+}
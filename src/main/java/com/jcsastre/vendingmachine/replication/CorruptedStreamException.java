@@ -0,0 +1,16 @@
+package com.jcsastre.vendingmachine.replication;
+
+import java.io.IOException;
+
+/**
+ * <p>Thrown by {@link VendingMachineReplica#run()} when the primary sends something
+ * that isn't a command, so the backup can't be trusted to take over, unlike when the
+ * primary simply fails.</p>
+ */
+public class CorruptedStreamException extends IOException {
+
+    public CorruptedStreamException(String message) {
+
+        super(message);
+    }
+}
@@ -0,0 +1,364 @@
+package com.jcsastre.vendingmachine.replication;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import com.jcsastre.vendingmachine.metrics.HistogramSnapshot;
+import com.jcsastre.vendingmachine.metrics.LatencyHistogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>{@link BatchVendingMachine} and {@link SupplierVendingMachine} decorator of the
+ * primary controller board, replicating
+ * each command to a {@link VendingMachineReplica} on the backup board before
+ * executing it, so the backup can take over with the same coins and products.</p>
+ *
+ * <p>On connecting, a {@link VendingMachineSnapshot} of the primary is sent for the
+ * backup to start from, with the idempotency keys of the recent cashless payments.
+ * Then each command is sent as the record of the {@link CommandJournal}, with the
+ * same rules: commands are sent even if they end with an exception, and only vended
+ * cashless payments are sent, with their idempotency key, so a payment retried after
+ * the backup takes over isn't vended again.</p>
+ *
+ * <p>Acknowledgements are pipelined: sending a command is a write of two bytes to a
+ * socket without delay, and commands don't wait for the backup to apply them. The
+ * backup acknowledges the count of commands it has applied, read by a background
+ * thread. {@link #awaitAcknowledged(long)} waits for the backup to apply all the
+ * commands sent, for the points where the backup must not lag behind, like closing
+ * a service session.</p>
+ *
+ * <p>The socket is blocking, on purpose: a write returns as soon as the record is
+ * copied to the send buffer of the socket, but once the backup lags behind by the
+ * send and receive buffers of the connection, a few hundred kilobytes of records,
+ * the write waits for it. That backpressure bounds the commands the backup can lose
+ * instead of dropping them. The time taken by each send is recorded, so
+ * {@link #snapshotSendLatencies()} shows when commands are held back by the
+ * backup.</p>
+ *
+ * <p>A command written to the socket reaches the backup even if the primary process
+ * crashes right after, because the operating system delivers it. Only a crash of the
+ * whole primary board may lose the commands sent after the last acknowledgement.</p>
+ *
+ * <p>If the backup fails, the primary goes on alone: commands aren't rejected
+ * because there is no backup.</p>
+ *
+ * <p>Not thread-safe, as {@link VendingMachineImpl}.</p>
+ */
+public class ReplicatedVendingMachine implements BatchVendingMachine, SupplierVendingMachine, Closeable {
+
+    private final VendingMachineImpl vendingMachine;
+    private final SocketChannel socketChannel;
+
+    private final ByteBuffer record = ByteBuffer.allocateDirect(CommandJournal.MAX_RECORD_SIZE);
+    private long sentCount;
+    private final LatencyHistogram sendLatencies = new LatencyHistogram();
+    private volatile boolean backupConnected = true;
+
+    private final AtomicLong acknowledgedCount = new AtomicLong();
+    private final Thread acknowledgementsReader;
+
+    private ReplicatedVendingMachine(VendingMachineImpl vendingMachine, SocketChannel socketChannel) {
+
+        this.vendingMachine = vendingMachine;
+        this.socketChannel = socketChannel;
+
+        this.acknowledgementsReader = new Thread(this::readAcknowledgements, "replication-acknowledgements-reader");
+        this.acknowledgementsReader.setDaemon(true);
+        this.acknowledgementsReader.start();
+    }
+
+    /**
+     * <p>Connects to the backup and sends it the current state of the primary.</p>
+     *
+     * @throws IOException if the backup can't be reached.
+     */
+    public static ReplicatedVendingMachine connect(
+        VendingMachineImpl vendingMachineImpl,
+        InetSocketAddress backupAddress
+    ) throws IOException {
+
+        final SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            socketChannel.connect(backupAddress);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(VendingMachineSnapshot.SIZE);
+            vendingMachineImpl.takeSnapshot(0).writeTo(buffer);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                socketChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+
+        return new ReplicatedVendingMachine(vendingMachineImpl, socketChannel);
+    }
+
+    @Override
+    public void insertCoin(Coin coin) throws NoChangeException, NoProductStockException, DepositCoinOverflowException {
+
+        replicate(VendingMachineCommand.INSERT_COIN, coin.ordinal());
+        vendingMachine.insertCoin(coin);
+    }
+
+    @Override
+    public void selectProduct(Product product) throws NoProductStockException, NoChangeException, ProductAlreadySelected {
+
+        replicate(VendingMachineCommand.SELECT_PRODUCT, product.ordinal());
+        vendingMachine.selectProduct(product);
+    }
+
+    /**
+     * <p>Only a vended payment is replicated, once vended, with its idempotency
+     * key.</p>
+     */
+    @Override
+    public boolean payCashless(Product product, long idempotencyKey) throws NoProductStockException, ProductAlreadySelected {
+
+        final boolean vended = vendingMachine.payCashless(product, idempotencyKey);
+        if (vended) {
+            record.clear();
+            record.putShort((short) (VendingMachineCommand.PAY_CASHLESS.getCode() << 8 | product.ordinal()));
+            record.putLong(idempotencyKey);
+            send();
+        }
+
+        return vended;
+    }
+
+    @Override
+    public void vendBasket(
+        Map<Product, Integer> basket,
+        List<Coin> payment
+    ) throws ProductAlreadySelected, InsufficientBalanceException, DepositCoinOverflowException,
+        NoProductStockException, NoChangeException {
+
+        record.clear();
+        record.putShort((short) (VendingMachineCommand.VEND_BASKET.getCode() << 8));
+        VendingMachineCommand.putBasket(record, basket, payment);
+        send();
+        vendingMachine.vendBasket(basket, payment);
+    }
+
+    @Override
+    public Optional<Map<Product, Integer>> collectBasketAtTakeoutPort() {
+
+        replicate(VendingMachineCommand.COLLECT_BASKET, 0);
+        return vendingMachine.collectBasketAtTakeoutPort();
+    }
+
+    @Override
+    public Catalog getCatalog() {
+
+        return vendingMachine.getCatalog();
+    }
+
+    @Override
+    public void setCatalog(Catalog catalog) {
+
+        record.clear();
+        record.putShort((short) (VendingMachineCommand.SET_CATALOG.getCode() << 8));
+        VendingMachineCommand.putCatalog(record, catalog);
+        send();
+        vendingMachine.setCatalog(catalog);
+    }
+
+    @Override
+    public RestockManifest restock() throws InvalidStateException {
+
+        replicate(VendingMachineCommand.RESTOCK, 0);
+        return vendingMachine.restock();
+    }
+
+    @Override
+    public void cancel() throws InvalidStateException {
+
+        replicate(VendingMachineCommand.CANCEL, 0);
+        vendingMachine.cancel();
+    }
+
+    @Override
+    public void reset() throws InvalidStateException {
+
+        replicate(VendingMachineCommand.RESET, 0);
+        vendingMachine.reset();
+    }
+
+    @Override
+    public Optional<Product> collectProductAtTakeoutPort() {
+
+        replicate(VendingMachineCommand.COLLECT_PRODUCT, 0);
+        return vendingMachine.collectProductAtTakeoutPort();
+    }
+
+    @Override
+    public int collectProductIdAtTakeoutPort() {
+
+        replicate(VendingMachineCommand.COLLECT_PRODUCT, 0);
+        return vendingMachine.collectProductIdAtTakeoutPort();
+    }
+
+    @Override
+    public Optional<List<Coin>> collectCoinsAtRepaymentPort() {
+
+        replicate(VendingMachineCommand.COLLECT_COINS, 0);
+        return vendingMachine.collectCoinsAtRepaymentPort();
+    }
+
+    @Override
+    public int collectCoinCountsAtRepaymentPort(int[] coinCounts) {
+
+        replicate(VendingMachineCommand.COLLECT_COINS, 0);
+        return vendingMachine.collectCoinCountsAtRepaymentPort(coinCounts);
+    }
+
+    @Override
+    public Integer readBalanceInCentsIndicator() {
+
+        return vendingMachine.readBalanceInCentsIndicator();
+    }
+
+    @Override
+    public int readBalanceInCents() {
+
+        return vendingMachine.readBalanceInCents();
+    }
+
+    @Override
+    public Optional<Product> readSelectedProductIndicator() {
+
+        return vendingMachine.readSelectedProductIndicator();
+    }
+
+    @Override
+    public int readSelectedProductId() {
+
+        return vendingMachine.readSelectedProductId();
+    }
+
+    /**
+     * @return the count of commands sent to the backup.
+     */
+    public long getSentCount() {
+
+        return sentCount;
+    }
+
+    /**
+     * @return the count of commands the backup has acknowledged to have applied.
+     */
+    public long getAcknowledgedCount() {
+
+        return acknowledgedCount.get();
+    }
+
+    public boolean isBackupConnected() {
+
+        return backupConnected;
+    }
+
+    /**
+     * <p>Waits for the backup to acknowledge all the commands sent.</p>
+     *
+     * @return false if the backup hasn't acknowledged them within the timeout or has
+     *         failed.
+     */
+    public boolean awaitAcknowledged(long timeoutMillis) {
+
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (acknowledgedCount.get() < sentCount) {
+            if (!backupConnected || System.nanoTime() > deadlineNanos)
+                return false;
+            LockSupport.parkNanos(10_000);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the times, in nanoseconds, taken to send each command to the backup,
+     *         longer while the backup holds the primary back.
+     */
+    public HistogramSnapshot snapshotSendLatencies() {
+
+        return sendLatencies.snapshot();
+    }
+
+    /**
+     * <p>Stops replicating. The backup applies the commands already sent and takes
+     * over.</p>
+     */
+    @Override
+    public void close() throws IOException {
+
+        backupConnected = false;
+        socketChannel.close();
+    }
+
+    private void replicate(VendingMachineCommand command, int argument) {
+
+        record.clear();
+        record.putShort((short) (command.getCode() << 8 | argument));
+        send();
+    }
+
+    private void send() {
+
+        if (!backupConnected)
+            return;
+
+        record.flip();
+        final long startNanos = System.nanoTime();
+        try {
+            while (record.hasRemaining()) {
+                socketChannel.write(record);
+            }
+            sentCount++;
+            sendLatencies.record(System.nanoTime() - startNanos);
+        } catch (IOException e) {
+            backupLost();
+        }
+    }
+
+    private void readAcknowledgements() {
+
+        final ByteBuffer acknowledgement = ByteBuffer.allocateDirect(VendingMachineReplica.ACKNOWLEDGEMENT_SIZE);
+        try {
+            while (true) {
+                acknowledgement.clear();
+                while (acknowledgement.hasRemaining()) {
+                    if (socketChannel.read(acknowledgement) < 0) {
+                        backupLost();
+                        return;
+                    }
+                }
+                acknowledgedCount.lazySet(acknowledgement.getLong(0));
+            }
+        } catch (IOException e) {
+            backupLost();
+        }
+    }
+
+    private void backupLost() {
+
+        backupConnected = false;
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            // Already failed
+        }
+    }
+}
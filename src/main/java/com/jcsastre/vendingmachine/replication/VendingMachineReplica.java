@@ -0,0 +1,188 @@
+package com.jcsastre.vendingmachine.replication;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.InvalidStateException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <p>Backup controller board, applying to a {@link VendingMachineImpl} the commands
+ * replicated by the {@link ReplicatedVendingMachine} of the primary board.</p>
+ *
+ * <p>{@link #run()} accepts the primary, restores the snapshot it sends first and
+ * applies the commands as they come. After applying the commands read at once, it
+ * acknowledges the count of commands applied so far with a long, so one
+ * acknowledgement covers all the commands the primary sent meanwhile.</p>
+ *
+ * <p>When the primary closes or fails, {@link #run()} returns and the backup takes
+ * over: its vending machine has the state after the last command received. If the
+ * primary sends something that isn't a command, {@link #run()} throws a
+ * {@link CorruptedStreamException} instead, as the state may be wrong.</p>
+ *
+ * <p>It can be run as a process on its own, for a backup board or to test the
+ * replication with two JVMs, writing the final state to a snapshot file:</p>
+ *
+ * <pre>
+ * java com.jcsastre.vendingmachine.replication.VendingMachineReplica [port] [coins capacity] [products capacity] [snapshot file]
+ * </pre>
+ */
+public class VendingMachineReplica implements Closeable {
+
+    public static final int ACKNOWLEDGEMENT_SIZE = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final VendingMachineImpl vendingMachineImpl;
+    private final ServerSocketChannel serverSocketChannel;
+
+    private volatile long appliedCount;
+
+    private VendingMachineReplica(VendingMachineImpl vendingMachineImpl, ServerSocketChannel serverSocketChannel) {
+
+        this.vendingMachineImpl = vendingMachineImpl;
+        this.serverSocketChannel = serverSocketChannel;
+    }
+
+    /**
+     * @param address the address to listen to, with port zero for any free port.
+     */
+    public static VendingMachineReplica listen(VendingMachineImpl vendingMachineImpl, InetSocketAddress address) throws IOException {
+
+        final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(address);
+
+        return new VendingMachineReplica(vendingMachineImpl, serverSocketChannel);
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+
+        return (InetSocketAddress) serverSocketChannel.getLocalAddress();
+    }
+
+    /**
+     * @return the count of commands applied.
+     */
+    public long getAppliedCount() {
+
+        return appliedCount;
+    }
+
+    /**
+     * <p>Replicates the primary until it closes or fails.</p>
+     *
+     * @return the count of commands applied.
+     * @throws IOException if the snapshot of the primary can't be received.
+     * @throws CorruptedStreamException if the primary sends something that isn't a
+     *         command.
+     * @throws InvalidStateException if the deposits have no capacity for the snapshot
+     *         of the primary.
+     */
+    public long run() throws IOException, InvalidStateException {
+
+        try (SocketChannel socketChannel = serverSocketChannel.accept()) {
+
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            if (!readFully(socketChannel, buffer, VendingMachineSnapshot.SIZE))
+                throw new IOException("Primary closed before sending its snapshot");
+            buffer.flip();
+            vendingMachineImpl.restore(VendingMachineSnapshot.readFrom(buffer));
+            buffer.compact();
+
+            final ByteBuffer acknowledgement = ByteBuffer.allocateDirect(ACKNOWLEDGEMENT_SIZE);
+            long count = 0;
+            try {
+                // The commands may have come along with the snapshot, so they are
+                // applied before reading again
+                do {
+
+                    buffer.flip();
+                    final long previousCount = count;
+                    while (buffer.remaining() >= CommandJournal.RECORD_SIZE) {
+                        final VendingMachineCommand command = VendingMachineCommand.ofCode(buffer.get(buffer.position()));
+                        if (command == null)
+                            throw new CorruptedStreamException("Unknown command received");
+                        if (buffer.remaining() < CommandJournal.recordSizeOf(command))
+                            break;
+                        buffer.get();
+                        final byte argument = buffer.get();
+                        try {
+                            command.applyTo(vendingMachineImpl, argument, buffer);
+                        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                            throw new CorruptedStreamException("Invalid " + command + " received");
+                        }
+                        count++;
+                    }
+                    buffer.compact();
+
+                    if (count > previousCount) {
+                        appliedCount = count;
+                        acknowledgement.clear();
+                        acknowledgement.putLong(0, count);
+                        while (acknowledgement.hasRemaining()) {
+                            socketChannel.write(acknowledgement);
+                        }
+                    }
+
+                } while (socketChannel.read(buffer) >= 0);
+            } catch (CorruptedStreamException e) {
+                throw e;
+            } catch (IOException e) {
+                // The primary has failed, the commands applied are kept
+            }
+
+            return count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        serverSocketChannel.close();
+    }
+
+    private static boolean readFully(SocketChannel socketChannel, ByteBuffer buffer, int size) throws IOException {
+
+        while (buffer.position() < size) {
+            if (socketChannel.read(buffer) < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException, InvalidStateException {
+
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        final int coinsCapacity = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        final int productsCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        final Path snapshotFile = Paths.get(args.length > 3 ? args[3] : "replica.snapshot");
+
+        final VendingMachineImpl vendingMachineImpl =
+            new VendingMachineImpl(
+                new EnumInventorizedDeposit<>(Coin.class, coinsCapacity),
+                new EnumInventorizedDeposit<>(Product.class, productsCapacity),
+                CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+            );
+
+        try (VendingMachineReplica replica = listen(vendingMachineImpl, new InetSocketAddress("127.0.0.1", port))) {
+
+            System.out.println("Listening on port " + replica.getAddress().getPort());
+            System.out.flush();
+
+            final long count = replica.run();
+            vendingMachineImpl.takeSnapshot(count).write(snapshotFile);
+
+            System.out.println("Applied " + count + " commands");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.jcsastre.vendingmachine.simulation;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>Synthetic behaviour of the customers of a fleet of vending machines.</p>
+ *
+ * <p>Each customer picks a product by its popularity and inserts coins picked by the
+ * coin mix until the product is paid, unless it gives up and cancels after the first
+ * coin, which happens with the cancel rate. The supplier resets each machine every
+ * customers between restocks.</p>
+ */
+public class CustomerWorkload {
+
+    private static final Coin[] COINS = Coin.values();
+    private static final Product[] PRODUCTS = Product.values();
+
+    /**
+     * <p>Mostly small coins, water as the most popular product and one cancel every
+     * twenty customers.</p>
+     */
+    public static final CustomerWorkload DEFAULT = new CustomerWorkload(
+        new double[] {1, 4, 4, 3, 2, 1},
+        new double[] {3, 2, 5},
+        0.05,
+        200
+    );
+
+    private final double[] cumulativeCoinWeights;
+    private final double[] cumulativeProductWeights;
+    private final double cancelRate;
+    private final int customersBetweenRestocks;
+
+    /**
+     * @param coinWeights relative frequency of each coin, by {@link Coin#ordinal()}.
+     * @param productWeights relative popularity of each product, by {@link Product#ordinal()}.
+     * @param cancelRate probability of a customer cancelling.
+     * @param customersBetweenRestocks customers served by a machine between resets.
+     */
+    public CustomerWorkload(
+        double[] coinWeights,
+        double[] productWeights,
+        double cancelRate,
+        int customersBetweenRestocks
+    ) {
+
+        if (coinWeights.length != COINS.length || productWeights.length != PRODUCTS.length)
+            throw new IllegalArgumentException();
+
+        this.cumulativeCoinWeights = cumulative(coinWeights);
+        this.cumulativeProductWeights = cumulative(productWeights);
+        this.cancelRate = cancelRate;
+        this.customersBetweenRestocks = customersBetweenRestocks;
+    }
+
+    Coin nextCoin(SplittableRandom random) {
+
+        return COINS[pick(cumulativeCoinWeights, random)];
+    }
+
+    Product nextProduct(SplittableRandom random) {
+
+        return PRODUCTS[pick(cumulativeProductWeights, random)];
+    }
+
+    boolean nextCancels(SplittableRandom random) {
+
+        return random.nextDouble() < cancelRate;
+    }
+
+    int getCustomersBetweenRestocks() {
+        return customersBetweenRestocks;
+    }
+
+    private static double[] cumulative(double[] weights) {
+
+        final double[] cumulativeWeights = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulativeWeights[i] = sum;
+        }
+
+        return cumulativeWeights;
+    }
+
+    private static int pick(double[] cumulativeWeights, SplittableRandom random) {
+
+        final double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int i = 0;
+        while (i < cumulativeWeights.length - 1 && value >= cumulativeWeights[i]) {
+            i++;
+        }
+
+        return i;
+    }
+}
@@ -0,0 +1,118 @@
+package com.jcsastre.vendingmachine.simulation;
+
+/**
+ * <p>Aggregated outcomes of the customers of a {@link FleetSimulator} run.</p>
+ *
+ * <p>Each customer ends with exactly one outcome: vend, cancel, no change, no stock or
+ * coin overflow. Cancel failures are customers whose balance couldn't be returned
+ * when cancelling, after which the machine is reset.</p>
+ */
+public final class FleetSimulationReport {
+
+    private final int machines;
+    private final long customers;
+    private final long vends;
+    private final long cancels;
+    private final long noChanges;
+    private final long noStocks;
+    private final long coinOverflows;
+    private final long cancelFailures;
+    private final long elapsedNanos;
+    private final long cpuNanos;
+
+    FleetSimulationReport(
+        int machines,
+        long customers,
+        long vends,
+        long cancels,
+        long noChanges,
+        long noStocks,
+        long coinOverflows,
+        long cancelFailures,
+        long elapsedNanos,
+        long cpuNanos
+    ) {
+
+        this.machines = machines;
+        this.customers = customers;
+        this.vends = vends;
+        this.cancels = cancels;
+        this.noChanges = noChanges;
+        this.noStocks = noStocks;
+        this.coinOverflows = coinOverflows;
+        this.cancelFailures = cancelFailures;
+        this.elapsedNanos = elapsedNanos;
+        this.cpuNanos = cpuNanos;
+    }
+
+    public int getMachines() {
+        return machines;
+    }
+
+    public long getCustomers() {
+        return customers;
+    }
+
+    public long getVends() {
+        return vends;
+    }
+
+    public long getCancels() {
+        return cancels;
+    }
+
+    public long getNoChanges() {
+        return noChanges;
+    }
+
+    public long getNoStocks() {
+        return noStocks;
+    }
+
+    public long getCoinOverflows() {
+        return coinOverflows;
+    }
+
+    public long getCancelFailures() {
+        return cancelFailures;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public double getVendsPerSecond() {
+        return vends * 1e9 / elapsedNanos;
+    }
+
+    public double getNoChangeRate() {
+        return (double) noChanges / customers;
+    }
+
+    public double getNoStockRate() {
+        return (double) noStocks / customers;
+    }
+
+    public double getCpuNanosPerMachine() {
+        return (double) cpuNanos / machines;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format(
+            "machines: %d, customers: %d, elapsed: %.3f s%n"
+                + "vends: %d (%.0f vends/s)%n"
+                + "cancels: %d, no change: %d (%.4f), no stock: %d (%.4f), coin overflows: %d, cancel failures: %d%n"
+                + "cpu: %.3f s (%.0f ns per machine)",
+            machines, customers, elapsedNanos / 1e9,
+            vends, getVendsPerSecond(),
+            cancels, noChanges, getNoChangeRate(), noStocks, getNoStockRate(), coinOverflows, cancelFailures,
+            cpuNanos / 1e9, getCpuNanosPerMachine()
+        );
+    }
+}
@@ -0,0 +1,265 @@
+package com.jcsastre.vendingmachine.simulation;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>Simulates a fleet of {@link VendingMachineImpl}, each one with its own
+ * {@link EnumInventorizedDeposit} of coins and products, serving the customers of a
+ * {@link CustomerWorkload}.</p>
+ *
+ * <p>Machines are independent, so a run splits them in chunks executed as tasks of a
+ * {@link ForkJoinPool}. Each machine has its own random generator derived from the
+ * seed, so the outcomes of a run don't depend on the parallelism.</p>
+ *
+ * <p>A machine takes about 800 bytes, as {@link #main(String[])} reports: a million
+ * machines fit in under a GB of heap. The idempotency keys of the cashless payments
+ * would add 1.5 KB more, but they are only allocated with the first one.</p>
+ */
+public class FleetSimulator {
+
+    private static final int MACHINES_PER_TASK = 256;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final VendingMachineImpl[] machines;
+    private final int[] customersSinceRestock;
+    private final CustomerWorkload customerWorkload;
+    private final long seed;
+
+    private int runs;
+
+    /**
+     * <p>Creates the machines and resets them, so they start with stock and change.</p>
+     *
+     * @param coinsChangeCalculator shared by all the machines, so it must be thread-safe.
+     */
+    public FleetSimulator(
+        int machinesCount,
+        int maxCapacityPerEachCoinType,
+        int maxCapacityPerEachProductType,
+        CoinCountsChangeCalculator coinsChangeCalculator,
+        CustomerWorkload customerWorkload,
+        long seed
+    ) throws InvalidStateException {
+
+        this.machines = new VendingMachineImpl[machinesCount];
+        this.customersSinceRestock = new int[machinesCount];
+        this.customerWorkload = customerWorkload;
+        this.seed = seed;
+
+        for (int i = 0; i < machinesCount; i++) {
+            machines[i] = new VendingMachineImpl(
+                new EnumInventorizedDeposit<>(Coin.class, maxCapacityPerEachCoinType),
+                new EnumInventorizedDeposit<>(Product.class, maxCapacityPerEachProductType),
+                coinsChangeCalculator
+            );
+            machines[i].reset();
+        }
+    }
+
+    /**
+     * <p>Serves customersPerMachine customers on every machine. Machines keep their state
+     * between runs.</p>
+     */
+    public FleetSimulationReport run(int customersPerMachine, ForkJoinPool forkJoinPool) {
+
+        final int run = runs++;
+
+        final long start = System.nanoTime();
+        final Outcomes outcomes = forkJoinPool.invoke(new SimulationTask(0, machines.length, customersPerMachine, run));
+        final long elapsedNanos = System.nanoTime() - start;
+
+        return new FleetSimulationReport(
+            machines.length, outcomes.customers, outcomes.vends, outcomes.cancels, outcomes.noChanges,
+            outcomes.noStocks, outcomes.coinOverflows, outcomes.cancelFailures, elapsedNanos, outcomes.cpuNanos
+        );
+    }
+
+    // Never serialized, it refers to the machines of the simulator
+    @SuppressWarnings("serial")
+    private class SimulationTask extends RecursiveTask<Outcomes> {
+
+        private final int from;
+        private final int to;
+        private final int customersPerMachine;
+        private final int run;
+
+        SimulationTask(int from, int to, int customersPerMachine, int run) {
+
+            this.from = from;
+            this.to = to;
+            this.customersPerMachine = customersPerMachine;
+            this.run = run;
+        }
+
+        @Override
+        protected Outcomes compute() {
+
+            if (to - from > MACHINES_PER_TASK) {
+                final int middle = (from + to) >>> 1;
+                final SimulationTask left = new SimulationTask(from, middle, customersPerMachine, run);
+                left.fork();
+                final Outcomes outcomes = new SimulationTask(middle, to, customersPerMachine, run).compute();
+                return outcomes.add(left.join());
+            }
+
+            final Outcomes outcomes = new Outcomes();
+            final long cpuStart = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            for (int i = from; i < to; i++) {
+                final SplittableRandom random = new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L + run);
+                for (int j = 0; j < customersPerMachine; j++) {
+                    serveCustomer(i, random, outcomes);
+                }
+            }
+            outcomes.cpuNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart;
+
+            return outcomes;
+        }
+    }
+
+    private void serveCustomer(int machineIndex, SplittableRandom random, Outcomes outcomes) {
+
+        final VendingMachineImpl machine = machines[machineIndex];
+        outcomes.customers++;
+
+        if (++customersSinceRestock[machineIndex] == customerWorkload.getCustomersBetweenRestocks()) {
+            reset(machine);
+            customersSinceRestock[machineIndex] = 0;
+        }
+
+        try {
+            machine.selectProduct(customerWorkload.nextProduct(random));
+        } catch (NoProductStockException e) {
+            outcomes.noStocks++;
+            return;
+        } catch (NoChangeException | ProductAlreadySelected e) {
+            // Not possible, there is no balance nor product selected between customers
+            throw new IllegalStateException(e);
+        }
+
+        final boolean cancels = customerWorkload.nextCancels(random);
+        while (true) {
+
+            try {
+                machine.insertCoin(customerWorkload.nextCoin(random));
+            } catch (NoChangeException e) {
+                outcomes.noChanges++;
+                cancel(machine, outcomes);
+                return;
+            } catch (DepositCoinOverflowException e) {
+                outcomes.coinOverflows++;
+                cancel(machine, outcomes);
+                return;
+            } catch (NoProductStockException e) {
+                outcomes.noStocks++;
+                cancel(machine, outcomes);
+                return;
+            }
+
+            if (machine.collectProductAtTakeoutPort().isPresent()) {
+                outcomes.vends++;
+                machine.collectCoinsAtRepaymentPort();
+                return;
+            }
+
+            if (cancels) {
+                outcomes.cancels++;
+                cancel(machine, outcomes);
+                return;
+            }
+        }
+    }
+
+    private static void cancel(VendingMachineImpl machine, Outcomes outcomes) {
+
+        try {
+            machine.cancel();
+        } catch (InvalidStateException e) {
+            outcomes.cancelFailures++;
+            reset(machine);
+        }
+        machine.collectCoinsAtRepaymentPort();
+    }
+
+    private static void reset(VendingMachineImpl machine) {
+
+        try {
+            machine.reset();
+        } catch (InvalidStateException e) {
+            // Not possible, the machine was reset with the same capacities when created
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Outcomes {
+
+        long customers;
+        long vends;
+        long cancels;
+        long noChanges;
+        long noStocks;
+        long coinOverflows;
+        long cancelFailures;
+        long cpuNanos;
+
+        Outcomes add(Outcomes other) {
+
+            customers += other.customers;
+            vends += other.vends;
+            cancels += other.cancels;
+            noChanges += other.noChanges;
+            noStocks += other.noStocks;
+            coinOverflows += other.coinOverflows;
+            cancelFailures += other.cancelFailures;
+            cpuNanos += other.cpuNanos;
+
+            return this;
+        }
+    }
+
+    /**
+     * <p>Runs a simulation printing its report and the heap used per machine.</p>
+     *
+     * <p>Arguments, all optional: machines (100000), customers per machine (100) and
+     * parallelism (available processors).</p>
+     */
+    public static void main(String[] args) throws InvalidStateException {
+
+        final int machinesCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        final int customersPerMachine = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        final int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        final long usedMemoryBefore = usedMemory();
+        final FleetSimulator fleetSimulator = new FleetSimulator(
+            machinesCount, 100, 20,
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            CustomerWorkload.DEFAULT,
+            42
+        );
+        final long bytesPerMachine = (usedMemory() - usedMemoryBefore) / machinesCount;
+
+        final ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        final FleetSimulationReport fleetSimulationReport = fleetSimulator.run(customersPerMachine, forkJoinPool);
+        forkJoinPool.shutdown();
+
+        System.out.println(fleetSimulationReport);
+        System.out.println("heap: " + bytesPerMachine + " bytes per machine");
+    }
+
+    private static long usedMemory() {
+
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
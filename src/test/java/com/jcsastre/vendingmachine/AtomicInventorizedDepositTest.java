@@ -0,0 +1,159 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class AtomicInventorizedDepositTest extends InventorizedDepositContractTest<AtomicInventorizedDeposit<Coin>> {
+
+    private static final int THREADS = 8;
+
+    @Override
+    protected AtomicInventorizedDeposit<Coin> newDeposit(Integer maxCapacityPerEachType) {
+
+        return new AtomicInventorizedDeposit<>(Coin.class, maxCapacityPerEachType);
+    }
+
+    @Test
+    public void tryToRelease_shouldNotReleaseMoreThanAvailableWhenConcurrent() throws Exception {
+
+        // Given
+        final AtomicInventorizedDeposit<Coin> deposit = new AtomicInventorizedDeposit<>(Coin.class, 100000);
+        deposit.insert(Coin.TEN_CENTS, 100000);
+
+        // When
+        final int released = sumOfAll(runConcurrently(() -> {
+            int count = 0;
+            while (deposit.tryToReleaseOne(Coin.TEN_CENTS)) {
+                count++;
+            }
+            return count;
+        }));
+
+        // Then
+        assertThat(released, is(100000));
+        assertThat(deposit.countOf(Coin.TEN_CENTS), is(0));
+    }
+
+    @Test
+    public void insert_shouldNotExceedMaxCapacityWhenConcurrent() throws Exception {
+
+        // Given
+        final AtomicInventorizedDeposit<Coin> deposit = new AtomicInventorizedDeposit<>(Coin.class, 100000);
+
+        // When
+        final int inserted = sumOfAll(runConcurrently(() -> {
+            int count = 0;
+            while (true) {
+                try {
+                    deposit.insert(Coin.TEN_CENTS, 3);
+                    count += 3;
+                } catch (TypeLimitExceededException e) {
+                    return count;
+                }
+            }
+        }));
+
+        // Then
+        assertThat(inserted, is(99999));
+        assertThat(deposit.countOf(Coin.TEN_CENTS), is(99999));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldNeverBeSeenHalfDoneWhenConcurrent() throws Exception {
+
+        // Given: a type at max capacity, and an empty one
+        final AtomicInventorizedDeposit<Coin> deposit = new AtomicInventorizedDeposit<>(Coin.class, 10);
+        deposit.insert(Coin.ONE_EURO, 10);
+        final int[] countsToRelease = new int[Coins.COUNT];
+        countsToRelease[Coin.ONE_EURO.ordinal()] = 1;
+        countsToRelease[Coin.TEN_CENTS.ordinal()] = 1;
+
+        // When: releases that always fail race with inserts and reads
+        final int anomalies = sumOfAll(runConcurrently(() -> {
+            int count = 0;
+            for (int i = 0; i < 10000; i++) {
+                if (deposit.tryToReleaseAll(countsToRelease))
+                    count++;
+                if (deposit.countOf(Coin.ONE_EURO) != 10)
+                    count++;
+                try {
+                    deposit.insert(Coin.ONE_EURO, 1);
+                    count++;
+                } catch (TypeLimitExceededException e) {
+                    // Expected, the type is always at max capacity
+                }
+            }
+            return count;
+        }));
+
+        // Then
+        assertThat(anomalies, is(0));
+        assertThat(deposit.countOf(Coin.ONE_EURO), is(10));
+        assertThat(deposit.countOf(Coin.TEN_CENTS), is(0));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldKeepTheUnitsInsertedWhileReleasingWhenConcurrent() throws Exception {
+
+        // Given
+        final AtomicInventorizedDeposit<Coin> deposit = new AtomicInventorizedDeposit<>(Coin.class, 1_000_000);
+        final int[] countsToRelease = new int[Coins.COUNT];
+        countsToRelease[Coin.ONE_EURO.ordinal()] = 1;
+        countsToRelease[Coin.TEN_CENTS.ordinal()] = 1;
+
+        // When: each thread inserts both types and releases them together
+        final int released = sumOfAll(runConcurrently(() -> {
+            int count = 0;
+            for (int i = 0; i < 10000; i++) {
+                deposit.insert(Coin.ONE_EURO, 1);
+                deposit.insert(Coin.TEN_CENTS, 1);
+                if (deposit.tryToReleaseAll(countsToRelease))
+                    count++;
+            }
+            return count;
+        }));
+
+        // Then
+        assertThat(deposit.countOf(Coin.ONE_EURO), is(THREADS * 10000 - released));
+        assertThat(deposit.countOf(Coin.TEN_CENTS), is(THREADS * 10000 - released));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldRejectACapacityOverlappingTheLockBit() {
+
+        // When
+        new AtomicInventorizedDeposit<>(Coin.class, 1 << 30);
+    }
+
+    private static List<Future<Integer>> runConcurrently(Callable<Integer> callable) {
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executorService.submit(callable));
+        }
+        executorService.shutdown();
+
+        return futures;
+    }
+
+    private static int sumOfAll(List<Future<Integer>> futures) throws Exception {
+
+        int sum = 0;
+        for (Future<Integer> future : futures) {
+            sum += future.get();
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,94 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CatalogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_shouldReadWhatWasWritten() throws IOException {
+
+        // Given
+        final Path file = temporaryFolder.getRoot().toPath().resolve("catalog.txt");
+        final Catalog catalog = Catalog.DEFAULT.withPriceInCents(Product.SPRITE, 160);
+
+        // When
+        catalog.write(file);
+
+        // Then
+        assertThat(Catalog.read(file), is(catalog));
+    }
+
+    @Test
+    public void read_shouldKeepTheDefaultPriceOfTheProductsNotListed() throws IOException {
+
+        // Given
+        final Path file = temporaryFolder.getRoot().toPath().resolve("catalog.txt");
+        Files.write(file, Arrays.asList("# new water price", "", "WATER 95"), StandardCharsets.UTF_8);
+
+        // When
+        final Catalog catalog = Catalog.read(file);
+
+        // Then
+        assertThat(catalog.getPriceInCents(Product.WATER), is(95));
+        assertThat(catalog.getPriceInCents(Product.COKE.ordinal()), is(Product.COKE.getPriceInCents()));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_shouldRejectUnknownProducts() throws IOException {
+
+        // Given
+        final Path file = temporaryFolder.getRoot().toPath().resolve("catalog.txt");
+        Files.write(file, Collections.singletonList("JUICE 200"), StandardCharsets.UTF_8);
+
+        // When
+        Catalog.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_shouldRejectPricesThatCoinsCantPay() throws IOException {
+
+        // Given
+        final Path file = temporaryFolder.getRoot().toPath().resolve("catalog.txt");
+        Files.write(file, Collections.singletonList("COKE 151"), StandardCharsets.UTF_8);
+
+        // When
+        Catalog.read(file);
+    }
+
+    @Test
+    public void setCatalog_shouldVendAtTheNewPriceWithoutRestarting() throws Exception {
+
+        // Given
+        final EnumInventorizedDeposit<Coin> coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        final EnumInventorizedDeposit<Product> productsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        productsDeposit.insert(Product.WATER, 2);
+        final VendingMachineImpl vendingMachineImpl = new VendingMachineImpl(
+            coinsDeposit, productsDeposit, CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+
+        // When
+        vendingMachineImpl.setCatalog(Catalog.DEFAULT.withPriceInCents(Product.WATER, 100));
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+        vendingMachineImpl.selectProduct(Product.WATER);
+
+        // Then
+        assertThat(vendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.of(Product.WATER)));
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.empty()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.NoChangeException;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ChangeFeasibilityIndexTest {
+
+    private static final int MAX_AMOUNT_IN_CENTS = 1000;
+
+    private ChangeFeasibilityIndex changeFeasibilityIndex;
+
+    @Before
+    public void setUp() {
+
+        changeFeasibilityIndex = new ChangeFeasibilityIndex(MAX_AMOUNT_IN_CENTS);
+    }
+
+    @Test
+    public void canPay_shouldOnlyPayZeroWhenEmpty() {
+
+        // Then
+        assertThat(changeFeasibilityIndex.canPay(0), is(true));
+        assertThat(changeFeasibilityIndex.canPay(5), is(false));
+        assertThat(changeFeasibilityIndex.canPay(-5), is(false));
+        assertThat(changeFeasibilityIndex.canPay(3), is(false));
+    }
+
+    @Test
+    public void canPay_shouldAgreeWithMinimumCoinsChangeCalculator() {
+
+        final MinimumCoinsChangeCalculator minimumCoinsChangeCalculator = new MinimumCoinsChangeCalculator();
+        final int[] changeCounts = new int[Coins.COUNT];
+        final Random random = new Random(42);
+
+        for (int round = 0; round < 200; round++) {
+
+            // Given
+            final int[] counts = new int[Coins.COUNT];
+            for (int i = 0; i < Coins.COUNT; i++) {
+                counts[i] = random.nextInt(4) == 0 ? 0 : random.nextInt(12);
+            }
+
+            // When
+            changeFeasibilityIndex.rebuild(counts);
+
+            // Then
+            for (int amount = 0; amount <= MAX_AMOUNT_IN_CENTS; amount += 5) {
+                assertThat(
+                    changeFeasibilityIndex.canPay(amount),
+                    is(minimumCoinsChangeCalculator.calculate(counts, amount, changeCounts))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void add_shouldGiveTheSameIndexThanRebuild() {
+
+        final ChangeFeasibilityIndex rebuiltChangeFeasibilityIndex = new ChangeFeasibilityIndex(MAX_AMOUNT_IN_CENTS);
+        final int[] counts = new int[Coins.COUNT];
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100; i++) {
+
+            // When
+            final Coin coin = Coins.ALL[random.nextInt(Coins.COUNT)];
+            changeFeasibilityIndex.add(coin);
+            counts[coin.ordinal()]++;
+            rebuiltChangeFeasibilityIndex.rebuild(counts);
+
+            // Then
+            for (int amount = 0; amount <= MAX_AMOUNT_IN_CENTS; amount += 5) {
+                assertThat(changeFeasibilityIndex.canPay(amount), is(rebuiltChangeFeasibilityIndex.canPay(amount)));
+            }
+        }
+    }
+
+    @Test
+    public void vendingMachineImpl_shouldRejectWithoutRunningTheCalculatorAndKeepTheIndexUpToDate() throws Exception {
+
+        // Given
+        final EnumInventorizedDeposit<Coin> coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        final EnumInventorizedDeposit<Product> productsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        productsDeposit.insert(Product.WATER, 1);
+        final int[] calculations = new int[1];
+        final VendingMachineImpl vendingMachineImpl = new VendingMachineImpl(
+            coinsDeposit,
+            productsDeposit,
+            (availableCounts, amountInCents, changeCounts) -> {
+                calculations[0]++;
+                return CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+                    .calculate(availableCounts, amountInCents, changeCounts);
+            },
+            VendingMachineMetrics.NONE,
+            changeFeasibilityIndex
+        );
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+
+        // When
+        final boolean canVendWater = vendingMachineImpl.canVend(Product.WATER, 100);
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl).selectProduct(Product.WATER);
+
+        // Then
+        assertThat(canVendWater, is(false));
+        then(caughtException()).isInstanceOf(NoChangeException.class);
+        assertThat(calculations[0], is(0));
+        assertThat(productsDeposit.countOf(Product.WATER), is(1));
+
+        // When
+        vendingMachineImpl.cancel();
+        vendingMachineImpl.collectCoinsAtRepaymentPort();
+        vendingMachineImpl.insertCoin(Coin.TEN_CENTS);
+        vendingMachineImpl.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachineImpl.insertCoin(Coin.TWENTY_CENTS);
+        vendingMachineImpl.insertCoin(Coin.TWENTY_CENTS);
+
+        // Then
+        assertThat(vendingMachineImpl.canVend(Product.WATER, 100), is(true));
+        assertThat(changeFeasibilityIndex.canPay(5), is(false));
+        assertThat(changeFeasibilityIndex.canPay(90), is(true));
+    }
+}
@@ -0,0 +1,94 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CoinCountsChangeCalculatorAsBiggestAsPossibleTest {
+
+    private int[] availableCounts;
+    private int[] changeCounts;
+
+    @Before
+    public void setUp() {
+
+        availableCounts = new int[Coins.COUNT];
+        availableCounts[Coin.TWO_EUROS.ordinal()] = 1;
+        availableCounts[Coin.FIFTY_CENTS.ordinal()] = 1;
+        availableCounts[Coin.ONE_EURO.ordinal()] = 1;
+
+        changeCounts = new int[Coins.COUNT];
+    }
+
+    @Test
+    public void shouldReturnValidChange() {
+
+        // When
+        final boolean changeIsPossible =
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible.calculate(
+                availableCounts,
+                Coin.TWO_EUROS.getValueInCents() + Coin.FIFTY_CENTS.getValueInCents(),
+                changeCounts
+            );
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 0, 0, 1, 0, 1}));
+    }
+
+    @Test
+    public void shouldReturnFalse() {
+
+        // When
+        final boolean changeIsPossible =
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible.calculate(
+                availableCounts,
+                Coin.TWO_EUROS.getValueInCents() + Coin.TWO_EUROS.getValueInCents(),
+                changeCounts
+            );
+
+        // Then
+        assertThat(changeIsPossible, is(false));
+    }
+
+    @Test
+    public void shouldUseSeveralCoinsOfTheSameType() {
+
+        // Given
+        availableCounts[Coin.TWENTY_CENTS.ordinal()] = 1000;
+
+        // When
+        final boolean changeIsPossible =
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible.calculate(
+                availableCounts,
+                40,
+                changeCounts
+            );
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 0, 2, 0, 0, 0}));
+    }
+
+    @Test
+    public void adapt_shouldProduceSameChangeThanAdaptedCalculator() {
+
+        // Given
+        final CoinCountsChangeCalculator adapted =
+            CoinCountsChangeCalculator.adapt(CoinsChangeCalculator.coinChangeCalculatorAsBiggestAsPossible);
+
+        // When
+        final boolean changeIsPossible =
+            adapted.calculate(
+                availableCounts,
+                Coin.ONE_EURO.getValueInCents() + Coin.FIFTY_CENTS.getValueInCents(),
+                changeCounts
+            );
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 0, 0, 1, 1, 0}));
+    }
+}
@@ -0,0 +1,102 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CoinSystemTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void euro_shouldBeCanonical() {
+
+        // Then
+        assertThat(CoinSystem.EURO.isCanonical(), is(true));
+        assertThat(CoinSystem.EURO.getSmallestCounterexampleInCents(), is(-1));
+    }
+
+    @Test
+    public void shouldFindTheSmallestCounterexampleOfNonCanonicalSystems() {
+
+        // Then
+        assertThat(new CoinSystem("X", 1, 3, 4).getSmallestCounterexampleInCents(), is(6));
+        assertThat(new CoinSystem("GBP_PRE_DECIMAL", 1, 3, 6, 12, 24, 30).getSmallestCounterexampleInCents(), is(48));
+        assertThat(new CoinSystem("USD", 1, 5, 10, 25, 50, 100).isCanonical(), is(true));
+    }
+
+    @Test
+    public void shouldFindTheCounterexamplesOfTwoDenominationsWithoutTheUnitCoin() {
+
+        // Given
+        final CoinSystem coinSystem = new CoinSystem("X", 3, 5);
+        final int[] changeCounts = new int[2];
+
+        // When
+        final boolean changeIsPossible = coinSystem.getChangeCalculator().calculate(new int[] {10, 10}, 9, changeCounts);
+
+        // Then
+        assertThat(coinSystem.isCanonical(), is(false));
+        assertThat(coinSystem.getSmallestCounterexampleInCents(), is(6));
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {3, 0}));
+        assertThat(new CoinSystem("X", 1, 5).isCanonical(), is(true));
+    }
+
+    @Test
+    public void changeCalculator_shouldReturnTheFewestCoinsOfNonCanonicalSystems() {
+
+        // Given
+        final CoinSystem coinSystem = new CoinSystem("X", 1, 3, 4);
+        final int[] changeCounts = new int[3];
+
+        // When
+        final boolean changeIsPossible = coinSystem.getChangeCalculator().calculate(new int[] {10, 10, 10}, 6, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 2, 0}));
+    }
+
+    @Test
+    public void changeCalculator_shouldFallBackWhenGreedyRunsOutOfCoins() {
+
+        // Given: 60 cents from {50, 20, 20, 20}
+        final int[] availableCounts = {0, 0, 3, 1, 0, 0};
+        final int[] changeCounts = new int[Coins.COUNT];
+
+        // When
+        final boolean changeIsPossible = CoinSystem.EURO.getChangeCalculator().calculate(availableCounts, 60, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 0, 3, 0, 0, 0}));
+    }
+
+    @Test
+    public void read_shouldReadEveryCoinSystem() throws IOException {
+
+        // Given
+        final Path file = temporaryFolder.getRoot().toPath().resolve("coin-systems.txt");
+        Files.write(file, Arrays.asList("# currency denominations", "EUR 5 10 20 50 100 200", "X 1 3 4"), StandardCharsets.UTF_8);
+
+        // When
+        final Map<String, CoinSystem> coinSystems = CoinSystem.read(file);
+
+        // Then
+        assertThat(coinSystems.get("EUR").isCanonical(), is(true));
+        assertThat(coinSystems.get("X").isCanonical(), is(false));
+        assertThat(coinSystems.get("X").getValueInCents(2), is(4));
+    }
+}
@@ -0,0 +1,195 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ConcurrentVendingMachineStressTest {
+
+    private static final int SESSIONS = 8;
+    private static final int COMMANDS_PER_SESSION = 20000;
+
+    private static final int COINS_CAPACITY = 20;
+    private static final int PRODUCTS_CAPACITY = 5000;
+
+    private AtomicInventorizedDeposit<Coin> coinsDeposit;
+    private AtomicInventorizedDeposit<Product> productsDeposit;
+    private ConcurrentVendingMachine concurrentVendingMachine;
+
+    @Before
+    public void setUp() throws TypeLimitExceededException {
+
+        coinsDeposit = new AtomicInventorizedDeposit<>(Coin.class, COINS_CAPACITY);
+        productsDeposit = new AtomicInventorizedDeposit<>(Product.class, PRODUCTS_CAPACITY);
+        concurrentVendingMachine =
+            new ConcurrentVendingMachine(
+                coinsDeposit,
+                productsDeposit,
+                CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+            );
+
+        // Coins deposit starts empty so that there are sales without change
+        for (Product product : Product.values()) {
+            productsDeposit.insert(product, PRODUCTS_CAPACITY);
+        }
+    }
+
+    @Test
+    public void shouldNotLoseNorDuplicateCoinsOrProducts() throws Exception {
+
+        // Given
+        final int[] initialCoinCounts = new int[Coins.COUNT];
+        coinsDeposit.copyCountsTo(initialCoinCounts);
+        final int[] initialProductCounts = new int[Product.values().length];
+        productsDeposit.copyCountsTo(initialProductCounts);
+
+        // When
+        final ExecutorService executorService = Executors.newFixedThreadPool(SESSIONS);
+        final List<Future<SessionTotals>> futures = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            final long seed = i;
+            futures.add(executorService.submit((Callable<SessionTotals>) () -> runSession(seed)));
+        }
+
+        final SessionTotals totals = new SessionTotals();
+        for (Future<SessionTotals> future : futures) {
+            totals.add(future.get());
+        }
+        executorService.shutdown();
+
+        // Then
+        assertThat(totals.vends > 0, is(true));
+        for (Coin coin : Coin.values()) {
+            final int index = coin.ordinal();
+            assertThat(
+                coin.name(),
+                coinsDeposit.countOf(coin) + totals.collectedCoinCounts[index],
+                is(initialCoinCounts[index] + totals.insertedCoinCounts[index])
+            );
+            assertThat(coinsDeposit.countOf(coin) <= COINS_CAPACITY, is(true));
+            assertThat(coin.name(), concurrentVendingMachine.getReservedCoinCapacity(coin), is(0));
+        }
+        for (Product product : Product.values()) {
+            final int index = product.ordinal();
+            assertThat(
+                product.name(),
+                productsDeposit.countOf(product) + totals.collectedProductCounts[index],
+                is(initialProductCounts[index])
+            );
+        }
+    }
+
+    @Test
+    public void payCashless_shouldNotVendAPaymentRetriedThroughAnotherSession() throws Exception {
+
+        // Given
+        final VendingMachine session = concurrentVendingMachine.openSession();
+        final VendingMachine anotherSession = concurrentVendingMachine.openSession();
+        session.payCashless(Product.WATER, 7L);
+
+        // When
+        final boolean vended = anotherSession.payCashless(Product.WATER, 7L);
+
+        // Then
+        assertThat(vended, is(false));
+        assertThat(session.collectProductAtTakeoutPort(), is(Optional.of(Product.WATER)));
+        assertThat(anotherSession.collectProductAtTakeoutPort(), is(Optional.empty()));
+        assertThat(productsDeposit.countOf(Product.WATER), is(PRODUCTS_CAPACITY - 1));
+    }
+
+    private SessionTotals runSession(long seed) throws InvalidStateException {
+
+        final Random random = new Random(seed);
+        final VendingMachine session = concurrentVendingMachine.openSession();
+        final SessionTotals totals = new SessionTotals();
+        final Coin[] coins = Coin.values();
+        final Product[] products = Product.values();
+
+        for (int i = 0; i < COMMANDS_PER_SESSION; i++) {
+
+            final int command = random.nextInt(10);
+            try {
+                if (command < 6) {
+                    insertCoin(session, coins[random.nextInt(coins.length)], totals);
+                } else if (command < 9) {
+                    session.selectProduct(products[random.nextInt(products.length)]);
+                } else {
+                    session.cancel();
+                }
+            } catch (NoChangeException | NoProductStockException | ProductAlreadySelected e) {
+                // Ordinary outcomes
+            }
+
+            collect(session, totals);
+        }
+
+        session.cancel();
+        collect(session, totals);
+
+        return totals;
+    }
+
+    private static void insertCoin(VendingMachine session, Coin coin, SessionTotals totals)
+        throws NoChangeException, NoProductStockException {
+
+        try {
+            session.insertCoin(coin);
+        } catch (DepositCoinOverflowException e) {
+            // The coin has been rejected
+            return;
+        } catch (NoChangeException | NoProductStockException e) {
+            totals.insertedCoinCounts[coin.ordinal()]++;
+            throw e;
+        }
+
+        totals.insertedCoinCounts[coin.ordinal()]++;
+    }
+
+    private static void collect(VendingMachine session, SessionTotals totals) {
+
+        Optional<Product> optProduct;
+        while ((optProduct = session.collectProductAtTakeoutPort()).isPresent()) {
+            totals.collectedProductCounts[optProduct.get().ordinal()]++;
+            totals.vends++;
+        }
+
+        final Optional<List<Coin>> optCoins = session.collectCoinsAtRepaymentPort();
+        if (optCoins.isPresent()) {
+            for (Coin coin : optCoins.get()) {
+                totals.collectedCoinCounts[coin.ordinal()]++;
+            }
+        }
+    }
+
+    private static class SessionTotals {
+
+        private final int[] insertedCoinCounts = new int[Coins.COUNT];
+        private final int[] collectedCoinCounts = new int[Coins.COUNT];
+        private final int[] collectedProductCounts = new int[Product.values().length];
+        private int vends;
+
+        private void add(SessionTotals other) {
+
+            for (int i = 0; i < insertedCoinCounts.length; i++) {
+                insertedCoinCounts[i] += other.insertedCoinCounts[i];
+                collectedCoinCounts[i] += other.collectedCoinCounts[i];
+            }
+            for (int i = 0; i < collectedProductCounts.length; i++) {
+                collectedProductCounts[i] += other.collectedProductCounts[i];
+            }
+            vends += other.vends;
+        }
+    }
+}
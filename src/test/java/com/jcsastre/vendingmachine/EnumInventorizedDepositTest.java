@@ -0,0 +1,50 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class EnumInventorizedDepositTest extends InventorizedDepositContractTest<EnumInventorizedDeposit<Coin>> {
+
+    @Override
+    protected EnumInventorizedDeposit<Coin> newDeposit(Integer maxCapacityPerEachType) {
+
+        return new EnumInventorizedDeposit<>(Coin.class, maxCapacityPerEachType);
+    }
+
+    @Test
+    public void tryToRelease_shouldReturnTheSameOptionalEveryTime() {
+
+        // When
+        final Optional<Coin> firstOptCoin = deposit.tryToRelease(Coin.FIFTY_CENTS);
+        final Optional<Coin> secondOptCoin = deposit.tryToRelease(Coin.FIFTY_CENTS);
+
+        // Then
+        assertThat(secondOptCoin, is(sameInstance(firstOptCoin)));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(0));
+    }
+
+    @Test
+    public void getCountsForAllTypes_shouldReflectChangesAndBeReadOnly() {
+
+        // Given
+        final Map<Coin, Integer> countsForAllTypes = deposit.getCountsForAllTypes();
+
+        // When
+        deposit.tryToRelease(Coin.ONE_EURO);
+        com.googlecode.catchexception.apis.BDDCatchException.when(countsForAllTypes).put(Coin.TWO_EUROS, 1);
+
+        // Then
+        then(caughtException()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(countsForAllTypes.size(), is(1));
+        assertThat(countsForAllTypes.get(Coin.FIFTY_CENTS), is(2));
+        assertThat(countsForAllTypes.containsKey(Coin.ONE_EURO), is(false));
+    }
+}
@@ -0,0 +1,224 @@
+package com.jcsastre.vendingmachine;
+
+import com.google.common.collect.ImmutableMap;
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * <p>This class contains tests for the expected behaviour of any
+ * {@link InventorizedDeposit}, through its public methods only. The test of each
+ * implementation extends it, and may override a case to set the deposit up its own
+ * way.</p>
+ */
+public abstract class InventorizedDepositContractTest<D extends InventorizedDeposit<Coin>> {
+
+    protected Map<Coin, Integer> countByCoin;
+
+    protected D deposit;
+
+    protected abstract D newDeposit(Integer maxCapacityPerEachType);
+
+    @Before
+    public void setUpDeposit() throws TypeLimitExceededException {
+
+        countByCoin = new HashMap<>();
+        countByCoin.put(Coin.ONE_EURO, 1);
+        countByCoin.put(Coin.FIFTY_CENTS, 2);
+
+        deposit = newDeposit(5);
+        for (Map.Entry<Coin, Integer> coinIntegerEntry : countByCoin.entrySet()) {
+            deposit.insert(coinIntegerEntry.getKey(), coinIntegerEntry.getValue());
+        }
+    }
+
+    @Test
+    public void insert_shouldInsert() throws TypeLimitExceededException {
+
+        // When
+        deposit.insert(Coin.FIFTY_CENTS, 1);
+
+        // Then
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(1));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(3));
+    }
+
+    @Test
+    public void insert_shouldThrowTypeLimitExceededException() throws TypeLimitExceededException {
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(
+            deposit
+        ).insert(Coin.FIFTY_CENTS, 10);
+
+        // Then
+        then(caughtException()).isInstanceOf(TypeLimitExceededException.class);
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(1));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(2));
+    }
+
+    @Test
+    public void hasType_shouldReturnTrueWhenHasAType() {
+
+        // When
+        final boolean hasType = deposit.hasType(Coin.ONE_EURO);
+
+        // Then
+        assertThat(hasType, is(true));
+    }
+
+    @Test
+    public void hasType_shouldReturnFalseWhenDoesNotHaveAType() {
+
+        // When
+        final boolean hasType = deposit.hasType(Coin.TWO_EUROS);
+
+        // Then
+        assertThat(hasType, is(false));
+    }
+
+    @Test
+    public void tryToRelease_shouldReturnEmptyWhenTryingToReleaseATypeThatDoesNotHave() {
+
+        // When
+        final Optional<Coin> optCoin = deposit.tryToRelease(Coin.TWO_EUROS);
+
+        // Then
+        assertThat(optCoin, is(Optional.empty()));
+    }
+
+    @Test
+    public void tryToRelease_shouldReleaseATypeWhenTryingToReleaseATypeThatHas() {
+
+        // When
+        final Optional<Coin> optCoin = deposit.tryToRelease(Coin.ONE_EURO);
+
+        // Then
+        assertThat(optCoin, is(Optional.of(Coin.ONE_EURO)));
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(0));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldReleaseAllTypesWhenHasEnough() {
+
+        // When
+        final boolean released =
+            deposit.tryToReleaseAll(ImmutableMap.of(Coin.ONE_EURO, 1, Coin.FIFTY_CENTS, 2));
+
+        // Then
+        assertThat(released, is(true));
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(0));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(0));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldReleaseNothingWhenAnyTypeHasNotEnough() {
+
+        // When
+        final boolean released =
+            deposit.tryToReleaseAll(ImmutableMap.of(Coin.ONE_EURO, 1, Coin.FIFTY_CENTS, 3));
+
+        // Then
+        assertThat(released, is(false));
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(1));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(2));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldRejectNegativeCountsReleasingNothing() {
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(
+            deposit
+        ).tryToReleaseAll(ImmutableMap.of(Coin.ONE_EURO, 1, Coin.FIFTY_CENTS, -3));
+
+        // Then
+        then(caughtException()).isInstanceOf(IllegalArgumentException.class);
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(1));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(2));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldReleaseTheCountsAtThePositionOfEachType() {
+
+        // Given
+        final Coin[] coins = {Coin.FIFTY_CENTS, Coin.ONE_EURO};
+
+        // When
+        final boolean released = deposit.tryToReleaseAll(coins, new int[] {2, 1});
+        final boolean releasedWhenEmpty = deposit.tryToReleaseAll(coins, new int[] {0, 1});
+
+        // Then
+        assertThat(released, is(true));
+        assertThat(releasedWhenEmpty, is(false));
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(0));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(0));
+    }
+
+    @Test
+    public void empty_shouldEmptyAllTypes() {
+
+        // When
+        deposit.empty();
+
+        // Then
+        assertThat(deposit.getCountByType(Coin.ONE_EURO), is(0));
+        assertThat(deposit.getCountByType(Coin.FIFTY_CENTS), is(0));
+    }
+
+    @Test
+    public void getCountByType_shouldReturnCountOfAType() {
+
+        // When
+        final Integer countOneEuro = deposit.getCountByType(Coin.ONE_EURO);
+        final Integer countFiftyCents = deposit.getCountByType(Coin.FIFTY_CENTS);
+        final Integer countTwoEuros = deposit.getCountByType(Coin.TWO_EUROS);
+
+        // Then
+        assertThat(countOneEuro, is(1));
+        assertThat(countFiftyCents, is(2));
+        assertThat(countTwoEuros, is(0));
+    }
+
+    @Test
+    public void getCountsForAllTypes_shouldReturnTheCountOfAllTypes() {
+
+        // When
+        final Map<Coin, Integer> countsForAllTypes = deposit.getCountsForAllTypes();
+
+        // Then
+        assertThat(countsForAllTypes, is(countByCoin));
+    }
+
+    @Test
+    public void copyCountsTo_shouldCopyTheCountAtThePositionOfEachType() {
+
+        // Given
+        final int[] counts = new int[3];
+
+        // When
+        deposit.copyCountsTo(new Coin[] {Coin.FIFTY_CENTS, Coin.TWO_EUROS, Coin.ONE_EURO}, counts);
+
+        // Then
+        assertThat(counts, is(new int[] {2, 0, 1}));
+    }
+
+    @Test
+    public void getMaxCapacityPerEachType_shouldReturnTheMaxCapacityPerEachType() {
+
+        // When
+        final Integer maxCapacityPerEachType = deposit.getMaxCapacityPerEachType();
+
+        // Then
+        assertThat(maxCapacityPerEachType, is(5));
+    }
+}
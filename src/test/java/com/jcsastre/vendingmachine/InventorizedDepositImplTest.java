@@ -1,5 +1,6 @@
 package com.jcsastre.vendingmachine;
 
+import com.google.common.collect.ImmutableMap;
 import com.jcsastre.vendingmachine.exception.NoProductStockException;
 import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
 import org.junit.Before;
@@ -15,7 +16,13 @@ import static org.assertj.core.api.BDDAssertions.then;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 
-public class InventorizedDepositImplTest {
+public class InventorizedDepositImplTest extends InventorizedDepositContractTest<InventorizedDepositImpl<Coin>> {
+
+    @Override
+    protected InventorizedDepositImpl<Coin> newDeposit(Integer maxCapacityPerEachType) {
+
+        return new InventorizedDepositImpl<>(maxCapacityPerEachType);
+    }
 
     private Map<Coin, Integer> countByCoin;
 
@@ -135,6 +142,42 @@ public class InventorizedDepositImplTest {
         assertThat(inventorizedDepositImpl.getCountByType(Coin.ONE_EURO), is(0));
     }
 
+    @Test
+    public void tryToReleaseAll_shouldReleaseAllTypesWhenHasEnough() {
+
+        // Given:
+        final InventorizedDepositImpl<Coin> inventorizedDepositImpl =
+            new InventorizedDepositImpl<>(5);
+        Whitebox.setInternalState(inventorizedDepositImpl, "countByType", countByCoin);
+
+        // When
+        final boolean released =
+            inventorizedDepositImpl.tryToReleaseAll(ImmutableMap.of(Coin.ONE_EURO, 1, Coin.FIFTY_CENTS, 2));
+
+        // Then
+        assertThat(released, is(true));
+        assertThat(inventorizedDepositImpl.getCountByType(Coin.ONE_EURO), is(0));
+        assertThat(inventorizedDepositImpl.getCountByType(Coin.FIFTY_CENTS), is(0));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldReleaseNothingWhenAnyTypeHasNotEnough() {
+
+        // Given:
+        final InventorizedDepositImpl<Coin> inventorizedDepositImpl =
+            new InventorizedDepositImpl<>(5);
+        Whitebox.setInternalState(inventorizedDepositImpl, "countByType", countByCoin);
+
+        // When
+        final boolean released =
+            inventorizedDepositImpl.tryToReleaseAll(ImmutableMap.of(Coin.ONE_EURO, 1, Coin.FIFTY_CENTS, 3));
+
+        // Then
+        assertThat(released, is(false));
+        assertThat(inventorizedDepositImpl.getCountByType(Coin.ONE_EURO), is(1));
+        assertThat(inventorizedDepositImpl.getCountByType(Coin.FIFTY_CENTS), is(2));
+    }
+
     @Test
     public void empty_shouldEmptyAllTypes() {
 
@@ -0,0 +1,271 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class JournaledVendingMachineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path journalFile;
+
+    private EnumInventorizedDeposit<Coin> coinsDeposit;
+    private EnumInventorizedDeposit<Product> productsDeposit;
+    private VendingMachineImpl vendingMachine;
+
+    @Before
+    public void setUp() throws IOException {
+
+        journalFile = temporaryFolder.getRoot().toPath().resolve("commands.journal");
+
+        coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        productsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        vendingMachine = new VendingMachineImpl(
+            coinsDeposit, productsDeposit, CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+
+    @Test
+    public void recover_shouldRebuildTheStateOfTheJournaledCommands() throws Exception {
+
+        // Given
+        try (JournaledVendingMachine journaledVendingMachine =
+                 new JournaledVendingMachine(vendingMachine, CommandJournal.open(journalFile, 0, 48, 1))) {
+            runCommands(journaledVendingMachine);
+        }
+
+        // When
+        final EnumInventorizedDeposit<Coin> recoveredCoinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        final EnumInventorizedDeposit<Product> recoveredProductsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        final VendingMachineImpl recoveredVendingMachine = new VendingMachineImpl(
+            recoveredCoinsDeposit, recoveredProductsDeposit,
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+        JournaledVendingMachine.recover(journalFile, recoveredVendingMachine).close();
+
+        // Then
+        assertThat(recoveredVendingMachine.readBalanceInCentsIndicator(), is(vendingMachine.readBalanceInCentsIndicator()));
+        assertThat(recoveredVendingMachine.readSelectedProductIndicator(), is(vendingMachine.readSelectedProductIndicator()));
+        assertThat(recoveredCoinsDeposit.getCountsForAllTypes(), is(coinsDeposit.getCountsForAllTypes()));
+        assertThat(recoveredProductsDeposit.getCountsForAllTypes(), is(productsDeposit.getCountsForAllTypes()));
+        assertThat(recoveredVendingMachine.takeSnapshot(0), is(vendingMachine.takeSnapshot(0)));
+    }
+
+    @Test
+    public void recover_shouldAppendAfterTheReplayedCommands() throws Exception {
+
+        // Given
+        try (JournaledVendingMachine journaledVendingMachine = JournaledVendingMachine.recover(journalFile, vendingMachine)) {
+            journaledVendingMachine.reset();
+            journaledVendingMachine.insertCoin(Coin.ONE_EURO);
+        }
+
+        // When
+        try (JournaledVendingMachine journaledVendingMachine =
+                 JournaledVendingMachine.recover(journalFile, newVendingMachine())) {
+            journaledVendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        }
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        final long position = CommandJournal.replay(journalFile, 0, recoveredVendingMachine);
+
+        // Then
+        assertThat(position, is(3L * CommandJournal.RECORD_SIZE));
+        assertThat(recoveredVendingMachine.readBalanceInCentsIndicator(), is(150));
+    }
+
+    @Test
+    public void recover_shouldReplayOnlyTheCommandsAfterTheSnapshot() throws Exception {
+
+        // Given
+        final Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("vending-machine.snapshot");
+        try (JournaledVendingMachine journaledVendingMachine =
+                 JournaledVendingMachine.recover(journalFile, snapshotFile, vendingMachine, 60_000)) {
+            runCommands(journaledVendingMachine);
+        }
+        final VendingMachineSnapshot vendingMachineSnapshot = VendingMachineSnapshot.read(snapshotFile);
+        try (JournaledVendingMachine journaledVendingMachine = JournaledVendingMachine.recover(journalFile, newVendingMachine())) {
+            journaledVendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        }
+
+        // When
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        JournaledVendingMachine.recover(journalFile, snapshotFile, recoveredVendingMachine, 60_000).close();
+
+        // Then
+        assertThat(
+            vendingMachineSnapshot.getJournalPosition(),
+            is(14L * CommandJournal.RECORD_SIZE + CommandJournal.recordSizeOf(VendingMachineCommand.VEND_BASKET))
+        );
+        assertThat(recoveredVendingMachine.readBalanceInCentsIndicator(), is(0));
+        assertThat(recoveredVendingMachine.collectProductAtTakeoutPort(), is(Optional.of(Product.WATER)));
+    }
+
+    @Test
+    public void recover_shouldReplayTheCatalogChanges() throws Exception {
+
+        // Given
+        final Catalog catalog = Catalog.DEFAULT.withPriceInCents(Product.WATER, 100);
+        try (JournaledVendingMachine journaledVendingMachine = JournaledVendingMachine.recover(journalFile, vendingMachine)) {
+            journaledVendingMachine.reset();
+            journaledVendingMachine.setCatalog(catalog);
+            journaledVendingMachine.selectProduct(Product.WATER);
+            journaledVendingMachine.insertCoin(Coin.FIFTY_CENTS);
+            journaledVendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        }
+
+        // When
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        final long position = CommandJournal.replay(journalFile, 0, recoveredVendingMachine);
+
+        // Then
+        assertThat(
+            position,
+            is(4L * CommandJournal.RECORD_SIZE + CommandJournal.recordSizeOf(VendingMachineCommand.SET_CATALOG))
+        );
+        assertThat(recoveredVendingMachine.getCatalog(), is(catalog));
+        assertThat(recoveredVendingMachine.collectCoinsAtRepaymentPort(), is(Optional.empty()));
+        assertThat(recoveredVendingMachine.collectProductAtTakeoutPort(), is(Optional.of(Product.WATER)));
+    }
+
+    @Test
+    public void recover_shouldReplayTheRestocks() throws Exception {
+
+        // Given
+        try (JournaledVendingMachine journaledVendingMachine = JournaledVendingMachine.recover(journalFile, vendingMachine)) {
+            journaledVendingMachine.reset();
+            journaledVendingMachine.insertCoin(Coin.TWO_EUROS);
+            journaledVendingMachine.selectProduct(Product.COKE);
+            journaledVendingMachine.collectProductAtTakeoutPort();
+            journaledVendingMachine.collectCoinsAtRepaymentPort();
+            journaledVendingMachine.restock();
+        }
+
+        // When
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        CommandJournal.replay(journalFile, 0, recoveredVendingMachine);
+
+        // Then
+        assertThat(recoveredVendingMachine.takeSnapshot(0), is(vendingMachine.takeSnapshot(0)));
+        assertThat(coinsDeposit.countOf(Coin.TWO_EUROS), is(5));
+        assertThat(productsDeposit.countOf(Product.COKE), is(10));
+    }
+
+    @Test
+    public void recover_shouldReplayOnlyTheVendedCashlessPayments() throws Exception {
+
+        // Given
+        try (JournaledVendingMachine journaledVendingMachine = JournaledVendingMachine.recover(journalFile, vendingMachine)) {
+            journaledVendingMachine.reset();
+            journaledVendingMachine.payCashless(Product.SPRITE, 7L);
+            journaledVendingMachine.payCashless(Product.SPRITE, 7L);
+        }
+
+        // When
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        final long position = CommandJournal.replay(journalFile, 0, recoveredVendingMachine);
+
+        // Then
+        assertThat(position, is((long) CommandJournal.RECORD_SIZE + CommandJournal.recordSizeOf(VendingMachineCommand.PAY_CASHLESS)));
+        assertThat(recoveredVendingMachine.collectProductAtTakeoutPort(), is(Optional.of(Product.SPRITE)));
+        assertThat(productsDeposit.countOf(Product.SPRITE), is(9));
+    }
+
+    @Test
+    public void recover_shouldNotVendAgainACashlessPaymentRetried() throws Exception {
+
+        // Given: payments whose records don't fit at the end of the segments
+        try (JournaledVendingMachine journaledVendingMachine =
+                 new JournaledVendingMachine(vendingMachine, CommandJournal.open(journalFile, 0, 52, 1))) {
+            journaledVendingMachine.reset();
+            for (long idempotencyKey = 1; idempotencyKey <= 8; idempotencyKey++) {
+                journaledVendingMachine.payCashless(Product.SPRITE, idempotencyKey);
+                journaledVendingMachine.collectProductAtTakeoutPort();
+            }
+        }
+
+        // When
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        JournaledVendingMachine.recover(journalFile, recoveredVendingMachine).close();
+        final boolean vended = recoveredVendingMachine.payCashless(Product.SPRITE, 6L);
+
+        // Then
+        assertThat(vended, is(false));
+        assertThat(recoveredVendingMachine.collectProductAtTakeoutPort(), is(Optional.empty()));
+        assertThat(recoveredVendingMachine.takeSnapshot(0), is(vendingMachine.takeSnapshot(0)));
+    }
+
+    @Test
+    public void recover_shouldNotVendAgainACashlessPaymentRetriedAfterTheSnapshot() throws Exception {
+
+        // Given
+        final Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("vending-machine.snapshot");
+        try (JournaledVendingMachine journaledVendingMachine =
+                 JournaledVendingMachine.recover(journalFile, snapshotFile, vendingMachine, 60_000)) {
+            journaledVendingMachine.reset();
+            journaledVendingMachine.payCashless(Product.COKE, 7L);
+        }
+
+        // When: the snapshot is taken after the payment, so it isn't replayed
+        final VendingMachineImpl recoveredVendingMachine = newVendingMachine();
+        JournaledVendingMachine.recover(journalFile, snapshotFile, recoveredVendingMachine, 60_000).close();
+
+        // Then
+        assertThat(recoveredVendingMachine.payCashless(Product.COKE, 7L), is(false));
+        assertThat(recoveredVendingMachine.payCashless(Product.COKE, 8L), is(true));
+    }
+
+    @Test
+    public void replay_shouldDoNothingWhenTheJournalDoesNotExist() throws IOException {
+
+        // When
+        final long position = CommandJournal.replay(journalFile, 0, vendingMachine);
+
+        // Then
+        assertThat(position, is(0L));
+        assertThat(vendingMachine.readBalanceInCentsIndicator(), is(0));
+    }
+
+    private void runCommands(BatchVendingMachine vendingMachine) throws Exception {
+
+        vendingMachine.reset();
+
+        vendingMachine.insertCoin(Coin.TWO_EUROS);
+        vendingMachine.selectProduct(Product.COKE);
+        assertThat(vendingMachine.collectProductAtTakeoutPort(), is(Optional.of(Product.COKE)));
+        vendingMachine.collectCoinsAtRepaymentPort();
+
+        vendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachine.insertCoin(Coin.TEN_CENTS);
+        vendingMachine.cancel();
+        vendingMachine.collectCoinsAtRepaymentPort();
+
+        vendingMachine.insertCoin(Coin.TWENTY_CENTS);
+        vendingMachine.vendBasket(Collections.singletonMap(Product.WATER, 2), Collections.singletonList(Coin.TWO_EUROS));
+        vendingMachine.collectBasketAtTakeoutPort();
+        vendingMachine.collectCoinsAtRepaymentPort();
+
+        vendingMachine.selectProduct(Product.WATER);
+        vendingMachine.insertCoin(Coin.FIFTY_CENTS);
+    }
+
+    private static VendingMachineImpl newVendingMachine() {
+
+        return new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 10),
+            new EnumInventorizedDeposit<>(Product.class, 10),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+}
@@ -0,0 +1,138 @@
+package com.jcsastre.vendingmachine;
+
+import com.google.common.collect.ImmutableMap;
+import com.jcsastre.vendingmachine.LaneInventorizedDeposit.LaneSelection;
+import com.jcsastre.vendingmachine.exception.TypeLimitExceededException;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class LaneInventorizedDepositTest {
+
+    // Coke in lanes 0 and 2, water in lane 1, sprite in lane 3
+    private static final Product[] LANE_PRODUCTS = {Product.COKE, Product.WATER, Product.COKE, Product.SPRITE};
+    private static final int[] LANE_CAPACITIES = {4, 6, 8, 5};
+
+    @Test
+    public void insert_shouldFillTheLanesOfTheProductInOrder() throws TypeLimitExceededException {
+
+        // Given
+        final LaneInventorizedDeposit laneInventorizedDeposit = newLaneInventorizedDeposit(LaneSelection.FULLEST);
+
+        // When
+        laneInventorizedDeposit.insert(Product.COKE, 10);
+
+        // Then
+        assertThat(laneInventorizedDeposit.getLaneCount(0), is(4));
+        assertThat(laneInventorizedDeposit.getLaneCount(2), is(6));
+        assertThat(laneInventorizedDeposit.getCountByType(Product.COKE), is(10));
+        assertThat(laneInventorizedDeposit.hasType(Product.COKE), is(true));
+        assertThat(laneInventorizedDeposit.hasType(Product.WATER), is(false));
+        assertThat(laneInventorizedDeposit.getMaxCapacityByType(Product.COKE), is(12));
+        assertThat(laneInventorizedDeposit.getMaxCapacityPerEachType(), is(5));
+    }
+
+    @Test
+    public void insert_shouldThrowTypeLimitExceededException() throws TypeLimitExceededException {
+
+        // Given
+        final LaneInventorizedDeposit laneInventorizedDeposit = newLaneInventorizedDeposit(LaneSelection.FULLEST);
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(laneInventorizedDeposit).insert(Product.WATER, 7);
+
+        // Then
+        then(caughtException()).isInstanceOf(TypeLimitExceededException.class);
+        assertThat(laneInventorizedDeposit.getCountByType(Product.WATER), is(0));
+    }
+
+    @Test
+    public void tryToRelease_shouldReleaseFromTheFullestLane() throws TypeLimitExceededException {
+
+        // Given
+        final LaneInventorizedDeposit laneInventorizedDeposit = newLaneInventorizedDeposit(LaneSelection.FULLEST);
+        laneInventorizedDeposit.insert(Product.COKE, 10);
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            assertThat(laneInventorizedDeposit.tryToRelease(Product.COKE), is(Optional.of(Product.COKE)));
+        }
+
+        // Then
+        assertThat(laneInventorizedDeposit.getLastReleasedLane(), is(0));
+        assertThat(laneInventorizedDeposit.getLaneCount(0), is(3));
+        assertThat(laneInventorizedDeposit.getLaneCount(2), is(4));
+        assertThat(laneInventorizedDeposit.getCountByType(Product.COKE), is(7));
+    }
+
+    @Test
+    public void tryToRelease_shouldReleaseFromEachNonEmptyLaneInTurn() throws TypeLimitExceededException {
+
+        // Given
+        final LaneInventorizedDeposit laneInventorizedDeposit = newLaneInventorizedDeposit(LaneSelection.ROUND_ROBIN);
+        laneInventorizedDeposit.insert(Product.COKE, 5);
+
+        // When
+        final int[] releasedLanes = new int[5];
+        for (int i = 0; i < releasedLanes.length; i++) {
+            laneInventorizedDeposit.tryToRelease(Product.COKE);
+            releasedLanes[i] = laneInventorizedDeposit.getLastReleasedLane();
+        }
+
+        // Then
+        assertThat(releasedLanes, is(new int[] {0, 2, 0, 0, 0}));
+        assertThat(laneInventorizedDeposit.tryToRelease(Product.COKE), is(Optional.empty()));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldReleaseNothingWhenAnyProductIsMissing() throws TypeLimitExceededException {
+
+        // Given
+        final LaneInventorizedDeposit laneInventorizedDeposit = newLaneInventorizedDeposit(LaneSelection.FULLEST);
+        laneInventorizedDeposit.insert(Product.COKE, 10);
+        laneInventorizedDeposit.insert(Product.WATER, 1);
+
+        // When
+        final boolean released =
+            laneInventorizedDeposit.tryToReleaseAll(ImmutableMap.of(Product.COKE, 2, Product.WATER, 2));
+
+        // Then
+        assertThat(released, is(false));
+        assertThat(laneInventorizedDeposit.getCountByType(Product.COKE), is(10));
+        assertThat(laneInventorizedDeposit.getCountsForAllTypes(), is(ImmutableMap.of(Product.COKE, 10, Product.WATER, 1)));
+    }
+
+    @Test
+    public void tryToReleaseAll_shouldTellTheUnitsReleasedFromEachLane() throws TypeLimitExceededException {
+
+        // Given
+        final LaneInventorizedDeposit laneInventorizedDeposit = newLaneInventorizedDeposit(LaneSelection.ROUND_ROBIN);
+        laneInventorizedDeposit.insert(Product.COKE, 10);
+        laneInventorizedDeposit.insert(Product.WATER, 2);
+        final int[] lastReleasedLaneCounts = new int[laneInventorizedDeposit.getLanesCount()];
+
+        // When
+        laneInventorizedDeposit.tryToReleaseAll(ImmutableMap.of(Product.COKE, 3, Product.WATER, 1));
+        laneInventorizedDeposit.copyLastReleasedLaneCountsTo(lastReleasedLaneCounts);
+
+        // Then
+        assertThat(lastReleasedLaneCounts, is(new int[] {2, 1, 1, 0}));
+
+        // When
+        laneInventorizedDeposit.tryToReleaseAll(ImmutableMap.of(Product.SPRITE, 1));
+        laneInventorizedDeposit.copyLastReleasedLaneCountsTo(lastReleasedLaneCounts);
+
+        // Then
+        assertThat(lastReleasedLaneCounts, is(new int[] {0, 0, 0, 0}));
+    }
+
+    private static LaneInventorizedDeposit newLaneInventorizedDeposit(LaneSelection laneSelection) {
+
+        return new LaneInventorizedDeposit(LANE_PRODUCTS, LANE_CAPACITIES, laneSelection);
+    }
+}
@@ -0,0 +1,157 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class MinimumCoinsChangeCalculatorTest {
+
+    private MinimumCoinsChangeCalculator minimumCoinsChangeCalculator;
+
+    private int[] availableCounts;
+    private int[] changeCounts;
+
+    @Before
+    public void setUp() {
+
+        minimumCoinsChangeCalculator = new MinimumCoinsChangeCalculator();
+
+        availableCounts = new int[Coins.COUNT];
+        changeCounts = new int[Coins.COUNT];
+    }
+
+    @Test
+    public void shouldReturnChangeWhenBiggestAsPossibleDoesNot() {
+
+        // Given
+        availableCounts[Coin.FIFTY_CENTS.ordinal()] = 1;
+        availableCounts[Coin.TWENTY_CENTS.ordinal()] = 3;
+
+        // When
+        final boolean changeIsPossible = minimumCoinsChangeCalculator.calculate(availableCounts, 60, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 0, 3, 0, 0, 0}));
+    }
+
+    @Test
+    public void shouldReturnChangeWithMinimumNumberOfCoins() {
+
+        // Given
+        availableCounts[Coin.TEN_CENTS.ordinal()] = 1;
+        availableCounts[Coin.TWENTY_CENTS.ordinal()] = 4;
+        availableCounts[Coin.FIFTY_CENTS.ordinal()] = 1;
+
+        // When
+        final boolean changeIsPossible = minimumCoinsChangeCalculator.calculate(availableCounts, 80, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 1, 1, 1, 0, 0}));
+    }
+
+    @Test
+    public void shouldReturnFalseWhenChangeIsNotPossible() {
+
+        // Given
+        availableCounts[Coin.FIFTY_CENTS.ordinal()] = 1;
+        availableCounts[Coin.TWENTY_CENTS.ordinal()] = 3;
+
+        // When
+        final boolean changeIsPossible = minimumCoinsChangeCalculator.calculate(availableCounts, 30, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(false));
+    }
+
+    @Test
+    public void shouldReturnFalseWhenAmountIsNotMultipleOfSmallestCoin() {
+
+        // Given
+        availableCounts[Coin.FIVE_CENTS.ordinal()] = 10;
+
+        // When
+        final boolean changeIsPossible = minimumCoinsChangeCalculator.calculate(availableCounts, 12, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(false));
+    }
+
+    @Test
+    public void shouldReturnSameChangeWithAndWithoutCache() {
+
+        final MinimumCoinsChangeCalculator notCachingCalculator = new MinimumCoinsChangeCalculator(0);
+        final int[] notCachedChangeCounts = new int[Coins.COUNT];
+        final Random random = new Random(42);
+
+        for (int iteration = 0; iteration < 500; iteration++) {
+
+            // Given
+            for (int i = 0; i < availableCounts.length; i++) {
+                availableCounts[i] = random.nextInt(4);
+            }
+            final int amountInCents = 5 * random.nextInt(200);
+
+            // When
+            final boolean changeIsPossible =
+                minimumCoinsChangeCalculator.calculate(availableCounts, amountInCents, changeCounts);
+            final boolean notCachedChangeIsPossible =
+                notCachingCalculator.calculate(availableCounts, amountInCents, notCachedChangeCounts);
+
+            // Then
+            assertThat(changeIsPossible, is(notCachedChangeIsPossible));
+            assertThat(changeIsPossible, is(bruteForceMinimumCoins(availableCounts, amountInCents, 0) >= 0));
+            if (changeIsPossible) {
+                assertThat(sumInCents(changeCounts), is(amountInCents));
+                assertThat(sumOfCounts(changeCounts), is(bruteForceMinimumCoins(availableCounts, amountInCents, 0)));
+                assertThat(changeCounts, is(notCachedChangeCounts));
+                for (int i = 0; i < changeCounts.length; i++) {
+                    assertThat(changeCounts[i] <= availableCounts[i], is(true));
+                }
+            }
+        }
+    }
+
+    private static int bruteForceMinimumCoins(int[] availableCounts, int amountInCents, int coinIndex) {
+
+        if (amountInCents == 0)
+            return 0;
+        if (coinIndex == availableCounts.length)
+            return -1;
+
+        int minimum = -1;
+        final int valueInCents = Coin.values()[coinIndex].getValueInCents();
+        for (int count = 0; count <= availableCounts[coinIndex] && count * valueInCents <= amountInCents; count++) {
+            final int rest = bruteForceMinimumCoins(availableCounts, amountInCents - count * valueInCents, coinIndex + 1);
+            if (rest >= 0 && (minimum < 0 || rest + count < minimum))
+                minimum = rest + count;
+        }
+
+        return minimum;
+    }
+
+    private static int sumInCents(int[] counts) {
+
+        int sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i] * Coin.values()[i].getValueInCents();
+        }
+
+        return sum;
+    }
+
+    private static int sumOfCounts(int[] counts) {
+
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+
+        return sum;
+    }
+}
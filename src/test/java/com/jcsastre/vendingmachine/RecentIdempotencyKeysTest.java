@@ -0,0 +1,60 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class RecentIdempotencyKeysTest {
+
+    @Test
+    public void contains_shouldOnlyFindTheLastAddedKeys() {
+
+        final RecentIdempotencyKeys recentIdempotencyKeys = new RecentIdempotencyKeys();
+        final ArrayDeque<Long> expectedKeys = new ArrayDeque<>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+
+            // Given
+            final long key = random.nextInt(4 * RecentIdempotencyKeys.CAPACITY);
+            final boolean expected = expectedKeys.contains(key);
+
+            // When
+            final boolean contained = recentIdempotencyKeys.contains(key);
+            if (!contained) {
+                recentIdempotencyKeys.add(key);
+                expectedKeys.addLast(key);
+                if (expectedKeys.size() > RecentIdempotencyKeys.CAPACITY)
+                    expectedKeys.removeFirst();
+            }
+
+            // Then
+            assertThat(contained, is(expected));
+        }
+    }
+
+    @Test
+    public void restore_shouldRestoreTheKeysCopiedBeforeAnyKeyIsAdded() {
+
+        // Given
+        final RecentIdempotencyKeys recentIdempotencyKeys = new RecentIdempotencyKeys();
+        final long[] noKeys = new long[RecentIdempotencyKeys.CAPACITY];
+        recentIdempotencyKeys.copyTo(noKeys);
+        final long[] keys = noKeys.clone();
+        keys[0] = 42;
+
+        // When
+        recentIdempotencyKeys.restore(noKeys);
+        final boolean containedWithoutKeys = recentIdempotencyKeys.contains(42);
+        recentIdempotencyKeys.restore(keys);
+
+        // Then
+        assertThat(noKeys[0], is(VendingMachine.NO_IDEMPOTENCY_KEY));
+        assertThat(containedWithoutKeys, is(false));
+        assertThat(recentIdempotencyKeys.contains(42), is(true));
+    }
+}
@@ -0,0 +1,104 @@
+package com.jcsastre.vendingmachine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ScarcityAwareChangeCalculatorTest {
+
+    private ScarcityAwareChangeCalculator scarcityAwareChangeCalculator;
+
+    private int[] availableCounts;
+    private int[] changeCounts;
+
+    @Before
+    public void setUp() {
+
+        scarcityAwareChangeCalculator = new ScarcityAwareChangeCalculator(10);
+
+        availableCounts = new int[Coins.COUNT];
+        changeCounts = new int[Coins.COUNT];
+    }
+
+    @Test
+    public void shouldReturnChangeWithFewerCoinsWhenDepositIsFull() {
+
+        // Given
+        Arrays.fill(availableCounts, 10);
+
+        // When
+        final boolean changeIsPossible = scarcityAwareChangeCalculator.calculate(availableCounts, 60, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 1, 0, 1, 0, 0}));
+    }
+
+    @Test
+    public void shouldPreserveScarceCoins() {
+
+        // Given
+        Arrays.fill(availableCounts, 5);
+        availableCounts[Coin.FIFTY_CENTS.ordinal()] = 1;
+
+        // When
+        final boolean changeIsPossible = scarcityAwareChangeCalculator.calculate(availableCounts, 60, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(true));
+        assertThat(changeCounts, is(new int[] {0, 0, 3, 0, 0, 0}));
+    }
+
+    @Test
+    public void shouldReturnFalseWhenChangeIsNotPossible() {
+
+        // Given
+        availableCounts[Coin.FIFTY_CENTS.ordinal()] = 1;
+
+        // When
+        final boolean changeIsPossible = scarcityAwareChangeCalculator.calculate(availableCounts, 60, changeCounts);
+
+        // Then
+        assertThat(changeIsPossible, is(false));
+    }
+
+    @Test
+    public void shouldFindChangeWheneverMinimumCoinsChangeCalculatorDoes() {
+
+        final MinimumCoinsChangeCalculator minimumCoinsChangeCalculator = new MinimumCoinsChangeCalculator();
+        final int[] minimumChangeCounts = new int[Coins.COUNT];
+        final Random random = new Random(42);
+
+        for (int round = 0; round < 500; round++) {
+
+            // Given
+            for (int i = 0; i < Coins.COUNT; i++) {
+                availableCounts[i] = random.nextInt(11);
+            }
+            final int amountInCents = 5 * random.nextInt(80);
+
+            // When
+            final boolean changeIsPossible =
+                scarcityAwareChangeCalculator.calculate(availableCounts, amountInCents, changeCounts);
+
+            // Then
+            assertThat(
+                changeIsPossible,
+                is(minimumCoinsChangeCalculator.calculate(availableCounts, amountInCents, minimumChangeCounts))
+            );
+            if (changeIsPossible) {
+                int changeInCents = 0;
+                for (int i = 0; i < Coins.COUNT; i++) {
+                    assertThat(changeCounts[i] <= availableCounts[i], is(true));
+                    changeInCents += changeCounts[i] * Coins.ALL[i].getValueInCents();
+                }
+                assertThat(changeInCents, is(amountInCents));
+            }
+        }
+    }
+}
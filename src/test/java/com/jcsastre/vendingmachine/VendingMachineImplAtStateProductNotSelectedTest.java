@@ -6,6 +6,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.powermock.reflect.Whitebox;
 
 import java.util.Arrays;
@@ -16,6 +17,9 @@ import static com.googlecode.catchexception.apis.BDDCatchException.caughtExcepti
 import static org.assertj.core.api.BDDAssertions.then;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -26,7 +30,7 @@ import static org.mockito.Mockito.when;
  */
 public class VendingMachineImplAtStateProductNotSelectedTest {
 
-    @Mock
+    @Spy
     private InventorizedDeposit<Coin> coinsDeposit;
 
     @Mock
@@ -179,7 +183,7 @@ public class VendingMachineImplAtStateProductNotSelectedTest {
         when(coinsDeposit.getCountsForAllTypes()).thenReturn(ImmutableMap.of(Coin.FIFTY_CENTS, 1));
         when(coinsChangeCalculator.calculate(Arrays.asList(Coin.FIFTY_CENTS), 50))
             .thenReturn(Optional.of(Arrays.asList(Coin.FIFTY_CENTS)));
-        when(coinsDeposit.tryToRelease(Coin.FIFTY_CENTS)).thenReturn(Optional.of(Coin.FIFTY_CENTS));
+        when(coinsDeposit.tryToReleaseAll(ImmutableMap.of(Coin.FIFTY_CENTS, 1))).thenReturn(true);
 
         // When: Selecting That Product
         vendingMachineImpl.selectProduct(Product.COKE);
@@ -221,7 +225,7 @@ public class VendingMachineImplAtStateProductNotSelectedTest {
         when(coinsDeposit.getCountsForAllTypes()).thenReturn(ImmutableMap.of(Coin.FIFTY_CENTS, 1));
         when(coinsChangeCalculator.calculate(Arrays.asList(Coin.FIFTY_CENTS), 50))
             .thenReturn(Optional.of(Arrays.asList(Coin.FIFTY_CENTS)));
-        when(coinsDeposit.tryToRelease(Coin.FIFTY_CENTS)).thenReturn(Optional.of(Coin.FIFTY_CENTS));
+        when(coinsDeposit.tryToReleaseAll(ImmutableMap.of(Coin.FIFTY_CENTS, 1))).thenReturn(true);
 
         // When: Canceling
         vendingMachineImpl.cancel();
@@ -232,4 +236,63 @@ public class VendingMachineImplAtStateProductNotSelectedTest {
         assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Collections.singletonList(Coin.FIFTY_CENTS))));
         assertThat(vendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.empty()));
     }
+
+    // payCashless tests
+
+    @Test
+    public void Given_Stock_When_PayingCashless_Then_CorrectlyReleaseProductWithoutTouchingCoins()
+        throws NoProductStockException, ProductAlreadySelected {
+
+        // Given: Stock
+        final VendingMachineImpl vendingMachineImpl =
+            new VendingMachineImpl(coinsDeposit, productsDeposit, coinsChangeCalculator);
+        when(productsDeposit.tryToRelease(Product.COKE)).thenReturn(Optional.of(Product.COKE));
+
+        // When: Paying Cashless
+        final boolean vended = vendingMachineImpl.payCashless(Product.COKE, 42L);
+
+        // Then: Correctly Release Product Without Touching Coins
+        assertThat(vended, is(true));
+        assertThat(vendingMachineImpl.readBalanceInCentsIndicator(), is(0));
+        assertThat(vendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.of(Product.COKE)));
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.empty()));
+        verifyZeroInteractions(coinsDeposit, coinsChangeCalculator);
+    }
+
+    @Test
+    public void Given_VendedPayment_When_RetryingIt_Then_CorrectlyDoNotVendAgain()
+        throws NoProductStockException, ProductAlreadySelected {
+
+        // Given: Vended Payment
+        final VendingMachineImpl vendingMachineImpl =
+            new VendingMachineImpl(coinsDeposit, productsDeposit, coinsChangeCalculator);
+        when(productsDeposit.tryToRelease(Product.COKE)).thenReturn(Optional.of(Product.COKE));
+        vendingMachineImpl.payCashless(Product.COKE, 42L);
+        vendingMachineImpl.collectProductAtTakeoutPort();
+
+        // When: Retrying It
+        final boolean vended = vendingMachineImpl.payCashless(Product.COKE, 42L);
+
+        // Then: Correctly Do Not Vend Again
+        assertThat(vended, is(false));
+        assertThat(vendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.empty()));
+        verify(productsDeposit, times(1)).tryToRelease(Product.COKE);
+    }
+
+    @Test
+    public void Given_NoStockOfAProduct_When_PayingCashlessThatProduct_Then_CorrectlyThrowNoStockException()
+        throws NoProductStockException, ProductAlreadySelected {
+
+        // Given: No Stock Of A Product
+        final VendingMachineImpl vendingMachineImpl =
+            new VendingMachineImpl(coinsDeposit, productsDeposit, coinsChangeCalculator);
+        when(productsDeposit.tryToRelease(Product.COKE)).thenReturn(Optional.empty());
+
+        // When: Paying Cashless That Product
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl).payCashless(Product.COKE, 42L);
+
+        // Then: Correctly Throw NoStockException
+        then(caughtException()).isInstanceOf(NoProductStockException.class);
+        assertThat(vendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.empty()));
+    }
 }
@@ -136,7 +136,7 @@ public class VendingMachineImplAtStateProductSelectedTest {
         when(coinsDeposit.getCountsForAllTypes()).thenReturn(ImmutableMap.of(Coin.ONE_EURO, 1));
         when(coinsChangeCalculator.calculate(Arrays.asList(Coin.ONE_EURO), 100))
             .thenReturn(Optional.of(Arrays.asList(Coin.ONE_EURO)));
-        when(coinsDeposit.tryToRelease(Coin.ONE_EURO)).thenReturn(Optional.of(Coin.ONE_EURO));
+        when(coinsDeposit.tryToReleaseAll(ImmutableMap.of(Coin.ONE_EURO, 1))).thenReturn(true);
 
         // When: Inserting Coin And New Balance Becomes Greater Than Product Price And Change
         vendingMachineImpl.insertCoin(Coin.TWO_EUROS);
@@ -206,7 +206,7 @@ public class VendingMachineImplAtStateProductSelectedTest {
         when(coinsDeposit.getCountsForAllTypes()).thenReturn(ImmutableMap.of(Coin.FIFTY_CENTS, 1));
         when(coinsChangeCalculator.calculate(Arrays.asList(Coin.FIFTY_CENTS), 50))
             .thenReturn(Optional.of(Arrays.asList(Coin.FIFTY_CENTS)));
-        when(coinsDeposit.tryToRelease(Coin.FIFTY_CENTS)).thenReturn(Optional.of(Coin.FIFTY_CENTS));
+        when(coinsDeposit.tryToReleaseAll(ImmutableMap.of(Coin.FIFTY_CENTS, 1))).thenReturn(true);
 
         // When: Canceling
         vendingMachineImpl.cancel();
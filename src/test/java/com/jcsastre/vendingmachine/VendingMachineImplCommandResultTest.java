@@ -0,0 +1,106 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * <p>This class contains tests for the expected behaviour of the
+ * {@link CommandResultVendingMachine} commands of {@link VendingMachineImpl}.</p>
+ */
+public class VendingMachineImplCommandResultTest {
+
+    private EnumInventorizedDeposit<Coin> coinsDeposit;
+    private EnumInventorizedDeposit<Product> productsDeposit;
+
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Before
+    public void setUp() throws Exception {
+
+        coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 20);
+        productsDeposit = new EnumInventorizedDeposit<>(Product.class, 20);
+        productsDeposit.insert(Product.WATER, 1);
+
+        vendingMachineImpl = new VendingMachineImpl(
+            coinsDeposit,
+            productsDeposit,
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            VendingMachineMetrics.NONE
+        );
+    }
+
+    @Test
+    public void Given_NoChange_When_TryingToInsertCoin_Then_ReturnNoChangeAndTheCoin() {
+
+        // Given
+        vendingMachineImpl.tryToSelectProduct(Product.WATER);
+
+        // When
+        final CommandResult result = vendingMachineImpl.tryToInsertCoin(Coin.ONE_EURO);
+
+        // Then
+        assertThat(result, is(CommandResult.NO_CHANGE));
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Collections.singletonList(Coin.ONE_EURO))));
+        assertThat(vendingMachineImpl.readSelectedProductIndicator(), is(Optional.of(Product.WATER)));
+        assertThat(vendingMachineImpl.readBalanceInCentsIndicator(), is(0));
+    }
+
+    @Test
+    public void Given_NoChange_When_TryingToInsertCoin_Then_TheCoinReturnedIsNotKeptInTheDeposit() {
+
+        // Given
+        vendingMachineImpl.tryToSelectProduct(Product.WATER);
+
+        // When
+        vendingMachineImpl.tryToInsertCoin(Coin.ONE_EURO);
+
+        // Then
+        assertThat(coinsDeposit.countOf(Coin.ONE_EURO), is(0));
+    }
+
+    @Test
+    public void Given_NoStock_When_TryingToSelectProduct_Then_ReturnNoProductStock() {
+
+        // When
+        final CommandResult result = vendingMachineImpl.tryToSelectProduct(Product.COKE);
+
+        // Then
+        assertThat(result, is(CommandResult.NO_PRODUCT_STOCK));
+        assertThat(vendingMachineImpl.readSelectedProductIndicator(), is(Optional.empty()));
+    }
+
+    @Test
+    public void Given_ProductSelected_When_TryingToSelectProduct_Then_ReturnProductAlreadySelected() {
+
+        // Given
+        vendingMachineImpl.tryToSelectProduct(Product.WATER);
+
+        // When
+        final CommandResult result = vendingMachineImpl.tryToSelectProduct(Product.WATER);
+
+        // Then
+        assertThat(result, is(CommandResult.PRODUCT_ALREADY_SELECTED));
+    }
+
+    @Test
+    public void Given_PaymentVended_When_TryingToPayCashlessAgain_Then_ReturnAlreadyPaid() {
+
+        // Given
+        final CommandResult firstResult = vendingMachineImpl.tryToPayCashless(Product.WATER, 7L);
+
+        // When
+        final CommandResult result = vendingMachineImpl.tryToPayCashless(Product.WATER, 7L);
+
+        // Then
+        assertThat(firstResult, is(CommandResult.OK));
+        assertThat(result, is(CommandResult.ALREADY_PAID));
+        assertThat(vendingMachineImpl.tryToPayCashless(Product.WATER, 8L), is(CommandResult.NO_PRODUCT_STOCK));
+    }
+}
@@ -0,0 +1,127 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * <p>This class contains tests for the expected behaviour of the
+ * {@link VendingMachineEvent} emitted by {@link VendingMachineImpl}.</p>
+ */
+public class VendingMachineImplEventsTest {
+
+    private List<Long> events;
+
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Before
+    public void setUp() throws Exception {
+
+        events = new ArrayList<>();
+        vendingMachineImpl = newVendingMachineImpl(events, 1);
+    }
+
+    @Test
+    public void Given_VendCycle_When_Executed_Then_EmitTheTransitionOfEachCommand() throws Exception {
+
+        // When: water (90c) paid with 1€
+        vendingMachineImpl.selectProduct(Product.WATER);
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+        vendingMachineImpl.collectProductAtTakeoutPort();
+        vendingMachineImpl.collectCoinsAtRepaymentPort();
+
+        // Then
+        assertThat(events.size(), is(4));
+        assertEvent(events.get(0), VendingMachineCommand.SELECT_PRODUCT, Product.WATER.ordinal(), CommandResult.OK,
+            VendingMachineState.IDLE, VendingMachineState.PRODUCT_SELECTED, 0);
+        assertEvent(events.get(1), VendingMachineCommand.INSERT_COIN, Coin.ONE_EURO.ordinal(), CommandResult.OK,
+            VendingMachineState.PRODUCT_SELECTED, VendingMachineState.IDLE, 0);
+        assertEvent(events.get(2), VendingMachineCommand.COLLECT_PRODUCT, 0, CommandResult.OK,
+            VendingMachineState.IDLE, VendingMachineState.IDLE, 0);
+        assertEvent(events.get(3), VendingMachineCommand.COLLECT_COINS, 0, CommandResult.OK,
+            VendingMachineState.IDLE, VendingMachineState.IDLE, 0);
+    }
+
+    @Test
+    public void Given_NoChange_When_InsertingCoin_Then_EmitTheRejectionWithoutChangingState() throws Exception {
+
+        // Given
+        vendingMachineImpl = newVendingMachineImpl(events, 0);
+        vendingMachineImpl.tryToInsertCoin(Coin.TWENTY_CENTS);
+        vendingMachineImpl.tryToSelectProduct(Product.WATER);
+        events.clear();
+
+        // When: 1.20€ for a water, 30c of change without 10c coins to return it
+        vendingMachineImpl.tryToInsertCoin(Coin.ONE_EURO);
+
+        // Then
+        assertEvent(events.get(0), VendingMachineCommand.INSERT_COIN, Coin.ONE_EURO.ordinal(), CommandResult.NO_CHANGE,
+            VendingMachineState.PRODUCT_SELECTED_WITH_BALANCE, VendingMachineState.PRODUCT_SELECTED_WITH_BALANCE, 20);
+    }
+
+    @Test
+    public void Given_Events_When_Replayed_Then_EmitTheSameEvents() throws Exception {
+
+        // Given
+        vendingMachineImpl.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachineImpl.tryToSelectProduct(Product.COKE);
+        vendingMachineImpl.tryToSelectProduct(Product.WATER);
+        vendingMachineImpl.tryToInsertCoin(Coin.FIFTY_CENTS);
+        vendingMachineImpl.cancel();
+        vendingMachineImpl.tryToPayCashless(Product.WATER, VendingMachine.NO_IDEMPOTENCY_KEY);
+        vendingMachineImpl.collectProductAtTakeoutPort();
+        final List<Long> replayedEvents = new ArrayList<>();
+        final VendingMachineImpl replica = newVendingMachineImpl(replayedEvents, 1);
+
+        // When
+        for (long event : events) {
+            VendingMachineEvent.commandOf(event).applyTo(replica, VendingMachineEvent.argumentOf(event));
+        }
+
+        // Then
+        assertThat(replayedEvents, is(events));
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl(List<Long> events, int tenCentsCount) throws Exception {
+
+        final EnumInventorizedDeposit<Coin> coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 20);
+        final EnumInventorizedDeposit<Product> productsDeposit = new EnumInventorizedDeposit<>(Product.class, 20);
+        if (tenCentsCount > 0)
+            coinsDeposit.insert(Coin.TEN_CENTS, tenCentsCount);
+        coinsDeposit.insert(Coin.FIFTY_CENTS, 5);
+        productsDeposit.insert(Product.WATER, 5);
+
+        return new VendingMachineImpl(
+            coinsDeposit,
+            productsDeposit,
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            VendingMachineMetrics.NONE,
+            null,
+            events::add
+        );
+    }
+
+    private static void assertEvent(
+        long event,
+        VendingMachineCommand command,
+        int argument,
+        CommandResult result,
+        VendingMachineState fromState,
+        VendingMachineState toState,
+        int balanceInCents
+    ) {
+
+        assertThat(VendingMachineEvent.commandOf(event), is(command));
+        assertThat(VendingMachineEvent.argumentOf(event), is(argument));
+        assertThat(VendingMachineEvent.resultOf(event), is(result));
+        assertThat(VendingMachineEvent.fromStateOf(event), is(fromState));
+        assertThat(VendingMachineEvent.toStateOf(event), is(toState));
+        assertThat(VendingMachineEvent.balanceInCentsOf(event), is(balanceInCents));
+    }
+}
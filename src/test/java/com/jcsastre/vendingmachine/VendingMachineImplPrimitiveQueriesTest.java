@@ -0,0 +1,92 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * <p>This class contains tests for the expected behaviour of the primitive queries
+ * and collect commands of {@link VendingMachineImpl}.</p>
+ */
+public class VendingMachineImplPrimitiveQueriesTest {
+
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Before
+    public void setUp() throws Exception {
+
+        final EnumInventorizedDeposit<Coin> coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 20);
+        final EnumInventorizedDeposit<Product> productsDeposit = new EnumInventorizedDeposit<>(Product.class, 20);
+        coinsDeposit.insert(Coin.TEN_CENTS, 10);
+        coinsDeposit.insert(Coin.TWENTY_CENTS, 10);
+        productsDeposit.insert(Product.WATER, 10);
+
+        vendingMachineImpl = new VendingMachineImpl(
+            coinsDeposit,
+            productsDeposit,
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            VendingMachineMetrics.NONE
+        );
+    }
+
+    @Test
+    public void Given_ProductVendedWithChange_When_CollectingAsPrimitives_Then_ReturnProductIdAndCoinCounts() throws Exception {
+
+        // Given: water (90c) paid with 1.50€
+        vendingMachineImpl.selectProduct(Product.WATER);
+        vendingMachineImpl.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+        final int[] coinCounts = new int[Coins.COUNT];
+
+        // When
+        final int productId = vendingMachineImpl.collectProductIdAtTakeoutPort();
+        final int coinsCount = vendingMachineImpl.collectCoinCountsAtRepaymentPort(coinCounts);
+
+        // Then: 60c of change
+        assertThat(productId, is(Product.WATER.ordinal()));
+        assertThat(coinsCount, is(2));
+        assertThat(coinCounts[Coin.FIFTY_CENTS.ordinal()], is(1));
+        assertThat(coinCounts[Coin.TEN_CENTS.ordinal()], is(1));
+        assertThat(vendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.empty()));
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.empty()));
+    }
+
+    @Test
+    public void Given_NothingReleased_When_CollectingAsPrimitives_Then_ReturnNoProductIdAndZeroCounts() {
+
+        // Given
+        final int[] coinCounts = {1, 1, 1, 1, 1, 1};
+
+        // When
+        final int productId = vendingMachineImpl.collectProductIdAtTakeoutPort();
+        final int coinsCount = vendingMachineImpl.collectCoinCountsAtRepaymentPort(coinCounts);
+
+        // Then
+        assertThat(productId, is(VendingMachine.NO_PRODUCT_ID));
+        assertThat(coinsCount, is(0));
+        assertThat(coinCounts, is(new int[Coins.COUNT]));
+    }
+
+    @Test
+    public void Given_ProductSelectedAndBalance_When_ReadingAsPrimitives_Then_ReturnProductIdAndBalance() throws Exception {
+
+        // Given
+        assertThat(vendingMachineImpl.readSelectedProductId(), is(VendingMachine.NO_PRODUCT_ID));
+        vendingMachineImpl.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachineImpl.selectProduct(Product.WATER);
+
+        // When
+        final int productId = vendingMachineImpl.readSelectedProductId();
+        final int balanceInCents = vendingMachineImpl.readBalanceInCents();
+
+        // Then
+        assertThat(productId, is(Product.WATER.ordinal()));
+        assertThat(balanceInCents, is(50));
+        assertThat(vendingMachineImpl.readSelectedProductIndicator(), is(Optional.of(Product.WATER)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.LaneInventorizedDeposit.LaneSelection;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class VendingMachineImplRestockCommandTest {
+
+    @Test
+    public void shouldApplyOnlyTheDifferenceAndReportIt() throws Exception {
+
+        // Given
+        final EnumInventorizedDeposit<Coin> coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        final LaneInventorizedDeposit productsDeposit = new LaneInventorizedDeposit(
+            new Product[] {Product.COKE, Product.COKE, Product.SPRITE, Product.WATER},
+            new int[] {6, 6, 8, 10},
+            LaneSelection.FULLEST
+        );
+        final VendingMachineImpl vendingMachineImpl = new VendingMachineImpl(
+            coinsDeposit, productsDeposit, CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+        productsDeposit.insert(Product.COKE, 3);
+        productsDeposit.insert(Product.WATER, 10);
+        coinsDeposit.insert(Coin.TWO_EUROS, 9);
+        coinsDeposit.insert(Coin.TEN_CENTS, 5);
+        coinsDeposit.insert(Coin.FIVE_CENTS, 2);
+
+        // When
+        final RestockManifest restockManifest = vendingMachineImpl.restock();
+
+        // Then
+        assertThat(productsDeposit.getCountByType(Product.COKE), is(12));
+        assertThat(productsDeposit.getCountByType(Product.SPRITE), is(8));
+        assertThat(productsDeposit.getCountByType(Product.WATER), is(10));
+        for (Coin coin : Coins.ALL) {
+            assertThat(coinsDeposit.countOf(coin), is(5));
+        }
+        assertThat(restockManifest.getProductsAdded(Product.COKE), is(9));
+        assertThat(restockManifest.getProductsAdded(Product.WATER), is(0));
+        assertThat(restockManifest.getTotalProductsAdded(), is(17));
+        assertThat(restockManifest.getCoinsRemoved(Coin.TWO_EUROS), is(4));
+        assertThat(restockManifest.getCoinsAdded(Coin.FIVE_CENTS), is(3));
+        assertThat(restockManifest.getCoinsAdded(Coin.TEN_CENTS), is(0));
+        assertThat(restockManifest.getNetCoinsInCents(), is(-800 + 15 + 5 * (20 + 50 + 100)));
+        assertThat(
+            restockManifest.toString(),
+            is("product COKE 9\nproduct SPRITE 8\n"
+                + "coin FIVE_CENTS 3\ncoin TWENTY_CENTS 5\ncoin FIFTY_CENTS 5\ncoin ONE_EURO 5\ncoin TWO_EUROS -4\n")
+        );
+    }
+}
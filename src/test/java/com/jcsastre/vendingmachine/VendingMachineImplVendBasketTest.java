@@ -0,0 +1,179 @@
+package com.jcsastre.vendingmachine;
+
+import com.google.common.collect.ImmutableMap;
+import com.jcsastre.vendingmachine.exception.*;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * <p>This class contains tests for the expected behaviour of
+ * {@link VendingMachineImpl#vendBasket(java.util.Map, java.util.List)}.</p>
+ */
+public class VendingMachineImplVendBasketTest {
+
+    private EnumInventorizedDeposit<Coin> coinsDeposit;
+    private EnumInventorizedDeposit<Product> productsDeposit;
+
+    private int calculations;
+
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Before
+    public void setUp() throws Exception {
+
+        coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 20);
+        productsDeposit = new EnumInventorizedDeposit<>(Product.class, 50);
+        productsDeposit.insert(Product.COKE, 30);
+        productsDeposit.insert(Product.WATER, 30);
+        coinsDeposit.insert(Coin.TWENTY_CENTS, 5);
+        coinsDeposit.insert(Coin.FIFTY_CENTS, 5);
+
+        calculations = 0;
+        vendingMachineImpl = new VendingMachineImpl(
+            coinsDeposit,
+            productsDeposit,
+            (availableCounts, amountInCents, changeCounts) -> {
+                calculations++;
+                return CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+                    .calculate(availableCounts, amountInCents, changeCounts);
+            },
+            VendingMachineMetrics.NONE,
+            new ChangeFeasibilityIndex(2000)
+        );
+    }
+
+    @Test
+    public void Given_EnoughPayment_When_VendingBasket_Then_ReleaseBasketAndChangeCalculatedOnce() throws Exception {
+
+        // Given: a basket of 20 cokes and 10 waters, 20 * 150 + 10 * 90 = 3900
+        final ImmutableMap<Product, Integer> basket = ImmutableMap.of(Product.COKE, 20, Product.WATER, 10);
+
+        // When: paying 4000
+        vendingMachineImpl.vendBasket(basket, Collections.nCopies(20, Coin.TWO_EUROS));
+
+        // Then
+        assertThat(vendingMachineImpl.collectBasketAtTakeoutPort(), is(Optional.of(basket)));
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Arrays.asList(Coin.FIFTY_CENTS, Coin.FIFTY_CENTS))));
+        assertThat(vendingMachineImpl.readBalanceInCentsIndicator(), is(0));
+        assertThat(calculations, is(1));
+        assertThat(productsDeposit.countOf(Product.COKE), is(10));
+        assertThat(productsDeposit.countOf(Product.WATER), is(20));
+        assertThat(coinsDeposit.countOf(Coin.TWO_EUROS), is(20));
+        assertThat(coinsDeposit.countOf(Coin.FIFTY_CENTS), is(3));
+    }
+
+    @Test
+    public void Given_NotEnoughStock_When_VendingBasket_Then_ThrowNoProductStockExceptionAndReturnPayment() throws Exception {
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.COKE, 1, Product.SPRITE, 1), Arrays.asList(Coin.TWO_EUROS, Coin.TWO_EUROS));
+
+        // Then
+        then(caughtException()).isInstanceOf(NoProductStockException.class);
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Arrays.asList(Coin.TWO_EUROS, Coin.TWO_EUROS))));
+        assertThat(vendingMachineImpl.collectBasketAtTakeoutPort(), is(Optional.empty()));
+        assertThat(productsDeposit.countOf(Product.COKE), is(30));
+        assertThat(coinsDeposit.countOf(Coin.TWO_EUROS), is(0));
+    }
+
+    @Test
+    public void Given_CoinsAtRepaymentPort_When_VendingBasketIsRejected_Then_AddThePaymentToThem() throws Exception {
+
+        // Given
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.COKE, 2), Collections.singletonList(Coin.TWO_EUROS));
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.COKE, 2), Collections.singletonList(Coin.ONE_EURO));
+
+        // Then
+        then(caughtException()).isInstanceOf(InsufficientBalanceException.class);
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Arrays.asList(Coin.TWO_EUROS, Coin.ONE_EURO))));
+    }
+
+    @Test
+    public void Given_CoinsAtRepaymentPort_When_VendingBasket_Then_AddTheChangeToThem() throws Exception {
+
+        // Given
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.COKE, 2), Collections.singletonList(Coin.TWO_EUROS));
+
+        // When
+        vendingMachineImpl.vendBasket(ImmutableMap.of(Product.COKE, 1), Collections.singletonList(Coin.TWO_EUROS));
+
+        // Then
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Arrays.asList(Coin.TWO_EUROS, Coin.FIFTY_CENTS))));
+        assertThat(vendingMachineImpl.collectBasketAtTakeoutPort(), is(Optional.of(ImmutableMap.of(Product.COKE, 1))));
+    }
+
+    @Test
+    public void Given_NotEnoughPayment_When_VendingBasket_Then_ThrowInsufficientBalanceException() throws Exception {
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.COKE, 2), Collections.singletonList(Coin.TWO_EUROS));
+
+        // Then
+        then(caughtException()).isInstanceOf(InsufficientBalanceException.class);
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Collections.singletonList(Coin.TWO_EUROS))));
+        assertThat(productsDeposit.countOf(Product.COKE), is(30));
+    }
+
+    @Test
+    public void Given_NoChange_When_VendingBasket_Then_ThrowNoChangeExceptionAndLeaveDepositsUntouched() throws Exception {
+
+        // When: 3 * 90 = 270 paid with 300, needs 30 but there are only 20c and 50c
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.WATER, 3), Arrays.asList(Coin.TWO_EUROS, Coin.ONE_EURO));
+
+        // Then
+        then(caughtException()).isInstanceOf(NoChangeException.class);
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.of(Arrays.asList(Coin.TWO_EUROS, Coin.ONE_EURO))));
+        assertThat(productsDeposit.countOf(Product.WATER), is(30));
+        assertThat(coinsDeposit.countOf(Coin.TWO_EUROS), is(0));
+        assertThat(coinsDeposit.countOf(Coin.ONE_EURO), is(0));
+        assertThat(vendingMachineImpl.canVend(Product.WATER, 110), is(true));
+        assertThat(vendingMachineImpl.canVend(Product.WATER, 120), is(false));
+    }
+
+    @Test
+    public void Given_NegativeCount_When_VendingBasket_Then_ThrowIllegalArgumentExceptionAndLeaveDepositsUntouched() throws Exception {
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(ImmutableMap.of(Product.COKE, -3), Collections.emptyList());
+
+        // Then
+        then(caughtException()).isInstanceOf(IllegalArgumentException.class);
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.empty()));
+        assertThat(vendingMachineImpl.collectBasketAtTakeoutPort(), is(Optional.empty()));
+        assertThat(coinsDeposit.countOf(Coin.TWENTY_CENTS), is(5));
+        assertThat(coinsDeposit.countOf(Coin.FIFTY_CENTS), is(5));
+        assertThat(productsDeposit.countOf(Product.COKE), is(30));
+    }
+
+    @Test
+    public void Given_EmptyBasket_When_VendingBasket_Then_ThrowIllegalArgumentExceptionAndKeepThePayment() throws Exception {
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl)
+            .vendBasket(Collections.emptyMap(), Collections.singletonList(Coin.TWO_EUROS));
+
+        // Then
+        then(caughtException()).isInstanceOf(IllegalArgumentException.class);
+        assertThat(vendingMachineImpl.collectCoinsAtRepaymentPort(), is(Optional.empty()));
+        assertThat(coinsDeposit.countOf(Coin.TWO_EUROS), is(0));
+    }
+}
@@ -0,0 +1,154 @@
+package com.jcsastre.vendingmachine;
+
+import com.jcsastre.vendingmachine.exception.InvalidStateException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Optional;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class VendingMachineSnapshotTest {
+
+    private EnumInventorizedDeposit<Coin> coinsDeposit;
+    private EnumInventorizedDeposit<Product> productsDeposit;
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Before
+    public void setUp() throws Exception {
+
+        coinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        productsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        vendingMachineImpl = newVendingMachineImpl(coinsDeposit, productsDeposit);
+
+        vendingMachineImpl.reset();
+        vendingMachineImpl.insertCoin(Coin.TWO_EUROS);
+        vendingMachineImpl.selectProduct(Product.COKE);
+        vendingMachineImpl.insertCoin(Coin.TWENTY_CENTS);
+    }
+
+    @Test
+    public void readFrom_shouldReadTheWrittenSnapshot() throws IOException {
+
+        // Given
+        final VendingMachineSnapshot vendingMachineSnapshot = vendingMachineImpl.takeSnapshot(42);
+        final ByteBuffer buffer = ByteBuffer.allocate(VendingMachineSnapshot.SIZE);
+
+        // When
+        vendingMachineSnapshot.writeTo(buffer);
+        buffer.flip();
+        final VendingMachineSnapshot readVendingMachineSnapshot = VendingMachineSnapshot.readFrom(buffer);
+
+        // Then
+        assertThat(buffer.remaining(), is(0));
+        assertThat(readVendingMachineSnapshot, is(vendingMachineSnapshot));
+        assertThat(readVendingMachineSnapshot.getJournalPosition(), is(42L));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_shouldThrowIOExceptionWhenCorrupted() throws IOException {
+
+        // Given
+        final ByteBuffer buffer = ByteBuffer.allocate(VendingMachineSnapshot.SIZE);
+        vendingMachineImpl.takeSnapshot(42).writeTo(buffer);
+        buffer.put(20, (byte) 7);
+        buffer.flip();
+
+        // When
+        VendingMachineSnapshot.readFrom(buffer);
+    }
+
+    @Test
+    public void restore_shouldRestoreTheStateOfTheSnapshot() throws Exception {
+
+        // Given
+        final EnumInventorizedDeposit<Coin> restoredCoinsDeposit = new EnumInventorizedDeposit<>(Coin.class, 10);
+        final EnumInventorizedDeposit<Product> restoredProductsDeposit = new EnumInventorizedDeposit<>(Product.class, 10);
+        final VendingMachineImpl restoredVendingMachineImpl =
+            newVendingMachineImpl(restoredCoinsDeposit, restoredProductsDeposit);
+        restoredVendingMachineImpl.insertCoin(Coin.FIVE_CENTS);
+
+        // When
+        restoredVendingMachineImpl.restore(vendingMachineImpl.takeSnapshot(0));
+
+        // Then
+        assertThat(restoredCoinsDeposit.getCountsForAllTypes(), is(coinsDeposit.getCountsForAllTypes()));
+        assertThat(restoredProductsDeposit.getCountsForAllTypes(), is(productsDeposit.getCountsForAllTypes()));
+        assertThat(restoredVendingMachineImpl.readBalanceInCentsIndicator(), is(20));
+        assertThat(restoredVendingMachineImpl.collectProductAtTakeoutPort(), is(Optional.of(Product.COKE)));
+        assertThat(
+            restoredVendingMachineImpl.collectCoinsAtRepaymentPort(),
+            is(Optional.of(Collections.singletonList(Coin.FIFTY_CENTS)))
+        );
+    }
+
+    @Test
+    public void restore_shouldRestoreTheBasketAtTheTakeoutPort() throws Exception {
+
+        // Given
+        vendingMachineImpl.vendBasket(Collections.singletonMap(Product.WATER, 2), Collections.singletonList(Coin.TWO_EUROS));
+        final VendingMachineImpl restoredVendingMachineImpl = newVendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 10), new EnumInventorizedDeposit<>(Product.class, 10)
+        );
+
+        // When
+        restoredVendingMachineImpl.restore(vendingMachineImpl.takeSnapshot(0));
+
+        // Then
+        assertThat(restoredVendingMachineImpl.takeSnapshot(0), is(vendingMachineImpl.takeSnapshot(0)));
+        assertThat(
+            restoredVendingMachineImpl.collectBasketAtTakeoutPort(),
+            is(Optional.of(Collections.singletonMap(Product.WATER, 2)))
+        );
+    }
+
+    @Test
+    public void restore_shouldRestoreTheCatalog() throws Exception {
+
+        // Given
+        vendingMachineImpl.setCatalog(Catalog.DEFAULT.withPriceInCents(Product.WATER, 100));
+        final VendingMachineImpl restoredVendingMachineImpl = newVendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 10), new EnumInventorizedDeposit<>(Product.class, 10)
+        );
+
+        // When
+        restoredVendingMachineImpl.restore(vendingMachineImpl.takeSnapshot(0));
+
+        // Then
+        assertThat(restoredVendingMachineImpl.getCatalog(), is(vendingMachineImpl.getCatalog()));
+        assertThat(restoredVendingMachineImpl.getCatalog().getPriceInCents(Product.WATER), is(100));
+    }
+
+    @Test
+    public void restore_shouldThrowInvalidStateExceptionWhenDepositsHaveNoCapacity() throws InvalidStateException {
+
+        // Given
+        final VendingMachineImpl smallerVendingMachineImpl = newVendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 2), new EnumInventorizedDeposit<>(Product.class, 2)
+        );
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(
+            smallerVendingMachineImpl
+        ).restore(vendingMachineImpl.takeSnapshot(0));
+
+        // Then
+        then(caughtException()).isInstanceOf(InvalidStateException.class);
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl(
+        InventorizedDeposit<Coin> coinsDeposit,
+        InventorizedDeposit<Product> productsDeposit
+    ) {
+
+        return new VendingMachineImpl(
+            coinsDeposit, productsDeposit, CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+}
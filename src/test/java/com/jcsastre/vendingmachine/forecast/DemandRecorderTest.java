@@ -0,0 +1,88 @@
+package com.jcsastre.vendingmachine.forecast;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Coins;
+import com.jcsastre.vendingmachine.Product;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+public class DemandRecorderTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    public void drain_shouldRecordTheEventsOfSeveralThreadsInTheForecaster() throws Exception {
+
+        // Given: the vends of a machine recorded from several threads
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(1, HOUR);
+        final DemandRecorder demandRecorder =
+            new DemandRecorder(forecaster, 0, () -> HOUR, VendingMachineMetrics.NONE, 8 * 1000);
+        final int[] oneEuro = new int[Coins.COUNT];
+        oneEuro[Coin.ONE_EURO.ordinal()] = 1;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int j = 0; j < 1000; j++) {
+                    demandRecorder.recordVend(Product.COKE);
+                    demandRecorder.recordCoinsOut(oneEuro);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        final double vendsPerHourBeforeDraining = forecaster.getVendsPerHour(0, Product.COKE, HOUR);
+
+        // When
+        final int drainedCount = demandRecorder.drain();
+
+        // Then
+        final FleetDemandForecaster expectedForecaster = new FleetDemandForecaster(1, HOUR);
+        expectedForecaster.record(HOUR, 0, DemandHistory.VEND, Product.COKE.ordinal(), 4000);
+        expectedForecaster.record(HOUR, 0, DemandHistory.COIN_OUT, Coin.ONE_EURO.ordinal(), 4000);
+        assertThat(vendsPerHourBeforeDraining, is(0.0));
+        assertThat(drainedCount, is(8000));
+        assertThat(
+            forecaster.getVendsPerHour(0, Product.COKE, HOUR),
+            closeTo(expectedForecaster.getVendsPerHour(0, Product.COKE, HOUR), 1e-9)
+        );
+        assertThat(
+            forecaster.getCoinsOutPerHour(0, Coin.ONE_EURO, HOUR),
+            closeTo(expectedForecaster.getCoinsOutPerHour(0, Coin.ONE_EURO, HOUR), 1e-9)
+        );
+        assertThat(demandRecorder.getDroppedCount(), is(0L));
+    }
+
+    @Test
+    public void recordVend_shouldDropTheEventsWhenTheQueueIsFull() {
+
+        // Given
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(1, HOUR);
+        final DemandRecorder demandRecorder =
+            new DemandRecorder(forecaster, 0, () -> HOUR, VendingMachineMetrics.NONE, 2);
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            demandRecorder.recordVend(Product.WATER);
+        }
+
+        // Then
+        assertThat(demandRecorder.getDroppedCount(), is(1L));
+        assertThat(demandRecorder.drain(), is(2));
+        assertThat(demandRecorder.drain(), is(0));
+    }
+}
@@ -0,0 +1,124 @@
+package com.jcsastre.vendingmachine.forecast;
+
+import com.jcsastre.vendingmachine.Coin;
+import com.jcsastre.vendingmachine.Product;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+public class FleetDemandForecasterTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    public void getHoursUntilStockout_shouldFollowASteadyDemand() {
+
+        // Given
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(1, HOUR);
+
+        // When
+        long millis = 0;
+        for (int i = 0; i < 200; i++) {
+            millis += HOUR / 10;
+            forecaster.record(millis, 0, DemandHistory.VEND, Product.COKE.ordinal(), 1);
+        }
+
+        // Then
+        assertThat(forecaster.getVendsPerHour(0, Product.COKE, millis), closeTo(10, 0.5));
+        assertThat(forecaster.getHoursUntilStockout(0, Product.COKE, 20, millis), closeTo(2, 0.1));
+        assertThat(forecaster.getHoursUntilStockout(0, Product.WATER, 20, millis), is(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void getVendsPerHour_shouldHalveEachHalfLife() {
+
+        // Given
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(1, HOUR);
+        forecaster.record(HOUR, 0, DemandHistory.VEND, Product.SPRITE.ordinal(), 8);
+        final double vendsPerHour = forecaster.getVendsPerHour(0, Product.SPRITE, HOUR);
+
+        // When
+        final double vendsPerHourTwoHoursLater = forecaster.getVendsPerHour(0, Product.SPRITE, 3 * HOUR);
+
+        // Then
+        assertThat(vendsPerHourTwoHoursLater, closeTo(vendsPerHour / 4, 1e-9));
+    }
+
+    @Test
+    public void getHoursUntilCoins_shouldFollowTheNetFlowOfCoins() {
+
+        // Given
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(1, HOUR);
+
+        // When
+        long millis = 0;
+        for (int i = 0; i < 200; i++) {
+            millis += HOUR / 10;
+            forecaster.record(millis, 0, DemandHistory.COIN_IN, Coin.ONE_EURO.ordinal(), 1);
+            if (i % 5 < 2)
+                forecaster.record(millis, 0, DemandHistory.COIN_OUT, Coin.ONE_EURO.ordinal(), 1);
+        }
+
+        // Then
+        assertThat(forecaster.getHoursUntilCoinsRunOut(0, Coin.ONE_EURO, 10, millis), is(Double.POSITIVE_INFINITY));
+        assertThat(forecaster.getHoursUntilCoinsOverflow(0, Coin.ONE_EURO, 10, 40, millis), closeTo(5, 0.5));
+    }
+
+    @Test
+    public void consume_shouldRecordTheSameAsEachEvent() throws IOException {
+
+        // Given
+        final ByteBuffer history = ByteBuffer.allocate(3000 * DemandHistory.RECORD_SIZE);
+        final FleetDemandForecaster expectedForecaster = new FleetDemandForecaster(3, HOUR);
+        for (int i = 0; i < 3000; i++) {
+            final long millis = i * 60_000L;
+            final int machine = i % 3;
+            final byte kind = (byte) (1 + i % 3);
+            final int ordinal = i % Product.values().length;
+            DemandHistory.put(history, millis, machine, kind, ordinal, 2);
+            expectedForecaster.record(millis, machine, kind, ordinal, 2);
+        }
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(3, HOUR);
+
+        // When
+        final long events = forecaster.consume(Channels.newChannel(new ByteArrayInputStream(history.array())));
+
+        // Then
+        assertThat(events, is(3000L));
+        for (int machine = 0; machine < 3; machine++) {
+            for (Product product : Product.values()) {
+                assertThat(
+                    forecaster.getVendsPerHour(machine, product, 3000 * 60_000L),
+                    is(expectedForecaster.getVendsPerHour(machine, product, 3000 * 60_000L))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void planRestockRoute_shouldListTheMachinesRunningOutWithinTheHorizonMostUrgentFirst() {
+
+        // Given
+        final FleetDemandForecaster forecaster = new FleetDemandForecaster(3, HOUR);
+        forecaster.record(HOUR, 1, DemandHistory.VEND, Product.COKE.ordinal(), 5);
+        forecaster.record(HOUR, 2, DemandHistory.VEND, Product.WATER.ordinal(), 50);
+        final int[] productCounts = new int[Product.values().length];
+        Arrays.fill(productCounts, 10);
+        final int[] coinCounts = new int[Coin.values().length];
+
+        // When
+        final int[] route = forecaster.planRestockRoute(48, machine -> productCounts, machine -> coinCounts, 40, HOUR);
+
+        // Then
+        assertThat(route, is(new int[]{2, 1}));
+        assertThat(forecaster.planRestockRoute(1, machine -> productCounts, machine -> coinCounts, 40, HOUR), is(new int[]{2}));
+    }
+}
@@ -0,0 +1,83 @@
+package com.jcsastre.vendingmachine.metrics;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.exception.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.StringContains.containsString;
+
+public class AtomicVendingMachineMetricsTest {
+
+    private AtomicVendingMachineMetrics metrics;
+    private VendingMachineImpl vendingMachineImpl;
+
+    @Before
+    public void setUp() throws InvalidStateException {
+
+        metrics = new AtomicVendingMachineMetrics();
+        vendingMachineImpl = new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 2),
+            new EnumInventorizedDeposit<>(Product.class, 1),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            metrics
+        );
+        vendingMachineImpl.reset();
+    }
+
+    @Test
+    public void snapshot_shouldCountVendsAndCoins() throws Exception {
+
+        // When
+        vendingMachineImpl.selectProduct(Product.WATER);
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+
+        // Then
+        final MetricsSnapshot metricsSnapshot = metrics.snapshot();
+        assertThat(metricsSnapshot.getVends(Product.WATER), is(1L));
+        assertThat(metricsSnapshot.getCoinsIn(Coin.ONE_EURO), is(1L));
+        assertThat(metricsSnapshot.getCoinsOut(Coin.TEN_CENTS), is(1L));
+        assertThat(metricsSnapshot.getLatency(VendingMachineCommand.SELECT_PRODUCT).getTotalCount(), is(1L));
+        assertThat(metricsSnapshot.getLatency(VendingMachineCommand.INSERT_COIN).getTotalCount(), is(1L));
+    }
+
+    @Test
+    public void snapshot_shouldCountFailures() throws Exception {
+
+        // Given
+        vendingMachineImpl.selectProduct(Product.WATER);
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+
+        // When
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl).selectProduct(Product.WATER);
+        com.googlecode.catchexception.apis.BDDCatchException.when(vendingMachineImpl).insertCoin(Coin.ONE_EURO);
+
+        // Then
+        final MetricsSnapshot metricsSnapshot = metrics.snapshot();
+        assertThat(metricsSnapshot.getNoProductStocks(Product.WATER), is(1L));
+        assertThat(metricsSnapshot.getDepositCoinOverflows(Coin.ONE_EURO), is(1L));
+        assertThat(metricsSnapshot.getLatency(VendingMachineCommand.INSERT_COIN).getTotalCount(), is(2L));
+    }
+
+    @Test
+    public void writeTo_shouldExportInPrometheusTextFormat() throws Exception {
+
+        // Given
+        vendingMachineImpl.selectProduct(Product.WATER);
+        vendingMachineImpl.insertCoin(Coin.ONE_EURO);
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        // When
+        metrics.snapshot().writeTo(stringBuilder);
+
+        // Then
+        assertThat(stringBuilder.toString(), containsString("vending_machine_vends_total{product=\"WATER\"} 1\n"));
+        assertThat(stringBuilder.toString(), containsString("vending_machine_coins_out_total{coin=\"TEN_CENTS\"} 1\n"));
+        assertThat(
+            stringBuilder.toString(),
+            containsString("vending_machine_command_latency_nanos_count{command=\"INSERT_COIN\"} 1\n")
+        );
+    }
+}
@@ -0,0 +1,58 @@
+package com.jcsastre.vendingmachine.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void index_shouldCountEachValueInABucketContainingIt() {
+
+        for (long value = 0; value < 1_000_000; value += 7) {
+
+            // When
+            final int index = LatencyHistogram.index(value);
+
+            // Then
+            assertThat(LatencyHistogram.lowestValueAt(index) <= value, is(true));
+            assertThat(LatencyHistogram.highestValueAt(index) >= value, is(true));
+        }
+    }
+
+    @Test
+    public void index_shouldHaveARelativeErrorBelowOneSixteenth() {
+
+        for (int index = 0; index < LatencyHistogram.BUCKETS - 1; index++) {
+
+            // When
+            final long lowestValue = LatencyHistogram.lowestValueAt(index);
+            final long highestValue = LatencyHistogram.highestValueAt(index);
+
+            // Then
+            assertThat(LatencyHistogram.index(lowestValue), is(index));
+            assertThat(LatencyHistogram.index(highestValue), is(index));
+            assertThat((highestValue - lowestValue) * 16 <= lowestValue, is(true));
+        }
+    }
+
+    @Test
+    public void snapshot_shouldReturnTheValuesAtPercentiles() {
+
+        // Given
+        final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (int value = 1; value <= 1000; value++) {
+            latencyHistogram.record(value);
+        }
+
+        // When
+        final HistogramSnapshot histogramSnapshot = latencyHistogram.snapshot();
+
+        // Then
+        assertThat(histogramSnapshot.getTotalCount(), is(1000L));
+        assertThat(histogramSnapshot.getValueAtPercentile(50), is(511L));
+        assertThat(histogramSnapshot.getValueAtPercentile(99), is(991L));
+        assertThat(histogramSnapshot.getMaxValue(), is(1023L));
+    }
+}
@@ -0,0 +1,254 @@
+package com.jcsastre.vendingmachine.pipeline;
+
+import com.jcsastre.vendingmachine.*;
+import com.jcsastre.vendingmachine.metrics.VendingMachineMetrics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommandPipelineTest {
+
+    @Test
+    public void pipeline_shouldVendWithCommandsOfSeveralPorts() throws Exception {
+
+        // Given
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl(VendingMachineEventListener.NONE);
+        vendingMachineImpl.reset();
+
+        try (CommandPipeline pipeline = new CommandPipeline(vendingMachineImpl, 2)) {
+
+            final CommandPort buttons = pipeline.getPort(0);
+            final CommandPort coinAcceptor = pipeline.getPort(1);
+
+            // When
+            assertThat(buttons.offer(VendingMachineCommand.SELECT_PRODUCT, Product.WATER.ordinal()), is(true));
+            final long selectReply = awaitReply(buttons);
+            assertThat(coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.ONE_EURO.ordinal()), is(true));
+            final long insertReply = awaitReply(coinAcceptor);
+            assertThat(buttons.offer(VendingMachineCommand.COLLECT_PRODUCT, 0), is(true));
+            final long collectProductReply = awaitReply(buttons);
+            assertThat(buttons.offer(VendingMachineCommand.COLLECT_COINS, 0), is(true));
+            final int[] coinCounts = new int[Coins.COUNT];
+            final long collectCoinsReply = awaitReply(buttons, coinCounts);
+
+            // Then
+            assertThat(CommandReply.commandOf(selectReply), is(VendingMachineCommand.SELECT_PRODUCT));
+            assertThat(CommandReply.resultOf(selectReply), is(CommandResult.OK));
+            assertThat(CommandReply.resultOf(insertReply), is(CommandResult.OK));
+            assertThat(CommandReply.valueOf(collectProductReply), is(Product.WATER.ordinal()));
+            assertThat(CommandReply.valueOf(collectCoinsReply), is(1));
+            assertThat(coinCounts[Coin.TEN_CENTS.ordinal()], is(1));
+            assertThat(Arrays.stream(coinCounts).sum(), is(1));
+            assertThat(pipeline.snapshotLatencies().getTotalCount(), is(4L));
+        }
+    }
+
+    @Test
+    public void offer_shouldNotWaitWhileTheLogicThreadIsBusy() throws Exception {
+
+        // Given: the logic thread stuck in the first command
+        final CountDownLatch firstCommandApplied = new CountDownLatch(1);
+        final CountDownLatch releaseLogicThread = new CountDownLatch(1);
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl(event -> {
+            if (VendingMachineEvent.commandOf(event) != VendingMachineCommand.INSERT_COIN)
+                return;
+            firstCommandApplied.countDown();
+            try {
+                releaseLogicThread.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        vendingMachineImpl.reset();
+
+        try (CommandPipeline pipeline = new CommandPipeline(vendingMachineImpl, 1, 4)) {
+
+            final CommandPort coinAcceptor = pipeline.getPort(0);
+            coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.TEN_CENTS.ordinal());
+            assertThat(firstCommandApplied.await(10, TimeUnit.SECONDS), is(true));
+
+            // When
+            for (int i = 0; i < 4; i++) {
+                assertThat(coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.TEN_CENTS.ordinal()), is(true));
+            }
+            final boolean offeredWhenFull = coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.TEN_CENTS.ordinal());
+            releaseLogicThread.countDown();
+
+            // Then
+            assertThat(offeredWhenFull, is(false));
+            for (int i = 0; i < 5; i++) {
+                assertThat(CommandReply.resultOf(awaitReply(coinAcceptor)), is(CommandResult.OK));
+            }
+            assertThat(vendingMachineImpl.readBalanceInCents(), is(50));
+        }
+    }
+
+    @Test
+    public void replies_shouldComeInTheOrderOfTheCommands() throws Exception {
+
+        // Given
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl(VendingMachineEventListener.NONE);
+        vendingMachineImpl.reset();
+        final VendingMachineCommand[] commands = {
+            VendingMachineCommand.INSERT_COIN, VendingMachineCommand.CANCEL, VendingMachineCommand.COLLECT_COINS
+        };
+        final int cycles = 10_000;
+
+        try (CommandPipeline pipeline = new CommandPipeline(vendingMachineImpl, 1, 8)) {
+
+            final CommandPort coinAcceptor = pipeline.getPort(0);
+
+            // When: commands are offered while the replies are taken
+            final Thread producer = new Thread(() -> {
+                for (int i = 0; i < cycles * commands.length; i++) {
+                    final VendingMachineCommand command = commands[i % commands.length];
+                    final int argument = command == VendingMachineCommand.INSERT_COIN ? Coin.TWENTY_CENTS.ordinal() : 0;
+                    while (!coinAcceptor.offer(command, argument)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producer.start();
+
+            // Then
+            final int[] coinCounts = new int[Coins.COUNT];
+            for (int i = 0; i < cycles * commands.length; i++) {
+                final long reply = awaitReply(coinAcceptor, coinCounts);
+                assertThat(CommandReply.commandOf(reply), is(commands[i % commands.length]));
+                assertThat(CommandReply.resultOf(reply), is(CommandResult.OK));
+                if (commands[i % commands.length] == VendingMachineCommand.COLLECT_COINS) {
+                    assertThat(CommandReply.valueOf(reply), is(1));
+                    assertThat(coinCounts[Coin.TWENTY_CENTS.ordinal()], is(1));
+                    Arrays.fill(coinCounts, 0);
+                }
+            }
+            producer.join();
+            assertThat(pipeline.snapshotLatencies().getTotalCount(), is((long) cycles * commands.length));
+        }
+    }
+
+    @Test
+    public void pipeline_shouldReplyAsFailedACommandThatThrowsAndGoOn() throws Exception {
+
+        // Given: a listener failing on the first coin
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl(new VendingMachineEventListener() {
+            private boolean failed;
+            @Override
+            public void onEvent(long event) {
+                if (VendingMachineEvent.commandOf(event) == VendingMachineCommand.INSERT_COIN && !failed) {
+                    failed = true;
+                    throw new IllegalStateException("Listener failed");
+                }
+            }
+        });
+        vendingMachineImpl.reset();
+
+        try (CommandPipeline pipeline = new CommandPipeline(vendingMachineImpl, 1)) {
+
+            final CommandPort coinAcceptor = pipeline.getPort(0);
+
+            // When
+            coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.TEN_CENTS.ordinal());
+            final long failedReply = awaitReply(coinAcceptor);
+            coinAcceptor.offer(VendingMachineCommand.INSERT_COIN, Coin.TEN_CENTS.ordinal());
+            final long nextReply = awaitReply(coinAcceptor);
+
+            // Then
+            assertThat(CommandReply.isFailed(failedReply), is(true));
+            assertThat(CommandReply.commandOf(failedReply), is(VendingMachineCommand.INSERT_COIN));
+            assertThat(CommandReply.isFailed(nextReply), is(false));
+            assertThat(CommandReply.resultOf(nextReply), is(CommandResult.OK));
+            assertThat(pipeline.getLastFailure().get().getMessage(), is("Listener failed"));
+        }
+    }
+
+    @Test
+    public void pipeline_shouldApplyResetsAndCashlessPaymentsWithTheirIdempotencyKeys() throws Exception {
+
+        // Given
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl(VendingMachineEventListener.NONE);
+
+        try (CommandPipeline pipeline = new CommandPipeline(vendingMachineImpl, 2, 4)) {
+
+            final CommandPort operator = pipeline.getPort(0);
+            final CommandPort cardReader = pipeline.getPort(1);
+
+            // When: more payments than the capacity of the port, each one retried
+            assertThat(operator.offer(VendingMachineCommand.RESET, 0), is(true));
+            final long resetReply = awaitReply(operator);
+            final CommandResult[] results = new CommandResult[2 * 6];
+            for (int i = 0; i < 6; i++) {
+                assertThat(cardReader.offerCashlessPayment(Product.WATER, 100 + i), is(true));
+                results[2 * i] = CommandReply.resultOf(awaitReply(cardReader));
+                cardReader.offer(VendingMachineCommand.COLLECT_PRODUCT, 0);
+                awaitReply(cardReader);
+                assertThat(cardReader.offerCashlessPayment(Product.WATER, 100 + i), is(true));
+                results[2 * i + 1] = CommandReply.resultOf(awaitReply(cardReader));
+            }
+
+            // Then
+            assertThat(CommandReply.resultOf(resetReply), is(CommandResult.OK));
+            for (int i = 0; i < 6; i++) {
+                assertThat(results[2 * i], is(CommandResult.OK));
+                assertThat(results[2 * i + 1], is(CommandResult.ALREADY_PAID));
+            }
+            assertThat(vendingMachineImpl.getState(), is(VendingMachineState.IDLE));
+        }
+    }
+
+    @Test
+    public void offer_shouldRejectAnArgumentOutOfRange() throws Exception {
+
+        // Given
+        final VendingMachineImpl vendingMachineImpl = newVendingMachineImpl(VendingMachineEventListener.NONE);
+
+        try (CommandPipeline pipeline = new CommandPipeline(vendingMachineImpl, 1)) {
+
+            final CommandPort coinAcceptor = pipeline.getPort(0);
+
+            // When
+            com.googlecode.catchexception.apis.BDDCatchException.when(coinAcceptor).offer(VendingMachineCommand.INSERT_COIN, Coins.COUNT);
+
+            // Then
+            then(caughtException()).isInstanceOf(IllegalArgumentException.class);
+            assertThat(coinAcceptor.pollReply(), is(CommandPort.NO_REPLY));
+        }
+    }
+
+    private static long awaitReply(CommandPort port) {
+
+        return awaitReply(port, new int[Coins.COUNT]);
+    }
+
+    private static long awaitReply(CommandPort port, int[] coinCounts) {
+
+        final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        long reply;
+        while ((reply = port.pollReply(coinCounts)) == CommandPort.NO_REPLY) {
+            if (System.nanoTime() > deadlineNanos)
+                throw new AssertionError("No reply");
+            Thread.yield();
+        }
+
+        return reply;
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl(VendingMachineEventListener eventListener) {
+
+        return new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 100),
+            new EnumInventorizedDeposit<>(Product.class, 10),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            VendingMachineMetrics.NONE,
+            null,
+            eventListener
+        );
+    }
+}
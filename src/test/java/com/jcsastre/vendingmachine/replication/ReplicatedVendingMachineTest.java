@@ -0,0 +1,178 @@
+package com.jcsastre.vendingmachine.replication;
+
+import com.jcsastre.vendingmachine.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.catchexception.apis.BDDCatchException.caughtException;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ReplicatedVendingMachineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replica_shouldTakeOverWithTheStateOfThePrimary() throws Exception {
+
+        // Given
+        final VendingMachineImpl primary = newVendingMachineImpl();
+        primary.reset();
+        primary.insertCoin(Coin.TWO_EUROS);
+        final VendingMachineImpl backup = newVendingMachineImpl();
+        final VendingMachineReplica replica = VendingMachineReplica.listen(backup, new InetSocketAddress("127.0.0.1", 0));
+        final CompletableFuture<Long> appliedCount = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replica.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // When
+        try (ReplicatedVendingMachine replicatedVendingMachine = ReplicatedVendingMachine.connect(primary, replica.getAddress())) {
+            runCommands(replicatedVendingMachine);
+            assertThat(replicatedVendingMachine.awaitAcknowledged(10_000), is(true));
+            assertThat(replicatedVendingMachine.getAcknowledgedCount(), is(replicatedVendingMachine.getSentCount()));
+            assertThat(
+                replicatedVendingMachine.snapshotSendLatencies().getTotalCount(), is(replicatedVendingMachine.getSentCount())
+            );
+        }
+        replica.close();
+
+        // Then
+        assertThat(appliedCount.get(10, TimeUnit.SECONDS), is(11L));
+        assertThat(backup.takeSnapshot(0), is(primary.takeSnapshot(0)));
+        assertThat(backup.payCashless(Product.COKE, 1L), is(false));
+    }
+
+    @Test
+    public void replica_shouldReplicateFromAnotherJvm() throws Exception {
+
+        // Given
+        final Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("replica.snapshot");
+        final Process process =
+            new ProcessBuilder(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                VendingMachineReplica.class.getName(), "0", "10", "10", snapshotFile.toString()
+            ).redirectErrorStream(true).start();
+        final BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        final String[] listening = output.readLine().split(" ");
+        final int port = Integer.parseInt(listening[listening.length - 1]);
+        final VendingMachineImpl primary = newVendingMachineImpl();
+        primary.reset();
+
+        // When
+        try (ReplicatedVendingMachine replicatedVendingMachine =
+                 ReplicatedVendingMachine.connect(primary, new InetSocketAddress("127.0.0.1", port))) {
+            runCommands(replicatedVendingMachine);
+            assertThat(replicatedVendingMachine.awaitAcknowledged(10_000), is(true));
+        }
+
+        // Then: the replica writes the count of commands applied as journal position
+        assertThat(process.waitFor(30, TimeUnit.SECONDS), is(true));
+        assertThat(VendingMachineSnapshot.read(snapshotFile), is(primary.takeSnapshot(11)));
+    }
+
+    @Test
+    public void primary_shouldGoOnAloneWhenTheBackupFails() throws Exception {
+
+        // Given
+        final VendingMachineImpl primary = newVendingMachineImpl();
+        primary.reset();
+        final VendingMachineReplica replica =
+            VendingMachineReplica.listen(newVendingMachineImpl(), new InetSocketAddress("127.0.0.1", 0));
+        final ReplicatedVendingMachine replicatedVendingMachine = ReplicatedVendingMachine.connect(primary, replica.getAddress());
+
+        // When
+        replica.close();
+        for (int i = 0; i < 100 && replicatedVendingMachine.isBackupConnected(); i++) {
+            replicatedVendingMachine.insertCoin(Coin.TEN_CENTS);
+            replicatedVendingMachine.cancel();
+            Thread.sleep(10);
+        }
+        replicatedVendingMachine.selectProduct(Product.WATER);
+
+        // Then
+        assertThat(replicatedVendingMachine.isBackupConnected(), is(false));
+        assertThat(replicatedVendingMachine.readSelectedProductId(), is(Product.WATER.ordinal()));
+        replicatedVendingMachine.close();
+    }
+
+    @Test
+    public void replica_shouldThrowCorruptedStreamExceptionWhenReceivingAnUnknownCommand() throws Exception {
+
+        // Given
+        final VendingMachineReplica replica =
+            VendingMachineReplica.listen(newVendingMachineImpl(), new InetSocketAddress("127.0.0.1", 0));
+        final CompletableFuture<Long> appliedCount = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replica.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        // When
+        try (SocketChannel socketChannel = SocketChannel.open(replica.getAddress())) {
+            final ByteBuffer buffer = ByteBuffer.allocate(VendingMachineSnapshot.SIZE + CommandJournal.RECORD_SIZE);
+            newVendingMachineImpl().takeSnapshot(0).writeTo(buffer);
+            buffer.put((byte) 0x7F).put((byte) 0);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                socketChannel.write(buffer);
+            }
+            com.googlecode.catchexception.apis.BDDCatchException.when(appliedCount).get(10, TimeUnit.SECONDS);
+        }
+        replica.close();
+
+        // Then
+        then(caughtException()).hasCauseInstanceOf(CorruptedStreamException.class);
+    }
+
+    private static VendingMachineImpl newVendingMachineImpl() {
+
+        return new VendingMachineImpl(
+            new EnumInventorizedDeposit<>(Coin.class, 10),
+            new EnumInventorizedDeposit<>(Product.class, 10),
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible
+        );
+    }
+
+    /**
+     * <p>Eleven commands: a cheaper water, a water paid with change, a rejected
+     * selection, a cashless coke, a basket of waters and a restock.</p>
+     */
+    private static void runCommands(ReplicatedVendingMachine vendingMachine) throws Exception {
+
+        vendingMachine.setCatalog(Catalog.DEFAULT.withPriceInCents(Product.WATER, 90));
+
+        vendingMachine.selectProduct(Product.WATER);
+        vendingMachine.insertCoin(Coin.ONE_EURO);
+        vendingMachine.collectProductAtTakeoutPort();
+        vendingMachine.collectCoinsAtRepaymentPort();
+        vendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        vendingMachine.payCashless(Product.COKE, 1L);
+        vendingMachine.collectProductIdAtTakeoutPort();
+        vendingMachine.vendBasket(Collections.singletonMap(Product.WATER, 2), Collections.singletonList(Coin.TWO_EUROS));
+        vendingMachine.collectBasketAtTakeoutPort();
+        vendingMachine.restock();
+    }
+}
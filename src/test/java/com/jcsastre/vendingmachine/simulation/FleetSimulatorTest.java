@@ -0,0 +1,57 @@
+package com.jcsastre.vendingmachine.simulation;
+
+import com.jcsastre.vendingmachine.CoinCountsChangeCalculator;
+import com.jcsastre.vendingmachine.exception.InvalidStateException;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FleetSimulatorTest {
+
+    @Test
+    public void run_shouldEndEachCustomerWithOneOutcome() throws InvalidStateException {
+
+        // Given
+        final FleetSimulator fleetSimulator = newFleetSimulator();
+
+        // When
+        final FleetSimulationReport fleetSimulationReport = fleetSimulator.run(50, new ForkJoinPool(4));
+
+        // Then
+        assertThat(fleetSimulationReport.getCustomers(), is(1000L * 50));
+        assertThat(
+            fleetSimulationReport.getVends() + fleetSimulationReport.getCancels() + fleetSimulationReport.getNoChanges()
+                + fleetSimulationReport.getNoStocks() + fleetSimulationReport.getCoinOverflows(),
+            is(fleetSimulationReport.getCustomers())
+        );
+        assertThat(fleetSimulationReport.getVends() > 0, is(true));
+        assertThat(fleetSimulationReport.getNoStocks() > 0, is(true));
+    }
+
+    @Test
+    public void run_shouldNotDependOnTheParallelism() throws InvalidStateException {
+
+        // When
+        final FleetSimulationReport sequentialReport = newFleetSimulator().run(50, new ForkJoinPool(1));
+        final FleetSimulationReport parallelReport = newFleetSimulator().run(50, new ForkJoinPool(4));
+
+        // Then
+        assertThat(parallelReport.getVends(), is(sequentialReport.getVends()));
+        assertThat(parallelReport.getCancels(), is(sequentialReport.getCancels()));
+        assertThat(parallelReport.getNoChanges(), is(sequentialReport.getNoChanges()));
+        assertThat(parallelReport.getNoStocks(), is(sequentialReport.getNoStocks()));
+    }
+
+    private static FleetSimulator newFleetSimulator() throws InvalidStateException {
+
+        return new FleetSimulator(
+            1000, 10, 10,
+            CoinCountsChangeCalculator.coinCountsChangeCalculatorAsBiggestAsPossible,
+            CustomerWorkload.DEFAULT,
+            42
+        );
+    }
+}